@@ -6,6 +6,7 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import lewocz.graphics.event.EventQueue;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.ConfigurableApplicationContext;
@@ -38,6 +39,8 @@ public class Main extends Application {
 
 	@Override
 	public void stop() {
+		// Let queued commands finish before the beans they use are destroyed
+		context.getBean(EventQueue.class).shutdown();
 		context.close();
 		Platform.exit();
 	}
@@ -1,29 +1,22 @@
 package lewocz.graphics.command;
 
-import javafx.application.Platform;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class ApplyAdditionCommand implements Command {
+public class ApplyAdditionCommand extends ImageOperationCommand {
 
-    private final IMainViewModel mainViewModel;
     private final double addRed;
     private final double addGreen;
     private final double addBlue;
 
     public ApplyAdditionCommand(IMainViewModel mainViewModel, double addRed, double addGreen, double addBlue) {
-        this.mainViewModel = mainViewModel;
+        super(mainViewModel);
         this.addRed = addRed;
         this.addGreen = addGreen;
         this.addBlue = addBlue;
     }
 
     @Override
-    public void execute() {
-        Platform.runLater(() -> mainViewModel.setIsProcessing(true));
-        try {
-            mainViewModel.applyAddition(addRed, addGreen, addBlue);
-        } finally {
-            Platform.runLater(() -> mainViewModel.setIsProcessing(false));
-        }
+    protected void perform() {
+        mainViewModel.applyAddition(addRed, addGreen, addBlue);
     }
 }
\ No newline at end of file
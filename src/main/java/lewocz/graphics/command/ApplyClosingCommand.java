@@ -1,24 +1,17 @@
 package lewocz.graphics.command;
 
-import javafx.application.Platform;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class ApplyClosingCommand implements Command {
-    private final IMainViewModel mainViewModel;
+public class ApplyClosingCommand extends ImageOperationCommand {
     private final boolean[][] structuringElement;
 
     public ApplyClosingCommand(IMainViewModel mainViewModel, boolean[][] structuringElement) {
-        this.mainViewModel = mainViewModel;
+        super(mainViewModel);
         this.structuringElement = structuringElement;
     }
 
     @Override
-    public void execute() {
-        Platform.runLater(() -> mainViewModel.setIsProcessing(true));
-        try {
-            mainViewModel.applyClosing(structuringElement);
-        } finally {
-            Platform.runLater(() -> mainViewModel.setIsProcessing(false));
-        }
+    protected void perform() {
+        mainViewModel.applyClosing(structuringElement);
     }
 }
\ No newline at end of file
@@ -1,24 +1,17 @@
 package lewocz.graphics.command;
 
-import javafx.application.Platform;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class ApplyCustomConvolutionCommand implements Command {
-    private final IMainViewModel mainViewModel;
+public class ApplyCustomConvolutionCommand extends ImageOperationCommand {
     private final double[][] kernel;
 
     public ApplyCustomConvolutionCommand(IMainViewModel mainViewModel, double[][] kernel) {
-        this.mainViewModel = mainViewModel;
+        super(mainViewModel);
         this.kernel = kernel;
     }
 
     @Override
-    public void execute() {
-        Platform.runLater(() -> mainViewModel.setIsProcessing(true));
-        try {
-            mainViewModel.applyCustomConvolution(kernel);
-        } finally {
-            Platform.runLater(() -> mainViewModel.setIsProcessing(false));
-        }
+    protected void perform() {
+        mainViewModel.applyCustomConvolution(kernel);
     }
 }
\ No newline at end of file
@@ -1,24 +1,17 @@
 package lewocz.graphics.command;
 
-import javafx.application.Platform;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class ApplyDilationCommand implements Command {
-    private final IMainViewModel mainViewModel;
+public class ApplyDilationCommand extends ImageOperationCommand {
     private final boolean[][] structuringElement;
 
     public ApplyDilationCommand(IMainViewModel mainViewModel, boolean[][] structuringElement) {
-        this.mainViewModel = mainViewModel;
+        super(mainViewModel);
         this.structuringElement = structuringElement;
     }
 
     @Override
-    public void execute() {
-        Platform.runLater(() -> mainViewModel.setIsProcessing(true));
-        try {
-            mainViewModel.applyDilation(structuringElement);
-        } finally {
-            Platform.runLater(() -> mainViewModel.setIsProcessing(false));
-        }
+    protected void perform() {
+        mainViewModel.applyDilation(structuringElement);
     }
 }
\ No newline at end of file
@@ -1,24 +1,17 @@
 package lewocz.graphics.command;
 
-import javafx.application.Platform;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class ApplyErosionCommand implements Command {
-    private final IMainViewModel mainViewModel;
+public class ApplyErosionCommand extends ImageOperationCommand {
     private final boolean[][] structuringElement;
 
     public ApplyErosionCommand(IMainViewModel mainViewModel, boolean[][] structuringElement) {
-        this.mainViewModel = mainViewModel;
+        super(mainViewModel);
         this.structuringElement = structuringElement;
     }
 
     @Override
-    public void execute() {
-        Platform.runLater(() -> mainViewModel.setIsProcessing(true));
-        try {
-            mainViewModel.applyErosion(structuringElement);
-        } finally {
-            Platform.runLater(() -> mainViewModel.setIsProcessing(false));
-        }
+    protected void perform() {
+        mainViewModel.applyErosion(structuringElement);
     }
 }
\ No newline at end of file
@@ -1,26 +1,19 @@
 package lewocz.graphics.command;
 
-import javafx.application.Platform;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class ApplyGaussianBlurCommand implements Command {
-    private final IMainViewModel mainViewModel;
+public class ApplyGaussianBlurCommand extends ImageOperationCommand {
     private final int kernelSize;
     private final double sigma;
 
     public ApplyGaussianBlurCommand(IMainViewModel mainViewModel, int kernelSize, double sigma) {
-        this.mainViewModel = mainViewModel;
+        super(mainViewModel);
         this.kernelSize = kernelSize;
         this.sigma = sigma;
     }
 
     @Override
-    public void execute() {
-        Platform.runLater(() -> mainViewModel.setIsProcessing(true));
-        try {
-            mainViewModel.applyGaussianBlur(kernelSize, sigma);
-        } finally {
-            Platform.runLater(() -> mainViewModel.setIsProcessing(false));
-        }
+    protected void perform() {
+        mainViewModel.applyGaussianBlur(kernelSize, sigma);
     }
 }
\ No newline at end of file
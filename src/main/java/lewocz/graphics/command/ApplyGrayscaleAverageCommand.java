@@ -1,22 +1,15 @@
 package lewocz.graphics.command;
 
-import javafx.application.Platform;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class ApplyGrayscaleAverageCommand implements Command {
-    private final IMainViewModel mainViewModel;
+public class ApplyGrayscaleAverageCommand extends ImageOperationCommand {
 
     public ApplyGrayscaleAverageCommand(IMainViewModel mainViewModel) {
-        this.mainViewModel = mainViewModel;
+        super(mainViewModel);
     }
 
     @Override
-    public void execute() {
-        Platform.runLater(() -> mainViewModel.setIsProcessing(true));
-        try {
-            mainViewModel.applyGrayscaleAverage();
-        } finally {
-            Platform.runLater(() -> mainViewModel.setIsProcessing(false));
-        }
+    protected void perform() {
+        mainViewModel.applyGrayscaleAverage();
     }
 }
\ No newline at end of file
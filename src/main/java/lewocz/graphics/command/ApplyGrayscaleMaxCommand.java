@@ -1,22 +1,15 @@
 package lewocz.graphics.command;
 
-import javafx.application.Platform;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class ApplyGrayscaleMaxCommand implements Command {
-    private final IMainViewModel mainViewModel;
+public class ApplyGrayscaleMaxCommand extends ImageOperationCommand {
 
     public ApplyGrayscaleMaxCommand(IMainViewModel mainViewModel) {
-        this.mainViewModel = mainViewModel;
+        super(mainViewModel);
     }
 
     @Override
-    public void execute() {
-        Platform.runLater(() -> mainViewModel.setIsProcessing(true));
-        try {
-            mainViewModel.applyGrayscaleMax();
-        } finally {
-            Platform.runLater(() -> mainViewModel.setIsProcessing(false));
-        }
+    protected void perform() {
+        mainViewModel.applyGrayscaleMax();
     }
 }
\ No newline at end of file
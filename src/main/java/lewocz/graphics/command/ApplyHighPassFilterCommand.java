@@ -1,22 +1,15 @@
 package lewocz.graphics.command;
 
-import javafx.application.Platform;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class ApplyHighPassFilterCommand implements Command {
-    private final IMainViewModel mainViewModel;
+public class ApplyHighPassFilterCommand extends ImageOperationCommand {
 
     public ApplyHighPassFilterCommand(IMainViewModel mainViewModel) {
-        this.mainViewModel = mainViewModel;
+        super(mainViewModel);
     }
 
     @Override
-    public void execute() {
-        Platform.runLater(() -> mainViewModel.setIsProcessing(true));
-        try {
-            mainViewModel.applyHighPassFilter();
-        } finally {
-            Platform.runLater(() -> mainViewModel.setIsProcessing(false));
-        }
+    protected void perform() {
+        mainViewModel.applyHighPassFilter();
     }
 }
\ No newline at end of file
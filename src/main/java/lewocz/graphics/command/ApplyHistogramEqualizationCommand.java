@@ -1,22 +1,15 @@
 package lewocz.graphics.command;
 
-import javafx.application.Platform;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class ApplyHistogramEqualizationCommand implements Command {
-    private final IMainViewModel mainViewModel;
+public class ApplyHistogramEqualizationCommand extends ImageOperationCommand {
 
     public ApplyHistogramEqualizationCommand(IMainViewModel mainViewModel) {
-        this.mainViewModel = mainViewModel;
+        super(mainViewModel);
     }
 
     @Override
-    public void execute() {
-        Platform.runLater(() -> mainViewModel.setIsProcessing(true));
-        try {
-            mainViewModel.applyHistogramEqualization();
-        } finally {
-            Platform.runLater(() -> mainViewModel.setIsProcessing(false));
-        }
+    protected void perform() {
+        mainViewModel.applyHistogramEqualization();
     }
 }
\ No newline at end of file
@@ -1,22 +1,15 @@
 package lewocz.graphics.command;
 
-import javafx.application.Platform;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class ApplyHistogramStretchingCommand implements Command {
-    private final IMainViewModel mainViewModel;
+public class ApplyHistogramStretchingCommand extends ImageOperationCommand {
 
     public ApplyHistogramStretchingCommand(IMainViewModel mainViewModel) {
-        this.mainViewModel = mainViewModel;
+        super(mainViewModel);
     }
 
     @Override
-    public void execute() {
-        Platform.runLater(() -> mainViewModel.setIsProcessing(true));
-        try {
-            mainViewModel.applyHistogramStretching();
-        } finally {
-            Platform.runLater(() -> mainViewModel.setIsProcessing(false));
-        }
+    protected void perform() {
+        mainViewModel.applyHistogramStretching();
     }
 }
\ No newline at end of file
@@ -1,26 +1,19 @@
 package lewocz.graphics.command;
 
-import javafx.application.Platform;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class ApplyHitOrMissCommand implements Command {
-    private final IMainViewModel mainViewModel;
+public class ApplyHitOrMissCommand extends ImageOperationCommand {
     private final boolean[][] hitMask;
     private final boolean[][] missMask;
 
     public ApplyHitOrMissCommand(IMainViewModel mainViewModel, boolean[][] hitMask, boolean[][] missMask) {
-        this.mainViewModel = mainViewModel;
+        super(mainViewModel);
         this.hitMask = hitMask;
         this.missMask = missMask;
     }
 
     @Override
-    public void execute() {
-        Platform.runLater(() -> mainViewModel.setIsProcessing(true));
-        try {
-            mainViewModel.applyHitOrMiss(hitMask, missMask);
-        } finally {
-            Platform.runLater(() -> mainViewModel.setIsProcessing(false));
-        }
+    protected void perform() {
+        mainViewModel.applyHitOrMiss(hitMask, missMask);
     }
 }
\ No newline at end of file
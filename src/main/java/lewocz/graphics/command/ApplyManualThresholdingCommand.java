@@ -1,24 +1,17 @@
 package lewocz.graphics.command;
 
-import javafx.application.Platform;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class ApplyManualThresholdingCommand implements Command {
-    private final IMainViewModel mainViewModel;
+public class ApplyManualThresholdingCommand extends ImageOperationCommand {
     private final int threshold;
 
     public ApplyManualThresholdingCommand(IMainViewModel mainViewModel, int threshold) {
-        this.mainViewModel = mainViewModel;
+        super(mainViewModel);
         this.threshold = threshold;
     }
 
     @Override
-    public void execute() {
-        Platform.runLater(() -> mainViewModel.setIsProcessing(true));
-        try {
-            mainViewModel.applyManualThresholding(threshold);
-        } finally {
-            Platform.runLater(() -> mainViewModel.setIsProcessing(false));
-        }
+    protected void perform() {
+        mainViewModel.applyManualThresholding(threshold);
     }
 }
\ No newline at end of file
@@ -1,22 +1,15 @@
 package lewocz.graphics.command;
 
-import javafx.application.Platform;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class ApplyMeanIterativeSelectionCommand implements Command {
-    private final IMainViewModel mainViewModel;
+public class ApplyMeanIterativeSelectionCommand extends ImageOperationCommand {
 
     public ApplyMeanIterativeSelectionCommand(IMainViewModel mainViewModel) {
-        this.mainViewModel = mainViewModel;
+        super(mainViewModel);
     }
 
     @Override
-    public void execute() {
-        Platform.runLater(() -> mainViewModel.setIsProcessing(true));
-        try {
-            mainViewModel.applyMeanIterativeSelection();
-        } finally {
-            Platform.runLater(() -> mainViewModel.setIsProcessing(false));
-        }
+    protected void perform() {
+        mainViewModel.applyMeanIterativeSelection();
     }
 }
\ No newline at end of file
@@ -1,23 +1,18 @@
 package lewocz.graphics.command;
 
-import javafx.application.Platform;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class ApplyMedianFilterCommand implements Command {
+public class ApplyMedianFilterCommand extends ImageOperationCommand {
 
-    private final IMainViewModel mainViewModel;
+    private final int radius;
 
-    public ApplyMedianFilterCommand(IMainViewModel mainViewModel) {
-        this.mainViewModel = mainViewModel;
+    public ApplyMedianFilterCommand(IMainViewModel mainViewModel, int radius) {
+        super(mainViewModel);
+        this.radius = radius;
     }
 
     @Override
-    public void execute() {
-        Platform.runLater(() -> mainViewModel.setIsProcessing(true));
-        try {
-            mainViewModel.applyMedianFilter();
-        } finally {
-            Platform.runLater(() -> mainViewModel.setIsProcessing(false));
-        }
+    protected void perform() {
+        mainViewModel.applyMedianFilter(radius);
     }
 }
\ No newline at end of file
@@ -1,28 +1,21 @@
 package lewocz.graphics.command;
 
-import javafx.application.Platform;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class ApplyMultiplicationCommand implements Command {
-    private final IMainViewModel mainViewModel;
+public class ApplyMultiplicationCommand extends ImageOperationCommand {
     private final double mulRed;
     private final double mulGreen;
     private final double mulBlue;
 
     public ApplyMultiplicationCommand(IMainViewModel mainViewModel, double mulRed, double mulGreen, double mulBlue) {
-        this.mainViewModel = mainViewModel;
+        super(mainViewModel);
         this.mulRed = mulRed;
         this.mulGreen = mulGreen;
         this.mulBlue = mulBlue;
     }
 
     @Override
-    public void execute() {
-        Platform.runLater(() -> mainViewModel.setIsProcessing(true));
-        try {
-            mainViewModel.applyMultiplication(mulRed, mulGreen, mulBlue);
-        } finally {
-            Platform.runLater(() -> mainViewModel.setIsProcessing(false));
-        }
+    protected void perform() {
+        mainViewModel.applyMultiplication(mulRed, mulGreen, mulBlue);
     }
 }
\ No newline at end of file
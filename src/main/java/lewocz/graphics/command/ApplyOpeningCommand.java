@@ -1,24 +1,17 @@
 package lewocz.graphics.command;
 
-import javafx.application.Platform;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class ApplyOpeningCommand implements Command {
-    private final IMainViewModel mainViewModel;
+public class ApplyOpeningCommand extends ImageOperationCommand {
     private final boolean[][] structuringElement;
 
     public ApplyOpeningCommand(IMainViewModel mainViewModel, boolean[][] structuringElement) {
-        this.mainViewModel = mainViewModel;
+        super(mainViewModel);
         this.structuringElement = structuringElement;
     }
 
     @Override
-    public void execute() {
-        Platform.runLater(() -> mainViewModel.setIsProcessing(true));
-        try {
-            mainViewModel.applyOpening(structuringElement);
-        } finally {
-            Platform.runLater(() -> mainViewModel.setIsProcessing(false));
-        }
+    protected void perform() {
+        mainViewModel.applyOpening(structuringElement);
     }
 }
\ No newline at end of file
@@ -1,22 +1,15 @@
 package lewocz.graphics.command;
 
-import javafx.application.Platform;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class ApplyOtsuThresholdingCommand implements Command {
-    private final IMainViewModel mainViewModel;
+public class ApplyOtsuThresholdingCommand extends ImageOperationCommand {
 
     public ApplyOtsuThresholdingCommand(IMainViewModel mainViewModel) {
-        this.mainViewModel = mainViewModel;
+        super(mainViewModel);
     }
 
     @Override
-    public void execute() {
-        Platform.runLater(() -> mainViewModel.setIsProcessing(true));
-        try {
-            mainViewModel.applyOtsuThresholding();
-        } finally {
-            Platform.runLater(() -> mainViewModel.setIsProcessing(false));
-        }
+    protected void perform() {
+        mainViewModel.applyOtsuThresholding();
     }
 }
\ No newline at end of file
@@ -1,24 +1,17 @@
 package lewocz.graphics.command;
 
-import javafx.application.Platform;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class ApplyPercentBlackSelectionCommand implements Command {
-    private final IMainViewModel mainViewModel;
+public class ApplyPercentBlackSelectionCommand extends ImageOperationCommand {
     private final double percentBlack;
 
     public ApplyPercentBlackSelectionCommand(IMainViewModel mainViewModel, double percentBlack) {
-        this.mainViewModel = mainViewModel;
+        super(mainViewModel);
         this.percentBlack = percentBlack;
     }
 
     @Override
-    public void execute() {
-        Platform.runLater(() -> mainViewModel.setIsProcessing(true));
-        try {
-            mainViewModel.applyPercentBlackSelection(percentBlack);
-        } finally {
-            Platform.runLater(() -> mainViewModel.setIsProcessing(false));
-        }
+    protected void perform() {
+        mainViewModel.applyPercentBlackSelection(percentBlack);
     }
 }
\ No newline at end of file
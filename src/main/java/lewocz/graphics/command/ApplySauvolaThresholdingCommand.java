@@ -1,28 +1,21 @@
 package lewocz.graphics.command;
 
-import javafx.application.Platform;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class ApplySauvolaThresholdingCommand implements Command {
-    private final IMainViewModel mainViewModel;
+public class ApplySauvolaThresholdingCommand extends ImageOperationCommand {
     private final int windowSize;
     private final double k;
     private final double r;
 
     public ApplySauvolaThresholdingCommand(IMainViewModel mainViewModel, int windowSize, double k, double r) {
-        this.mainViewModel = mainViewModel;
+        super(mainViewModel);
         this.windowSize = windowSize;
         this.k = k;
         this.r = r;
     }
 
     @Override
-    public void execute() {
-        Platform.runLater(() -> mainViewModel.setIsProcessing(true));
-        try {
-            mainViewModel.applySauvolaThresholding(windowSize, k, r);
-        } finally {
-            Platform.runLater(() -> mainViewModel.setIsProcessing(false));
-        }
+    protected void perform() {
+        mainViewModel.applySauvolaThresholding(windowSize, k, r);
     }
 }
\ No newline at end of file
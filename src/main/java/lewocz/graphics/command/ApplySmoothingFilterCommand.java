@@ -1,22 +1,15 @@
 package lewocz.graphics.command;
 
-import javafx.application.Platform;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class ApplySmoothingFilterCommand implements Command {
-    private final IMainViewModel mainViewModel;
+public class ApplySmoothingFilterCommand extends ImageOperationCommand {
 
     public ApplySmoothingFilterCommand(IMainViewModel mainViewModel) {
-        this.mainViewModel = mainViewModel;
+        super(mainViewModel);
     }
 
     @Override
-    public void execute() {
-        Platform.runLater(() -> mainViewModel.setIsProcessing(true));
-        try {
-            mainViewModel.applySmoothingFilter();
-        } finally {
-            Platform.runLater(() -> mainViewModel.setIsProcessing(false));
-        }
+    protected void perform() {
+        mainViewModel.applySmoothingFilter();
     }
 }
\ No newline at end of file
@@ -0,0 +1,15 @@
+package lewocz.graphics.command;
+
+/**
+ * Command that can absorb the command enqueued right after it on the same lane, so a burst of input
+ * events runs as one command instead of backing up the queue.
+ */
+public interface CoalescingCommand extends Command {
+
+    /**
+     * Merges {@code next} into this command if this one has not started yet.
+     *
+     * @return {@code true} if {@code next} was merged and must not run on its own.
+     */
+    boolean coalesce(Command next);
+}
@@ -2,4 +2,22 @@ package lewocz.graphics.command;
 
 public interface Command {
     void execute();
+
+    /**
+     * Lane of the {@link lewocz.graphics.event.EventQueue} the command runs on.
+     */
+    default CommandLane lane() {
+        return CommandLane.MODEL;
+    }
+
+    /**
+     * Asks the command to stop as soon as possible, leaving the model as it was before the command. Commands
+     * that cannot be cancelled ignore the request.
+     */
+    default void cancel() {
+    }
+
+    default boolean isCancelled() {
+        return false;
+    }
 }
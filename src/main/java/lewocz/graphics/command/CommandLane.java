@@ -0,0 +1,14 @@
+package lewocz.graphics.command;
+
+/**
+ * Where a command runs. Commands on the same ordered lane run one at a time in the order they were
+ * enqueued; the lanes themselves run independently of each other.
+ */
+public enum CommandLane {
+    /** Ordered lane for short commands that change shapes and tool state, such as mouse input. */
+    MODEL,
+    /** Ordered lane for commands that work on the current image, run on the worker pool. */
+    IMAGE,
+    /** Unordered commands that only read data captured when they were created, run concurrently on the worker pool. */
+    BACKGROUND
+}
@@ -0,0 +1,16 @@
+package lewocz.graphics.command;
+
+import lewocz.graphics.viewmodel.IMainViewModel;
+
+public class DeleteShapeCommand implements Command {
+    private final IMainViewModel viewModel;
+
+    public DeleteShapeCommand(IMainViewModel viewModel) {
+        this.viewModel = viewModel;
+    }
+
+    @Override
+    public void execute() {
+        viewModel.deleteCurrentShape();
+    }
+}
@@ -0,0 +1,12 @@
+package lewocz.graphics.command;
+
+/**
+ * Command that works on the current image. Image commands run in order on the {@link CommandLane#IMAGE}
+ * lane, so each one sees the result of the previous one and a long operation does not hold up mouse input.
+ */
+public interface ImageCommand extends Command {
+    @Override
+    default CommandLane lane() {
+        return CommandLane.IMAGE;
+    }
+}
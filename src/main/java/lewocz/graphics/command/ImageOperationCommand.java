@@ -0,0 +1,37 @@
+package lewocz.graphics.command;
+
+import lewocz.graphics.utils.OperationMonitor;
+import lewocz.graphics.viewmodel.IMainViewModel;
+
+/**
+ * Image command that reports progress and can be cancelled. The operation runs under its own
+ * {@link OperationMonitor}, which stops it between row bands once {@link #cancel()} is called.
+ */
+public abstract class ImageOperationCommand implements ImageCommand {
+    protected final IMainViewModel mainViewModel;
+    private final OperationMonitor monitor = new OperationMonitor();
+
+    protected ImageOperationCommand(IMainViewModel mainViewModel) {
+        this.mainViewModel = mainViewModel;
+    }
+
+    @Override
+    public final void execute() {
+        mainViewModel.runOperation(monitor, this::perform);
+    }
+
+    /**
+     * Runs the operation on the view model.
+     */
+    protected abstract void perform();
+
+    @Override
+    public void cancel() {
+        monitor.cancel();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return monitor.isCancelled();
+    }
+}
@@ -4,7 +4,7 @@ import javafx.application.Platform;
 import lewocz.graphics.model.PNMFormat;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class LoadCommand implements Command {
+public class LoadCommand implements ImageCommand {
     private final IMainViewModel viewModel;
     private final String fileName;
     private final PNMFormat format;
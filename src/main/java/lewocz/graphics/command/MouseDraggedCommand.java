@@ -1,19 +1,43 @@
 package lewocz.graphics.command;
 
+import lewocz.graphics.model.SerializablePoint;
 import lewocz.graphics.viewmodel.IMainViewModel;
 
-public class MouseDraggedCommand implements Command {
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drag of the mouse on the canvas. Drags enqueued while this one waits are merged into it, and it hands
+ * the whole path to the view model, which uses every point for freehand strokes and the last one otherwise.
+ */
+public class MouseDraggedCommand implements CoalescingCommand {
     private final IMainViewModel viewModel;
-    private final double x, y;
+    private final List<SerializablePoint> path = new ArrayList<>();
+    private boolean started;
 
     public MouseDraggedCommand(IMainViewModel viewModel, double x, double y) {
         this.viewModel = viewModel;
-        this.x = x;
-        this.y = y;
+        this.path.add(new SerializablePoint(x, y));
+    }
+
+    @Override
+    public synchronized boolean coalesce(Command next) {
+        if (started || !(next instanceof MouseDraggedCommand other) || other.viewModel != viewModel) {
+            return false;
+        }
+        synchronized (other) {
+            path.addAll(other.path);
+        }
+        return true;
     }
 
     @Override
     public void execute() {
-        viewModel.onMouseDragged(x, y);
+        List<SerializablePoint> points;
+        synchronized (this) {
+            started = true;
+            points = List.copyOf(path);
+        }
+        viewModel.onMouseDragged(points);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,15 @@
+package lewocz.graphics.command;
+
+import lewocz.graphics.viewmodel.IMainViewModel;
+
+public class RedoImageOperationCommand extends ImageOperationCommand {
+
+    public RedoImageOperationCommand(IMainViewModel mainViewModel) {
+        super(mainViewModel);
+    }
+
+    @Override
+    protected void perform() {
+        mainViewModel.redoImageOperation();
+    }
+}
@@ -0,0 +1,16 @@
+package lewocz.graphics.command;
+
+import lewocz.graphics.viewmodel.IMainViewModel;
+
+public class RedoShapeEditCommand implements Command {
+    private final IMainViewModel viewModel;
+
+    public RedoShapeEditCommand(IMainViewModel viewModel) {
+        this.viewModel = viewModel;
+    }
+
+    @Override
+    public void execute() {
+        viewModel.redoShapeEdit();
+    }
+}
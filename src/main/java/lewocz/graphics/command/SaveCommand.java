@@ -23,4 +23,9 @@ public class SaveCommand implements Command {
     public void execute() {
         viewModel.saveImage(fileName, format, binaryFormat, image);
     }
-}
\ No newline at end of file
+
+    @Override
+    public CommandLane lane() {
+        return CommandLane.BACKGROUND;
+    }
+}
@@ -0,0 +1,15 @@
+package lewocz.graphics.command;
+
+import lewocz.graphics.viewmodel.IMainViewModel;
+
+public class UndoImageOperationCommand extends ImageOperationCommand {
+
+    public UndoImageOperationCommand(IMainViewModel mainViewModel) {
+        super(mainViewModel);
+    }
+
+    @Override
+    protected void perform() {
+        mainViewModel.undoImageOperation();
+    }
+}
@@ -0,0 +1,16 @@
+package lewocz.graphics.command;
+
+import lewocz.graphics.viewmodel.IMainViewModel;
+
+public class UndoShapeEditCommand implements Command {
+    private final IMainViewModel viewModel;
+
+    public UndoShapeEditCommand(IMainViewModel viewModel) {
+        this.viewModel = viewModel;
+    }
+
+    @Override
+    public void execute() {
+        viewModel.undoShapeEdit();
+    }
+}
@@ -1,36 +1,277 @@
 package lewocz.graphics.event;
 
+import lewocz.graphics.command.CoalescingCommand;
 import lewocz.graphics.command.Command;
+import lewocz.graphics.command.CommandLane;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Runs commands off the JavaFX thread on managed executors, one lane per {@link CommandLane}.
+ * <p>
+ * The {@code MODEL} lane is a single thread, the {@code IMAGE} lane runs its commands one at a time in
+ * order on a bounded worker pool, and {@code BACKGROUND} commands run on the same pool without ordering.
+ * Handing a command to an executor happens-before it runs, and on an ordered lane each command finishes
+ * before the next one starts, so a command sees every change made by the commands before it on its lane.
+ * A {@link CoalescingCommand} that has not started yet absorbs the command enqueued right after it on its
+ * lane, so bursts of input such as mouse drags do not pile up behind a slow command.
+ * Every lane keeps its queue depth and the time commands spent waiting and running; see {@link #getMetrics}.
+ */
 @Component
-public class EventQueue {
-    private final BlockingQueue<Command> commandQueue = new LinkedBlockingQueue<>();
-    private volatile boolean isProcessing = false;
+public class EventQueue implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(EventQueue.class);
+
+    private static final int DEFAULT_WORKERS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+    /** Commands that wait longer than this before they start are logged. */
+    private static final long SLOW_START_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private final ExecutorService modelExecutor;
+    private final ExecutorService workerPool;
+    private final Map<CommandLane, Lane> lanes = new EnumMap<>(CommandLane.class);
+
+    private final Object idleLock = new Object();
+    private int pending;
+    private volatile boolean shutdown;
+
+    public EventQueue() {
+        this(DEFAULT_WORKERS);
+    }
+
+    /**
+     * @param workers Number of threads of the pool that runs image and background commands.
+     */
+    public EventQueue(int workers) {
+        modelExecutor = Executors.newSingleThreadExecutor(threadFactory("command-model"));
+        workerPool = Executors.newFixedThreadPool(workers, threadFactory("command-worker"));
+        lanes.put(CommandLane.MODEL, new Lane(CommandLane.MODEL, modelExecutor));
+        lanes.put(CommandLane.IMAGE, new Lane(CommandLane.IMAGE, new SerialExecutor(workerPool)));
+        lanes.put(CommandLane.BACKGROUND, new Lane(CommandLane.BACKGROUND, workerPool));
+    }
 
     public void enqueue(Command command) {
-        commandQueue.offer(command);
-        processQueue();
+        if (shutdown) {
+            logger.warn("Command {} rejected after shutdown", command.getClass().getSimpleName());
+            return;
+        }
+        synchronized (idleLock) {
+            pending++;
+        }
+        try {
+            if (!lanes.get(command.lane()).submit(command)) {
+                finished();
+            }
+        } catch (RejectedExecutionException e) {
+            logger.warn("Command {} rejected after shutdown", command.getClass().getSimpleName());
+            finished();
+        }
     }
 
-    private void processQueue() {
-        if (isProcessing) return;
+    public LaneMetrics getMetrics(CommandLane lane) {
+        return lanes.get(lane).metrics();
+    }
 
-        isProcessing = true;
-        new Thread(() -> {
-            try {
-                while (!commandQueue.isEmpty()) {
-                    Command command = commandQueue.poll();
-                    if (command != null) {
-                        command.execute();
-                    }
+    /**
+     * Waits until every enqueued command has finished, or the timeout has passed.
+     *
+     * @return {@code true} if the queue became idle.
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (idleLock) {
+            while (pending > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
                 }
+                TimeUnit.NANOSECONDS.timedWait(idleLock, remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stops accepting commands, lets the queued ones finish for up to {@link #SHUTDOWN_TIMEOUT_MILLIS} and
+     * then interrupts whatever is still running. Calling it again has no effect.
+     */
+    public void shutdown() {
+        if (shutdown) {
+            return;
+        }
+        shutdown = true;
+        try {
+            if (!awaitIdle(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                logger.warn("Commands still running at shutdown: {}", pendingCount());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        modelExecutor.shutdownNow();
+        workerPool.shutdownNow();
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public void destroy() {
+        shutdown();
+    }
+
+    private int pendingCount() {
+        synchronized (idleLock) {
+            return pending;
+        }
+    }
+
+    private void finished() {
+        synchronized (idleLock) {
+            if (--pending == 0) {
+                idleLock.notifyAll();
+            }
+        }
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Queue depth and latency counters of a lane. Wait time runs from {@link #enqueue} to the start of
+     * the command, run time from its start to its end. Coalesced commands never run and are only counted.
+     */
+    public record LaneMetrics(CommandLane lane, int queued, long completed, long coalesced, long totalWaitNanos,
+                              long maxWaitNanos, long totalRunNanos) {
+
+        public double averageWaitMillis() {
+            return completed == 0 ? 0 : totalWaitNanos / 1e6 / completed;
+        }
+
+        public double averageRunMillis() {
+            return completed == 0 ? 0 : totalRunNanos / 1e6 / completed;
+        }
+    }
+
+    private final class Lane {
+        private final CommandLane name;
+        private final Executor executor;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+        private final LongAdder totalWaitNanos = new LongAdder();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        private final LongAdder totalRunNanos = new LongAdder();
+        /** Last command submitted, the only one a new command may be merged into. */
+        private Command tail;
+
+        Lane(CommandLane name, Executor executor) {
+            this.name = name;
+            this.executor = executor;
+        }
+
+        /**
+         * @return {@code false} if the command was merged into the previous one instead of being queued.
+         */
+        boolean submit(Command command) {
+            synchronized (this) {
+                if (tail instanceof CoalescingCommand previous && previous.coalesce(command)) {
+                    coalesced.increment();
+                    return false;
+                }
+                tail = command;
+            }
+            long enqueued = System.nanoTime();
+            queued.incrementAndGet();
+            try {
+                executor.execute(() -> run(command, enqueued));
+            } catch (RejectedExecutionException e) {
+                queued.decrementAndGet();
+                throw e;
+            }
+            return true;
+        }
+
+        private void run(Command command, long enqueued) {
+            long started = System.nanoTime();
+            queued.decrementAndGet();
+            long wait = started - enqueued;
+            totalWaitNanos.add(wait);
+            maxWaitNanos.accumulateAndGet(wait, Math::max);
+            if (wait > SLOW_START_NANOS) {
+                logger.debug("{} waited {} ms on the {} lane", command.getClass().getSimpleName(),
+                        TimeUnit.NANOSECONDS.toMillis(wait), name);
+            }
+            try {
+                command.execute();
+            } catch (RuntimeException e) {
+                logger.error("Command {} failed", command.getClass().getSimpleName(), e);
             } finally {
-                isProcessing = false;
+                totalRunNanos.add(System.nanoTime() - started);
+                completed.increment();
+                finished();
+            }
+        }
+
+        LaneMetrics metrics() {
+            return new LaneMetrics(name, queued.get(), completed.sum(), coalesced.sum(), totalWaitNanos.sum(),
+                    maxWaitNanos.get(), totalRunNanos.sum());
+        }
+    }
+
+    /**
+     * Runs tasks one at a time, in submission order, on a shared executor, so an ordered lane does not
+     * need a thread of its own.
+     */
+    private static final class SerialExecutor implements Executor {
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private final Executor executor;
+        private Runnable active;
+
+        SerialExecutor(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public synchronized void execute(Runnable task) {
+            tasks.add(() -> {
+                try {
+                    task.run();
+                } finally {
+                    scheduleNext();
+                }
+            });
+            if (active == null) {
+                scheduleNext();
+            }
+        }
+
+        private synchronized void scheduleNext() {
+            active = tasks.poll();
+            if (active != null) {
+                executor.execute(active);
             }
-        }).start();
+        }
     }
 }
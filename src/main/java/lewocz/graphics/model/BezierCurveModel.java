@@ -1,5 +1,6 @@
 package lewocz.graphics.model;
 
+import javafx.geometry.Bounds;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
 import lombok.Getter;
@@ -13,6 +14,9 @@ import java.util.List;
 public class BezierCurveModel extends ShapeModel {
     private static final long serialVersionUID = -5702521876949423258L;
 
+    /** Distance in pixels within which a point hits a control point. */
+    private static final double HIT_TOLERANCE = 5;
+
     private List<SerializablePoint> controlPoints;
     private SerializablePoint selectedControlPoint;
 
@@ -22,6 +26,7 @@ public class BezierCurveModel extends ShapeModel {
 
     public void addControlPoint(double x, double y) {
         controlPoints.add(new SerializablePoint(x, y));
+        boundsChanged();
     }
 
     @Override
@@ -66,7 +71,7 @@ public class BezierCurveModel extends ShapeModel {
     @Override
     public boolean containsPoint(double x, double y) {
         for (SerializablePoint  cp : controlPoints) {
-            if (cp.distance(x, y) <= 5) {
+            if (cp.distance(x, y) <= HIT_TOLERANCE) {
                 selectedControlPoint = cp;
                 return true;
             }
@@ -90,6 +95,27 @@ public class BezierCurveModel extends ShapeModel {
                 controlPoints.set(i, cp);
             }
         }
+        boundsChanged();
+    }
+
+    /**
+     * Returns the index of the selected control point, or -1 if none is selected.
+     */
+    public int getSelectedControlPointIndex() {
+        return selectedControlPoint == null ? -1 : controlPoints.indexOf(selectedControlPoint);
+    }
+
+    /**
+     * Moves the control point at the given index, keeping it selected if it was.
+     */
+    public void moveControlPoint(int index, double deltaX, double deltaY) {
+        SerializablePoint point = controlPoints.get(index);
+        SerializablePoint newPoint = point.add(deltaX, deltaY);
+        controlPoints.set(index, newPoint);
+        if (selectedControlPoint == point) {
+            selectedControlPoint = newPoint;
+        }
+        boundsChanged();
     }
 
     @Override
@@ -105,6 +131,7 @@ public class BezierCurveModel extends ShapeModel {
 
             controlPoints.set(i, new SerializablePoint(rotatedX + pivotX, rotatedY + pivotY));
         }
+        boundsChanged();
     }
 
     @Override
@@ -119,5 +146,28 @@ public class BezierCurveModel extends ShapeModel {
 
             controlPoints.set(i, new SerializablePoint(scaledX + pivotX, scaledY + pivotY));
         }
+        boundsChanged();
+    }
+
+    public void setControlPoint(int index, SerializablePoint point) {
+        controlPoints.set(index, point);
+        boundsChanged();
+    }
+
+    public void setControlPoints(List<SerializablePoint> controlPoints) {
+        this.controlPoints = controlPoints;
+        boundsChanged();
+    }
+
+    @Override
+    protected Bounds computeBounds() {
+        int count = controlPoints.size();
+        double[] xPoints = new double[count];
+        double[] yPoints = new double[count];
+        for (int i = 0; i < count; i++) {
+            xPoints[i] = controlPoints.get(i).getX();
+            yPoints[i] = controlPoints.get(i).getY();
+        }
+        return boundsOf(xPoints, yPoints, count, HIT_TOLERANCE);
     }
 }
@@ -1,5 +1,7 @@
 package lewocz.graphics.model;
 
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
 import javafx.scene.canvas.GraphicsContext;
 import lombok.Getter;
 import lombok.Setter;
@@ -41,6 +43,7 @@ public class EllipseModel extends ShapeModel {
     public void moveBy(double deltaX, double deltaY) {
         centerX += deltaX;
         centerY += deltaY;
+        boundsChanged();
     }
 
     @Override
@@ -54,6 +57,7 @@ public class EllipseModel extends ShapeModel {
 
         centerX = rotatedX + pivotX;
         centerY = rotatedY + pivotY;
+        boundsChanged();
     }
 
     @Override
@@ -66,5 +70,33 @@ public class EllipseModel extends ShapeModel {
 
         radiusX *= factor;
         radiusY *= factor;
+        boundsChanged();
+    }
+
+    public void setCenterX(double centerX) {
+        this.centerX = centerX;
+        boundsChanged();
+    }
+
+    public void setCenterY(double centerY) {
+        this.centerY = centerY;
+        boundsChanged();
+    }
+
+    public void setRadiusX(double radiusX) {
+        this.radiusX = radiusX;
+        boundsChanged();
+    }
+
+    public void setRadiusY(double radiusY) {
+        this.radiusY = radiusY;
+        boundsChanged();
+    }
+
+    @Override
+    protected Bounds computeBounds() {
+        double rx = Math.abs(radiusX);
+        double ry = Math.abs(radiusY);
+        return new BoundingBox(centerX - rx, centerY - ry, 2 * rx, 2 * ry);
     }
 }
@@ -1,5 +1,7 @@
 package lewocz.graphics.model;
 
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.shape.StrokeLineCap;
 import javafx.scene.shape.StrokeLineJoin;
@@ -20,6 +22,15 @@ public class FreehandModel extends ShapeModel {
     public void addPoint(double x, double y) {
         xPoints.add(x);
         yPoints.add(y);
+        boundsChanged();
+    }
+
+    public void addPoints(List<SerializablePoint> points) {
+        for (SerializablePoint point : points) {
+            xPoints.add(point.getX());
+            yPoints.add(point.getY());
+        }
+        boundsChanged();
     }
 
     @Override
@@ -43,7 +54,7 @@ public class FreehandModel extends ShapeModel {
 
     @Override
     public boolean containsPoint(double x, double y) {
-        double tolerance = getStrokeWidth() / 2 + 2;
+        double tolerance = hitTolerance();
 
         for (int i = 0; i < xPoints.size() - 1; i++) {
             double x1 = xPoints.get(i);
@@ -65,6 +76,7 @@ public class FreehandModel extends ShapeModel {
             xPoints.set(i, xPoints.get(i) + deltaX);
             yPoints.set(i, yPoints.get(i) + deltaY);
         }
+        boundsChanged();
     }
 
     @Override
@@ -80,6 +92,7 @@ public class FreehandModel extends ShapeModel {
             xPoints.set(i, rotatedX + pivotX);
             yPoints.set(i, rotatedY + pivotY);
         }
+        boundsChanged();
     }
 
     @Override
@@ -91,6 +104,7 @@ public class FreehandModel extends ShapeModel {
             xPoints.set(i, x * factor + pivotX);
             yPoints.set(i, y * factor + pivotY);
         }
+        boundsChanged();
     }
 
     private boolean isPointNearLine(double px, double py, double x1, double y1, double x2, double y2, double tolerance) {
@@ -125,4 +139,30 @@ public class FreehandModel extends ShapeModel {
         double dy = py - yy;
         return Math.sqrt(dx * dx + dy * dy);
     }
-}
\ No newline at end of file
+
+    private double hitTolerance() {
+        return getStrokeWidth() / 2 + 2;
+    }
+
+    @Override
+    protected Bounds computeBounds() {
+        // No segment to hit below two points
+        if (xPoints.size() < 2) {
+            return EMPTY_BOUNDS;
+        }
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < xPoints.size(); i++) {
+            double x = xPoints.get(i);
+            double y = yPoints.get(i);
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+        double margin = hitTolerance();
+        return new BoundingBox(minX - margin, minY - margin, maxX - minX + 2 * margin, maxY - minY + 2 * margin);
+    }
+}
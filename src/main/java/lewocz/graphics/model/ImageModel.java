@@ -1,40 +1,241 @@
 package lewocz.graphics.model;
 
+import javafx.application.Platform;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.transform.Affine;
+import javafx.scene.transform.NonInvertibleTransformException;
+import lewocz.graphics.utils.IntRaster;
+import lewocz.graphics.utils.RasterTileSource;
+import lewocz.graphics.utils.TiledImage;
 import lombok.Getter;
 import lombok.Setter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Image placed on the canvas. The pixels live in a {@link TiledImage}, so only the tiles that intersect the
+ * visible part of the canvas are decoded and drawn, from the pyramid level that matches the zoom of the
+ * canvas; {@link #getImage()} decodes the whole image for operations that need every pixel. Full size tiles
+ * of an image in memory are cut when drawn. Other tiles that are not cached yet are built in the background,
+ * drawn meanwhile from the nearest coarser level that is cached,
+ * and {@link #getOnTileLoaded() onTileLoaded} is called when they land so that the canvas can be redrawn. A
+ * tile that cannot be read is logged and reported to {@link #getOnTileFailed() onTileFailed}, and stays a
+ * placeholder.
+ * <p>
+ * The image is replaced from worker threads while the JavaFX thread draws it, so {@link #draw} works on one
+ * snapshot of {@link #getTiledImage()}, and a replaced image is only closed on the JavaFX thread, after any
+ * draw that may still use it.
+ */
 @Getter
 @Setter
 public class ImageModel extends ShapeModel {
     private static final long serialVersionUID = -3681584073044751562L;
+    private static final Logger logger = LoggerFactory.getLogger(ImageModel.class);
 
-    private WritableImage image;
+    private volatile TiledImage tiledImage;
     private double x;
     private double y;
+    /** Downsampled preview drawn in place of the image while set; cleared when the image changes. */
+    private transient volatile WritableImage preview;
+    /** Called from a background thread whenever a tile that was missing while drawing is cached. */
+    private transient volatile Runnable onTileLoaded;
+    /** Called from a background thread when a tile of the image cannot be read, once per image version. */
+    private transient volatile Consumer<RuntimeException> onTileFailed;
 
-    public ImageModel(WritableImage image, double x, double y) {
-        this.image = image;
+    public ImageModel(TiledImage tiledImage, double x, double y) {
+        this.tiledImage = tiledImage;
         this.x = x;
         this.y = y;
     }
 
+    /**
+     * Decodes the whole image into a new {@link WritableImage}.
+     */
+    public WritableImage getImage() {
+        try {
+            return tiledImage.toRaster().toImage();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode image", e);
+        }
+    }
+
+    /**
+     * Replaces the pixels with those of the given image, kept in memory in the same tile cache.
+     */
+    public void setImage(WritableImage image) {
+        setImage(IntRaster.fromImage(image));
+    }
+
+    /**
+     * Replaces the pixels with the given raster, which must not be modified afterwards.
+     */
+    public void setImage(IntRaster raster) {
+        TiledImage previous = tiledImage;
+        tiledImage = new TiledImage(new RasterTileSource(raster), previous.getCache());
+        preview = null;
+        boundsChanged();
+        Platform.runLater(() -> {
+            try {
+                previous.close();
+            } catch (IOException e) {
+                logger.warn("Failed to release previous image", e);
+            }
+        });
+    }
+
     @Override
     public void draw(GraphicsContext gc) {
-        gc.drawImage(image, x, y);
+        TiledImage tiledImage = this.tiledImage;
+        WritableImage previewImage = preview;
+        if (previewImage != null) {
+            gc.drawImage(previewImage, x, y, tiledImage.getWidth(), tiledImage.getHeight());
+            return;
+        }
+        // Draw from the pyramid level that matches the horizontal scale of the canvas
+        Affine transform = gc.getTransform();
+        drawTiles(gc, tiledImage, tiledImage.getLevelForScale(Math.hypot(transform.getMxx(), transform.getMyx())),
+                false);
+    }
+
+    /**
+     * Draws the image from its full size tiles, waiting for the ones that are not cached and ignoring any
+     * preview, for a picture of the canvas that is saved rather than shown.
+     *
+     * @throws java.io.UncheckedIOException if a tile cannot be read.
+     */
+    public void drawFullResolution(GraphicsContext gc) {
+        drawTiles(gc, tiledImage, 0, true);
+    }
+
+    private void drawTiles(GraphicsContext gc, TiledImage tiledImage, int level, boolean wait) {
+        Canvas canvas = gc.getCanvas();
+        Bounds visible;
+        try {
+            visible = gc.getTransform().createInverse()
+                    .transform(new BoundingBox(0, 0, canvas.getWidth(), canvas.getHeight()));
+        } catch (NonInvertibleTransformException e) {
+            return;
+        }
+
+        double tileSize = TiledImage.TILE_SIZE * (double) (1 << level);
+        double width = tiledImage.getWidth();
+        double height = tiledImage.getHeight();
+
+        int firstColumn = Math.max(0, (int) Math.floor((visible.getMinX() - x) / tileSize));
+        int lastColumn = Math.min(tiledImage.getColumns(level) - 1, (int) Math.floor((visible.getMaxX() - x) / tileSize));
+        int firstRow = Math.max(0, (int) Math.floor((visible.getMinY() - y) / tileSize));
+        int lastRow = Math.min(tiledImage.getRows(level) - 1, (int) Math.floor((visible.getMaxY() - y) / tileSize));
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            double tileY = row * tileSize;
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                double tileX = column * tileSize;
+                double tileWidth = Math.min(tileSize, width - tileX);
+                double tileHeight = Math.min(tileSize, height - tileY);
+                WritableImage tile = wait
+                        ? tiledImage.getTile(level, column, row)
+                        : tiledImage.getReadyTile(level, column, row);
+                if (tile != null) {
+                    // Tiles of coarser levels are stretched back to the part of the image they cover
+                    gc.drawImage(tile, x + tileX, y + tileY, tileWidth, tileHeight);
+                } else {
+                    tiledImage.requestTile(level, column, row, this::tileLoaded, this::tileFailed);
+                    drawFallback(gc, tiledImage, level, tileX, tileY, tileWidth, tileHeight);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the part of the nearest coarser cached tile that covers the given region of the image, or a
+     * placeholder if no coarser level has it either.
+     */
+    private void drawFallback(GraphicsContext gc, TiledImage tiledImage, int level, double regionX, double regionY,
+                              double regionWidth, double regionHeight) {
+        for (int coarser = level + 1; coarser < tiledImage.getLevelCount(); coarser++) {
+            double tileSize = TiledImage.TILE_SIZE * (double) (1 << coarser);
+            int column = (int) (regionX / tileSize);
+            int row = (int) (regionY / tileSize);
+            WritableImage tile = tiledImage.getCachedTile(coarser, column, row);
+            if (tile != null) {
+                double pixelSize = 1 << coarser;
+                double sourceX = (regionX - column * tileSize) / pixelSize;
+                double sourceY = (regionY - row * tileSize) / pixelSize;
+                double sourceWidth = Math.min(regionWidth / pixelSize, tile.getWidth() - sourceX);
+                double sourceHeight = Math.min(regionHeight / pixelSize, tile.getHeight() - sourceY);
+                gc.drawImage(tile, sourceX, sourceY, sourceWidth, sourceHeight,
+                        x + regionX, y + regionY, regionWidth, regionHeight);
+                return;
+            }
+        }
+        gc.save();
+        gc.setFill(Color.LIGHTGRAY);
+        gc.fillRect(x + regionX, y + regionY, regionWidth, regionHeight);
+        gc.restore();
+    }
+
+    private void tileLoaded() {
+        Runnable listener = onTileLoaded;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    private void tileFailed(RuntimeException e) {
+        logger.error("Failed to read image tile", e);
+        Consumer<RuntimeException> listener = onTileFailed;
+        if (listener != null) {
+            listener.accept(e);
+        }
+    }
+
+    /**
+     * Returns the image at the pyramid level for the given scale, for previews that do not need every pixel.
+     */
+    public IntRaster getPreview(double scale) throws IOException {
+        return tiledImage.toRaster(tiledImage.getLevelForScale(scale));
+    }
+
+    public void setTiledImage(TiledImage tiledImage) {
+        this.tiledImage = tiledImage;
+        boundsChanged();
+    }
+
+    public void setX(double x) {
+        this.x = x;
+        boundsChanged();
+    }
+
+    public void setY(double y) {
+        this.y = y;
+        boundsChanged();
+    }
+
+    @Override
+    protected Bounds computeBounds() {
+        return new BoundingBox(x, y, tiledImage.getWidth(), tiledImage.getHeight());
     }
 
     @Override
     public boolean containsPoint(double x, double y) {
-        return x >= this.x && x <= this.x + image.getWidth() &&
-                y >= this.y && y <= this.y + image.getHeight();
+        return x >= this.x && x <= this.x + tiledImage.getWidth() &&
+                y >= this.y && y <= this.y + tiledImage.getHeight();
     }
 
     @Override
     public void moveBy(double deltaX, double deltaY) {
         this.x += deltaX;
         this.y += deltaY;
+        boundsChanged();
     }
 
     @Override
@@ -44,4 +245,4 @@ public class ImageModel extends ShapeModel {
     @Override
     public void scale(double factor, double pivotX, double pivotY) {
     }
-}
\ No newline at end of file
+}
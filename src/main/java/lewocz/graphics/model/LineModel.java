@@ -1,10 +1,15 @@
 package lewocz.graphics.model;
 
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
 import javafx.scene.canvas.GraphicsContext;
 
 public class LineModel extends ShapeModel {
     private static final long serialVersionUID = 8806187858083320281L;
 
+    /** Distance in pixels within which a point hits the line. */
+    private static final double HIT_TOLERANCE = 5.0;
+
     private double startX, startY, endX, endY;
 
     public LineModel(double startX, double startY, double endX, double endY) {
@@ -18,11 +23,13 @@ public class LineModel extends ShapeModel {
     public void setStart(double x, double y) {
         this.startX = x;
         this.startY = y;
+        boundsChanged();
     }
 
     public void setEnd(double x, double y) {
         this.endX = x;
         this.endY = y;
+        boundsChanged();
     }
 
     @Override
@@ -35,7 +42,7 @@ public class LineModel extends ShapeModel {
     @Override
     public boolean containsPoint(double x, double y) {
         // Implement hit detection for a line
-        double tolerance = 5.0; // pixels
+        double tolerance = HIT_TOLERANCE;
         return isPointNearLine(x, y, startX, startY, endX, endY, tolerance);
     }
 
@@ -45,6 +52,7 @@ public class LineModel extends ShapeModel {
         this.startY += deltaY;
         this.endX += deltaX;
         this.endY += deltaY;
+        boundsChanged();
     }
 
     @Override
@@ -64,6 +72,7 @@ public class LineModel extends ShapeModel {
         rotatedY = dx * Math.sin(radians) + dy * Math.cos(radians);
         endX = rotatedX + pivotX;
         endY = rotatedY + pivotY;
+        boundsChanged();
     }
 
     @Override
@@ -73,6 +82,7 @@ public class LineModel extends ShapeModel {
 
         endX = (endX - pivotX) * factor + pivotX;
         endY = (endY - pivotY) * factor + pivotY;
+        boundsChanged();
     }
 
     private boolean isPointNearLine(double px, double py, double x1, double y1, double x2, double y2, double tolerance) {
@@ -107,4 +117,10 @@ public class LineModel extends ShapeModel {
         double dy = py - yy;
         return Math.sqrt(dx * dx + dy * dy);
     }
-}
\ No newline at end of file
+
+    @Override
+    protected Bounds computeBounds() {
+        return new BoundingBox(Math.min(startX, endX) - HIT_TOLERANCE, Math.min(startY, endY) - HIT_TOLERANCE,
+                Math.abs(endX - startX) + 2 * HIT_TOLERANCE, Math.abs(endY - startY) + 2 * HIT_TOLERANCE);
+    }
+}
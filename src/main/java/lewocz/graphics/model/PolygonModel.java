@@ -1,8 +1,8 @@
 package lewocz.graphics.model;
 
+import javafx.geometry.Bounds;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Polygon;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -43,11 +43,14 @@ public class PolygonModel extends ShapeModel implements Serializable {
 
     @Override
     public boolean containsPoint(double x, double y) {
-        Polygon polygon = new Polygon();
-        for (SerializablePoint point : points) {
-            polygon.getPoints().addAll(point.getX(), point.getY());
+        int crossings = 0;
+        int count = points.size();
+        for (int i = 0; i < count; i++) {
+            SerializablePoint from = points.get(i);
+            SerializablePoint to = points.get((i + 1) % count);
+            crossings += winding(from.getX(), from.getY(), to.getX(), to.getY(), x, y);
         }
-        return polygon.contains(x, y);
+        return crossings != 0;
     }
 
     @Override
@@ -56,6 +59,7 @@ public class PolygonModel extends ShapeModel implements Serializable {
             SerializablePoint point = points.get(i);
             points.set(i, point.add(deltaX, deltaY));
         }
+        boundsChanged();
     }
 
     public void rotate(double angle, double pivotX, double pivotY) {
@@ -70,6 +74,7 @@ public class PolygonModel extends ShapeModel implements Serializable {
 
             points.set(i, new SerializablePoint(rotatedX + pivotX, rotatedY + pivotY));
         }
+        boundsChanged();
     }
 
     public void scale(double factor, double pivotX, double pivotY) {
@@ -83,5 +88,23 @@ public class PolygonModel extends ShapeModel implements Serializable {
 
             points.set(i, new SerializablePoint(scaledX + pivotX, scaledY + pivotY));
         }
+        boundsChanged();
     }
-}
\ No newline at end of file
+
+    public void setPoints(List<SerializablePoint> points) {
+        this.points = points;
+        boundsChanged();
+    }
+
+    @Override
+    protected Bounds computeBounds() {
+        int count = points.size();
+        double[] xPoints = new double[count];
+        double[] yPoints = new double[count];
+        for (int i = 0; i < count; i++) {
+            xPoints[i] = points.get(i).getX();
+            yPoints[i] = points.get(i).getY();
+        }
+        return boundsOf(xPoints, yPoints, count, 0);
+    }
+}
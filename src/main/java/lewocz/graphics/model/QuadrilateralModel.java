@@ -1,7 +1,7 @@
 package lewocz.graphics.model;
 
+import javafx.geometry.Bounds;
 import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.shape.Polygon;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -23,11 +23,12 @@ public class QuadrilateralModel extends ShapeModel {
 
     @Override
     public boolean containsPoint(double x, double y) {
-        Polygon polygon = new Polygon();
+        int crossings = 0;
         for (int i = 0; i < 4; i++) {
-            polygon.getPoints().addAll(xPoints[i], yPoints[i]);
+            int next = (i + 1) % 4;
+            crossings += winding(xPoints[i], yPoints[i], xPoints[next], yPoints[next], x, y);
         }
-        return polygon.contains(x, y);
+        return crossings != 0;
     }
 
     @Override
@@ -36,6 +37,7 @@ public class QuadrilateralModel extends ShapeModel {
             xPoints[i] += deltaX;
             yPoints[i] += deltaY;
         }
+        boundsChanged();
     }
 
     @Override
@@ -60,6 +62,7 @@ public class QuadrilateralModel extends ShapeModel {
             xPoints[i] = rotatedX + pivotX;
             yPoints[i] = rotatedY + pivotY;
         }
+        boundsChanged();
     }
 
     @Override
@@ -68,5 +71,21 @@ public class QuadrilateralModel extends ShapeModel {
             xPoints[i] = (xPoints[i] - pivotX) * factor + pivotX;
             yPoints[i] = (yPoints[i] - pivotY) * factor + pivotY;
         }
+        boundsChanged();
     }
-}
\ No newline at end of file
+
+    public void setXPoints(double[] xPoints) {
+        this.xPoints = xPoints;
+        boundsChanged();
+    }
+
+    public void setYPoints(double[] yPoints) {
+        this.yPoints = yPoints;
+        boundsChanged();
+    }
+
+    @Override
+    protected Bounds computeBounds() {
+        return boundsOf(xPoints, yPoints, 4, 0);
+    }
+}
@@ -0,0 +1,156 @@
+package lewocz.graphics.model;
+
+import java.util.List;
+
+/**
+ * Reversible change to the shapes on the canvas. An edit keeps the parameters of the change, such as the
+ * offset of a move or the angle and pivot of a rotation, and never a copy of the points of the shape, so
+ * its size does not depend on the size of the shape.
+ */
+public sealed interface ShapeEdit {
+
+    /**
+     * Makes the change to the given list of shapes.
+     */
+    void apply(List<ShapeModel> shapes);
+
+    /**
+     * Undoes the change made by {@link #apply}.
+     */
+    void revert(List<ShapeModel> shapes);
+
+    /**
+     * Returns a single edit with the effect of this one followed by {@code next}, or {@code null} if the two
+     * cannot be combined.
+     */
+    default ShapeEdit merge(ShapeEdit next) {
+        return null;
+    }
+
+    /**
+     * Returns the edit for dragging a shape by the given offset. A curve grabbed by one of its control points
+     * only moves that point, so the edit keeps the index of the point rather than the selection, which is
+     * cleared when the mouse is released.
+     */
+    static ShapeEdit drag(ShapeModel shape, double deltaX, double deltaY) {
+        if (shape instanceof BezierCurveModel curve && curve.getSelectedControlPointIndex() >= 0) {
+            return new MoveControlPoint(curve, curve.getSelectedControlPointIndex(), deltaX, deltaY);
+        }
+        return new Move(shape, deltaX, deltaY);
+    }
+
+    record Add(ShapeModel shape, int index) implements ShapeEdit {
+        @Override
+        public void apply(List<ShapeModel> shapes) {
+            shapes.add(Math.min(index, shapes.size()), shape);
+        }
+
+        @Override
+        public void revert(List<ShapeModel> shapes) {
+            shapes.remove(shape);
+        }
+    }
+
+    record Remove(ShapeModel shape, int index) implements ShapeEdit {
+        @Override
+        public void apply(List<ShapeModel> shapes) {
+            shapes.remove(shape);
+        }
+
+        @Override
+        public void revert(List<ShapeModel> shapes) {
+            shapes.add(Math.min(index, shapes.size()), shape);
+        }
+    }
+
+    record Move(ShapeModel shape, double deltaX, double deltaY) implements ShapeEdit {
+        @Override
+        public void apply(List<ShapeModel> shapes) {
+            shape.moveBy(deltaX, deltaY);
+        }
+
+        @Override
+        public void revert(List<ShapeModel> shapes) {
+            shape.moveBy(-deltaX, -deltaY);
+        }
+
+        @Override
+        public ShapeEdit merge(ShapeEdit next) {
+            return next instanceof Move move && move.shape == shape
+                    ? new Move(shape, deltaX + move.deltaX, deltaY + move.deltaY)
+                    : null;
+        }
+    }
+
+    /**
+     * Move of one control point of a curve, kept by its index so that undo and redo do not depend on which
+     * point is selected at the time.
+     */
+    record MoveControlPoint(BezierCurveModel curve, int index, double deltaX, double deltaY) implements ShapeEdit {
+        @Override
+        public void apply(List<ShapeModel> shapes) {
+            curve.moveControlPoint(index, deltaX, deltaY);
+        }
+
+        @Override
+        public void revert(List<ShapeModel> shapes) {
+            curve.moveControlPoint(index, -deltaX, -deltaY);
+        }
+
+        @Override
+        public ShapeEdit merge(ShapeEdit next) {
+            return next instanceof MoveControlPoint move && move.curve == curve && move.index == index
+                    ? new MoveControlPoint(curve, index, deltaX + move.deltaX, deltaY + move.deltaY)
+                    : null;
+        }
+    }
+
+    record Rotate(ShapeModel shape, double angle, double pivotX, double pivotY) implements ShapeEdit {
+        @Override
+        public void apply(List<ShapeModel> shapes) {
+            shape.rotate(angle, pivotX, pivotY);
+        }
+
+        @Override
+        public void revert(List<ShapeModel> shapes) {
+            shape.rotate(-angle, pivotX, pivotY);
+        }
+
+        @Override
+        public ShapeEdit merge(ShapeEdit next) {
+            return next instanceof Rotate rotate && rotate.shape == shape
+                    && rotate.pivotX == pivotX && rotate.pivotY == pivotY
+                    ? new Rotate(shape, angle + rotate.angle, pivotX, pivotY)
+                    : null;
+        }
+    }
+
+    /**
+     * Scaling about a pivot; the factor must not be zero, since that could not be undone.
+     */
+    record Scale(ShapeModel shape, double factor, double pivotX, double pivotY) implements ShapeEdit {
+        public Scale {
+            if (factor == 0 || !Double.isFinite(factor)) {
+                throw new IllegalArgumentException("Scale factor must be finite and non-zero: " + factor);
+            }
+        }
+
+        @Override
+        public void apply(List<ShapeModel> shapes) {
+            shape.scale(factor, pivotX, pivotY);
+        }
+
+        @Override
+        public void revert(List<ShapeModel> shapes) {
+            shape.scale(1 / factor, pivotX, pivotY);
+        }
+
+        @Override
+        public ShapeEdit merge(ShapeEdit next) {
+            return next instanceof Scale scale && scale.shape == shape
+                    && scale.pivotX == pivotX && scale.pivotY == pivotY
+                    ? new Scale(shape, factor * scale.factor, pivotX, pivotY)
+                    : null;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package lewocz.graphics.model;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Undo and redo journal of {@link ShapeEdit}s, holding at most {@code maxEdits} steps.
+ * <p>
+ * Edits recorded between {@link #beginGesture()} and {@link #endGesture()} are merged into the previous
+ * edit of the same gesture where possible, so dragging a shape around leaves one move in the journal however
+ * many mouse events it took.
+ */
+public class ShapeHistory {
+
+    private final int maxEdits;
+    private final Deque<ShapeEdit> undoEdits = new ArrayDeque<>();
+    private final Deque<ShapeEdit> redoEdits = new ArrayDeque<>();
+    private boolean inGesture;
+    /** Whether the last edit was recorded during the current gesture and may absorb the next one. */
+    private boolean lastEditOpen;
+
+    public ShapeHistory(int maxEdits) {
+        if (maxEdits <= 0) {
+            throw new IllegalArgumentException("Shape history must hold at least one edit.");
+        }
+        this.maxEdits = maxEdits;
+    }
+
+    public synchronized void beginGesture() {
+        inGesture = true;
+        lastEditOpen = false;
+    }
+
+    public synchronized void endGesture() {
+        inGesture = false;
+        lastEditOpen = false;
+    }
+
+    /**
+     * Applies an edit to the shapes and records it, discarding the edits that could be redone.
+     */
+    public synchronized void apply(ShapeEdit edit, List<ShapeModel> shapes) {
+        edit.apply(shapes);
+        record(edit);
+    }
+
+    /**
+     * Records an edit that has already been made.
+     */
+    public synchronized void record(ShapeEdit edit) {
+        redoEdits.clear();
+        if (lastEditOpen) {
+            ShapeEdit merged = undoEdits.peekLast().merge(edit);
+            if (merged != null) {
+                undoEdits.removeLast();
+                undoEdits.addLast(merged);
+                return;
+            }
+        }
+        undoEdits.addLast(edit);
+        lastEditOpen = inGesture;
+        if (undoEdits.size() > maxEdits) {
+            undoEdits.removeFirst();
+        }
+    }
+
+    /**
+     * Reverts the last edit.
+     *
+     * @return {@code false} if there was nothing to undo.
+     */
+    public synchronized boolean undo(List<ShapeModel> shapes) {
+        ShapeEdit edit = undoEdits.pollLast();
+        if (edit == null) {
+            return false;
+        }
+        edit.revert(shapes);
+        redoEdits.addLast(edit);
+        lastEditOpen = false;
+        return true;
+    }
+
+    /**
+     * Applies the last undone edit again.
+     *
+     * @return {@code false} if there was nothing to redo.
+     */
+    public synchronized boolean redo(List<ShapeModel> shapes) {
+        ShapeEdit edit = redoEdits.pollLast();
+        if (edit == null) {
+            return false;
+        }
+        edit.apply(shapes);
+        undoEdits.addLast(edit);
+        lastEditOpen = false;
+        return true;
+    }
+
+    public synchronized boolean canUndo() {
+        return !undoEdits.isEmpty();
+    }
+
+    public synchronized boolean canRedo() {
+        return !redoEdits.isEmpty();
+    }
+
+    public synchronized int size() {
+        return undoEdits.size() + redoEdits.size();
+    }
+
+    public synchronized void clear() {
+        undoEdits.clear();
+        redoEdits.clear();
+        lastEditOpen = false;
+    }
+}
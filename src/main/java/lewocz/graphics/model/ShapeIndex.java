@@ -0,0 +1,350 @@
+package lewocz.graphics.model;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.geometry.Bounds;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Uniform grid over the cached {@link ShapeModel#getBounds() bounds} of the shapes of a list, for finding the
+ * topmost shape under a point without testing every shape.
+ * <p>
+ * The index follows the list through a change listener and the shapes through their bounds listener. A shape
+ * that changes is only marked, and moved to its new cells before the next query, so a drag over thousands of
+ * mouse events re-files it once per query instead of once per event. Every cell keeps its shapes sorted by
+ * their position in the list, and shapes that would span more than {@link #MAX_CELLS} cells, such as images,
+ * are kept in one separate sorted list, so a query walks the candidates from the top down and stops at the
+ * first hit. Queries do not allocate.
+ */
+public class ShapeIndex {
+
+    /** Width and height of a grid cell, in canvas pixels. */
+    static final double CELL_SIZE = 128;
+    /** Shapes covering more cells than this are not filed in the grid. */
+    static final int MAX_CELLS = 64;
+
+    private static final Comparator<Entry> Z_ORDER = Comparator.comparingLong(entry -> entry.order);
+
+    private static final class Entry {
+        private final ShapeModel shape;
+        /** Position in the list; larger is drawn later, so on top. */
+        private long order;
+        private boolean dirty;
+        /** Cells the shape is filed in, or {@code oversized}; no cells when its bounds are empty. */
+        private boolean filed;
+        private boolean oversized;
+        private int minColumn;
+        private int minRow;
+        private int maxColumn;
+        private int maxRow;
+
+        private Entry(ShapeModel shape) {
+            this.shape = shape;
+        }
+    }
+
+    private final ObservableList<ShapeModel> shapes;
+    private final Map<ShapeModel, Entry> entries = new IdentityHashMap<>();
+    private final CellMap cells = new CellMap();
+    private final List<Entry> oversized = new ArrayList<>();
+    private final List<Entry> dirty = new ArrayList<>();
+    private long nextOrder;
+
+    public ShapeIndex(ObservableList<ShapeModel> shapes) {
+        this.shapes = shapes;
+        shapes.addListener(this::onChanged);
+        renumber();
+    }
+
+    /**
+     * Returns the topmost shape of the list that contains the point, or {@code null}.
+     */
+    public synchronized ShapeModel shapeAt(double x, double y) {
+        refile();
+        List<Entry> cell = cells.get(column(x), row(y));
+        int cellIndex = cell == null ? -1 : cell.size() - 1;
+        int oversizedIndex = oversized.size() - 1;
+
+        // Merge the two sorted lists from the top down
+        while (cellIndex >= 0 || oversizedIndex >= 0) {
+            Entry entry;
+            if (oversizedIndex < 0
+                    || cellIndex >= 0 && cell.get(cellIndex).order > oversized.get(oversizedIndex).order) {
+                entry = cell.get(cellIndex--);
+            } else {
+                entry = oversized.get(oversizedIndex--);
+            }
+            if (entry.shape.getBounds().contains(x, y) && entry.shape.containsPoint(x, y)) {
+                return entry.shape;
+            }
+        }
+        return null;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Number of grid cells holding at least one shape.
+     */
+    synchronized int cellCount() {
+        return cells.size;
+    }
+
+    private synchronized void onChanged(ListChangeListener.Change<? extends ShapeModel> change) {
+        boolean reorder = false;
+        while (change.next()) {
+            if (change.wasPermutated()) {
+                reorder = true;
+                continue;
+            }
+            for (ShapeModel shape : change.getRemoved()) {
+                remove(shape);
+            }
+            if (change.wasAdded()) {
+                // Appended shapes go on top; anything else renumbers the whole list
+                boolean appended = change.getTo() == shapes.size();
+                for (ShapeModel shape : change.getAddedSubList()) {
+                    add(shape, appended ? nextOrder++ : 0);
+                }
+                reorder |= !appended;
+            }
+        }
+        if (reorder) {
+            renumber();
+        }
+    }
+
+    private void add(ShapeModel shape, long order) {
+        Entry entry = new Entry(shape);
+        entry.order = order;
+        Entry previous = entries.put(shape, entry);
+        if (previous != null) {
+            unfile(previous);
+        }
+        shape.setBoundsListener(this::markDirty);
+        file(entry);
+    }
+
+    private void remove(ShapeModel shape) {
+        // A shape replaced by itself is removed and added again in the same change
+        Entry entry = entries.remove(shape);
+        if (entry != null) {
+            shape.setBoundsListener(null);
+            unfile(entry);
+            entry.dirty = false;
+        }
+    }
+
+    /**
+     * Numbers the shapes by their position in the list and re-sorts the cells.
+     */
+    private void renumber() {
+        nextOrder = 0;
+        for (ShapeModel shape : shapes) {
+            Entry entry = entries.get(shape);
+            if (entry == null) {
+                add(shape, nextOrder);
+            } else {
+                entry.order = nextOrder;
+            }
+            nextOrder++;
+        }
+        cells.forEachCell(cell -> cell.sort(Z_ORDER));
+        oversized.sort(Z_ORDER);
+    }
+
+    private synchronized void markDirty(ShapeModel shape) {
+        Entry entry = entries.get(shape);
+        if (entry != null && !entry.dirty) {
+            entry.dirty = true;
+            dirty.add(entry);
+        }
+    }
+
+    private void refile() {
+        for (int i = 0; i < dirty.size(); i++) {
+            Entry entry = dirty.get(i);
+            if (entry.dirty) {
+                entry.dirty = false;
+                unfile(entry);
+                file(entry);
+            }
+        }
+        dirty.clear();
+    }
+
+    private void file(Entry entry) {
+        Bounds bounds = entry.shape.getBounds();
+        if (bounds.isEmpty()) {
+            entry.filed = false;
+            return;
+        }
+        entry.filed = true;
+        entry.minColumn = column(bounds.getMinX());
+        entry.minRow = row(bounds.getMinY());
+        entry.maxColumn = column(bounds.getMaxX());
+        entry.maxRow = row(bounds.getMaxY());
+        long cellCount = ((long) entry.maxColumn - entry.minColumn + 1) * ((long) entry.maxRow - entry.minRow + 1);
+        entry.oversized = cellCount > MAX_CELLS;
+        if (entry.oversized) {
+            insertSorted(oversized, entry);
+            return;
+        }
+        for (int row = entry.minRow; row <= entry.maxRow; row++) {
+            for (int column = entry.minColumn; column <= entry.maxColumn; column++) {
+                insertSorted(cells.getOrCreate(column, row), entry);
+            }
+        }
+    }
+
+    private void unfile(Entry entry) {
+        if (!entry.filed) {
+            return;
+        }
+        entry.filed = false;
+        if (entry.oversized) {
+            oversized.remove(entry);
+            return;
+        }
+        for (int row = entry.minRow; row <= entry.maxRow; row++) {
+            for (int column = entry.minColumn; column <= entry.maxColumn; column++) {
+                List<Entry> cell = cells.get(column, row);
+                if (cell != null && cell.remove(entry) && cell.isEmpty()) {
+                    // Drop the cell, so a drag does not leave a trail of empty cells behind
+                    cells.remove(column, row);
+                }
+            }
+        }
+    }
+
+    private static void insertSorted(List<Entry> cell, Entry entry) {
+        int index = cell.size();
+        while (index > 0 && cell.get(index - 1).order > entry.order) {
+            index--;
+        }
+        cell.add(index, entry);
+    }
+
+    private static int column(double x) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, Math.floor(x / CELL_SIZE)));
+    }
+
+    private static int row(double y) {
+        return column(y);
+    }
+
+    /**
+     * Open addressing hash map from a cell to its shapes, keyed by the packed column and row so that
+     * looking up a cell does not box its key.
+     */
+    private static final class CellMap {
+        private long[] keys = new long[64];
+        private List<Entry>[] values = newValues(64);
+        private int size;
+
+        @SuppressWarnings("unchecked")
+        private static List<Entry>[] newValues(int capacity) {
+            return (List<Entry>[]) new List<?>[capacity];
+        }
+
+        List<Entry> get(int column, int row) {
+            long key = key(column, row);
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            return null;
+        }
+
+        List<Entry> getOrCreate(int column, int row) {
+            List<Entry> cell = get(column, row);
+            if (cell != null) {
+                return cell;
+            }
+            if (2 * (size + 1) > keys.length) {
+                grow();
+            }
+            cell = new ArrayList<>(4);
+            put(key(column, row), cell);
+            return cell;
+        }
+
+        /**
+         * Removes a cell, moving back the cells after it in its probe run so that no lookup stops early.
+         */
+        void remove(int column, int row) {
+            long key = key(column, row);
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (values[slot] != null && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (values[slot] == null) {
+                return;
+            }
+            int free = slot;
+            for (int next = (free + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+                // A cell may only move back if the free slot is not before its home slot
+                int home = hash(keys[next]) & mask;
+                if (((next - home) & mask) >= ((next - free) & mask)) {
+                    keys[free] = keys[next];
+                    values[free] = values[next];
+                    free = next;
+                }
+            }
+            values[free] = null;
+            size--;
+        }
+
+        void forEachCell(Consumer<List<Entry>> action) {
+            for (List<Entry> cell : values) {
+                if (cell != null) {
+                    action.accept(cell);
+                }
+            }
+        }
+
+        private void put(long key, List<Entry> cell) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (values[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = cell;
+            size++;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            List<Entry>[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = newValues(oldKeys.length * 2);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static long key(int column, int row) {
+            return ((long) column << 32) | (row & 0xFFFFFFFFL);
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
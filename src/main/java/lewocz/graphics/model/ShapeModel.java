@@ -1,24 +1,110 @@
 package lewocz.graphics.model;
 
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.io.Serializable;
+import java.util.function.Consumer;
 
 @Getter
 @Setter
 public abstract class ShapeModel implements Serializable {
     private static final long serialVersionUID = 3424372029161197990L;
 
+    /** Bounds of a shape that no point can hit. */
+    protected static final Bounds EMPTY_BOUNDS = new BoundingBox(0, 0, -1, -1);
+
     private transient Color strokeColor = Color.BLACK;
     private transient Color fillColor = Color.TRANSPARENT;
     private double strokeWidth = 1.0;
 
+    /** Hit bounds, cached until the geometry changes. */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient Bounds bounds;
+    /** Told about every change of the geometry, by the {@link ShapeIndex} the shape is in. */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient Consumer<ShapeModel> boundsListener;
+
     public abstract void draw(GraphicsContext gc);
     public abstract boolean containsPoint(double x, double y);
     public abstract void moveBy(double deltaX, double deltaY);
     public abstract void rotate(double angle, double pivotX, double pivotY);
     public abstract void scale(double factor, double pivotX, double pivotY);
+
+    /**
+     * Computes bounds that hold every point for which {@link #containsPoint} is {@code true}.
+     */
+    protected abstract Bounds computeBounds();
+
+    /**
+     * Returns the bounds of every point that hits the shape, computed once per change of the geometry.
+     */
+    public Bounds getBounds() {
+        Bounds current = bounds;
+        if (current == null) {
+            current = computeBounds();
+            bounds = current;
+        }
+        return current;
+    }
+
+    /**
+     * Drops the cached bounds; called by every method that changes the geometry of the shape.
+     */
+    protected void boundsChanged() {
+        bounds = null;
+        Consumer<ShapeModel> listener = boundsListener;
+        if (listener != null) {
+            listener.accept(this);
+        }
+    }
+
+    void setBoundsListener(Consumer<ShapeModel> boundsListener) {
+        this.boundsListener = boundsListener;
+    }
+
+    public void setStrokeWidth(double strokeWidth) {
+        this.strokeWidth = strokeWidth;
+        boundsChanged();
+    }
+
+    /**
+     * Bounds of the given coordinates grown by {@code margin} on every side.
+     */
+    protected static Bounds boundsOf(double[] xPoints, double[] yPoints, int count, double margin) {
+        if (count == 0) {
+            return EMPTY_BOUNDS;
+        }
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            minX = Math.min(minX, xPoints[i]);
+            minY = Math.min(minY, yPoints[i]);
+            maxX = Math.max(maxX, xPoints[i]);
+            maxY = Math.max(maxY, yPoints[i]);
+        }
+        return new BoundingBox(minX - margin, minY - margin, maxX - minX + 2 * margin, maxY - minY + 2 * margin);
+    }
+
+    /**
+     * Contribution of the edge from (x1, y1) to (x2, y2) to the winding number of the point (x, y): +1 if it
+     * crosses the ray to the right of the point upwards, -1 if downwards and 0 otherwise. A point is inside a
+     * polygon, with the non-zero rule JavaFX shapes use, when the sum over its edges is not zero.
+     */
+    protected static int winding(double x1, double y1, double x2, double y2, double x, double y) {
+        double side = (x2 - x1) * (y - y1) - (x - x1) * (y2 - y1);
+        if (y1 <= y) {
+            return y2 > y && side > 0 ? 1 : 0;
+        }
+        return y2 <= y && side < 0 ? -1 : 0;
+    }
 }
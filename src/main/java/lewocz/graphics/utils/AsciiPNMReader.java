@@ -0,0 +1,214 @@
+package lewocz.graphics.utils;
+
+import lewocz.graphics.exception.InvalidFormatException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes text PNM rasters (P1, P2 and P3) from a memory-mapped file into an {@link IntRaster}.
+ * <p>
+ * The pixel data is cut into chunks of roughly {@link #CHUNK_BYTES} that start right after a line break,
+ * where no token or comment can be open. A first parallel pass counts the tokens and lines of every chunk,
+ * which gives each chunk the index of its first sample and the line number of its first byte; a second
+ * parallel pass parses the samples with a {@link PNMTextScanner} into a sample array, which is converted to
+ * ARGB or kept at full precision as a {@link ShortRaster}. Errors are reported for the first invalid
+ * sample in file order, with the same messages as the sequential tokenizer.
+ */
+public class AsciiPNMReader {
+
+    static final int CHUNK_BYTES = 4 << 20;
+
+    private static final int BLACK = 0xFF000000;
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final String[] COLOR_COMPONENTS = {"red", "green", "blue"};
+
+    public static IntRaster read(FileChannel channel, PNMHeader header, TileExecutor executor) throws IOException {
+        return read(channel, header, executor, CHUNK_BYTES);
+    }
+
+    static IntRaster read(FileChannel channel, PNMHeader header, TileExecutor executor, int chunkBytes)
+            throws IOException {
+        int width = header.width();
+        int height = header.height();
+        char[] samples = parseSamples(channel, header, executor, chunkBytes);
+
+        IntRaster raster = new IntRaster(width, height);
+        int[] pixels = raster.getPixels();
+        int[] levels = MappedPNMReader.levelTable(header.maxColorValue(), header.bytesPerSample());
+        String magicNumber = header.magicNumber();
+        executor.forEachRowBand(width, height, (x0, y0, x1, y1) -> {
+            for (int i = y0 * width; i < y1 * width; i++) {
+                pixels[i] = switch (magicNumber) {
+                    case "P3" -> IntRaster.argb(255, levels[samples[3 * i]], levels[samples[3 * i + 1]],
+                            levels[samples[3 * i + 2]]);
+                    case "P2" -> {
+                        int gray = levels[samples[i]];
+                        yield IntRaster.argb(255, gray, gray, gray);
+                    }
+                    default -> samples[i] == 1 ? BLACK : WHITE;
+                };
+            }
+        });
+
+        return raster;
+    }
+
+    /**
+     * Reads the samples of a P2 or P3 file without reducing them to 8 bits.
+     */
+    public static ShortRaster readSamples(FileChannel channel, PNMHeader header, TileExecutor executor)
+            throws IOException {
+        int channels = switch (header.magicNumber()) {
+            case "P2" -> 1;
+            case "P3" -> 3;
+            default -> throw new IllegalArgumentException("Only PGM and PPM data has samples: " + header.magicNumber());
+        };
+        return new ShortRaster(header.width(), header.height(), channels, header.maxColorValue(),
+                parseSamples(channel, header, executor, CHUNK_BYTES));
+    }
+
+    /**
+     * Parses all samples in file order: one per pixel for P1 and P2, three for P3.
+     */
+    private static char[] parseSamples(FileChannel channel, PNMHeader header, TileExecutor executor, int chunkBytes)
+            throws IOException {
+        if (header.isBinary()) {
+            throw new IllegalArgumentException("Not a text PNM format: " + header.magicNumber());
+        }
+
+        int channels = header.magicNumber().equals("P3") ? 3 : 1;
+        long sampleCount = (long) header.width() * header.height() * channels;
+        // The samples are parsed into one array, which cannot hold more than this
+        if (sampleCount > Integer.MAX_VALUE - 8) {
+            throw new InvalidFormatException("Image too large for text decoding: " + header.width() + "x"
+                    + header.height() + " with " + channels + " samples per pixel.");
+        }
+
+        List<Long> starts = chunkStarts(channel, header.dataOffset(), chunkBytes);
+        int chunks = starts.size();
+        long end = channel.size();
+
+        // First pass: tokens and line breaks per chunk
+        long[] tokens = new long[chunks];
+        int[] lines = new int[chunks];
+        IOException[] errors = new IOException[chunks];
+        executor.forEachIndex(chunks, chunk -> {
+            try {
+                PNMTextScanner scanner = new PNMTextScanner(map(channel, starts, chunk, end), null, 0);
+                long count = 0;
+                while (scanner.skipToken()) {
+                    count++;
+                }
+                tokens[chunk] = count;
+                lines[chunk] = scanner.getLine();
+            } catch (IOException e) {
+                errors[chunk] = e;
+            }
+        });
+        throwFirst(errors);
+
+        long[] firstSample = new long[chunks];
+        int[] firstLine = new int[chunks];
+        long total = 0;
+        int line = header.dataLine();
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            firstSample[chunk] = total;
+            firstLine[chunk] = line;
+            total += tokens[chunk];
+            line += lines[chunk];
+        }
+
+        // Second pass: parse the samples that make up the image, ignoring anything after them
+        char[] samples = new char[(int) sampleCount];
+        int maxValue = header.magicNumber().equals("P1") ? 1 : header.maxColorValue();
+        String[] names = componentNames(header);
+        executor.forEachIndex(chunks, chunk -> {
+            long from = firstSample[chunk];
+            long to = Math.min(from + tokens[chunk], sampleCount);
+            if (from >= to) {
+                return;
+            }
+            try {
+                PNMTextScanner scanner = new PNMTextScanner(map(channel, starts, chunk, end), null, firstLine[chunk]);
+                for (int index = (int) from; index < to; index++) {
+                    samples[index] = (char) scanner.nextInt(maxValue, names[index % names.length]);
+                }
+            } catch (IOException e) {
+                errors[chunk] = e;
+            }
+        });
+        throwFirst(errors);
+
+        if (total < sampleCount) {
+            throw new IOException("Unexpected end of file while reading " + names[(int) (total % channels)] + " value.");
+        }
+
+        return samples;
+    }
+
+    /**
+     * Names of the samples of one pixel, used in error messages.
+     */
+    private static String[] componentNames(PNMHeader header) {
+        return switch (header.magicNumber()) {
+            case "P3" -> COLOR_COMPONENTS;
+            case "P2" -> new String[]{"gray"};
+            default -> new String[]{"pixel"};
+        };
+    }
+
+    /**
+     * Splits the data at the first line break after every {@code chunkBytes} bytes.
+     */
+    private static List<Long> chunkStarts(FileChannel channel, long dataOffset, int chunkBytes) throws IOException {
+        List<Long> starts = new ArrayList<>();
+        starts.add(dataOffset);
+        long size = channel.size();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long position = dataOffset + chunkBytes;
+        while (position < size) {
+            long next = -1;
+            while (next < 0 && position < size) {
+                probe.clear();
+                int read = channel.read(probe, position);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        next = position + i + 1;
+                        break;
+                    }
+                }
+                position += read;
+            }
+            if (next < 0 || next >= size) {
+                break;
+            }
+            starts.add(next);
+            position = next + chunkBytes;
+        }
+        return starts;
+    }
+
+    private static ByteBuffer map(FileChannel channel, List<Long> starts, int chunk, long end) throws IOException {
+        long from = starts.get(chunk);
+        long to = chunk + 1 < starts.size() ? starts.get(chunk + 1) : end;
+        if (to - from > Integer.MAX_VALUE) {
+            throw new IOException("Line of text pixel data longer than " + Integer.MAX_VALUE + " bytes.");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    }
+
+    private static void throwFirst(IOException[] errors) throws IOException {
+        for (IOException error : errors) {
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package lewocz.graphics.utils;
+
+import java.util.Arrays;
+
+/**
+ * Bit-packed binary image, 64 pixels per {@code long}. Bit {@code x % 64} of word {@code x / 64} in a row
+ * holds pixel {@code x}; bits past the image width in the last word of a row are always clear.
+ * <p>
+ * Thresholding operations produce a {@code BinaryImage} in which set bits are white pixels, and binary
+ * morphology works on whole words with shifts and bitwise operations.
+ */
+public class BinaryImage {
+
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    private final long[] words;
+
+    public BinaryImage(int width, int height) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Image dimensions cannot be negative.");
+        }
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + 63) >>> 6;
+        this.words = new long[wordsPerRow * height];
+    }
+
+    /**
+     * Returns an image with the bits set where the raster pixel equals {@code argb}.
+     */
+    public static BinaryImage of(IntRaster raster, int argb) {
+        BinaryImage image = new BinaryImage(raster.getWidth(), raster.getHeight());
+        int[] pixels = raster.getPixels();
+        for (int y = 0; y < image.height; y++) {
+            int row = y * image.width;
+            int wordRow = y * image.wordsPerRow;
+            for (int x = 0; x < image.width; x++) {
+                if (pixels[row + x] == argb) {
+                    image.words[wordRow + (x >>> 6)] |= 1L << x;
+                }
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Unpacks into a raster with set bits as opaque white and clear bits as opaque black.
+     */
+    public IntRaster toRaster() {
+        return toRaster(0xFFFFFFFF, 0xFF000000);
+    }
+
+    /**
+     * Unpacks into a raster with the given colors for set and clear bits.
+     */
+    public IntRaster toRaster(int setArgb, int clearArgb) {
+        IntRaster raster = new IntRaster(width, height);
+        int[] pixels = raster.getPixels();
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int wordRow = y * wordsPerRow;
+            for (int x = 0; x < width; x++) {
+                pixels[row + x] = (words[wordRow + (x >>> 6)] >>> x & 1L) != 0 ? setArgb : clearArgb;
+            }
+        }
+        return raster;
+    }
+
+    public boolean get(int x, int y) {
+        return (words[y * wordsPerRow + (x >>> 6)] >>> x & 1L) != 0;
+    }
+
+    public void set(int x, int y, boolean value) {
+        int index = y * wordsPerRow + (x >>> 6);
+        if (value) {
+            words[index] |= 1L << x;
+        } else {
+            words[index] &= ~(1L << x);
+        }
+    }
+
+    /**
+     * Sets every pixel of the image.
+     */
+    public void fill(boolean value) {
+        if (!value) {
+            Arrays.fill(words, 0L);
+            return;
+        }
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(words, y * wordsPerRow, (y + 1) * wordsPerRow, -1L);
+            clearPadding(y);
+        }
+    }
+
+    /**
+     * Returns the 64 pixels of row {@code y} starting at column {@code x}, which may lie partly or entirely
+     * outside the image; pixels outside the image read as clear.
+     */
+    public long wordAt(int x, int y) {
+        if (y < 0 || y >= height) {
+            return 0L;
+        }
+        int index = Math.floorDiv(x, 64);
+        int shift = Math.floorMod(x, 64);
+        long low = word(y, index) >>> shift;
+        return shift == 0 ? low : low | word(y, index + 1) << (64 - shift);
+    }
+
+    private long word(int y, int index) {
+        return index >= 0 && index < wordsPerRow ? words[y * wordsPerRow + index] : 0L;
+    }
+
+    /**
+     * Clears the bits past the image width in the last word of row {@code y}.
+     */
+    void clearPadding(int y) {
+        int used = width & 63;
+        if (used != 0) {
+            words[(y + 1) * wordsPerRow - 1] &= (1L << used) - 1;
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWordsPerRow() {
+        return wordsPerRow;
+    }
+
+    public long[] getWords() {
+        return words;
+    }
+}
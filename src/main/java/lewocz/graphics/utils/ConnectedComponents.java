@@ -0,0 +1,227 @@
+package lewocz.graphics.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Connected component labelling of the set pixels of a {@link BinaryImage}.
+ * <p>
+ * Labelling is a union-find over pixel indices. Row bands are labelled in parallel, each only linking
+ * pixels inside the band, and a merge pass then links the pixels on both sides of every band boundary.
+ * Unions always attach the larger root to the smaller one, so every pixel's parent has a lower index and
+ * the root of a component is its first pixel in raster order. A single raster-order pass then assigns
+ * compact labels {@code 1..count} in the order the components first appear and collects per-component
+ * statistics. No objects are allocated per pixel.
+ */
+public class ConnectedComponents {
+
+    public enum Connectivity {
+        /** Pixels sharing an edge are connected. */
+        FOUR,
+        /** Pixels sharing an edge or a corner are connected. */
+        EIGHT
+    }
+
+    /**
+     * Statistics of one component. The bounding box is inclusive.
+     */
+    public record Component(int label, int area, int minX, int minY, int maxX, int maxY,
+                            double centroidX, double centroidY) {
+    }
+
+    private final int width;
+    private final int height;
+    private final int[] labels;
+    private final List<Component> components;
+
+    private ConnectedComponents(int width, int height, int[] labels, List<Component> components) {
+        this.width = width;
+        this.height = height;
+        this.labels = labels;
+        this.components = components;
+    }
+
+    public static ConnectedComponents label(BinaryImage mask, Connectivity connectivity, TileExecutor executor) {
+        int width = mask.getWidth();
+        int height = mask.getHeight();
+        int[] parent = new int[width * height];
+        boolean eight = connectivity == Connectivity.EIGHT;
+
+        // Bands are collected so the merge pass knows where their boundaries are
+        List<Integer> bandStarts = Collections.synchronizedList(new ArrayList<>());
+        executor.forEachRowBand(width, height, (x0, y0, x1, y1) -> {
+            bandStarts.add(y0);
+            for (int y = y0; y < y1; y++) {
+                for (int x = 0; x < width; x++) {
+                    int index = y * width + x;
+                    if (!mask.get(x, y)) {
+                        parent[index] = -1;
+                        continue;
+                    }
+                    parent[index] = index;
+                    if (x > 0 && mask.get(x - 1, y)) {
+                        union(parent, index, index - 1);
+                    }
+                    if (y > y0) {
+                        linkAbove(mask, parent, x, y, width, eight);
+                    }
+                }
+            }
+        });
+
+        for (int y0 : bandStarts) {
+            if (y0 == 0) {
+                continue;
+            }
+            for (int x = 0; x < width; x++) {
+                if (mask.get(x, y0)) {
+                    linkAbove(mask, parent, x, y0, width, eight);
+                }
+            }
+        }
+
+        // Roots come first in raster order, so the label of a pixel's parent is always known already
+        int[] labels = new int[width * height];
+        int count = 0;
+        int capacity = 16;
+        int[] area = new int[capacity];
+        int[] minX = new int[capacity];
+        int[] minY = new int[capacity];
+        int[] maxX = new int[capacity];
+        int[] maxY = new int[capacity];
+        long[] sumX = new long[capacity];
+        long[] sumY = new long[capacity];
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int index = y * width + x;
+                int p = parent[index];
+                if (p < 0) {
+                    continue;
+                }
+
+                int label;
+                if (p == index) {
+                    label = ++count;
+                    if (label == capacity) {
+                        capacity *= 2;
+                        area = Arrays.copyOf(area, capacity);
+                        minX = Arrays.copyOf(minX, capacity);
+                        minY = Arrays.copyOf(minY, capacity);
+                        maxX = Arrays.copyOf(maxX, capacity);
+                        maxY = Arrays.copyOf(maxY, capacity);
+                        sumX = Arrays.copyOf(sumX, capacity);
+                        sumY = Arrays.copyOf(sumY, capacity);
+                    }
+                    minX[label] = x;
+                    minY[label] = y;
+                    maxX[label] = x;
+                    maxY[label] = y;
+                } else {
+                    label = labels[p];
+                    minX[label] = Math.min(minX[label], x);
+                    maxX[label] = Math.max(maxX[label], x);
+                    maxY[label] = y;
+                }
+
+                labels[index] = label;
+                area[label]++;
+                sumX[label] += x;
+                sumY[label] += y;
+            }
+        }
+
+        List<Component> components = new ArrayList<>(count);
+        for (int label = 1; label <= count; label++) {
+            components.add(new Component(label, area[label], minX[label], minY[label], maxX[label], maxY[label],
+                    (double) sumX[label] / area[label], (double) sumY[label] / area[label]));
+        }
+
+        return new ConnectedComponents(width, height, labels, components);
+    }
+
+    /**
+     * Links the set pixel {@code (x, y)} with its set neighbours in the row above.
+     */
+    private static void linkAbove(BinaryImage mask, int[] parent, int x, int y, int width, boolean eight) {
+        int index = y * width + x;
+        int above = index - width;
+        if (mask.get(x, y - 1)) {
+            union(parent, index, above);
+        }
+        if (eight) {
+            if (x > 0 && mask.get(x - 1, y - 1)) {
+                union(parent, index, above - 1);
+            }
+            if (x < width - 1 && mask.get(x + 1, y - 1)) {
+                union(parent, index, above + 1);
+            }
+        }
+    }
+
+    private static int find(int[] parent, int index) {
+        while (parent[index] != index) {
+            // Path halving
+            parent[index] = parent[parent[index]];
+            index = parent[index];
+        }
+        return index;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA < rootB) {
+            parent[rootB] = rootA;
+        } else if (rootB < rootA) {
+            parent[rootA] = rootB;
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getCount() {
+        return components.size();
+    }
+
+    /**
+     * Row-major labels, {@code 0} for background and {@code 1..count} for components in order of their
+     * first pixel.
+     */
+    public int[] getLabels() {
+        return labels;
+    }
+
+    public int getLabel(int x, int y) {
+        return labels[y * width + x];
+    }
+
+    public Component getComponent(int label) {
+        return components.get(label - 1);
+    }
+
+    public List<Component> getComponents() {
+        return components;
+    }
+
+    /**
+     * Returns the component with the largest area, the first one on ties, or {@code null} if there are none.
+     */
+    public Component getLargest() {
+        Component largest = null;
+        for (Component component : components) {
+            if (largest == null || component.area() > largest.area()) {
+                largest = component;
+            }
+        }
+        return largest;
+    }
+}
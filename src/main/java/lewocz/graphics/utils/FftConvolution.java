@@ -0,0 +1,464 @@
+package lewocz.graphics.utils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Convolution through the frequency domain, for large kernels that do not factor into two 1D passes.
+ * <p>
+ * The image is cut into tiles that are zero padded to a power of two, transformed, multiplied with the
+ * kernel spectrum and transformed back (overlap-add). Every tile spills {@code kernelSize - 1} pixels into
+ * its neighbours, so tiles are processed in four phases by the parity of their grid position; tiles within
+ * a phase never touch the same output pixel and run in parallel. The color planes are real, so red and
+ * green share one complex transform (as the real and imaginary part) and blue uses a second one. Tiles add
+ * their results straight into the planes of the output, so apart from the input and output the memory used
+ * is the transform buffers of one tile per worker thread, whatever the size of the image.
+ * <p>
+ * Edge handling matches {@link ImageProcessor#applyConvolutionFilter(FloatRaster, double[][])}: the result
+ * is divided by the weight of the kernel cells inside the image, looked up from a summed-area table of
+ * the kernel.
+ */
+public class FftConvolution {
+
+    /**
+     * Largest transform size along one axis. Bounds the scratch memory of a tile to a few megabytes.
+     */
+    public static final int MAX_FFT_SIZE = 512;
+
+    /**
+     * Approximate floating point operations per point and per {@code log2} of the size for a complex FFT.
+     */
+    private static final double FFT_FLOPS = 5.0;
+
+    private static final int SPECTRUM_CACHE_SIZE = 8;
+
+    private static final Map<SpectrumKey, double[][]> SPECTRUM_CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<SpectrumKey, double[][]> eldest) {
+                    return size() > SPECTRUM_CACHE_SIZE;
+                }
+            });
+
+    /**
+     * Transform and tile sizes for one convolution.
+     */
+    record Plan(int fftWidth, int fftHeight, int tileWidth, int tileHeight, double cost) {
+    }
+
+    /**
+     * Estimated cost of the direct 2D loop: one multiply-add per kernel cell, pixel and color channel.
+     */
+    public static double directCost(int width, int height, int kernelWidth, int kernelHeight) {
+        return 2.0 * 3.0 * width * height * kernelWidth * kernelHeight;
+    }
+
+    /**
+     * Whether the FFT path is estimated to be cheaper than the direct 2D loop for these sizes.
+     */
+    public static boolean isFasterThanDirect(int width, int height, int kernelWidth, int kernelHeight) {
+        Plan plan = plan(width, height, kernelWidth, kernelHeight);
+        return plan != null && plan.cost() < directCost(width, height, kernelWidth, kernelHeight);
+    }
+
+    /**
+     * Picks the transform size with the lowest estimated cost, or returns {@code null} if the kernel is too
+     * large for {@link #MAX_FFT_SIZE}.
+     */
+    static Plan plan(int width, int height, int kernelWidth, int kernelHeight) {
+        Plan best = null;
+        for (int fftHeight = minimumFftSize(kernelHeight); fftHeight <= MAX_FFT_SIZE; fftHeight <<= 1) {
+            for (int fftWidth = minimumFftSize(kernelWidth); fftWidth <= MAX_FFT_SIZE; fftWidth <<= 1) {
+                int tileWidth = Math.min(fftWidth - kernelWidth + 1, width);
+                int tileHeight = Math.min(fftHeight - kernelHeight + 1, height);
+                long tiles = (long) ceilDiv(width, tileWidth) * ceilDiv(height, tileHeight);
+
+                double points = (double) fftWidth * fftHeight;
+                double transform = FFT_FLOPS * points * log2(fftWidth * fftHeight);
+                // Two planes (red/green and blue), each transformed forward and back, plus the complex multiply
+                double cost = tiles * (4 * transform + 2 * 6 * points);
+
+                if (best == null || cost < best.cost()) {
+                    best = new Plan(fftWidth, fftHeight, tileWidth, tileHeight, cost);
+                }
+
+                if (tileWidth == width) {
+                    break;
+                }
+            }
+            if (best != null && best.tileHeight() == height) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Convolves the color planes with the kernel. The alpha plane is copied unchanged.
+     *
+     * @throws IllegalArgumentException if the kernel does not fit into {@link #MAX_FFT_SIZE}.
+     */
+    public static FloatRaster convolve(FloatRaster input, double[][] kernel, TileExecutor executor) {
+        Plan plan = plan(input.getWidth(), input.getHeight(), kernel[0].length, kernel.length);
+        if (plan == null) {
+            throw new IllegalArgumentException("Kernel is too large for FFT convolution.");
+        }
+        return convolve(input, kernel, plan, executor);
+    }
+
+    static FloatRaster convolve(FloatRaster input, double[][] kernel, Plan plan, TileExecutor executor) {
+        int width = input.getWidth();
+        int height = input.getHeight();
+        int kernelWidth = kernel[0].length;
+        int kernelHeight = kernel.length;
+        int kHalfWidth = kernelWidth / 2;
+        int kHalfHeight = kernelHeight / 2;
+        int fftWidth = plan.fftWidth();
+        int fftHeight = plan.fftHeight();
+        int tileWidth = plan.tileWidth();
+        int tileHeight = plan.tileHeight();
+
+        Fft rowFft = new Fft(fftWidth);
+        Fft columnFft = fftHeight == fftWidth ? rowFft : new Fft(fftHeight);
+        double[][] spectrum = kernelSpectrum(kernel, rowFft, columnFft);
+        double scale = 1.0 / ((double) fftWidth * fftHeight);
+
+        FloatRaster output = new FloatRaster(width, height);
+        float[] dstRed = output.getRed();
+        float[] dstGreen = output.getGreen();
+        float[] dstBlue = output.getBlue();
+        float[] srcRed = input.getRed();
+        float[] srcGreen = input.getGreen();
+        float[] srcBlue = input.getBlue();
+
+        int tilesX = ceilDiv(width, tileWidth);
+        int tilesY = ceilDiv(height, tileHeight);
+        // One pass per phase that has tiles, then the normalization
+        OperationMonitor.expectPasses(Math.min(tilesX, 2) * Math.min(tilesY, 2) + 1);
+        ThreadLocal<Scratch> scratches = ThreadLocal.withInitial(() -> new Scratch(fftWidth, fftHeight));
+
+        for (int phase = 0; phase < 4; phase++) {
+            int phaseX = phase & 1;
+            int phaseY = phase >> 1;
+            int countX = (tilesX - phaseX + 1) / 2;
+            int countY = (tilesY - phaseY + 1) / 2;
+
+            executor.forEachIndex(countX * countY, index -> {
+                int x0 = (phaseX + 2 * (index % countX)) * tileWidth;
+                int y0 = (phaseY + 2 * (index / countX)) * tileHeight;
+                int x1 = Math.min(x0 + tileWidth, width);
+                int y1 = Math.min(y0 + tileHeight, height);
+
+                Scratch scratch = scratches.get();
+                double[] re = scratch.re;
+                double[] im = scratch.im;
+                Arrays.fill(re, 0.0);
+                Arrays.fill(im, 0.0);
+                for (int y = y0; y < y1; y++) {
+                    for (int x = x0; x < x1; x++) {
+                        int local = (y - y0) * fftWidth + (x - x0);
+                        re[local] = srcRed[y * width + x];
+                        im[local] = srcGreen[y * width + x];
+                    }
+                }
+                filter(scratch, y1 - y0, y1 - y0 + kernelHeight - 1, spectrum, rowFft, columnFft);
+                accumulate(re, dstRed, x0, y0, x1, y1, kHalfWidth, kHalfHeight, kernelWidth, kernelHeight,
+                        fftWidth, width, height, scale);
+                accumulate(im, dstGreen, x0, y0, x1, y1, kHalfWidth, kHalfHeight, kernelWidth, kernelHeight,
+                        fftWidth, width, height, scale);
+
+                Arrays.fill(re, 0.0);
+                Arrays.fill(im, 0.0);
+                for (int y = y0; y < y1; y++) {
+                    for (int x = x0; x < x1; x++) {
+                        re[(y - y0) * fftWidth + (x - x0)] = srcBlue[y * width + x];
+                    }
+                }
+                filter(scratch, y1 - y0, y1 - y0 + kernelHeight - 1, spectrum, rowFft, columnFft);
+                accumulate(re, dstBlue, x0, y0, x1, y1, kHalfWidth, kHalfHeight, kernelWidth, kernelHeight,
+                        fftWidth, width, height, scale);
+            });
+        }
+
+        // Normalize in place by the weight of the kernel cells that fall inside the image
+        double[][] kernelSums = summedAreaTable(kernel);
+
+        executor.forEachTile(width, height, (x0, y0, x1, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                int fromY = Math.max(-kHalfHeight, -y) + kHalfHeight;
+                int toY = Math.min(kHalfHeight, height - 1 - y) + kHalfHeight + 1;
+                for (int x = x0; x < x1; x++) {
+                    int fromX = Math.max(-kHalfWidth, -x) + kHalfWidth;
+                    int toX = Math.min(kHalfWidth, width - 1 - x) + kHalfWidth + 1;
+                    double sumKernel = kernelSums[toY][toX] - kernelSums[fromY][toX]
+                            - kernelSums[toY][fromX] + kernelSums[fromY][fromX];
+
+                    int index = y * width + x;
+                    double red = dstRed[index];
+                    double green = dstGreen[index];
+                    double blue = dstBlue[index];
+                    if (sumKernel != 0) {
+                        red /= sumKernel;
+                        green /= sumKernel;
+                        blue /= sumKernel;
+                    }
+
+                    dstRed[index] = (float) Math.max(0.0, Math.min(1.0, red));
+                    dstGreen[index] = (float) Math.max(0.0, Math.min(1.0, green));
+                    dstBlue[index] = (float) Math.max(0.0, Math.min(1.0, blue));
+                }
+            }
+        });
+
+        System.arraycopy(input.getAlpha(), 0, output.getAlpha(), 0, width * height);
+
+        return output;
+    }
+
+    /**
+     * Transforms the padded tile, multiplies it with the kernel spectrum and transforms it back (unscaled).
+     * Only the first {@code inputRows} rows hold data and only the first {@code outputRows} rows of the
+     * result are read, so the row transforms of the rest are skipped.
+     */
+    private static void filter(Scratch scratch, int inputRows, int outputRows, double[][] spectrum,
+                               Fft rowFft, Fft columnFft) {
+        double[] re = scratch.re;
+        double[] im = scratch.im;
+        transform2d(re, im, scratch.columnRe, scratch.columnIm, inputRows, rowFft, columnFft, false);
+
+        double[] kernelRe = spectrum[0];
+        double[] kernelIm = spectrum[1];
+        for (int i = 0; i < re.length; i++) {
+            double a = re[i];
+            double b = im[i];
+            re[i] = a * kernelRe[i] - b * kernelIm[i];
+            im[i] = a * kernelIm[i] + b * kernelRe[i];
+        }
+
+        transform2d(re, im, scratch.columnRe, scratch.columnIm, outputRows, rowFft, columnFft, true);
+    }
+
+    /**
+     * Adds the linear convolution of the tile {@code [x0, x1) x [y0, y1)} to the output. The convolution is
+     * {@code kernelSize - 1} larger than the tile and centered on it.
+     */
+    private static void accumulate(double[] plane, float[] acc, int x0, int y0, int x1, int y1,
+                                   int kHalfWidth, int kHalfHeight, int kernelWidth, int kernelHeight,
+                                   int fftWidth, int width, int height, double scale) {
+        int fromY = Math.max(0, y0 - kHalfHeight);
+        int toY = Math.min(height, y1 - 1 + kernelHeight - kHalfHeight);
+        int fromX = Math.max(0, x0 - kHalfWidth);
+        int toX = Math.min(width, x1 - 1 + kernelWidth - kHalfWidth);
+
+        for (int y = fromY; y < toY; y++) {
+            int row = (y - y0 + kHalfHeight) * fftWidth;
+            for (int x = fromX; x < toX; x++) {
+                acc[y * width + x] += (float) (plane[row + x - x0 + kHalfWidth] * scale);
+            }
+        }
+    }
+
+    private static double[][] kernelSpectrum(double[][] kernel, Fft rowFft, Fft columnFft) {
+        SpectrumKey key = new SpectrumKey(kernel, rowFft.n, columnFft.n);
+        double[][] spectrum = SPECTRUM_CACHE.get(key);
+        if (spectrum != null) {
+            return spectrum;
+        }
+
+        int kernelWidth = kernel[0].length;
+        int kernelHeight = kernel.length;
+        double[] re = new double[rowFft.n * columnFft.n];
+        double[] im = new double[re.length];
+
+        // The direct loop correlates with the kernel, which is a convolution with the flipped kernel
+        for (int y = 0; y < kernelHeight; y++) {
+            for (int x = 0; x < kernelWidth; x++) {
+                re[y * rowFft.n + x] = kernel[kernelHeight - 1 - y][kernelWidth - 1 - x];
+            }
+        }
+        transform2d(re, im, new double[columnFft.n], new double[columnFft.n], kernelHeight, rowFft, columnFft, false);
+
+        spectrum = new double[][] { re, im };
+        SPECTRUM_CACHE.put(key, spectrum);
+        return spectrum;
+    }
+
+    private static void transform2d(double[] re, double[] im, double[] columnRe, double[] columnIm, int rows,
+                                    Fft rowFft, Fft columnFft, boolean inverse) {
+        int fftWidth = rowFft.n;
+        int fftHeight = columnFft.n;
+
+        if (!inverse) {
+            for (int y = 0; y < rows; y++) {
+                rowFft.transform(re, im, y * fftWidth, inverse);
+            }
+        }
+
+        for (int x = 0; x < fftWidth; x++) {
+            for (int y = 0; y < fftHeight; y++) {
+                columnRe[y] = re[y * fftWidth + x];
+                columnIm[y] = im[y * fftWidth + x];
+            }
+            columnFft.transform(columnRe, columnIm, 0, inverse);
+            for (int y = 0; y < fftHeight; y++) {
+                re[y * fftWidth + x] = columnRe[y];
+                im[y * fftWidth + x] = columnIm[y];
+            }
+        }
+
+        if (inverse) {
+            for (int y = 0; y < rows; y++) {
+                rowFft.transform(re, im, y * fftWidth, inverse);
+            }
+        }
+    }
+
+    /**
+     * {@code table[y][x]} is the sum of {@code kernel[0..y)[0..x)}.
+     */
+    private static double[][] summedAreaTable(double[][] kernel) {
+        int kernelWidth = kernel[0].length;
+        int kernelHeight = kernel.length;
+        double[][] table = new double[kernelHeight + 1][kernelWidth + 1];
+        for (int y = 0; y < kernelHeight; y++) {
+            for (int x = 0; x < kernelWidth; x++) {
+                table[y + 1][x + 1] = kernel[y][x] + table[y][x + 1] + table[y + 1][x] - table[y][x];
+            }
+        }
+        return table;
+    }
+
+    private static int minimumFftSize(int kernelSize) {
+        // Tiles must be at least kernelSize - 1 wide so a tile only spills into its direct neighbours
+        int size = 1;
+        while (size < Math.max(2 * kernelSize - 2, 2)) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+
+    private static double log2(int n) {
+        return 31 - Integer.numberOfLeadingZeros(n);
+    }
+
+    /**
+     * Transform buffers of one tile, reused by a worker thread for all the tiles it processes.
+     */
+    private static final class Scratch {
+        private final double[] re;
+        private final double[] im;
+        private final double[] columnRe;
+        private final double[] columnIm;
+
+        Scratch(int fftWidth, int fftHeight) {
+            this.re = new double[fftWidth * fftHeight];
+            this.im = new double[fftWidth * fftHeight];
+            this.columnRe = new double[fftHeight];
+            this.columnIm = new double[fftHeight];
+        }
+    }
+
+    /**
+     * Iterative radix-2 complex FFT of a fixed power of two size.
+     */
+    private static final class Fft {
+        private final int n;
+        private final int[] reversed;
+        private final double[] cos;
+        private final double[] sin;
+
+        Fft(int n) {
+            this.n = n;
+            this.reversed = new int[n];
+            this.cos = new double[n / 2];
+            this.sin = new double[n / 2];
+
+            int bits = 31 - Integer.numberOfLeadingZeros(n);
+            for (int i = 0; i < n; i++) {
+                reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+            }
+            for (int i = 0; i < n / 2; i++) {
+                cos[i] = Math.cos(2 * Math.PI * i / n);
+                sin[i] = Math.sin(2 * Math.PI * i / n);
+            }
+        }
+
+        /**
+         * Transforms {@code n} values starting at {@code offset} in place. The inverse is not scaled by {@code 1 / n}.
+         */
+        void transform(double[] re, double[] im, int offset, boolean inverse) {
+            for (int i = 0; i < n; i++) {
+                int j = reversed[i];
+                if (i < j) {
+                    int a = offset + i;
+                    int b = offset + j;
+                    double tempRe = re[a];
+                    double tempIm = im[a];
+                    re[a] = re[b];
+                    im[a] = im[b];
+                    re[b] = tempRe;
+                    im[b] = tempIm;
+                }
+            }
+
+            for (int size = 2; size <= n; size <<= 1) {
+                int half = size >> 1;
+                int step = n / size;
+                for (int start = 0; start < n; start += size) {
+                    for (int k = 0; k < half; k++) {
+                        double c = cos[k * step];
+                        double s = inverse ? sin[k * step] : -sin[k * step];
+                        int a = offset + start + k;
+                        int b = offset + start + k + half;
+                        double tRe = re[b] * c - im[b] * s;
+                        double tIm = re[b] * s + im[b] * c;
+                        re[b] = re[a] - tRe;
+                        im[b] = im[a] - tIm;
+                        re[a] += tRe;
+                        im[a] += tIm;
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class SpectrumKey {
+        private final double[][] kernel;
+        private final int fftWidth;
+        private final int fftHeight;
+        private final int hash;
+
+        SpectrumKey(double[][] kernel, int fftWidth, int fftHeight) {
+            this.kernel = new double[kernel.length][];
+            for (int y = 0; y < kernel.length; y++) {
+                this.kernel[y] = kernel[y].clone();
+            }
+            this.fftWidth = fftWidth;
+            this.fftHeight = fftHeight;
+            this.hash = 31 * (31 * Arrays.deepHashCode(this.kernel) + fftWidth) + fftHeight;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SpectrumKey other)) {
+                return false;
+            }
+            return fftWidth == other.fftWidth && fftHeight == other.fftHeight
+                    && Arrays.deepEquals(kernel, other.kernel);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
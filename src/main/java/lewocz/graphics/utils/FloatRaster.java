@@ -0,0 +1,137 @@
+package lewocz.graphics.utils;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Planar raster with one {@code float[]} per channel. Channel values are in [0.0, 1.0], the same
+ * range {@code Color} uses, which makes it the natural input for weighted-sum filters.
+ */
+public class FloatRaster {
+
+    private final int width;
+    private final int height;
+    private final float[] red;
+    private final float[] green;
+    private final float[] blue;
+    private final float[] alpha;
+
+    public FloatRaster(int width, int height) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Raster dimensions cannot be negative.");
+        }
+        int size = width * height;
+        this.width = width;
+        this.height = height;
+        this.red = new float[size];
+        this.green = new float[size];
+        this.blue = new float[size];
+        this.alpha = new float[size];
+    }
+
+    public static FloatRaster fromImage(Image image) {
+        return fromIntRaster(IntRaster.fromImage(image));
+    }
+
+    public static FloatRaster fromIntRaster(IntRaster source) {
+        FloatRaster raster = new FloatRaster(source.getWidth(), source.getHeight());
+        int[] pixels = source.getPixels();
+        for (int i = 0; i < pixels.length; i++) {
+            int argb = pixels[i];
+            raster.red[i] = (float) IntRaster.normalized(IntRaster.red(argb));
+            raster.green[i] = (float) IntRaster.normalized(IntRaster.green(argb));
+            raster.blue[i] = (float) IntRaster.normalized(IntRaster.blue(argb));
+            raster.alpha[i] = (float) IntRaster.normalized(IntRaster.alpha(argb));
+        }
+        return raster;
+    }
+
+    /**
+     * Normalizes the samples by the maximum value; gray rasters fill all three color planes. Alpha is opaque.
+     */
+    public static FloatRaster fromShortRaster(ShortRaster source) {
+        FloatRaster raster = new FloatRaster(source.getWidth(), source.getHeight());
+        char[] samples = source.getSamples();
+        int channels = source.getChannels();
+        float scale = 1.0f / source.getMaxValue();
+        for (int i = 0; i < raster.red.length; i++) {
+            raster.red[i] = samples[i * channels] * scale;
+            raster.green[i] = samples[i * channels + channels / 3] * scale;
+            raster.blue[i] = samples[i * channels + 2 * (channels / 3)] * scale;
+            raster.alpha[i] = 1.0f;
+        }
+        return raster;
+    }
+
+    /**
+     * Scales the color planes back to samples in {@code [0, maxValue]}, rounding and clamping. A one-channel
+     * result takes the red plane.
+     */
+    public ShortRaster toShortRaster(int channels, int maxValue) {
+        ShortRaster raster = new ShortRaster(width, height, channels, maxValue);
+        char[] samples = raster.getSamples();
+        for (int i = 0; i < red.length; i++) {
+            if (channels == 1) {
+                samples[i] = toSample(red[i], maxValue);
+            } else {
+                samples[3 * i] = toSample(red[i], maxValue);
+                samples[3 * i + 1] = toSample(green[i], maxValue);
+                samples[3 * i + 2] = toSample(blue[i], maxValue);
+            }
+        }
+        return raster;
+    }
+
+    private static char toSample(float value, int maxValue) {
+        return (char) Math.round(Math.max(0.0f, Math.min(1.0f, value)) * maxValue);
+    }
+
+    /**
+     * Packs the planes back into 8-bit ARGB. Values outside [0.0, 1.0] are clamped.
+     */
+    public IntRaster toIntRaster() {
+        IntRaster raster = new IntRaster(width, height);
+        int[] pixels = raster.getPixels();
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = IntRaster.argb(
+                    toLevel(alpha[i]),
+                    toLevel(red[i]),
+                    toLevel(green[i]),
+                    toLevel(blue[i])
+            );
+        }
+        return raster;
+    }
+
+    public WritableImage toImage() {
+        return toIntRaster().toImage();
+    }
+
+    private static int toLevel(float value) {
+        return IntRaster.toLevel(Math.max(0.0f, Math.min(1.0f, value)));
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public float[] getRed() {
+        return red;
+    }
+
+    public float[] getGreen() {
+        return green;
+    }
+
+    public float[] getBlue() {
+        return blue;
+    }
+
+    public float[] getAlpha() {
+        return alpha;
+    }
+}
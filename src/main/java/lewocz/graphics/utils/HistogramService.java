@@ -0,0 +1,66 @@
+package lewocz.graphics.utils;
+
+import javafx.scene.image.WritableImage;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Shares {@link ImageStatistics} between operations on the same image.
+ * <p>
+ * Statistics are cached per image (or raster) instance and dropped when the image is garbage collected.
+ * Operations never modify their input but return a new image, so an instance stands for one version of
+ * the pixels; code that does write into an image after requesting its statistics must call
+ * {@link #invalidate(Object)}.
+ */
+public class HistogramService {
+
+    private static final Map<Object, ImageStatistics> CACHE = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public static ImageStatistics get(IntRaster raster) {
+        return get(raster, raster);
+    }
+
+    /**
+     * Returns the statistics of the image, computing them from {@code raster} (the image's pixels) when they
+     * are not cached yet.
+     */
+    public static ImageStatistics get(WritableImage image, IntRaster raster) {
+        return get((Object) image, raster);
+    }
+
+    public static ImageStatistics get(ShortRaster raster) {
+        ImageStatistics statistics = CACHE.get(raster);
+        if (statistics == null) {
+            statistics = ImageStatistics.compute(raster, ImageProcessor.getExecutor());
+            CACHE.put(raster, statistics);
+        }
+        return statistics;
+    }
+
+    public static ImageStatistics get(WritableImage image) {
+        ImageStatistics statistics = CACHE.get(image);
+        return statistics != null ? statistics : get(image, IntRaster.fromImage(image));
+    }
+
+    /**
+     * Whether the statistics of the image are cached, so that getting them makes no pass over it.
+     */
+    public static boolean contains(Object image) {
+        return CACHE.containsKey(image);
+    }
+
+    public static void invalidate(Object image) {
+        CACHE.remove(image);
+    }
+
+    private static ImageStatistics get(Object key, IntRaster raster) {
+        ImageStatistics statistics = CACHE.get(key);
+        if (statistics == null) {
+            statistics = ImageStatistics.compute(raster, ImageProcessor.getExecutor());
+            CACHE.put(key, statistics);
+        }
+        return statistics;
+    }
+}
@@ -0,0 +1,293 @@
+package lewocz.graphics.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Undo and redo history of the operations applied to one image, without a full copy of the image per step.
+ * <p>
+ * Every step keeps a {@link TilePatch} with the tiles the operation changed, as they were before it, which
+ * turns the current image back into the previous one. Going forward again either applies a patch of the
+ * changed tiles after the operation or, for a deterministic operation that ran faster than its patch took to
+ * build, runs the operation again on the restored image, which then serves as its keyframe and needs no
+ * redo patch at all.
+ * <p>
+ * Patches are compressed and kept in memory up to {@code maxMemoryBytes}; beyond that, the patches of the
+ * steps furthest from the current one are moved to a spill file in {@code spillDirectory}, which is deleted
+ * when the history is closed. When the spill file would exceed {@code maxDiskBytes}, it is compacted, and
+ * the oldest steps are forgotten if that is not enough.
+ */
+public class ImageHistory implements Closeable {
+
+    private static final class Entry {
+        private final TilePatch undo;
+        /** Tiles after the operation, or {@code null} when it is replayed. */
+        private final TilePatch redo;
+        private final UnaryOperator<IntRaster> operation;
+
+        private Entry(TilePatch undo, TilePatch redo, UnaryOperator<IntRaster> operation) {
+            this.undo = undo;
+            this.redo = redo;
+            this.operation = operation;
+        }
+    }
+
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+    private final Path spillDirectory;
+
+    private final List<Entry> entries = new ArrayList<>();
+    /** Number of steps applied to the current image; the next redo is {@code entries.get(position)}. */
+    private int position;
+    private long memoryBytes;
+    private long diskBytes;
+    private FileChannel spillFile;
+    private long spillFileSize;
+
+    /**
+     * @param maxMemoryBytes Budget for the compressed patches kept in memory.
+     * @param maxDiskBytes   Budget for the spill file; {@code 0} forgets old steps instead of spilling them.
+     * @param spillDirectory Directory of the spill file, created when first needed.
+     */
+    public ImageHistory(long maxMemoryBytes, long maxDiskBytes, Path spillDirectory) {
+        if (maxMemoryBytes < 0 || maxDiskBytes < 0) {
+            throw new IllegalArgumentException("History budgets cannot be negative.");
+        }
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Records an operation that turned {@code before} into {@code after} and discards the steps that could
+     * be redone. Neither raster is kept.
+     *
+     * @param operation The operation if running it again on {@code before} gives {@code after}, or
+     *                  {@code null} if it cannot be replayed.
+     * @param runNanos  How long the operation took, to decide whether to replay it or keep its result.
+     */
+    public synchronized void record(IntRaster before, IntRaster after, UnaryOperator<IntRaster> operation,
+                                    long runNanos) throws IOException {
+        TileExecutor executor = ImageProcessor.getExecutor();
+        long started = System.nanoTime();
+        TilePatch undo = TilePatch.diff(after, before, executor);
+        long diffNanos = System.nanoTime() - started;
+        if (undo.getTileCount() == 0 && sameSize(before, after)) {
+            // Nothing changed, so there is nothing to undo
+            return;
+        }
+        TilePatch redo = operation != null && runNanos <= diffNanos ? null : TilePatch.diff(before, after, executor);
+
+        while (entries.size() > position) {
+            release(entries.remove(entries.size() - 1));
+        }
+        entries.add(new Entry(undo, redo, operation));
+        position++;
+        memoryBytes += undo.getLength() + (redo != null ? redo.getLength() : 0);
+        enforceBudget();
+    }
+
+    /**
+     * Returns the image before the last applied step, or {@code null} if there is none.
+     */
+    public synchronized IntRaster undo(IntRaster current) throws IOException {
+        if (position == 0) {
+            return null;
+        }
+        TilePatch undo = entries.get(position - 1).undo;
+        IntRaster previous = undo.applyTo(current, load(undo), ImageProcessor.getExecutor());
+        position--;
+        return previous;
+    }
+
+    /**
+     * Returns the image after the next undone step, or {@code null} if there is none.
+     */
+    public synchronized IntRaster redo(IntRaster current) throws IOException {
+        if (position == entries.size()) {
+            return null;
+        }
+        Entry entry = entries.get(position);
+        IntRaster next = entry.redo != null
+                ? entry.redo.applyTo(current, load(entry.redo), ImageProcessor.getExecutor())
+                : entry.operation.apply(current);
+        position++;
+        return next;
+    }
+
+    public synchronized boolean canUndo() {
+        return position > 0;
+    }
+
+    public synchronized boolean canRedo() {
+        return position < entries.size();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Compressed size of the patches held in memory.
+     */
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * Compressed size of the patches in the spill file that are still part of the history.
+     */
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    /**
+     * Forgets every step and empties the spill file.
+     */
+    public synchronized void clear() throws IOException {
+        entries.clear();
+        position = 0;
+        memoryBytes = 0;
+        diskBytes = 0;
+        if (spillFile != null) {
+            spillFile.truncate(0);
+            spillFileSize = 0;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        clear();
+        if (spillFile != null) {
+            spillFile.close();
+            spillFile = null;
+        }
+    }
+
+    private static boolean sameSize(IntRaster a, IntRaster b) {
+        return a.getWidth() == b.getWidth() && a.getHeight() == b.getHeight();
+    }
+
+    private void release(Entry entry) {
+        for (TilePatch patch : patches(entry)) {
+            if (patch.isSpilled()) {
+                diskBytes -= patch.getLength();
+            } else {
+                memoryBytes -= patch.getLength();
+            }
+        }
+    }
+
+    private static List<TilePatch> patches(Entry entry) {
+        return entry.redo == null ? List.of(entry.undo) : List.of(entry.undo, entry.redo);
+    }
+
+    /**
+     * Spills the patches of the steps furthest from the current one until the memory budget is met.
+     */
+    private void enforceBudget() throws IOException {
+        while (memoryBytes > maxMemoryBytes) {
+            TilePatch furthest = null;
+            int furthestDistance = -1;
+            for (int i = 0; i < entries.size(); i++) {
+                int distance = i < position ? position - 1 - i : i - position;
+                for (TilePatch patch : patches(entries.get(i))) {
+                    if (!patch.isSpilled() && distance > furthestDistance) {
+                        furthest = patch;
+                        furthestDistance = distance;
+                    }
+                }
+            }
+            if (furthest == null) {
+                return;
+            }
+            spill(furthest);
+        }
+    }
+
+    private void spill(TilePatch patch) throws IOException {
+        int length = patch.getLength();
+        if (diskBytes + length > maxDiskBytes) {
+            forgetOldest();
+            return;
+        }
+        if (spillFile != null && spillFileSize + length > maxDiskBytes) {
+            compact();
+        }
+        if (spillFile == null) {
+            Files.createDirectories(spillDirectory);
+            Path file = Files.createTempFile(spillDirectory, "image-history-", ".bin");
+            spillFile = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        }
+        long offset = spillFileSize;
+        writeFully(patch.getData(), offset);
+        spillFileSize += length;
+        patch.spilled(offset);
+        memoryBytes -= length;
+        diskBytes += length;
+    }
+
+    /**
+     * Drops the oldest step, or the last redo step when nothing is left to undo.
+     */
+    private void forgetOldest() {
+        if (position > 0) {
+            release(entries.remove(0));
+            position--;
+        } else {
+            release(entries.remove(entries.size() - 1));
+        }
+    }
+
+    /**
+     * Rewrites the spill file with only the patches still in the history.
+     */
+    private void compact() throws IOException {
+        List<TilePatch> spilled = new ArrayList<>();
+        List<byte[]> data = new ArrayList<>();
+        for (Entry entry : entries) {
+            for (TilePatch patch : patches(entry)) {
+                if (patch.isSpilled()) {
+                    spilled.add(patch);
+                    data.add(load(patch));
+                }
+            }
+        }
+        spillFile.truncate(0);
+        spillFileSize = 0;
+        for (int i = 0; i < spilled.size(); i++) {
+            writeFully(data.get(i), spillFileSize);
+            spilled.get(i).spilled(spillFileSize);
+            spillFileSize += data.get(i).length;
+        }
+    }
+
+    private byte[] load(TilePatch patch) throws IOException {
+        if (!patch.isSpilled()) {
+            return patch.getData();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(patch.getLength());
+        while (buffer.hasRemaining()) {
+            if (spillFile.read(buffer, patch.getOffset() + buffer.position()) < 0) {
+                throw new IOException("Image history spill file is truncated.");
+            }
+        }
+        return buffer.array();
+    }
+
+    private void writeFully(byte[] data, long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            spillFile.write(buffer, offset + buffer.position());
+        }
+    }
+}
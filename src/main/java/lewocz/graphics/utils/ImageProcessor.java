@@ -1,16 +1,31 @@
 package lewocz.graphics.utils;
 
-import javafx.scene.image.PixelReader;
-import javafx.scene.image.PixelWriter;
 import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
 
-import java.awt.*;
 import java.util.*;
-import java.util.List;
+import java.util.function.DoubleBinaryOperator;
 
+/**
+ * Image operations. Every operation is available for {@link WritableImage} and for {@link IntRaster};
+ * the image variants convert to a raster with a single bulk read, run the raster variant and write the
+ * result back with a single bulk write, so no {@code Color} objects are created per pixel.
+ */
 public class ImageProcessor {
 
+    private static volatile TileExecutor executor = TileExecutor.parallel();
+
+    public static TileExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor used by all operations, e.g. {@link TileExecutor#serial()} to run on the calling thread.
+     */
+    public static void setExecutor(TileExecutor tileExecutor) {
+        executor = Objects.requireNonNull(tileExecutor);
+    }
+
     /**
      * Applies a point operation to the input image and returns a new image.
      *
@@ -19,21 +34,51 @@ public class ImageProcessor {
      * @return A new WritableImage with the operation applied.
      */
     public static WritableImage applyPointOperation(WritableImage inputImage, PixelOperation operation) {
-        int width = (int) inputImage.getWidth();
-        int height = (int) inputImage.getHeight();
-        WritableImage outputImage = new WritableImage(width, height);
-        PixelReader reader = inputImage.getPixelReader();
-        PixelWriter writer = outputImage.getPixelWriter();
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                Color color = reader.getColor(x, y);
-                Color newColor = operation.apply(color);
-                writer.setColor(x, y, newColor);
+        return applyPointOperation(IntRaster.fromImage(inputImage), argb -> {
+            Color color = Color.rgb(IntRaster.red(argb), IntRaster.green(argb), IntRaster.blue(argb),
+                    IntRaster.normalized(IntRaster.alpha(argb)));
+            Color newColor = operation.apply(color);
+            return IntRaster.argb(
+                    IntRaster.toLevel(newColor.getOpacity()),
+                    IntRaster.toLevel(newColor.getRed()),
+                    IntRaster.toLevel(newColor.getGreen()),
+                    IntRaster.toLevel(newColor.getBlue())
+            );
+        }).toImage();
+    }
+
+    /**
+     * Applies a point operation working on packed ARGB values and returns a new raster.
+     *
+     * @param input     The input raster.
+     * @param operation The operation to apply to each pixel.
+     * @return A new IntRaster with the operation applied.
+     */
+    public static IntRaster applyPointOperation(IntRaster input, ArgbOperation operation) {
+        int width = input.getWidth();
+        IntRaster output = new IntRaster(width, input.getHeight());
+        int[] src = input.getPixels();
+        int[] dst = output.getPixels();
+
+        executor.forEachRowBand(width, input.getHeight(), (x0, y0, x1, y1) -> {
+            for (int i = y0 * width, end = y1 * width; i < end; i++) {
+                dst[i] = operation.apply(src[i]);
             }
-        }
+        });
+
+        return output;
+    }
+
+    /**
+     * Applies a lookup-table point operation, e.g. several operations fused with {@link PointLut#then(PointLut)},
+     * in a single pass.
+     */
+    public static WritableImage applyPointOperation(WritableImage inputImage, PointLut lut) {
+        return applyPointOperation(IntRaster.fromImage(inputImage), lut).toImage();
+    }
 
-        return outputImage;
+    public static IntRaster applyPointOperation(IntRaster input, PointLut lut) {
+        return applyPointOperation(input, lut::apply);
     }
 
     @FunctionalInterface
@@ -41,120 +86,148 @@ public class ImageProcessor {
         Color apply(Color color);
     }
 
+    @FunctionalInterface
+    public interface ArgbOperation {
+        int apply(int argb);
+    }
+
     private static double clamp(double value) {
         return Math.max(0.0, Math.min(1.0, value));
     }
 
+    private static double red(int argb) {
+        return IntRaster.normalized(IntRaster.red(argb));
+    }
+
+    private static double green(int argb) {
+        return IntRaster.normalized(IntRaster.green(argb));
+    }
+
+    private static double blue(int argb) {
+        return IntRaster.normalized(IntRaster.blue(argb));
+    }
+
+    /**
+     * Brightness in the 0..255 range as a double, the same value as {@code getBrightness() * 255}.
+     */
+    private static double brightness255(int level) {
+        return IntRaster.normalized(level) * 255;
+    }
+
+    private static int rgb(double r, double g, double b, int alpha) {
+        return IntRaster.argb(alpha, IntRaster.toLevel(r), IntRaster.toLevel(g), IntRaster.toLevel(b));
+    }
+
+    private static int gray(double value) {
+        int level = IntRaster.toLevel(value);
+        return IntRaster.argb(255, level, level, level);
+    }
+
     // Point Transformations
 
     public static WritableImage addRGB(WritableImage inputImage, double addRed, double addGreen, double addBlue) {
-        return applyPointOperation(inputImage, color -> {
-            double r = clamp(color.getRed() + addRed / 255.0);
-            double g = clamp(color.getGreen() + addGreen / 255.0);
-            double b = clamp(color.getBlue() + addBlue / 255.0);
-            return new Color(r, g, b, color.getOpacity());
-        });
+        return addRGB(IntRaster.fromImage(inputImage), addRed, addGreen, addBlue).toImage();
+    }
+
+    public static IntRaster addRGB(IntRaster input, double addRed, double addGreen, double addBlue) {
+        return applyPointOperation(input, PointLut.add(addRed, addGreen, addBlue));
     }
 
     public static WritableImage subtractRGB(WritableImage inputImage, double subRed, double subGreen, double subBlue) {
-        return applyPointOperation(inputImage, color -> {
-            double r = clamp(color.getRed() - subRed / 255.0);
-            double g = clamp(color.getGreen() - subGreen / 255.0);
-            double b = clamp(color.getBlue() - subBlue / 255.0);
-            return new Color(r, g, b, color.getOpacity());
-        });
+        return subtractRGB(IntRaster.fromImage(inputImage), subRed, subGreen, subBlue).toImage();
+    }
+
+    public static IntRaster subtractRGB(IntRaster input, double subRed, double subGreen, double subBlue) {
+        return applyPointOperation(input, PointLut.subtract(subRed, subGreen, subBlue));
     }
 
     public static WritableImage multiplyRGB(WritableImage inputImage, double mulRed, double mulGreen, double mulBlue) {
-        return applyPointOperation(inputImage, color -> {
-            double r = clamp(color.getRed() * mulRed);
-            double g = clamp(color.getGreen() * mulGreen);
-            double b = clamp(color.getBlue() * mulBlue);
-            return new Color(r, g, b, color.getOpacity());
-        });
+        return multiplyRGB(IntRaster.fromImage(inputImage), mulRed, mulGreen, mulBlue).toImage();
+    }
+
+    public static IntRaster multiplyRGB(IntRaster input, double mulRed, double mulGreen, double mulBlue) {
+        return applyPointOperation(input, PointLut.multiply(mulRed, mulGreen, mulBlue));
     }
 
     public static WritableImage divideRGB(WritableImage inputImage, double divRed, double divGreen, double divBlue) {
-        return applyPointOperation(inputImage, color -> {
-            double r = clamp(color.getRed() / divRed);
-            double g = clamp(color.getGreen() / divGreen);
-            double b = clamp(color.getBlue() / divBlue);
-            return new Color(r, g, b, color.getOpacity());
-        });
+        return divideRGB(IntRaster.fromImage(inputImage), divRed, divGreen, divBlue).toImage();
+    }
+
+    public static IntRaster divideRGB(IntRaster input, double divRed, double divGreen, double divBlue) {
+        return applyPointOperation(input, PointLut.divide(divRed, divGreen, divBlue));
     }
 
     public static WritableImage adjustBrightness(WritableImage inputImage, double brightnessChange) {
-        return applyPointOperation(inputImage, color -> {
-            double r = clamp(color.getRed() + brightnessChange);
-            double g = clamp(color.getGreen() + brightnessChange);
-            double b = clamp(color.getBlue() + brightnessChange);
-            return new Color(r, g, b, color.getOpacity());
-        });
+        return adjustBrightness(IntRaster.fromImage(inputImage), brightnessChange).toImage();
+    }
+
+    public static IntRaster adjustBrightness(IntRaster input, double brightnessChange) {
+        return applyPointOperation(input, PointLut.brightness(brightnessChange));
     }
 
     public static WritableImage grayscaleAverage(WritableImage inputImage) {
-        return applyPointOperation(inputImage, color -> {
-            double average = (color.getRed() + color.getGreen() + color.getBlue()) / 3.0;
-            return new Color(average, average, average, color.getOpacity());
-        });
+        return grayscaleAverage(IntRaster.fromImage(inputImage)).toImage();
+    }
+
+    public static IntRaster grayscaleAverage(IntRaster input) {
+        return applyPointOperation(input, PointLut.grayscaleAverage());
     }
 
     public static WritableImage grayscaleMax(WritableImage inputImage) {
-        return applyPointOperation(inputImage, color -> {
-            double max = Math.max(color.getRed(), Math.max(color.getGreen(), color.getBlue()));
-            return new Color(max, max, max, color.getOpacity());
-        });
+        return grayscaleMax(IntRaster.fromImage(inputImage)).toImage();
+    }
+
+    public static IntRaster grayscaleMax(IntRaster input) {
+        return applyPointOperation(input, PointLut.grayscaleMax());
     }
 
     // Filters
 
     public static WritableImage applySmoothingFilter(WritableImage inputImage) {
-        double[][] kernel = {
-                {1 / 9.0, 1 / 9.0, 1 / 9.0},
-                {1 / 9.0, 1 / 9.0, 1 / 9.0},
-                {1 / 9.0, 1 / 9.0, 1 / 9.0}
-        };
-        return applyConvolutionFilter(inputImage, kernel);
+        return applySmoothingFilter(IntRaster.fromImage(inputImage)).toImage();
     }
 
-    public static WritableImage applyMedianFilter(WritableImage inputImage) {
-        int width = (int) inputImage.getWidth();
-        int height = (int) inputImage.getHeight();
-        WritableImage outputImage = new WritableImage(width, height);
-        PixelReader reader = inputImage.getPixelReader();
-        PixelWriter writer = outputImage.getPixelWriter();
-
-        for (int y = 1; y < height - 1; y++) {
-            for (int x = 1; x < width - 1; x++) {
-                List<Double> reds = new ArrayList<>();
-                List<Double> greens = new ArrayList<>();
-                List<Double> blues = new ArrayList<>();
-
-                for (int dy = -1; dy <= 1; dy++) {
-                    for (int dx = -1; dx <= 1; dx++) {
-                        Color color = reader.getColor(x + dx, y + dy);
-                        reds.add(color.getRed());
-                        greens.add(color.getGreen());
-                        blues.add(color.getBlue());
-                    }
-                }
+    public static IntRaster applySmoothingFilter(IntRaster input) {
+        return applyBoxFilter(input, 1);
+    }
 
-                Collections.sort(reds);
-                Collections.sort(greens);
-                Collections.sort(blues);
+    /**
+     * Mean filter over a {@code (2 * radius + 1)} square window. Runs in constant time per pixel
+     * regardless of the radius.
+     */
+    public static WritableImage applyBoxFilter(WritableImage inputImage, int radius) {
+        return applyBoxFilter(IntRaster.fromImage(inputImage), radius).toImage();
+    }
 
-                double medianRed = reds.get(4); // Middle of 9 elements
-                double medianGreen = greens.get(4);
-                double medianBlue = blues.get(4);
+    public static IntRaster applyBoxFilter(IntRaster input, int radius) {
+        return SeparableConvolution.boxFilter(input, radius, radius, executor);
+    }
 
-                writer.setColor(x, y, new Color(medianRed, medianGreen, medianBlue, 1.0));
-            }
-        }
+    public static WritableImage applyMedianFilter(WritableImage inputImage) {
+        return applyMedianFilter(inputImage, 1);
+    }
 
-        return outputImage;
+    public static WritableImage applyMedianFilter(WritableImage inputImage, int radius) {
+        return applyMedianFilter(IntRaster.fromImage(inputImage), radius).toImage();
+    }
+
+    public static IntRaster applyMedianFilter(IntRaster input) {
+        return applyMedianFilter(input, 1);
+    }
+
+    /**
+     * Replaces every channel with its median over a {@code (2 * radius + 1)} square window. Pixels outside
+     * the image are taken from the nearest edge pixel. Alpha is copied unchanged.
+     */
+    public static IntRaster applyMedianFilter(IntRaster input, int radius) {
+        return MedianFilter.apply(input, radius, executor);
     }
 
     public static WritableImage applySobelFilter(WritableImage inputImage) {
+        return applySobelFilter(IntRaster.fromImage(inputImage)).toImage();
+    }
+
+    public static IntRaster applySobelFilter(IntRaster input) {
         double[][] gx = {
                 {-1, 0, 1},
                 {-2, 0, 2},
@@ -167,293 +240,397 @@ public class ImageProcessor {
                 { 1,  2,  1}
         };
 
-        int width = (int) inputImage.getWidth();
-        int height = (int) inputImage.getHeight();
-        WritableImage outputImage = new WritableImage(width, height);
-        PixelReader reader = inputImage.getPixelReader();
-        PixelWriter writer = outputImage.getPixelWriter();
-
-        for (int y = 1; y < height - 1; y++) {
-            for (int x = 1; x < width - 1; x++) {
-                double sumX = 0;
-                double sumY = 0;
-
-                for (int dy = -1; dy <= 1; dy++) {
-                    for (int dx = -1; dx <= 1; dx++) {
-                        Color color = reader.getColor(x + dx, y + dy);
-                        double brightness = color.getBrightness();
-                        sumX += gx[dy + 1][dx + 1] * brightness;
-                        sumY += gy[dy + 1][dx + 1] * brightness;
+        int width = input.getWidth();
+        int height = input.getHeight();
+        IntRaster output = new IntRaster(width, height);
+        int[] src = input.getPixels();
+        int[] dst = output.getPixels();
+
+        executor.forEachTile(width, height, (x0, y0, x1, y1) -> {
+            for (int y = Math.max(y0, 1); y < Math.min(y1, height - 1); y++) {
+                for (int x = Math.max(x0, 1); x < Math.min(x1, width - 1); x++) {
+                    double sumX = 0;
+                    double sumY = 0;
+
+                    for (int dy = -1; dy <= 1; dy++) {
+                        for (int dx = -1; dx <= 1; dx++) {
+                            int argb = src[(y + dy) * width + x + dx];
+                            double brightness = IntRaster.normalized(IntRaster.intensity(argb));
+                            sumX += gx[dy + 1][dx + 1] * brightness;
+                            sumY += gy[dy + 1][dx + 1] * brightness;
+                        }
                     }
-                }
 
-                double magnitude = Math.sqrt(sumX * sumX + sumY * sumY);
-                magnitude = clamp(magnitude);
+                    double magnitude = Math.sqrt(sumX * sumX + sumY * sumY);
+                    magnitude = clamp(magnitude);
 
-                Color edgeColor = new Color(magnitude, magnitude, magnitude, 1.0);
-                writer.setColor(x, y, edgeColor);
+                    dst[y * width + x] = gray(magnitude);
+                }
             }
-        }
+        });
 
-        return outputImage;
+        return output;
     }
 
+    private static final double[][] HIGH_PASS_KERNEL = {
+            { 0, -1,  0},
+            {-1,  5, -1},
+            { 0, -1,  0}
+    };
+
     public static WritableImage applyHighPassFilter(WritableImage inputImage) {
-        double[][] kernel = {
-                { 0, -1,  0},
-                {-1,  5, -1},
-                { 0, -1,  0}
-        };
+        return applyHighPassFilter(IntRaster.fromImage(inputImage)).toImage();
+    }
 
-        return applyConvolutionFilter(inputImage, kernel);
+    public static IntRaster applyHighPassFilter(IntRaster input) {
+        return applyConvolutionFilter(input, HIGH_PASS_KERNEL);
     }
 
     public static WritableImage applyGaussianBlur(WritableImage inputImage, int kernelSize, double sigma) {
-        double[][] kernel = generateGaussianKernel(kernelSize, sigma);
-        return applyConvolutionFilter(inputImage, kernel);
+        return applyGaussianBlur(IntRaster.fromImage(inputImage), kernelSize, sigma).toImage();
     }
 
-    private static double[][] generateGaussianKernel(int size, double sigma) {
-        double[][] kernel = new double[size][size];
-        double sum = 0.0;
-        int halfSize = size / 2;
+    public static IntRaster applyGaussianBlur(IntRaster input, int kernelSize, double sigma) {
+        // The 2D Gaussian is the outer product of two 1D Gaussians, so it always runs as two 1D passes
+        double[] kernel = SeparableConvolution.gaussianKernel(kernelSize, sigma);
+        return SeparableConvolution.convolve(FloatRaster.fromIntRaster(input), kernel, kernel, executor).toIntRaster();
+    }
 
-        for (int y = -halfSize; y <= halfSize; y++) {
-            for (int x = -halfSize; x <= halfSize; x++) {
-                double exponent = -(x * x + y * y) / (2 * sigma * sigma);
-                double value = Math.exp(exponent);
-                kernel[y + halfSize][x + halfSize] = value;
-                sum += value;
-            }
-        }
+    public static WritableImage applyConvolutionFilter(WritableImage inputImage, double[][] kernel) {
+        return applyConvolutionFilter(IntRaster.fromImage(inputImage), kernel).toImage();
+    }
 
-        // Normalize kernel
-        for (int y = 0; y < size; y++) {
-            for (int x = 0; x < size; x++) {
-                kernel[y][x] /= sum;
-            }
-        }
+    public static IntRaster applyConvolutionFilter(IntRaster input, double[][] kernel) {
+        return applyConvolutionFilter(FloatRaster.fromIntRaster(input), kernel).toIntRaster();
+    }
 
-        return kernel;
+    /**
+     * Convolves the color planes of the raster with the kernel. Kernel cells falling outside the image
+     * are skipped and the sum is normalized by the weight of the cells that were used. The alpha plane
+     * is copied unchanged. Separable (rank one) kernels are applied as two 1D passes; other kernels go
+     * through the FFT when its estimated cost is lower than the direct loop.
+     */
+    public static FloatRaster applyConvolutionFilter(FloatRaster input, double[][] kernel) {
+        double[][] factors = SeparableConvolution.decompose(kernel);
+        if (factors != null) {
+            return SeparableConvolution.convolve(input, factors[0], factors[1], executor);
+        }
+        if (FftConvolution.isFasterThanDirect(input.getWidth(), input.getHeight(), kernel[0].length, kernel.length)) {
+            return FftConvolution.convolve(input, kernel, executor);
+        }
+        return applyDirectConvolution(input, kernel);
     }
 
-    public static WritableImage applyConvolutionFilter(WritableImage inputImage, double[][] kernel) {
-        int width = (int) inputImage.getWidth();
-        int height = (int) inputImage.getHeight();
+    private static FloatRaster applyDirectConvolution(FloatRaster input, double[][] kernel) {
+        int width = input.getWidth();
+        int height = input.getHeight();
         int kernelWidth = kernel[0].length;
         int kernelHeight = kernel.length;
         int kHalfWidth = kernelWidth / 2;
         int kHalfHeight = kernelHeight / 2;
 
-        WritableImage outputImage = new WritableImage(width, height);
-        PixelReader reader = inputImage.getPixelReader();
-        PixelWriter writer = outputImage.getPixelWriter();
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                double sumRed = 0.0;
-                double sumGreen = 0.0;
-                double sumBlue = 0.0;
-                double sumKernel = 0.0;
-
-                for (int ky = -kHalfHeight; ky <= kHalfHeight; ky++) {
-                    for (int kx = -kHalfWidth; kx <= kHalfWidth; kx++) {
-                        int pixelX = x + kx;
+        FloatRaster output = new FloatRaster(width, height);
+        float[] srcRed = input.getRed();
+        float[] srcGreen = input.getGreen();
+        float[] srcBlue = input.getBlue();
+        float[] dstRed = output.getRed();
+        float[] dstGreen = output.getGreen();
+        float[] dstBlue = output.getBlue();
+
+        executor.forEachTile(width, height, (x0, y0, x1, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                for (int x = x0; x < x1; x++) {
+                    double sumRed = 0.0;
+                    double sumGreen = 0.0;
+                    double sumBlue = 0.0;
+                    double sumKernel = 0.0;
+
+                    for (int ky = -kHalfHeight; ky <= kHalfHeight; ky++) {
                         int pixelY = y + ky;
-
-                        if (pixelX < 0 || pixelX >= width || pixelY < 0 || pixelY >= height) {
+                        if (pixelY < 0 || pixelY >= height) {
                             continue;
                         }
 
-                        Color color = reader.getColor(pixelX, pixelY);
-                        double kernelValue = kernel[ky + kHalfHeight][kx + kHalfWidth];
+                        for (int kx = -kHalfWidth; kx <= kHalfWidth; kx++) {
+                            int pixelX = x + kx;
+                            if (pixelX < 0 || pixelX >= width) {
+                                continue;
+                            }
+
+                            int index = pixelY * width + pixelX;
+                            double kernelValue = kernel[ky + kHalfHeight][kx + kHalfWidth];
 
-                        sumRed += color.getRed() * kernelValue;
-                        sumGreen += color.getGreen() * kernelValue;
-                        sumBlue += color.getBlue() * kernelValue;
-                        sumKernel += kernelValue;
+                            sumRed += srcRed[index] * kernelValue;
+                            sumGreen += srcGreen[index] * kernelValue;
+                            sumBlue += srcBlue[index] * kernelValue;
+                            sumKernel += kernelValue;
+                        }
                     }
-                }
 
-                if (sumKernel != 0) {
-                    sumRed /= sumKernel;
-                    sumGreen /= sumKernel;
-                    sumBlue /= sumKernel;
-                }
+                    if (sumKernel != 0) {
+                        sumRed /= sumKernel;
+                        sumGreen /= sumKernel;
+                        sumBlue /= sumKernel;
+                    }
 
-                Color newColor = new Color(
-                        clamp(sumRed),
-                        clamp(sumGreen),
-                        clamp(sumBlue),
-                        reader.getColor(x, y).getOpacity()
-                );
-                writer.setColor(x, y, newColor);
+                    int index = y * width + x;
+                    dstRed[index] = (float) clamp(sumRed);
+                    dstGreen[index] = (float) clamp(sumGreen);
+                    dstBlue[index] = (float) clamp(sumBlue);
+                }
             }
-        }
+        });
 
-        return outputImage;
+        System.arraycopy(input.getAlpha(), 0, output.getAlpha(), 0, width * height);
+
+        return output;
     }
 
     public static WritableImage histogramStretching(WritableImage image) {
-        int width = (int) image.getWidth();
-        int height = (int) image.getHeight();
-
-        PixelReader reader = image.getPixelReader();
-        WritableImage result = new WritableImage(width, height);
-        PixelWriter writer = result.getPixelWriter();
-
-        double minIntensity = 1.0;
-        double maxIntensity = 0.0;
-
-        // Find min and max intensity values
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                Color color = reader.getColor(x, y);
-                double intensity = color.getBrightness();
-                if (intensity < minIntensity) minIntensity = intensity;
-                if (intensity > maxIntensity) maxIntensity = intensity;
-            }
-        }
+        IntRaster input = IntRaster.fromImage(image);
+        IntRaster result = histogramStretching(input, HistogramService.get(image, input));
+        // Constant intensity images are returned unchanged
+        return result == input ? image : result.toImage();
+    }
 
-        double intensityRange = maxIntensity - minIntensity;
-        if (intensityRange == 0) {
+    public static IntRaster histogramStretching(IntRaster image) {
+        return histogramStretching(image, statistics(image));
+    }
+
+    private static IntRaster histogramStretching(IntRaster image, ImageStatistics statistics) {
+        double minValue = IntRaster.normalized(statistics.getMinIntensity());
+        double intensityRange = IntRaster.normalized(statistics.getMaxIntensity()) - minValue;
+        if (intensityRange <= 0) {
             // Avoid division by zero if the image has constant intensity
             return image;
         }
 
-        // Apply histogram stretching
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                Color color = reader.getColor(x, y);
-                double intensity = color.getBrightness();
-                double stretchedIntensity = (intensity - minIntensity) / intensityRange;
-                Color newColor = Color.gray(stretchedIntensity);
-                writer.setColor(x, y, newColor);
-            }
+        // The result only depends on the intensity, so it is mapped through a table
+        int[] table = new int[256];
+        for (int level = 0; level < 256; level++) {
+            table[level] = gray((IntRaster.normalized(level) - minValue) / intensityRange);
         }
 
-        return result;
+        // Apply histogram stretching
+        return applyPointOperation(image, argb -> table[IntRaster.intensity(argb)]);
     }
 
     public static WritableImage histogramEqualization(WritableImage image) {
-        int width = (int) image.getWidth();
-        int height = (int) image.getHeight();
-        int numPixels = width * height;
+        IntRaster input = IntRaster.fromImage(image);
+        return histogramEqualization(input, HistogramService.get(image, input)).toImage();
+    }
 
-        PixelReader reader = image.getPixelReader();
-        WritableImage result = new WritableImage(width, height);
-        PixelWriter writer = result.getPixelWriter();
+    public static IntRaster histogramEqualization(IntRaster image) {
+        return histogramEqualization(image, statistics(image));
+    }
 
-        // Assuming a grayscale image
-        int[] histogram = new int[256];
-        double[] cdf = new double[256];
-
-        // Compute histogram
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                Color color = reader.getColor(x, y);
-                int intensity = (int) (color.getBrightness() * 255);
-                histogram[intensity]++;
-            }
+    private static IntRaster histogramEqualization(IntRaster image, ImageStatistics statistics) {
+        double[] cdf = cumulativeDistribution(statistics);
+
+        int[] table = new int[256];
+        for (int level = 0; level < 256; level++) {
+            // Clamp the intensity to [0.0, 1.0]
+            table[level] = gray(Math.min(cdf[level], 1.0));
         }
 
+        // Apply histogram equalization
+        return applyPointOperation(image, argb -> table[IntRaster.intensity(argb)]);
+    }
+
+    /**
+     * Statistics of the image for an operation that makes one pass over it with them, declaring that pass
+     * and the one that computes them when they are not cached yet.
+     */
+    private static ImageStatistics statistics(IntRaster image) {
+        OperationMonitor.expectPasses(HistogramService.contains(image) ? 1 : 2);
+        return HistogramService.get(image);
+    }
+
+    private static ImageStatistics statistics(ShortRaster image) {
+        OperationMonitor.expectPasses(HistogramService.contains(image) ? 1 : 2);
+        return HistogramService.get(image);
+    }
+
+    private static double[] cumulativeDistribution(ImageStatistics statistics) {
+        int numPixels = statistics.getPixelCount();
+
+        // Assuming a grayscale image
+        int[] histogram = statistics.getIntensityHistogram();
+        double[] cdf = new double[histogram.length];
+
         // Compute cumulative distribution function (CDF)
         cdf[0] = histogram[0] / (double) numPixels;
-        for (int i = 1; i < 256; i++) {
+        for (int i = 1; i < histogram.length; i++) {
             cdf[i] = cdf[i - 1] + histogram[i] / (double) numPixels;
         }
 
         // Ensure the last value of CDF is exactly 1.0 to prevent floating-point errors
-        cdf[255] = 1.0;
+        cdf[histogram.length - 1] = 1.0;
+        return cdf;
+    }
 
-        // Apply histogram equalization
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                Color color = reader.getColor(x, y);
-                int intensity = (int) (color.getBrightness() * 255);
-                double equalizedIntensity = cdf[intensity];
+    // 16-bit operations. Intensity is the gray sample or the largest color sample, results are gray rasters
+    // with the maximum value of the input, and histograms have one bin per sample value.
+
+    public static ShortRaster histogramStretching(ShortRaster image) {
+        ImageStatistics statistics = statistics(image);
+        int minValue = statistics.getMinIntensity();
+        int intensityRange = statistics.getMaxIntensity() - minValue;
+        if (intensityRange <= 0) {
+            // Avoid division by zero if the image has constant intensity
+            return image;
+        }
 
-                // Clamp the intensity to [0.0, 1.0]
-                equalizedIntensity = Math.min(equalizedIntensity, 1.0);
+        int maxValue = image.getMaxValue();
+        char[] table = new char[maxValue + 1];
+        for (int level = minValue; level <= maxValue; level++) {
+            table[level] = (char) Math.min(maxValue, Math.round((level - minValue) * (double) maxValue / intensityRange));
+        }
+        return applyIntensityTable(image, table);
+    }
 
-                Color newColor = Color.gray(equalizedIntensity);
-                writer.setColor(x, y, newColor);
-            }
+    public static ShortRaster histogramEqualization(ShortRaster image) {
+        double[] cdf = cumulativeDistribution(statistics(image));
+        int maxValue = image.getMaxValue();
+        char[] table = new char[maxValue + 1];
+        for (int level = 0; level <= maxValue; level++) {
+            table[level] = (char) Math.round(Math.min(cdf[level], 1.0) * maxValue);
         }
+        return applyIntensityTable(image, table);
+    }
 
+    private static ShortRaster applyIntensityTable(ShortRaster image, char[] table) {
+        int width = image.getWidth();
+        ShortRaster result = new ShortRaster(width, image.getHeight(), 1, image.getMaxValue());
+        char[] dst = result.getSamples();
+        executor.forEachRowBand(width, image.getHeight(), (x0, y0, x1, y1) -> {
+            for (int i = y0 * width; i < y1 * width; i++) {
+                dst[i] = table[image.intensity(i)];
+            }
+        });
         return result;
     }
 
+    /**
+     * Sets the pixels with an intensity of at least {@code threshold}, in sample units.
+     */
+    public static BinaryImage binarize(ShortRaster image, int threshold) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BinaryImage result = new BinaryImage(width, height);
+        long[] words = result.getWords();
+        int wordsPerRow = result.getWordsPerRow();
+
+        executor.forEachRowBand(width, height, (x0, y0, x1, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                int wordRow = y * wordsPerRow;
+                for (int x = 0; x < width; x++) {
+                    if (image.intensity(y * width + x) >= threshold) {
+                        words[wordRow + (x >>> 6)] |= 1L << x;
+                    }
+                }
+            }
+        });
+
+        return result;
+    }
+
+    public static BinaryImage otsuThresholding(ShortRaster image) {
+        return binarize(image, otsuThreshold(statistics(image)));
+    }
+
+    /**
+     * Convolves the samples at full precision; see {@link #applyConvolutionFilter(FloatRaster, double[][])}.
+     */
+    public static ShortRaster applyConvolutionFilter(ShortRaster input, double[][] kernel) {
+        return applyConvolutionFilter(FloatRaster.fromShortRaster(input), kernel)
+                .toShortRaster(input.getChannels(), input.getMaxValue());
+    }
+
     public static WritableImage manualThresholding(WritableImage image, int threshold) {
-        int width = (int) image.getWidth();
-        int height = (int) image.getHeight();
-
-        PixelReader reader = image.getPixelReader();
-        WritableImage result = new WritableImage(width, height);
-        PixelWriter writer = result.getPixelWriter();
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                Color color = reader.getColor(x, y);
-                double intensity = color.getBrightness() * 255;
-                if (intensity < threshold) {
-                    writer.setColor(x, y, Color.BLACK);
-                } else {
-                    writer.setColor(x, y, Color.WHITE);
+        return manualThresholding(IntRaster.fromImage(image), threshold).toImage();
+    }
+
+    public static IntRaster manualThresholding(IntRaster image, int threshold) {
+        return binarize(image, threshold).toRaster();
+    }
+
+    /**
+     * Packs the result of thresholding into bits: pixels with an intensity of at least {@code threshold}
+     * are set (white), the others clear (black).
+     */
+    public static BinaryImage binarize(IntRaster image, int threshold) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] src = image.getPixels();
+        BinaryImage result = new BinaryImage(width, height);
+        long[] words = result.getWords();
+        int wordsPerRow = result.getWordsPerRow();
+
+        executor.forEachRowBand(width, height, (x0, y0, x1, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                int row = y * width;
+                int wordRow = y * wordsPerRow;
+                for (int x = 0; x < width; x++) {
+                    if (IntRaster.intensity(src[row + x]) >= threshold) {
+                        words[wordRow + (x >>> 6)] |= 1L << x;
+                    }
                 }
             }
-        }
+        });
 
         return result;
     }
 
     public static WritableImage percentBlackSelection(WritableImage image, double percentBlack) {
-        int width = (int) image.getWidth();
-        int height = (int) image.getHeight();
-        int numPixels = width * height;
-        int desiredBlackPixels = (int) (numPixels * (percentBlack / 100.0));
-
-        PixelReader reader = image.getPixelReader();
-
-        // Create a histogram of intensities
-        int[] histogram = new int[256];
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                Color color = reader.getColor(x, y);
-                int intensity = (int) (color.getBrightness() * 255);
-                histogram[intensity]++;
-            }
-        }
+        IntRaster input = IntRaster.fromImage(image);
+        int threshold = percentBlackThreshold(HistogramService.get(image, input), percentBlack);
+        return manualThresholding(input, threshold).toImage();
+    }
+
+    public static IntRaster percentBlackSelection(IntRaster image, double percentBlack) {
+        return manualThresholding(image, percentBlackThreshold(statistics(image), percentBlack));
+    }
+
+    /**
+     * Lowest intensity at which at least {@code percentBlack} percent of the pixels are at or below it.
+     */
+    public static int percentBlackThreshold(ImageStatistics statistics, double percentBlack) {
+        int desiredBlackPixels = (int) (statistics.getPixelCount() * (percentBlack / 100.0));
 
         // Find the threshold that results in the desired number of black pixels
         int cumulativeSum = 0;
         int threshold = 0;
-        for (int i = 0; i < 256; i++) {
-            cumulativeSum += histogram[i];
+        for (int i = 0; i < statistics.getLevels(); i++) {
+            cumulativeSum += statistics.getIntensityCount(i);
             if (cumulativeSum >= desiredBlackPixels) {
                 threshold = i;
                 break;
             }
         }
 
-        // Apply thresholding
-        return manualThresholding(image, threshold);
+        return threshold;
     }
 
     public static WritableImage meanIterativeSelection(WritableImage image) {
-        int width = (int) image.getWidth();
-        int height = (int) image.getHeight();
+        IntRaster input = IntRaster.fromImage(image);
+        return manualThresholding(input, meanIterativeThreshold(HistogramService.get(image, input))).toImage();
+    }
 
-        PixelReader reader = image.getPixelReader();
+    public static IntRaster meanIterativeSelection(IntRaster image) {
+        return manualThresholding(image, meanIterativeThreshold(statistics(image)));
+    }
 
+    /**
+     * Iterates the threshold to the midpoint of the foreground and background means until it moves less
+     * than half a level. Each iteration walks the histogram, not the image.
+     */
+    public static int meanIterativeThreshold(ImageStatistics statistics) {
         // Initialize threshold with the mean intensity of the image
         double totalIntensity = 0;
-        int numPixels = width * height;
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                Color color = reader.getColor(x, y);
-                totalIntensity += color.getBrightness() * 255;
-            }
+        int numPixels = statistics.getPixelCount();
+        for (int level = 0; level < 256; level++) {
+            totalIntensity += statistics.getIntensityCount(level) * brightness255(level);
         }
 
         double threshold = totalIntensity / numPixels;
@@ -467,16 +644,15 @@ public class ImageProcessor {
             double sumBackground = 0;
             int countBackground = 0;
 
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    double intensity = reader.getColor(x, y).getBrightness() * 255;
-                    if (intensity > threshold) {
-                        sumForeground += intensity;
-                        countForeground++;
-                    } else {
-                        sumBackground += intensity;
-                        countBackground++;
-                    }
+            for (int level = 0; level < 256; level++) {
+                int count = statistics.getIntensityCount(level);
+                double intensity = brightness255(level);
+                if (intensity > threshold) {
+                    sumForeground += count * intensity;
+                    countForeground += count;
+                } else {
+                    sumBackground += count * intensity;
+                    countBackground += count;
                 }
             }
 
@@ -487,31 +663,29 @@ public class ImageProcessor {
 
         } while (Math.abs(threshold - previousThreshold) >= epsilon);
 
-        // Apply thresholding
-        return manualThresholding(image, (int) threshold);
+        return (int) threshold;
     }
 
     public static WritableImage otsuThresholding(WritableImage image) {
-        int width = (int) image.getWidth();
-        int height = (int) image.getHeight();
-
-        PixelReader reader = image.getPixelReader();
+        IntRaster input = IntRaster.fromImage(image);
+        return manualThresholding(input, otsuThreshold(HistogramService.get(image, input))).toImage();
+    }
 
-        int[] histogram = new int[256];
-        int totalPixels = width * height;
+    public static IntRaster otsuThresholding(IntRaster image) {
+        return manualThresholding(image, otsuThreshold(statistics(image)));
+    }
 
-        // Compute histogram
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int intensity = (int) (reader.getColor(x, y).getBrightness() * 255);
-                histogram[intensity]++;
-            }
-        }
+    /**
+     * Threshold maximizing the between-class variance of the intensity histogram.
+     */
+    public static int otsuThreshold(ImageStatistics statistics) {
+        int totalPixels = statistics.getPixelCount();
+        int[] histogram = statistics.getIntensityHistogram();
 
         // Total sum of pixel intensities
         double sumTotal = 0;
-        for (int t = 0; t < 256; t++) {
-            sumTotal += t * histogram[t];
+        for (int t = 0; t < histogram.length; t++) {
+            sumTotal += (double) t * histogram[t];
         }
 
         double sumBackground = 0;
@@ -521,19 +695,19 @@ public class ImageProcessor {
         double maxVariance = 0;
         int threshold = 0;
 
-        for (int t = 0; t < 256; t++) {
+        for (int t = 0; t < histogram.length; t++) {
             weightBackground += histogram[t];
             if (weightBackground == 0) continue;
 
             weightForeground = totalPixels - weightBackground;
             if (weightForeground == 0) break;
 
-            sumBackground += t * histogram[t];
+            sumBackground += (double) t * histogram[t];
 
             double meanBackground = sumBackground / weightBackground;
             double meanForeground = (sumTotal - sumBackground) / weightForeground;
 
-            double betweenClassVariance = weightBackground * weightForeground * Math.pow(meanBackground - meanForeground, 2);
+            double betweenClassVariance = (double) weightBackground * weightForeground * Math.pow(meanBackground - meanForeground, 2);
 
             if (betweenClassVariance > maxVariance) {
                 maxVariance = betweenClassVariance;
@@ -541,291 +715,121 @@ public class ImageProcessor {
             }
         }
 
-        // Apply thresholding
-        return manualThresholding(image, threshold);
+        return threshold;
     }
 
     public static WritableImage niblackThresholding(WritableImage image, int windowSize, double k) {
-        int width = (int) image.getWidth();
-        int height = (int) image.getHeight();
-
-        PixelReader reader = image.getPixelReader();
-        WritableImage result = new WritableImage(width, height);
-        PixelWriter writer = result.getPixelWriter();
-
-        int halfWindow = windowSize / 2;
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                double sum = 0;
-                double sumSq = 0;
-                int count = 0;
-
-                // Compute mean and standard deviation in the window
-                for (int wy = -halfWindow; wy <= halfWindow; wy++) {
-                    for (int wx = -halfWindow; wx <= halfWindow; wx++) {
-                        int nx = x + wx;
-                        int ny = y + wy;
-
-                        if (nx >= 0 && nx < width && ny >= 0 && ny < height) {
-                            double intensity = reader.getColor(nx, ny).getBrightness() * 255;
-                            sum += intensity;
-                            sumSq += intensity * intensity;
-                            count++;
-                        }
-                    }
-                }
-
-                double mean = sum / count;
-                double variance = (sumSq / count) - (mean * mean);
-                double stdDev = Math.sqrt(variance);
-
-                double threshold = mean + k * stdDev;
-
-                double pixelIntensity = reader.getColor(x, y).getBrightness() * 255;
-
-                if (pixelIntensity < threshold) {
-                    writer.setColor(x, y, Color.BLACK);
-                } else {
-                    writer.setColor(x, y, Color.WHITE);
-                }
-            }
-        }
+        return niblackThresholding(IntRaster.fromImage(image), windowSize, k).toImage();
+    }
 
-        return result;
+    public static IntRaster niblackThresholding(IntRaster image, int windowSize, double k) {
+        return localThresholding(image, windowSize, (mean, stdDev) -> mean + k * stdDev);
     }
 
     public static WritableImage sauvolaThresholding(WritableImage image, int windowSize, double k, double r) {
-        int width = (int) image.getWidth();
-        int height = (int) image.getHeight();
+        return sauvolaThresholding(IntRaster.fromImage(image), windowSize, k, r).toImage();
+    }
 
-        PixelReader reader = image.getPixelReader();
-        WritableImage result = new WritableImage(width, height);
-        PixelWriter writer = result.getPixelWriter();
+    public static IntRaster sauvolaThresholding(IntRaster image, int windowSize, double k, double r) {
+        return localThresholding(image, windowSize, (mean, stdDev) -> mean * (1 + k * ((stdDev / r) - 1)));
+    }
+
+    /**
+     * Thresholds every pixel against a value computed from the mean and standard deviation of the intensity
+     * in the window around it. The window is clipped to the image. Window statistics come from an
+     * {@link IntegralImage}, so the cost per pixel does not depend on the window size.
+     */
+    private static IntRaster localThresholding(IntRaster image, int windowSize, DoubleBinaryOperator thresholdFunction) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] src = image.getPixels();
+        BinaryImage result = new BinaryImage(width, height);
 
         int halfWindow = windowSize / 2;
+        // The passes of the integral image, then the thresholding pass
+        OperationMonitor.expectPasses(4);
+        IntegralImage integral = IntegralImage.ofIntensity(image, executor);
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                double sum = 0;
-                double sumSq = 0;
-                int count = 0;
-
-                // Compute mean and standard deviation in the window
-                for (int wy = -halfWindow; wy <= halfWindow; wy++) {
-                    for (int wx = -halfWindow; wx <= halfWindow; wx++) {
-                        int nx = x + wx;
-                        int ny = y + wy;
-
-                        if (nx >= 0 && nx < width && ny >= 0 && ny < height) {
-                            double intensity = reader.getColor(nx, ny).getBrightness() * 255;
-                            sum += intensity;
-                            sumSq += intensity * intensity;
-                            count++;
-                        }
-                    }
-                }
+        // Row bands, so no two tasks write to the same word of the result
+        executor.forEachRowBand(width, height, (x0, y0, x1, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                for (int x = x0; x < x1; x++) {
+                    int left = x - halfWindow;
+                    int top = y - halfWindow;
+                    int right = x + halfWindow + 1;
+                    int bottom = y + halfWindow + 1;
 
-                double mean = sum / count;
-                double variance = (sumSq / count) - (mean * mean);
-                double stdDev = Math.sqrt(variance);
+                    double mean = integral.mean(left, top, right, bottom);
+                    double stdDev = Math.sqrt(integral.variance(left, top, right, bottom));
 
-                double threshold = mean * (1 + k * ((stdDev / r) - 1));
+                    double threshold = thresholdFunction.applyAsDouble(mean, stdDev);
 
-                double pixelIntensity = reader.getColor(x, y).getBrightness() * 255;
+                    int pixelIntensity = IntRaster.intensity(src[y * width + x]);
 
-                if (pixelIntensity < threshold) {
-                    writer.setColor(x, y, Color.BLACK);
-                } else {
-                    writer.setColor(x, y, Color.WHITE);
+                    if (pixelIntensity >= threshold) {
+                        result.set(x, y, true);
+                    }
                 }
             }
-        }
+        });
 
-        return result;
+        return result.toRaster();
     }
 
     public static WritableImage dilation(WritableImage image, boolean[][] structuringElement) {
-        int width = (int) image.getWidth();
-        int height = (int) image.getHeight();
-
-        WritableImage outputImage = new WritableImage(width, height);
-        PixelReader pixelReader = image.getPixelReader();
-        PixelWriter pixelWriter = outputImage.getPixelWriter();
-
-        int seWidth = structuringElement[0].length;
-        int seHeight = structuringElement.length;
-
-        int xOrigin = seWidth / 2;
-        int yOrigin = seHeight / 2;
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                double maxR = 0.0;
-                double maxG = 0.0;
-                double maxB = 0.0;
-                double maxA = 0.0;
-
-                for (int j = 0; j < seHeight; j++) {
-                    for (int i = 0; i < seWidth; i++) {
-                        if (structuringElement[j][i]) {
-                            int offsetX = i - xOrigin;
-                            int offsetY = j - yOrigin;
-
-                            int imageX = x - offsetX;
-                            int imageY = y - offsetY;
-
-                            if (imageX >= 0 && imageX < width && imageY >= 0 && imageY < height) {
-                                Color color = pixelReader.getColor(imageX, imageY);
-
-                                if (color.getRed() > maxR) maxR = color.getRed();
-                                if (color.getGreen() > maxG) maxG = color.getGreen();
-                                if (color.getBlue() > maxB) maxB = color.getBlue();
-                                if (color.getOpacity() > maxA) maxA = color.getOpacity();
-                            }
-                        }
-                    }
-                }
-
-                Color maxColor = new Color(maxR, maxG, maxB, maxA);
-                pixelWriter.setColor(x, y, maxColor);
-            }
-        }
+        return dilation(IntRaster.fromImage(image), structuringElement).toImage();
+    }
 
-        return outputImage;
+    public static IntRaster dilation(IntRaster image, boolean[][] structuringElement) {
+        return Morphology.dilate(image, structuringElement, executor);
     }
 
     public static WritableImage erosion(WritableImage image, boolean[][] structuringElement) {
-        int width = (int) image.getWidth();
-        int height = (int) image.getHeight();
-
-        WritableImage outputImage = new WritableImage(width, height);
-        PixelReader pixelReader = image.getPixelReader();
-        PixelWriter pixelWriter = outputImage.getPixelWriter();
-
-        int seWidth = structuringElement[0].length;
-        int seHeight = structuringElement.length;
-
-        int xOrigin = seWidth / 2;
-        int yOrigin = seHeight / 2;
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                double minR = 1.0;
-                double minG = 1.0;
-                double minB = 1.0;
-                double minA = 1.0;
-
-                for (int j = 0; j < seHeight; j++) {
-                    for (int i = 0; i < seWidth; i++) {
-                        if (structuringElement[j][i]) {
-                            int offsetX = i - xOrigin;
-                            int offsetY = j - yOrigin;
-
-                            int imageX = x + offsetX;
-                            int imageY = y + offsetY;
-
-                            if (imageX >= 0 && imageX < width && imageY >= 0 && imageY < height) {
-                                Color color = pixelReader.getColor(imageX, imageY);
-
-                                if (color.getRed() < minR) minR = color.getRed();
-                                if (color.getGreen() < minG) minG = color.getGreen();
-                                if (color.getBlue() < minB) minB = color.getBlue();
-                                if (color.getOpacity() < minA) minA = color.getOpacity();
-                            } else {
-                                // If any of the pixels are outside the image bounds,
-                                // according to morphological erosion, we consider the
-                                // background (which can be considered as maximum intensity).
-                                // Therefore, we can set min values to 0 to reflect erosion at the edges.
-                                minR = 0.0;
-                                minG = 0.0;
-                                minB = 0.0;
-                                minA = 0.0;
-                            }
-                        }
-                    }
-                }
-
-                Color minColor = new Color(minR, minG, minB, minA);
-                pixelWriter.setColor(x, y, minColor);
-            }
-        }
+        return erosion(IntRaster.fromImage(image), structuringElement).toImage();
+    }
 
-        return outputImage;
+    public static IntRaster erosion(IntRaster image, boolean[][] structuringElement) {
+        return Morphology.erode(image, structuringElement, executor);
     }
 
     public static WritableImage opening(WritableImage image, boolean[][] structuringElement) {
-        WritableImage eroded = erosion(image, structuringElement);
-        return dilation(eroded, structuringElement);
+        return opening(IntRaster.fromImage(image), structuringElement).toImage();
+    }
+
+    public static IntRaster opening(IntRaster image, boolean[][] structuringElement) {
+        return Morphology.open(image, structuringElement, executor);
     }
 
     public static WritableImage closing(WritableImage image, boolean[][] structuringElement) {
-        WritableImage dilated = dilation(image, structuringElement);
-        return erosion(dilated, structuringElement);
+        return closing(IntRaster.fromImage(image), structuringElement).toImage();
+    }
+
+    public static IntRaster closing(IntRaster image, boolean[][] structuringElement) {
+        return Morphology.close(image, structuringElement, executor);
     }
 
     public static WritableImage hitOrMiss(WritableImage image, boolean[][] hitMask, boolean[][] missMask) {
-        int width = (int) image.getWidth();
-        int height = (int) image.getHeight();
-
-        PixelReader reader = image.getPixelReader();
-        WritableImage result = new WritableImage(width, height);
-        PixelWriter writer = result.getPixelWriter();
-
-        int maskWidth = hitMask[0].length;
-        int maskHeight = hitMask.length;
-        int originX = maskWidth / 2;
-        int originY = maskHeight / 2;
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                boolean hit = true;
-                for (int my = 0; my < maskHeight; my++) {
-                    for (int mx = 0; mx < maskWidth; mx++) {
-                        int ix = x + mx - originX;
-                        int iy = y + my - originY;
-
-                        if (ix >= 0 && ix < width && iy >= 0 && iy < height) {
-                            Color color = reader.getColor(ix, iy);
-                            if (hitMask[my][mx] && !color.equals(Color.BLACK)) {
-                                hit = false;
-                                break;
-                            }
-                            if (missMask[my][mx] && !color.equals(Color.WHITE)) {
-                                hit = false;
-                                break;
-                            }
-                        } else {
-                            if (hitMask[my][mx] || missMask[my][mx]) {
-                                hit = false;
-                                break;
-                            }
-                        }
-                    }
-                    if (!hit) break;
-                }
-                writer.setColor(x, y, hit ? Color.BLACK : Color.WHITE);
-            }
-        }
+        return hitOrMiss(IntRaster.fromImage(image), hitMask, missMask).toImage();
+    }
 
-        return result;
+    public static IntRaster hitOrMiss(IntRaster image, boolean[][] hitMask, boolean[][] missMask) {
+        return Morphology.hitOrMiss(image, hitMask, missMask, executor);
     }
 
     public static double calculateColorPercentage(WritableImage image, Color targetColor, double tolerance) {
-        int width = (int) image.getWidth();
-        int height = (int) image.getHeight();
-        int totalPixels = width * height;
+        return calculateColorPercentage(IntRaster.fromImage(image), targetColor, tolerance);
+    }
+
+    public static double calculateColorPercentage(IntRaster image, Color targetColor, double tolerance) {
+        int[] src = image.getPixels();
+        int totalPixels = src.length;
         int matchingPixels = 0;
 
-        PixelReader reader = image.getPixelReader();
         double toleranceNormalized = tolerance / 100.0; // Normalize tolerance to [0,1]
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                Color color = reader.getColor(x, y);
-                if (isColorWithinTolerance(color, targetColor, toleranceNormalized)) {
-                    matchingPixels++;
-                }
+        for (int argb : src) {
+            if (isColorWithinTolerance(argb, targetColor, toleranceNormalized)) {
+                matchingPixels++;
             }
         }
 
@@ -833,120 +837,92 @@ public class ImageProcessor {
     }
 
     public static WritableImage detectLargestColorArea(WritableImage image, Color targetColor, double tolerance) {
-        int width = (int) image.getWidth();
-        int height = (int) image.getHeight();
+        return detectLargestColorArea(IntRaster.fromImage(image), targetColor, tolerance).toImage();
+    }
 
-        PixelReader reader = image.getPixelReader();
+    public static IntRaster detectLargestColorArea(IntRaster image, Color targetColor, double tolerance) {
+        return detectLargestColorArea(image, targetColor, tolerance, ConnectedComponents.Connectivity.FOUR);
+    }
 
-        // Create a binary mask where true represents pixels within the color range
-        boolean[][] colorMask = new boolean[height][width];
-        double toleranceNormalized = tolerance / 100.0; // Normalize tolerance to [0,1]
+    public static IntRaster detectLargestColorArea(IntRaster image, Color targetColor, double tolerance,
+                                                   ConnectedComponents.Connectivity connectivity) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] src = image.getPixels();
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                Color color = reader.getColor(x, y);
-                colorMask[y][x] = isColorWithinTolerance(color, targetColor, toleranceNormalized);
-            }
-        }
+        // Masking, labelling and highlighting
+        OperationMonitor.expectPasses(3);
+
+        // Label connected components of the pixels within the color range
+        ConnectedComponents components = ConnectedComponents.label(
+                colorMask(image, targetColor, tolerance), connectivity, executor);
+        ConnectedComponents.Component largest = components.getLargest();
+        int highlightLabel = largest == null ? -1 : largest.label();
+        int[] labels = components.getLabels();
 
-        // Label connected components
-        int[][] labels = new int[height][width];
-        int label = 1;
-        Map<Integer, Integer> labelSizes = new HashMap<>();
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                if (colorMask[y][x] && labels[y][x] == 0) {
-                    int size = floodFill(colorMask, labels, x, y, label);
-                    labelSizes.put(label, size);
-                    label++;
+        // Create an output image highlighting the largest area
+        IntRaster output = new IntRaster(width, height);
+        int[] dst = output.getPixels();
+
+        executor.forEachTile(width, height, (x0, y0, x1, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                for (int x = x0; x < x1; x++) {
+                    int index = y * width + x;
+                    if (labels[index] == highlightLabel) {
+                        // Highlight the largest area (e.g., overlay a semi-transparent red)
+                        dst[index] = blendColors(src[index], 1.0, 0.0, 0.0, 0.5);
+                    } else {
+                        // Copy original pixel
+                        dst[index] = src[index];
+                    }
                 }
             }
-        }
+        });
 
-        // Find the label with the largest size
-        int largestLabel = -1;
-        int maxSize = 0;
-        for (Map.Entry<Integer, Integer> entry : labelSizes.entrySet()) {
-            if (entry.getValue() > maxSize) {
-                maxSize = entry.getValue();
-                largestLabel = entry.getKey();
-            }
-        }
+        return output;
+    }
 
-        // Create an output image highlighting the largest area
-        WritableImage outputImage = new WritableImage(width, height);
-        PixelWriter writer = outputImage.getPixelWriter();
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                if (labels[y][x] == largestLabel) {
-                    // Highlight the largest area (e.g., overlay a semi-transparent color)
-                    Color originalColor = reader.getColor(x, y);
-                    Color highlightColor = Color.color(1.0, 0, 0, 0.5); // Semi-transparent red
-                    Color blendedColor = blendColors(originalColor, highlightColor);
-                    writer.setColor(x, y, blendedColor);
-                } else {
-                    // Copy original pixel
-                    writer.setColor(x, y, reader.getColor(x, y));
+    /**
+     * Sets the pixels whose color is within {@code tolerance} percent of the target color.
+     */
+    public static BinaryImage colorMask(IntRaster image, Color targetColor, double tolerance) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] src = image.getPixels();
+        BinaryImage mask = new BinaryImage(width, height);
+        double toleranceNormalized = tolerance / 100.0; // Normalize tolerance to [0,1]
+
+        // Row bands, so no two tasks write to the same word of the mask
+        executor.forEachRowBand(width, height, (x0, y0, x1, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (isColorWithinTolerance(src[y * width + x], targetColor, toleranceNormalized)) {
+                        mask.set(x, y, true);
+                    }
                 }
             }
-        }
+        });
 
-        return outputImage;
+        return mask;
     }
 
-    private static boolean isColorWithinTolerance(Color color, Color targetColor, double tolerance) {
-        double distance = colorDistance(color, targetColor);
+    private static boolean isColorWithinTolerance(int argb, Color targetColor, double tolerance) {
+        double distance = colorDistance(argb, targetColor);
         return distance <= tolerance;
     }
 
-    private static double colorDistance(Color c1, Color c2) {
+    private static double colorDistance(int argb, Color c2) {
         // Calculate Euclidean distance between two colors in RGB space
-        double dr = c1.getRed() - c2.getRed();
-        double dg = c1.getGreen() - c2.getGreen();
-        double db = c1.getBlue() - c2.getBlue();
+        double dr = red(argb) - c2.getRed();
+        double dg = green(argb) - c2.getGreen();
+        double db = blue(argb) - c2.getBlue();
         return Math.sqrt(dr * dr + dg * dg + db * db);
     }
 
-    private static Color blendColors(Color baseColor, Color blendColor) {
-        double alpha = blendColor.getOpacity();
-        double r = (1 - alpha) * baseColor.getRed() + alpha * blendColor.getRed();
-        double g = (1 - alpha) * baseColor.getGreen() + alpha * blendColor.getGreen();
-        double b = (1 - alpha) * baseColor.getBlue() + alpha * blendColor.getBlue();
-        return new Color(r, g, b, 1.0);
-    }
-
-    // Helper method for flood fill
-    private static int floodFill(boolean[][] mask, int[][] labels, int x, int y, int label) {
-        int width = mask[0].length;
-        int height = mask.length;
-        int size = 0;
-
-        Stack<Point> stack = new Stack<>();
-        stack.push(new Point(x, y));
-
-        while (!stack.isEmpty()) {
-            Point p = stack.pop();
-            int px = p.x;
-            int py = p.y;
-
-            if (px < 0 || px >= width || py < 0 || py >= height) {
-                continue;
-            }
-
-            if (mask[py][px] && labels[py][px] == 0) {
-                labels[py][px] = label;
-                size++;
-
-                // Add neighboring pixels to the stack
-                stack.push(new Point(px + 1, py));
-                stack.push(new Point(px - 1, py));
-                stack.push(new Point(px, py + 1));
-                stack.push(new Point(px, py - 1));
-            }
-        }
-
-        return size;
+    private static int blendColors(int baseArgb, double blendRed, double blendGreen, double blendBlue, double alpha) {
+        double r = (1 - alpha) * red(baseArgb) + alpha * blendRed;
+        double g = (1 - alpha) * green(baseArgb) + alpha * blendGreen;
+        double b = (1 - alpha) * blue(baseArgb) + alpha * blendBlue;
+        return rgb(r, g, b, 255);
     }
 }
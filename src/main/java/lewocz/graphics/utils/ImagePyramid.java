@@ -0,0 +1,71 @@
+package lewocz.graphics.utils;
+
+/**
+ * Building blocks of the multi-resolution pyramid of a {@link TiledImage}: level {@code k} has
+ * {@code 1 / 2^k} of the width and height of the image, and every pixel of it is the box-filtered average
+ * of the (up to) 2x2 pixels it covers in level {@code k - 1}.
+ */
+public final class ImagePyramid {
+
+    private ImagePyramid() {
+    }
+
+    /**
+     * Returns the coarsest level that still has at least one pixel per device pixel when the image is
+     * drawn at the given scale, clamped to {@code [0, levelCount - 1]}.
+     */
+    public static int levelForScale(double scale, int levelCount) {
+        if (!(scale > 0) || Double.isInfinite(scale)) {
+            return 0;
+        }
+        int level = (int) Math.floor(Math.log(1 / scale) / Math.log(2) + 1e-9);
+        return Math.max(0, Math.min(levelCount - 1, level));
+    }
+
+    /**
+     * Size of a dimension at the given level, rounded up so that every pixel is covered.
+     */
+    public static int levelSize(int size, int level) {
+        return (int) (((long) size + (1L << level) - 1) >> level);
+    }
+
+    /**
+     * Halves the raster with a 2x2 box filter. The last column and row average only the pixels that exist
+     * when the width or height is odd. Rows are processed in parallel when the executor is.
+     */
+    public static IntRaster halve(IntRaster source, TileExecutor executor) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int[] src = source.getPixels();
+        IntRaster result = new IntRaster(levelSize(width, 1), levelSize(height, 1));
+        int resultWidth = result.getWidth();
+        int[] dst = result.getPixels();
+
+        executor.forEachRowBand(resultWidth, result.getHeight(), (x0, y0, x1, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                int top = 2 * y * width;
+                int bottom = 2 * y + 1 < height ? top + width : top;
+                for (int x = 0; x < resultWidth; x++) {
+                    int left = 2 * x;
+                    int right = left + 1 < width ? left + 1 : left;
+                    dst[y * resultWidth + x] = average(src[top + left], src[top + right],
+                            src[bottom + left], src[bottom + right]);
+                }
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Rounded per-channel average of four pixels. Edge pixels repeat the pixels that exist, which gives
+     * them the same weight as a 1x2, 2x1 or 1x1 box.
+     */
+    private static int average(int a, int b, int c, int d) {
+        int alpha = (IntRaster.alpha(a) + IntRaster.alpha(b) + IntRaster.alpha(c) + IntRaster.alpha(d) + 2) >> 2;
+        int red = (IntRaster.red(a) + IntRaster.red(b) + IntRaster.red(c) + IntRaster.red(d) + 2) >> 2;
+        int green = (IntRaster.green(a) + IntRaster.green(b) + IntRaster.green(c) + IntRaster.green(d) + 2) >> 2;
+        int blue = (IntRaster.blue(a) + IntRaster.blue(b) + IntRaster.blue(c) + IntRaster.blue(d) + 2) >> 2;
+        return IntRaster.argb(alpha, red, green, blue);
+    }
+}
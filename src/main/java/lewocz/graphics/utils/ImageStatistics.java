@@ -0,0 +1,179 @@
+package lewocz.graphics.utils;
+
+/**
+ * Intensity and per-channel histograms of an image, computed in one pass. Intensity is
+ * {@link IntRaster#intensity(int)}, the 0-255 brightness used by the thresholding operations. Statistics of a
+ * {@link ShortRaster} have one bin per sample value up to its maximum value instead of 256.
+ * <p>
+ * Instances are immutable; the histogram getters return copies.
+ */
+public class ImageStatistics {
+
+    private final int pixelCount;
+    private final int[] intensity;
+    private final int[] red;
+    private final int[] green;
+    private final int[] blue;
+
+    ImageStatistics(int pixelCount, int[] intensity, int[] red, int[] green, int[] blue) {
+        this.pixelCount = pixelCount;
+        this.intensity = intensity;
+        this.red = red;
+        this.green = green;
+        this.blue = blue;
+    }
+
+    /**
+     * Computes the histograms with one partial histogram per row band, merged at the end.
+     */
+    public static ImageStatistics compute(IntRaster raster, TileExecutor executor) {
+        int width = raster.getWidth();
+        int height = raster.getHeight();
+        int[] pixels = raster.getPixels();
+        int[] intensity = new int[256];
+        int[] red = new int[256];
+        int[] green = new int[256];
+        int[] blue = new int[256];
+
+        executor.forEachRowBand(width, height, (x0, y0, x1, y1) -> {
+            int[] partialIntensity = new int[256];
+            int[] partialRed = new int[256];
+            int[] partialGreen = new int[256];
+            int[] partialBlue = new int[256];
+
+            for (int i = y0 * width; i < y1 * width; i++) {
+                int argb = pixels[i];
+                int r = IntRaster.red(argb);
+                int g = IntRaster.green(argb);
+                int b = IntRaster.blue(argb);
+                partialRed[r]++;
+                partialGreen[g]++;
+                partialBlue[b]++;
+                partialIntensity[Math.max(r, Math.max(g, b))]++;
+            }
+
+            synchronized (intensity) {
+                for (int level = 0; level < 256; level++) {
+                    intensity[level] += partialIntensity[level];
+                    red[level] += partialRed[level];
+                    green[level] += partialGreen[level];
+                    blue[level] += partialBlue[level];
+                }
+            }
+        });
+
+        return new ImageStatistics(pixels.length, intensity, red, green, blue);
+    }
+
+    /**
+     * Computes the histograms of a 16-bit raster with {@code maxValue + 1} bins. The color histograms of a
+     * gray raster equal its intensity histogram.
+     */
+    public static ImageStatistics compute(ShortRaster raster, TileExecutor executor) {
+        int width = raster.getWidth();
+        int height = raster.getHeight();
+        int channels = raster.getChannels();
+        char[] samples = raster.getSamples();
+        int levels = raster.getMaxValue() + 1;
+        int[] intensity = new int[levels];
+        int[] red = channels == 3 ? new int[levels] : intensity;
+        int[] green = channels == 3 ? new int[levels] : intensity;
+        int[] blue = channels == 3 ? new int[levels] : intensity;
+
+        // Bins can be large, so there is one slice per processor instead of one per row band
+        int slices = Math.max(1, Math.min(height, Runtime.getRuntime().availableProcessors()));
+        executor.forEachIndex(slices, slice -> {
+            int from = (int) ((long) height * slice / slices) * width;
+            int to = (int) ((long) height * (slice + 1) / slices) * width;
+            int[] partialIntensity = new int[levels];
+            int[] partialRed = channels == 3 ? new int[levels] : null;
+            int[] partialGreen = channels == 3 ? new int[levels] : null;
+            int[] partialBlue = channels == 3 ? new int[levels] : null;
+
+            for (int i = from; i < to; i++) {
+                if (channels == 1) {
+                    partialIntensity[samples[i]]++;
+                } else {
+                    int r = samples[3 * i];
+                    int g = samples[3 * i + 1];
+                    int b = samples[3 * i + 2];
+                    partialRed[r]++;
+                    partialGreen[g]++;
+                    partialBlue[b]++;
+                    partialIntensity[Math.max(r, Math.max(g, b))]++;
+                }
+            }
+
+            synchronized (intensity) {
+                for (int level = 0; level < levels; level++) {
+                    intensity[level] += partialIntensity[level];
+                    if (channels == 3) {
+                        red[level] += partialRed[level];
+                        green[level] += partialGreen[level];
+                        blue[level] += partialBlue[level];
+                    }
+                }
+            }
+        });
+
+        return new ImageStatistics(width * height, intensity, red, green, blue);
+    }
+
+    public int getPixelCount() {
+        return pixelCount;
+    }
+
+    public int[] getIntensityHistogram() {
+        return intensity.clone();
+    }
+
+    public int[] getRedHistogram() {
+        return red.clone();
+    }
+
+    public int[] getGreenHistogram() {
+        return green.clone();
+    }
+
+    public int[] getBlueHistogram() {
+        return blue.clone();
+    }
+
+    /**
+     * Number of histogram bins: 256 for 8-bit images, the maximum value plus one for 16-bit rasters.
+     */
+    public int getLevels() {
+        return intensity.length;
+    }
+
+    /**
+     * Number of pixels with the given intensity.
+     */
+    public int getIntensityCount(int level) {
+        return intensity[level];
+    }
+
+    /**
+     * Lowest intensity present in the image, or the highest level for an empty image.
+     */
+    public int getMinIntensity() {
+        for (int level = 0; level < intensity.length; level++) {
+            if (intensity[level] > 0) {
+                return level;
+            }
+        }
+        return intensity.length - 1;
+    }
+
+    /**
+     * Highest intensity present in the image, or {@code 0} for an empty image.
+     */
+    public int getMaxIntensity() {
+        for (int level = intensity.length - 1; level >= 0; level--) {
+            if (intensity[level] > 0) {
+                return level;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,150 @@
+package lewocz.graphics.utils;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.image.WritablePixelFormat;
+
+import java.nio.IntBuffer;
+
+/**
+ * Packed ARGB raster backed by a single {@code int[]}, one int per pixel in row-major order.
+ * Pixels are moved in and out of JavaFX images in bulk so that processing code can work on
+ * primitive values instead of allocating a {@code Color} per pixel.
+ */
+public class IntRaster {
+
+    private static final WritablePixelFormat<IntBuffer> FORMAT = PixelFormat.getIntArgbInstance();
+
+    /**
+     * Normalized value of every 8-bit channel level, stored as float exactly like {@code Color} does,
+     * so arithmetic on these values matches the results of the {@code Color} based code path.
+     */
+    private static final float[] NORMALIZED = new float[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            NORMALIZED[i] = (float) (i / 255.0);
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    public IntRaster(int width, int height) {
+        this(width, height, new int[width * height]);
+    }
+
+    public IntRaster(int width, int height, int[] pixels) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Raster dimensions cannot be negative.");
+        }
+        if (pixels.length != width * height) {
+            throw new IllegalArgumentException("Pixel buffer length " + pixels.length +
+                    " does not match raster size " + width + "x" + height + ".");
+        }
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    /**
+     * Copies all pixels of the given image into a new raster with a single bulk read.
+     */
+    public static IntRaster fromImage(Image image) {
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        IntRaster raster = new IntRaster(width, height);
+        image.getPixelReader().getPixels(0, 0, width, height, FORMAT, raster.pixels, 0, width);
+        return raster;
+    }
+
+    /**
+     * Creates a new image containing the pixels of this raster.
+     */
+    public WritableImage toImage() {
+        WritableImage image = new WritableImage(width, height);
+        writeTo(image);
+        return image;
+    }
+
+    /**
+     * Copies all pixels of this raster into the top-left corner of the given image with a single bulk write.
+     */
+    public void writeTo(WritableImage image) {
+        image.getPixelWriter().setPixels(0, 0, width, height, FORMAT, pixels, 0, width);
+    }
+
+    public IntRaster copy() {
+        return new IntRaster(width, height, pixels.clone());
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the backing buffer. Changes to the array are visible in the raster.
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public int getArgb(int x, int y) {
+        return pixels[y * width + x];
+    }
+
+    public void setArgb(int x, int y, int argb) {
+        pixels[y * width + x] = argb;
+    }
+
+    // Channel helpers
+
+    public static int alpha(int argb) {
+        return argb >>> 24;
+    }
+
+    public static int red(int argb) {
+        return (argb >> 16) & 0xFF;
+    }
+
+    public static int green(int argb) {
+        return (argb >> 8) & 0xFF;
+    }
+
+    public static int blue(int argb) {
+        return argb & 0xFF;
+    }
+
+    public static int argb(int alpha, int red, int green, int blue) {
+        return (alpha << 24) | (red << 16) | (green << 8) | blue;
+    }
+
+    /**
+     * Returns the channel level as a value in [0.0, 1.0], equal to what {@code Color.getRed()} and
+     * friends would return for the same pixel.
+     */
+    public static double normalized(int level) {
+        return NORMALIZED[level];
+    }
+
+    /**
+     * Converts a value in [0.0, 1.0] to an 8-bit channel level, rounding the same way as
+     * {@code new Color(...)} followed by {@code PixelWriter.setColor}.
+     */
+    public static int toLevel(double value) {
+        return (int) Math.round((float) value * 255.0);
+    }
+
+    /**
+     * Returns the HSB brightness of the pixel scaled to 0..255, i.e. {@code (int) (getBrightness() * 255)}.
+     */
+    public static int intensity(int argb) {
+        return Math.max(red(argb), Math.max(green(argb), blue(argb)));
+    }
+}
@@ -0,0 +1,141 @@
+package lewocz.graphics.utils;
+
+/**
+ * Summed-area tables of a single 8-bit plane and of its squares. After one pass over the image the sum,
+ * mean and variance over any axis-aligned rectangle cost four table lookups, independent of the
+ * rectangle size, which makes it the basis for local statistics filters.
+ * <p>
+ * Sums are kept in {@code long}, so the tables are exact for any image that fits in memory. Rectangles are
+ * half-open ({@code [x0, x1) x [y0, y1)}) and are clipped to the image.
+ */
+public class IntegralImage {
+
+    private final int width;
+    private final int height;
+    /** Row stride of the tables, which have an extra leading row and column of zeros. */
+    private final int stride;
+    private final long[] sum;
+    private final long[] sumOfSquares;
+
+    private IntegralImage(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.stride = width + 1;
+        this.sum = new long[(width + 1) * (height + 1)];
+        this.sumOfSquares = new long[(width + 1) * (height + 1)];
+    }
+
+    /**
+     * Builds the tables over {@link IntRaster#intensity(int)}, the 0-255 brightness used by the thresholding
+     * operations.
+     */
+    public static IntegralImage ofIntensity(IntRaster raster, TileExecutor executor) {
+        int[] pixels = raster.getPixels();
+        int[] levels = new int[pixels.length];
+        OperationMonitor.expectPasses(3);
+        executor.forEachRowBand(raster.getWidth(), raster.getHeight(), (x0, y0, x1, y1) -> {
+            for (int i = y0 * raster.getWidth(); i < y1 * raster.getWidth(); i++) {
+                levels[i] = IntRaster.intensity(pixels[i]);
+            }
+        });
+        return of(levels, raster.getWidth(), raster.getHeight(), executor);
+    }
+
+    /**
+     * Builds the tables over a row-major plane of non-negative values.
+     */
+    public static IntegralImage of(int[] values, int width, int height, TileExecutor executor) {
+        IntegralImage integral = new IntegralImage(width, height);
+        long[] sum = integral.sum;
+        long[] sumOfSquares = integral.sumOfSquares;
+        int stride = integral.stride;
+
+        // Prefix sums along each row, then down each column
+        OperationMonitor.expectPasses(2);
+        executor.forEachRowBand(width, height, (x0, y0, x1, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                long rowSum = 0;
+                long rowSumOfSquares = 0;
+                int offset = (y + 1) * stride + 1;
+                for (int x = 0; x < width; x++) {
+                    long value = values[y * width + x];
+                    rowSum += value;
+                    rowSumOfSquares += value * value;
+                    sum[offset + x] = rowSum;
+                    sumOfSquares[offset + x] = rowSumOfSquares;
+                }
+            }
+        });
+
+        // Tiles of a one pixel high image are column strips
+        executor.forEachTile(width, 1, (x0, y0, x1, y1) -> {
+            for (int y = 2; y <= height; y++) {
+                int offset = y * stride + 1;
+                for (int x = x0; x < x1; x++) {
+                    sum[offset + x] += sum[offset - stride + x];
+                    sumOfSquares[offset + x] += sumOfSquares[offset - stride + x];
+                }
+            }
+        });
+
+        return integral;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Number of pixels of the rectangle that lie inside the image.
+     */
+    public int count(int x0, int y0, int x1, int y1) {
+        int columns = Math.min(x1, width) - Math.max(x0, 0);
+        int rows = Math.min(y1, height) - Math.max(y0, 0);
+        return columns <= 0 || rows <= 0 ? 0 : columns * rows;
+    }
+
+    public long sum(int x0, int y0, int x1, int y1) {
+        return lookup(sum, x0, y0, x1, y1);
+    }
+
+    public long sumOfSquares(int x0, int y0, int x1, int y1) {
+        return lookup(sumOfSquares, x0, y0, x1, y1);
+    }
+
+    /**
+     * Mean of the rectangle, or {@code 0} if it lies entirely outside the image.
+     */
+    public double mean(int x0, int y0, int x1, int y1) {
+        int count = count(x0, y0, x1, y1);
+        return count == 0 ? 0.0 : (double) sum(x0, y0, x1, y1) / count;
+    }
+
+    /**
+     * Population variance of the rectangle, or {@code 0} if it lies entirely outside the image. Computed from
+     * {@code count * sumOfSquares - sum * sum} in integer arithmetic, so it is never negative.
+     */
+    public double variance(int x0, int y0, int x1, int y1) {
+        int count = count(x0, y0, x1, y1);
+        if (count == 0) {
+            return 0.0;
+        }
+        long s = sum(x0, y0, x1, y1);
+        long numerator = count * sumOfSquares(x0, y0, x1, y1) - s * s;
+        return (double) numerator / ((double) count * count);
+    }
+
+    private long lookup(long[] table, int x0, int y0, int x1, int y1) {
+        x0 = Math.max(x0, 0);
+        y0 = Math.max(y0, 0);
+        x1 = Math.min(x1, width);
+        y1 = Math.min(y1, height);
+        if (x1 <= x0 || y1 <= y0) {
+            return 0;
+        }
+        return table[y1 * stride + x1] - table[y0 * stride + x1] - table[y1 * stride + x0] + table[y0 * stride + x0];
+    }
+}
@@ -0,0 +1,220 @@
+package lewocz.graphics.utils;
+
+import lewocz.graphics.exception.InvalidFormatException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Decodes binary PNM rasters (P4, P5 and P6) from a memory-mapped file straight into an {@link IntRaster}.
+ * <p>
+ * The pixel data is split into chunks of whole rows that are mapped and decoded independently, in
+ * parallel when the executor is. Each chunk is at most {@link #CHUNK_BYTES} long, so files larger than
+ * a single mapping can be read, and samples are read from the mapping without copying them into
+ * intermediate row buffers. Samples are converted to 8-bit levels through a lookup table that rounds
+ * exactly like {@code new Color(sample / maxColorValue, ...)} written with {@code PixelWriter.setColor}.
+ */
+public class MappedPNMReader {
+
+    static final int CHUNK_BYTES = 8 << 20;
+
+    private static final int BLACK = 0xFF000000;
+    private static final int WHITE = 0xFFFFFFFF;
+
+    public static IntRaster read(FileChannel channel, PNMHeader header, TileExecutor executor) throws IOException {
+        int width = header.width();
+        IntRaster raster = new IntRaster(width, header.height());
+        int[] pixels = raster.getPixels();
+        int[] levels = header.magicNumber().equals("P4") ? null : levelTable(header.maxColorValue(), header.bytesPerSample());
+
+        forEachChunk(channel, header, executor, (data, y0, y1) ->
+                decode(header, levels, data, pixels, y0 * width, y0, y1));
+
+        return raster;
+    }
+
+    /**
+     * Reads the samples of a P5 or P6 file without reducing them to 8 bits.
+     */
+    public static ShortRaster readSamples(FileChannel channel, PNMHeader header, TileExecutor executor)
+            throws IOException {
+        int channels = switch (header.magicNumber()) {
+            case "P5" -> 1;
+            case "P6" -> 3;
+            default -> throw new IllegalArgumentException("Only PGM and PPM data has samples: " + header.magicNumber());
+        };
+        int width = header.width();
+        int maxColorValue = header.maxColorValue();
+        int bytesPerSample = header.bytesPerSample();
+        ShortRaster raster = new ShortRaster(width, header.height(), channels, maxColorValue);
+        char[] samples = raster.getSamples();
+
+        forEachChunk(channel, header, executor, (data, y0, y1) -> {
+            int offset = y0 * width * channels;
+            int count = (y1 - y0) * width * channels;
+            for (int i = 0; i < count; i++) {
+                int sample = sample(data, i * bytesPerSample, bytesPerSample);
+                if (sample > maxColorValue) {
+                    int pixel = (offset + i) / channels;
+                    throw outOfBounds(channels == 1 ? "gray" : "color", pixel % width, pixel / width, maxColorValue);
+                }
+                samples[offset + i] = (char) sample;
+            }
+        });
+
+        return raster;
+    }
+
+    @FunctionalInterface
+    private interface ChunkDecoder {
+        /**
+         * Decodes rows {@code [y0, y1)}, which start at index 0 of {@code data}.
+         */
+        void decode(ByteBuffer data, int y0, int y1) throws IOException;
+    }
+
+    /**
+     * Maps the pixel data in chunks of whole rows and decodes the chunks on the executor.
+     */
+    private static void forEachChunk(FileChannel channel, PNMHeader header, TileExecutor executor,
+                                     ChunkDecoder decoder) throws IOException {
+        if (!header.isBinary()) {
+            throw new IllegalArgumentException("Only binary PNM data can be mapped: " + header.magicNumber());
+        }
+
+        int height = header.height();
+        long rowBytes = header.rowBytes();
+        checkLength(channel, header);
+
+        int rowsPerChunk = (int) Math.max(1, Math.min(height, CHUNK_BYTES / rowBytes));
+        int chunks = (height + rowsPerChunk - 1) / rowsPerChunk;
+
+        try {
+            executor.forEachIndex(chunks, chunk -> {
+                int y0 = chunk * rowsPerChunk;
+                int y1 = Math.min(y0 + rowsPerChunk, height);
+                try {
+                    MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY,
+                            header.dataOffset() + y0 * rowBytes, (y1 - y0) * rowBytes);
+                    decoder.decode(data, y0, y1);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Checks that the file holds the pixel data of every row.
+     */
+    static void checkLength(FileChannel channel, PNMHeader header) throws IOException {
+        long availableRows = (channel.size() - header.dataOffset()) / header.rowBytes();
+        if (availableRows < header.height()) {
+            throw new IOException("Unexpected end of file when reading pixel data at row " + availableRows + ".");
+        }
+    }
+
+    /**
+     * Maps every sample value to its 8-bit level, and values above the maximum (and any other value the
+     * sample width can hold) to {@code -1}.
+     */
+    static int[] levelTable(int maxColorValue, int bytesPerSample) {
+        int[] levels = new int[bytesPerSample == 1 ? 256 : 65536];
+        for (int sample = 0; sample < levels.length; sample++) {
+            levels[sample] = sample <= maxColorValue ? IntRaster.toLevel(sample / (double) maxColorValue) : -1;
+        }
+        return levels;
+    }
+
+    /**
+     * Decodes rows {@code [y0, y1)} of binary pixel data, which start at index 0 of {@code data}, into
+     * {@code pixels} starting at {@code pixelOffset}.
+     *
+     * @param levels The table from {@link #levelTable(int, int)}, unused for bitmaps.
+     */
+    static void decode(PNMHeader header, int[] levels, ByteBuffer data, int[] pixels, int pixelOffset,
+                       int y0, int y1) throws InvalidFormatException {
+        decode(header, levels, data, pixels, pixelOffset, 0, header.width(), y0, y1);
+    }
+
+    /**
+     * Decodes columns {@code [x0, x1)} of rows {@code [y0, y1)}, whose complete rows start at index 0 of
+     * {@code data}, into {@code pixels} starting at {@code pixelOffset} with {@code x1 - x0} pixels per row.
+     * Only the bytes of the requested columns are read.
+     */
+    static void decode(PNMHeader header, int[] levels, ByteBuffer data, int[] pixels, int pixelOffset,
+                       int x0, int x1, int y0, int y1) throws InvalidFormatException {
+        int rowBytes = (int) header.rowBytes();
+        switch (header.magicNumber()) {
+            case "P4" -> decodeBitmap(data, pixels, pixelOffset, x0, x1, y0, y1, rowBytes);
+            case "P5" -> decodeGray(data, pixels, pixelOffset, x0, x1, y0, y1, rowBytes, levels, header);
+            case "P6" -> decodeColor(data, pixels, pixelOffset, x0, x1, y0, y1, rowBytes, levels, header);
+            default -> throw new IllegalArgumentException("Not a binary PNM format: " + header.magicNumber());
+        }
+    }
+
+    private static void decodeBitmap(ByteBuffer data, int[] pixels, int pixelOffset, int x0, int x1, int y0, int y1,
+                                     int rowBytes) {
+        int width = x1 - x0;
+        for (int y = y0; y < y1; y++) {
+            int row = (y - y0) * rowBytes;
+            int offset = pixelOffset + (y - y0) * width - x0;
+            for (int x = x0; x < x1; x++) {
+                int bit = (data.get(row + (x >>> 3)) >> (7 - (x & 7))) & 1;
+                pixels[offset + x] = bit == 0 ? WHITE : BLACK;
+            }
+        }
+    }
+
+    private static void decodeGray(ByteBuffer data, int[] pixels, int pixelOffset, int x0, int x1, int y0, int y1,
+                                   int rowBytes, int[] levels, PNMHeader header) throws InvalidFormatException {
+        int bytesPerSample = header.bytesPerSample();
+        int width = x1 - x0;
+        for (int y = y0; y < y1; y++) {
+            int index = (y - y0) * rowBytes + x0 * bytesPerSample;
+            int offset = pixelOffset + (y - y0) * width - x0;
+            for (int x = x0; x < x1; x++) {
+                int gray = levels[sample(data, index, bytesPerSample)];
+                index += bytesPerSample;
+                if (gray < 0) {
+                    throw outOfBounds("gray", x, y, header.maxColorValue());
+                }
+                pixels[offset + x] = IntRaster.argb(255, gray, gray, gray);
+            }
+        }
+    }
+
+    private static void decodeColor(ByteBuffer data, int[] pixels, int pixelOffset, int x0, int x1, int y0, int y1,
+                                    int rowBytes, int[] levels, PNMHeader header) throws InvalidFormatException {
+        int bytesPerSample = header.bytesPerSample();
+        int width = x1 - x0;
+        for (int y = y0; y < y1; y++) {
+            int index = (y - y0) * rowBytes + 3 * x0 * bytesPerSample;
+            int offset = pixelOffset + (y - y0) * width - x0;
+            for (int x = x0; x < x1; x++) {
+                int red = levels[sample(data, index, bytesPerSample)];
+                int green = levels[sample(data, index + bytesPerSample, bytesPerSample)];
+                int blue = levels[sample(data, index + 2 * bytesPerSample, bytesPerSample)];
+                index += 3 * bytesPerSample;
+                if ((red | green | blue) < 0) {
+                    throw outOfBounds("color", x, y, header.maxColorValue());
+                }
+                pixels[offset + x] = IntRaster.argb(255, red, green, blue);
+            }
+        }
+    }
+
+    private static int sample(ByteBuffer data, int index, int bytesPerSample) {
+        return bytesPerSample == 1 ? data.get(index) & 0xFF : data.getShort(index) & 0xFFFF;
+    }
+
+    private static InvalidFormatException outOfBounds(String componentName, int x, int y, int maxColorValue) {
+        return new InvalidFormatException(componentName + " value out of bounds at pixel (" + x + ", " + y +
+                "). Expected range: 0 to " + maxColorValue + ".");
+    }
+}
@@ -0,0 +1,62 @@
+package lewocz.graphics.utils;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Tile source over the pixel data of a binary PNM file (P4, P5 or P6). Every region maps just the rows it
+ * covers and decodes only the bytes of its columns, so opening the file costs no more than reading the
+ * header, and memory use depends on the regions requested rather than on the image size.
+ */
+final class MappedPNMTileSource implements TileSource {
+
+    private final FileChannel channel;
+    private final PNMHeader header;
+    private final int[] levels;
+
+    /**
+     * Takes ownership of the channel, which is closed with this source.
+     */
+    MappedPNMTileSource(FileChannel channel, PNMHeader header) throws IOException {
+        MappedPNMReader.checkLength(channel, header);
+        this.channel = channel;
+        this.header = header;
+        this.levels = header.magicNumber().equals("P4") ? null
+                : MappedPNMReader.levelTable(header.maxColorValue(), header.bytesPerSample());
+    }
+
+    @Override
+    public int getWidth() {
+        return header.width();
+    }
+
+    @Override
+    public int getHeight() {
+        return header.height();
+    }
+
+    @Override
+    public IntRaster readRegion(int x, int y, int width, int height) throws IOException {
+        long rowBytes = header.rowBytes();
+        if (height * rowBytes > Integer.MAX_VALUE) {
+            throw new IOException("Region of " + height + " rows is too large to map.");
+        }
+        MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY,
+                header.dataOffset() + y * rowBytes, height * rowBytes);
+
+        IntRaster region = new IntRaster(width, height);
+        MappedPNMReader.decode(header, levels, data, region.getPixels(), 0, x, x + width, y, y + height);
+        return region;
+    }
+
+    @Override
+    public IntRaster readAll() throws IOException {
+        return MappedPNMReader.read(channel, header, ImageProcessor.getExecutor());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,484 @@
+package lewocz.graphics.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Gray-level dilation and erosion with flat structuring elements, computed per ARGB channel.
+ * <p>
+ * A structuring element is split into horizontal runs of set cells, one or more per row. The max (or min)
+ * over a run of length {@code L} is a 1D sliding window, which the van Herk/Gil-Werman algorithm computes
+ * with about three comparisons per pixel regardless of {@code L}. A rectangle (which includes horizontal
+ * and vertical lines) is a row pass followed by a column pass; any other shape is the max (or min) over
+ * its runs, so its cost grows with the number of rows instead of the number of cells.
+ * <p>
+ * Pixels outside the image read as {@code 0} in every channel. For dilation this is the same as ignoring
+ * them; for erosion it makes any window that leaves the image erode to {@code 0}, both as in the original
+ * per-cell loops of {@link ImageProcessor}.
+ * <p>
+ * Rasters that only hold opaque black, opaque white and {@code 0} (the value erosion leaves at the border)
+ * are processed as two {@link BinaryImage} planes, "opaque" and "white". On such pixels the per-channel
+ * max and min are a bitwise OR and AND of the planes, which handle 64 pixels per operation.
+ */
+public class Morphology {
+
+    private static final int BLACK = 0xFF000000;
+    private static final int WHITE = 0xFFFFFFFF;
+
+    /**
+     * @return {@code max} of {@code src(x - i + xOrigin, y - j + yOrigin)} over the set cells {@code (i, j)}.
+     */
+    public static IntRaster dilate(IntRaster input, boolean[][] structuringElement, TileExecutor executor) {
+        BinaryImage[] planes = toPlanes(input);
+        if (planes != null) {
+            OperationMonitor.expectPasses(planes.length);
+            return fromPlanes(apply(planes, structuringElement, true, executor));
+        }
+        Runs runs = Runs.of(structuringElement, true);
+        OperationMonitor.expectPasses(passes(runs));
+        return apply(input, runs, true, executor);
+    }
+
+    /**
+     * @return {@code min} of {@code src(x + i - xOrigin, y + j - yOrigin)} over the set cells {@code (i, j)}.
+     */
+    public static IntRaster erode(IntRaster input, boolean[][] structuringElement, TileExecutor executor) {
+        BinaryImage[] planes = toPlanes(input);
+        if (planes != null) {
+            OperationMonitor.expectPasses(planes.length);
+            return fromPlanes(apply(planes, structuringElement, false, executor));
+        }
+        Runs runs = Runs.of(structuringElement, false);
+        OperationMonitor.expectPasses(passes(runs));
+        return apply(input, runs, false, executor);
+    }
+
+    /**
+     * Erosion followed by dilation. The intermediate result stays a packed raster (or packed bit planes),
+     * no image is created between the two passes.
+     */
+    public static IntRaster open(IntRaster input, boolean[][] structuringElement, TileExecutor executor) {
+        BinaryImage[] planes = toPlanes(input);
+        if (planes != null) {
+            OperationMonitor.expectPasses(2 * planes.length);
+            BinaryImage[] eroded = apply(planes, structuringElement, false, executor);
+            return fromPlanes(apply(eroded, structuringElement, true, executor));
+        }
+        Runs erosion = Runs.of(structuringElement, false);
+        Runs dilation = Runs.of(structuringElement, true);
+        OperationMonitor.expectPasses(passes(erosion) + passes(dilation));
+        IntRaster eroded = apply(input, erosion, false, executor);
+        return apply(eroded, dilation, true, executor);
+    }
+
+    /**
+     * Dilation followed by erosion.
+     */
+    public static IntRaster close(IntRaster input, boolean[][] structuringElement, TileExecutor executor) {
+        BinaryImage[] planes = toPlanes(input);
+        if (planes != null) {
+            OperationMonitor.expectPasses(2 * planes.length);
+            BinaryImage[] dilated = apply(planes, structuringElement, true, executor);
+            return fromPlanes(apply(dilated, structuringElement, false, executor));
+        }
+        Runs dilation = Runs.of(structuringElement, true);
+        Runs erosion = Runs.of(structuringElement, false);
+        OperationMonitor.expectPasses(passes(dilation) + passes(erosion));
+        IntRaster dilated = apply(input, dilation, true, executor);
+        return apply(dilated, erosion, false, executor);
+    }
+
+    /**
+     * Marks the pixels where every hit cell lies on an opaque black pixel and every miss cell on an opaque
+     * white pixel, with cells outside the image never matching. Matches are black, everything else white.
+     */
+    public static IntRaster hitOrMiss(IntRaster input, boolean[][] hitMask, boolean[][] missMask,
+                                      TileExecutor executor) {
+        BinaryImage black = BinaryImage.of(input, BLACK);
+        BinaryImage white = BinaryImage.of(input, WHITE);
+
+        int maskWidth = hitMask[0].length;
+        int maskHeight = hitMask.length;
+        int originX = maskWidth / 2;
+        int originY = maskHeight / 2;
+
+        List<BinaryImage> planes = new ArrayList<>();
+        List<int[]> offsets = new ArrayList<>();
+        for (int my = 0; my < maskHeight; my++) {
+            for (int mx = 0; mx < maskWidth; mx++) {
+                if (hitMask[my][mx]) {
+                    planes.add(black);
+                    offsets.add(new int[] { mx - originX, my - originY });
+                }
+                if (missMask[my][mx]) {
+                    planes.add(white);
+                    offsets.add(new int[] { mx - originX, my - originY });
+                }
+            }
+        }
+
+        BinaryImage matches = combine(planes, offsets, true, input.getWidth(), input.getHeight(), executor);
+        return matches.toRaster(BLACK, WHITE);
+    }
+
+    private static IntRaster apply(IntRaster input, Runs runs, boolean max, TileExecutor executor) {
+        int width = input.getWidth();
+        int height = input.getHeight();
+        IntRaster output = new IntRaster(width, height);
+
+        if (runs.count() == 0) {
+            // Nothing to combine, every pixel keeps the identity of the operation
+            Arrays.fill(output.getPixels(), max ? 0 : 0xFFFFFFFF);
+        } else if (runs.isRectangle()) {
+            applyRectangle(input.getPixels(), output.getPixels(), width, height, runs, max, executor);
+        } else {
+            applyRuns(input.getPixels(), output.getPixels(), width, height, runs, max, executor);
+        }
+
+        return output;
+    }
+
+    /**
+     * Number of passes {@link #apply(IntRaster, Runs, boolean, TileExecutor)} makes over the image.
+     */
+    private static int passes(Runs runs) {
+        if (runs.count() == 0) {
+            return 0;
+        }
+        if (!runs.isRectangle()) {
+            return 1;
+        }
+        boolean rowPass = runs.length[0] != 1 || runs.dx[0] != 0;
+        boolean columnPass = runs.count() != 1 || runs.dy[0] != 0;
+        return (rowPass ? 1 : 0) + (columnPass ? 1 : 0);
+    }
+
+    /**
+     * Row pass over the run length, then column pass over the number of rows.
+     */
+    private static void applyRectangle(int[] src, int[] dst, int width, int height, Runs runs, boolean max,
+                                       TileExecutor executor) {
+        int dx = runs.dx[0];
+        int length = runs.length[0];
+        int dy = runs.dy[0];
+        int rows = runs.count();
+
+        int[] rowPass;
+        if (length == 1 && dx == 0) {
+            rowPass = src;
+        } else {
+            int[] horizontal = new int[width * height];
+            executor.forEachRowBand(width, height, (x0, y0, x1, y1) -> {
+                Line line = new Line(width + length - 1);
+                for (int y = y0; y < y1; y++) {
+                    line.slide(src, y * width, 1, width, dx, width, length, max, horizontal, y * width, 1);
+                }
+            });
+            rowPass = horizontal;
+        }
+
+        if (rows == 1 && dy == 0) {
+            System.arraycopy(rowPass, 0, dst, 0, width * height);
+            return;
+        }
+
+        // Tiles of a one pixel high image are column strips
+        executor.forEachTile(width, 1, (x0, y0, x1, y1) -> {
+            Line line = new Line(height + rows - 1);
+            for (int x = x0; x < x1; x++) {
+                line.slide(rowPass, x, width, height, dy, height, rows, max, dst, x, width);
+            }
+        });
+    }
+
+    /**
+     * Combines the sliding window of every run, one output row at a time.
+     */
+    private static void applyRuns(int[] src, int[] dst, int width, int height, Runs runs, boolean max,
+                                  TileExecutor executor) {
+        int maxLength = 0;
+        for (int i = 0; i < runs.count(); i++) {
+            maxLength = Math.max(maxLength, runs.length[i]);
+        }
+        int lineLength = width + maxLength - 1;
+
+        executor.forEachRowBand(width, height, (x0, y0, x1, y1) -> {
+            Line line = new Line(lineLength);
+            int[] window = new int[width];
+
+            for (int y = y0; y < y1; y++) {
+                int row = y * width;
+                Arrays.fill(dst, row, row + width, max ? 0 : 0xFFFFFFFF);
+
+                for (int i = 0; i < runs.count(); i++) {
+                    int sourceY = y + runs.dy[i];
+                    if (sourceY < 0 || sourceY >= height) {
+                        if (!max) {
+                            // The whole run reads zeros
+                            Arrays.fill(dst, row, row + width, 0);
+                        }
+                        continue;
+                    }
+
+                    line.slide(src, sourceY * width, 1, width, runs.dx[i], width, runs.length[i], max, window, 0, 1);
+                    for (int x = 0; x < width; x++) {
+                        dst[row + x] = combine(dst[row + x], window[x], max);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Splits a raster of opaque black, opaque white and {@code 0} pixels into "opaque" and "white" planes, or
+     * returns {@code null} if it holds any other value.
+     */
+    private static BinaryImage[] toPlanes(IntRaster raster) {
+        int width = raster.getWidth();
+        int height = raster.getHeight();
+        int[] pixels = raster.getPixels();
+        BinaryImage opaque = new BinaryImage(width, height);
+        BinaryImage white = new BinaryImage(width, height);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int argb = pixels[y * width + x];
+                if (argb == WHITE) {
+                    opaque.set(x, y, true);
+                    white.set(x, y, true);
+                } else if (argb == BLACK) {
+                    opaque.set(x, y, true);
+                } else if (argb != 0) {
+                    return null;
+                }
+            }
+        }
+
+        return new BinaryImage[] { opaque, white };
+    }
+
+    private static IntRaster fromPlanes(BinaryImage[] planes) {
+        BinaryImage opaque = planes[0];
+        BinaryImage white = planes[1];
+        int width = opaque.getWidth();
+        int height = opaque.getHeight();
+        IntRaster raster = new IntRaster(width, height);
+        int[] pixels = raster.getPixels();
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // White implies opaque, both OR and AND preserve that
+                pixels[y * width + x] = white.get(x, y) ? WHITE : opaque.get(x, y) ? BLACK : 0;
+            }
+        }
+
+        return raster;
+    }
+
+    /**
+     * Dilation (OR over the reflected cells) or erosion (AND over the cells) of both planes.
+     */
+    private static BinaryImage[] apply(BinaryImage[] planes, boolean[][] structuringElement, boolean dilate,
+                                       TileExecutor executor) {
+        int seHeight = structuringElement.length;
+        int seWidth = structuringElement[0].length;
+        int xOrigin = seWidth / 2;
+        int yOrigin = seHeight / 2;
+
+        List<int[]> offsets = new ArrayList<>();
+        for (int j = 0; j < seHeight; j++) {
+            for (int i = 0; i < seWidth; i++) {
+                if (structuringElement[j][i]) {
+                    int dx = i - xOrigin;
+                    int dy = j - yOrigin;
+                    offsets.add(dilate ? new int[] { -dx, -dy } : new int[] { dx, dy });
+                }
+            }
+        }
+
+        BinaryImage[] result = new BinaryImage[planes.length];
+        for (int p = 0; p < planes.length; p++) {
+            List<BinaryImage> terms = Collections.nCopies(offsets.size(), planes[p]);
+            result[p] = combine(terms, offsets, !dilate, planes[p].getWidth(), planes[p].getHeight(), executor);
+        }
+        return result;
+    }
+
+    /**
+     * AND (or OR) over all terms, where term {@code k} is {@code planes[k]} shifted so that output pixel
+     * {@code (x, y)} reads {@code (x + dx, y + dy)}. Pixels outside a plane read as clear.
+     */
+    private static BinaryImage combine(List<BinaryImage> planes, List<int[]> offsets, boolean and,
+                                       int width, int height, TileExecutor executor) {
+        BinaryImage result = new BinaryImage(width, height);
+        long[] words = result.getWords();
+        int wordsPerRow = result.getWordsPerRow();
+        int terms = planes.size();
+
+        executor.forEachRowBand(width, height, (x0, y0, x1, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                for (int w = 0; w < wordsPerRow; w++) {
+                    long word = and ? -1L : 0L;
+                    for (int k = 0; k < terms && (and ? word != 0L : word != -1L); k++) {
+                        int[] offset = offsets.get(k);
+                        long shifted = planes.get(k).wordAt((w << 6) + offset[0], y + offset[1]);
+                        word = and ? word & shifted : word | shifted;
+                    }
+                    words[y * wordsPerRow + w] = word;
+                }
+                result.clearPadding(y);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Per-channel max or min of two ARGB values.
+     */
+    private static int combine(int a, int b, boolean max) {
+        if (max) {
+            return IntRaster.argb(
+                    Math.max(IntRaster.alpha(a), IntRaster.alpha(b)),
+                    Math.max(IntRaster.red(a), IntRaster.red(b)),
+                    Math.max(IntRaster.green(a), IntRaster.green(b)),
+                    Math.max(IntRaster.blue(a), IntRaster.blue(b))
+            );
+        }
+        return IntRaster.argb(
+                Math.min(IntRaster.alpha(a), IntRaster.alpha(b)),
+                Math.min(IntRaster.red(a), IntRaster.red(b)),
+                Math.min(IntRaster.green(a), IntRaster.green(b)),
+                Math.min(IntRaster.blue(a), IntRaster.blue(b))
+        );
+    }
+
+    /**
+     * Scratch buffers for the van Herk/Gil-Werman sliding window along one line of pixels.
+     */
+    private static final class Line {
+        private final int[] values;
+        private final int[] forward;
+        private final int[] backward;
+
+        Line(int capacity) {
+            values = new int[capacity];
+            forward = new int[capacity];
+            backward = new int[capacity];
+        }
+
+        /**
+         * Writes {@code out[i] = op(line[i + offset .. i + offset + length - 1])} for {@code i} in {@code [0, count)},
+         * where the line is {@code size} pixels read from {@code src} at {@code base} with {@code stride}, and
+         * positions outside {@code [0, size)} read as {@code 0}.
+         */
+        void slide(int[] src, int base, int stride, int size, int offset, int count, int length, boolean max,
+                   int[] out, int outBase, int outStride) {
+            int extended = count + length - 1;
+            for (int k = 0; k < extended; k++) {
+                int position = k + offset;
+                values[k] = position >= 0 && position < size ? src[base + position * stride] : 0;
+            }
+
+            if (length == 1) {
+                for (int i = 0; i < count; i++) {
+                    out[outBase + i * outStride] = values[i];
+                }
+                return;
+            }
+
+            // Prefix within each block of length cells, and suffix within each block
+            for (int k = 0; k < extended; k++) {
+                forward[k] = k % length == 0 ? values[k] : combine(forward[k - 1], values[k], max);
+            }
+            for (int k = extended - 1; k >= 0; k--) {
+                backward[k] = k % length == length - 1 || k == extended - 1
+                        ? values[k]
+                        : combine(backward[k + 1], values[k], max);
+            }
+
+            // Every window covers the tail of one block and the head of the next
+            for (int i = 0; i < count; i++) {
+                out[outBase + i * outStride] = combine(backward[i], forward[i + length - 1], max);
+            }
+        }
+    }
+
+    /**
+     * Horizontal runs of a structuring element, as offsets relative to the output pixel. A run {@code i}
+     * covers {@code (x + dx[i] .. x + dx[i] + length[i] - 1, y + dy[i])}.
+     */
+    private static final class Runs {
+        private final int[] dx;
+        private final int[] dy;
+        private final int[] length;
+        private final boolean rectangle;
+
+        private Runs(int[] dx, int[] dy, int[] length, boolean rectangle) {
+            this.dx = dx;
+            this.dy = dy;
+            this.length = length;
+            this.rectangle = rectangle;
+        }
+
+        /**
+         * @param reflect Whether offsets are reflected through the origin, as dilation reads them.
+         */
+        static Runs of(boolean[][] structuringElement, boolean reflect) {
+            int seHeight = structuringElement.length;
+            int seWidth = structuringElement[0].length;
+            int xOrigin = seWidth / 2;
+            int yOrigin = seHeight / 2;
+
+            List<int[]> runs = new ArrayList<>();
+            for (int j = 0; j < seHeight; j++) {
+                int i = 0;
+                while (i < seWidth) {
+                    if (!structuringElement[j][i]) {
+                        i++;
+                        continue;
+                    }
+                    int start = i;
+                    while (i < seWidth && structuringElement[j][i]) {
+                        i++;
+                    }
+                    int first = start - xOrigin;
+                    int last = i - 1 - xOrigin;
+                    int row = j - yOrigin;
+                    runs.add(reflect
+                            ? new int[] { -last, -row, i - start }
+                            : new int[] { first, row, i - start });
+                }
+            }
+
+            // Visit rows top to bottom in output coordinates, so a rectangle's rows are consecutive
+            runs.sort((a, b) -> Integer.compare(a[1], b[1]));
+
+            int count = runs.size();
+            int[] dx = new int[count];
+            int[] dy = new int[count];
+            int[] length = new int[count];
+            boolean rectangle = count > 0;
+            for (int k = 0; k < count; k++) {
+                dx[k] = runs.get(k)[0];
+                dy[k] = runs.get(k)[1];
+                length[k] = runs.get(k)[2];
+                if (k > 0 && (dx[k] != dx[0] || length[k] != length[0] || dy[k] != dy[k - 1] + 1)) {
+                    rectangle = false;
+                }
+            }
+
+            return new Runs(dx, dy, length, rectangle);
+        }
+
+        int count() {
+            return dx.length;
+        }
+
+        boolean isRectangle() {
+            return rectangle;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package lewocz.graphics.utils;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Progress and cooperative cancellation of one long-running operation.
+ * <p>
+ * While {@link #run} executes an operation, the monitor is current for the calling thread and every
+ * {@link TileExecutor} pass started from that thread reports to it: each tile, row band or index is a unit
+ * of work, {@link #isCancelled()} is checked before every unit, and a cancelled pass throws a
+ * {@link CancellationException} out of the operation, so it never produces a result.
+ * <p>
+ * Every pass is an equal share of the progress. An operation that makes more than one pass declares how many
+ * with {@link #expectPasses} before the first one starts, so that the end of its first pass reads as
+ * {@code 1 / passes} instead of as done; an operation that declares nothing is taken to make a single pass.
+ * Progress never goes back, also when an operation makes more passes than it declared.
+ */
+public final class OperationMonitor {
+
+    private static final ThreadLocal<OperationMonitor> CURRENT = new ThreadLocal<>();
+
+    private final AtomicInteger startedPasses = new AtomicInteger();
+    /** Passes the operation declared, or {@code 0} before it declares any. */
+    private volatile int expectedPasses;
+    private final AtomicLong progressBits = new AtomicLong(Double.doubleToLongBits(0));
+    private volatile boolean cancelled;
+    private volatile long startNanos;
+
+    /**
+     * Returns the monitor of the operation running on the calling thread, or {@code null}.
+     */
+    public static OperationMonitor current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs the operation with this monitor as the current one of the calling thread.
+     *
+     * @throws CancellationException If the operation was cancelled.
+     */
+    public void run(Runnable operation) {
+        OperationMonitor previous = CURRENT.get();
+        CURRENT.set(this);
+        startNanos = System.nanoTime();
+        try {
+            checkCancelled();
+            operation.run();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Operation cancelled");
+        }
+    }
+
+    /**
+     * Fraction of the work done so far, in {@code [0, 1]}.
+     */
+    public double getProgress() {
+        return Double.longBitsToDouble(progressBits.get());
+    }
+
+    /**
+     * Estimated time left from the progress so far, or {@code -1} before there is any progress.
+     */
+    public long getRemainingMillis() {
+        double progress = getProgress();
+        if (progress <= 0) {
+            return -1;
+        }
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        return Math.round(elapsedMillis * (1 - progress) / progress);
+    }
+
+    /**
+     * Declares that the operation running on the calling thread makes {@code passes} more passes. Only the
+     * first declaration counts, so an operation built from others declares the passes of all of them before
+     * calling the first, and the declarations of the ones it calls are ignored.
+     */
+    public static void expectPasses(int passes) {
+        OperationMonitor monitor = CURRENT.get();
+        if (monitor != null && monitor.expectedPasses == 0 && passes > 0) {
+            monitor.expectedPasses = monitor.startedPasses.get() + passes;
+        }
+    }
+
+    /**
+     * Wraps a pass of {@code units} units of work so that each unit checks for cancellation first and
+     * reports progress when done.
+     */
+    IntConsumer track(int units, IntConsumer task) {
+        int pass = startedPasses.incrementAndGet();
+        int passes = Math.max(pass, Math.max(expectedPasses, 1));
+        AtomicLong completedUnits = new AtomicLong();
+        return unit -> {
+            checkCancelled();
+            task.accept(unit);
+            double passProgress = completedUnits.incrementAndGet() / (double) units;
+            double progress = Math.min(1.0, (pass - 1 + passProgress) / passes);
+            progressBits.accumulateAndGet(Double.doubleToLongBits(progress),
+                    (current, next) -> Double.longBitsToDouble(next) > Double.longBitsToDouble(current) ? next : current);
+        };
+    }
+}
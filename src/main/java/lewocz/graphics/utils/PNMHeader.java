@@ -0,0 +1,141 @@
+package lewocz.graphics.utils;
+
+import lewocz.graphics.exception.InvalidFormatException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Header of a PNM file: the magic number, the dimensions, the maximum sample value, and the offset and
+ * (1-based) line number of the first byte of pixel data.
+ * <p>
+ * Header fields are separated by whitespace, and {@code #} starts a comment that runs to the end of the
+ * line. The pixel data starts after the single whitespace character that follows the last field, so binary
+ * rasters whose first samples happen to be whitespace bytes are read correctly.
+ */
+public record PNMHeader(String magicNumber, int width, int height, int maxColorValue, long dataOffset,
+                        int dataLine) {
+
+    /**
+     * Parses the header from the start of the file, mapping it instead of reading it through a stream.
+     */
+    public static PNMHeader read(FileChannel channel, String fileName) throws IOException {
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), Integer.MAX_VALUE));
+        return parse(buffer, fileName);
+    }
+
+    public static PNMHeader parse(ByteBuffer buffer, String fileName) throws IOException {
+        Parser parser = new Parser(buffer);
+
+        // The magic number always comes first, comments are only allowed after it
+        String magicNumber = parser.nextToken(false);
+        if (magicNumber == null) {
+            throw new InvalidFormatException("Empty file or unable to read magic number in file '" + fileName + "'.");
+        }
+        if (magicNumber.length() != 2 || magicNumber.charAt(0) != 'P' || magicNumber.charAt(1) < '1' || magicNumber.charAt(1) > '6') {
+            throw new InvalidFormatException("Unknown magic number in file '" + fileName + "': " + magicNumber);
+        }
+
+        int width = parser.nextInt("width", fileName);
+        int height = parser.nextInt("height", fileName);
+        int maxColorValue = 1; // Default for PBM
+        if (!magicNumber.equals("P1") && !magicNumber.equals("P4")) {
+            maxColorValue = parser.nextInt("maximum color value", fileName);
+            if (maxColorValue < 1 || maxColorValue > 65535) {
+                throw new InvalidFormatException("Maximum color value out of bounds in file '" + fileName + "': " +
+                        maxColorValue + ". Expected range: 1 to 65535.");
+            }
+        }
+        if (width <= 0 || height <= 0) {
+            throw new InvalidFormatException("Invalid image dimensions in file '" + fileName + "': " +
+                    width + "x" + height + ".");
+        }
+
+        // Exactly one whitespace character separates the header from the pixel data
+        if (!buffer.hasRemaining() || !Character.isWhitespace(buffer.get())) {
+            throw new IOException("Unexpected end of file after header in file '" + fileName + "'.");
+        }
+
+        int dataLine = 1;
+        for (int i = 0; i < buffer.position(); i++) {
+            if (buffer.get(i) == '\n') {
+                dataLine++;
+            }
+        }
+
+        return new PNMHeader(magicNumber, width, height, maxColorValue, buffer.position(), dataLine);
+    }
+
+    public boolean isBinary() {
+        return magicNumber.equals("P4") || magicNumber.equals("P5") || magicNumber.equals("P6");
+    }
+
+    /**
+     * Bytes per sample of a binary raster: one up to a maximum of 255, two (big-endian) above it.
+     */
+    public int bytesPerSample() {
+        return maxColorValue < 256 ? 1 : 2;
+    }
+
+    /**
+     * Length of one row of binary pixel data in bytes.
+     */
+    public long rowBytes() {
+        return switch (magicNumber) {
+            case "P4" -> (width + 7) / 8;
+            case "P5" -> (long) width * bytesPerSample();
+            case "P6" -> (long) width * 3 * bytesPerSample();
+            default -> throw new IllegalStateException("Text PNM data has no fixed row length.");
+        };
+    }
+
+    private static final class Parser {
+        private final ByteBuffer buffer;
+
+        Parser(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Returns the next whitespace-delimited token, or {@code null} at the end of the buffer. The
+         * whitespace after the token is left unread.
+         */
+        String nextToken(boolean skipComments) {
+            StringBuilder token = new StringBuilder();
+            while (buffer.hasRemaining()) {
+                int b = buffer.get(buffer.position()) & 0xFF;
+                if (Character.isWhitespace(b)) {
+                    if (!token.isEmpty()) {
+                        break;
+                    }
+                    buffer.get();
+                } else if (b == '#' && skipComments && token.isEmpty()) {
+                    skipComment();
+                } else {
+                    token.append((char) b);
+                    buffer.get();
+                }
+            }
+            return token.isEmpty() ? null : token.toString();
+        }
+
+        int nextInt(String field, String fileName) throws IOException {
+            String token = nextToken(true);
+            if (token == null) {
+                throw new IOException("Unexpected end of file while reading " + field + " in file '" + fileName + "'.");
+            }
+            try {
+                return Integer.parseInt(token);
+            } catch (NumberFormatException e) {
+                throw new InvalidFormatException("Invalid " + field + " in header of file '" + fileName + "': " + token, e);
+            }
+        }
+
+        private void skipComment() {
+            while (buffer.hasRemaining() && buffer.get() != '\n') {
+                // Skip to the end of the line
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package lewocz.graphics.utils;
+
+import lewocz.graphics.model.PNMFormat;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes rows of packed ARGB pixels as PNM pixel data, binary or text, straight into a byte array.
+ * <p>
+ * Pixels are converted like the {@code Color} based writer did: color channels and the gray value (the HSB
+ * brightness) are scaled to the maximum color value and truncated, and bitmap pixels darker than half
+ * brightness are set. Text samples are formatted from a table of the decimal digits of every possible
+ * sample value, so no {@code String} is created per sample. A text row is written as one line.
+ */
+final class PNMRowEncoder {
+
+    private final PNMFormat format;
+    private final boolean binaryFormat;
+    private final int width;
+    private final int maxColorValue;
+    private final int bytesPerSample;
+    /** Sample value written for every 8-bit channel level. */
+    private final int[] samples = new int[256];
+    /** ASCII digits of the sample value of every level, for text formats. */
+    private final byte[][] digits;
+
+    PNMRowEncoder(PNMFormat format, boolean binaryFormat, int width, int maxColorValue) {
+        if (format == null) {
+            throw new IllegalArgumentException("PNM format cannot be null.");
+        }
+        if (maxColorValue <= 0 || maxColorValue > 65535) {
+            throw new IllegalArgumentException("maxColorValue must be between 1 and 65535.");
+        }
+        this.format = format;
+        this.binaryFormat = binaryFormat;
+        this.width = width;
+        this.maxColorValue = maxColorValue;
+        this.bytesPerSample = maxColorValue < 256 ? 1 : 2;
+        this.digits = binaryFormat ? null : new byte[256][];
+        for (int level = 0; level < 256; level++) {
+            samples[level] = (int) (IntRaster.normalized(level) * maxColorValue);
+            if (digits != null) {
+                digits[level] = Integer.toString(samples[level]).getBytes(StandardCharsets.US_ASCII);
+            }
+        }
+    }
+
+    String magicNumber() {
+        return switch (format) {
+            case PBM -> binaryFormat ? "P4" : "P1";
+            case PGM -> binaryFormat ? "P5" : "P2";
+            case PPM -> binaryFormat ? "P6" : "P3";
+        };
+    }
+
+    byte[] header(int height) {
+        return header(magicNumber(), width, height, maxColorValue);
+    }
+
+    static byte[] header(String magicNumber, int width, int height, int maxColorValue) {
+        StringBuilder header = new StringBuilder();
+        header.append(magicNumber).append("\n");
+        header.append(width).append(" ").append(height).append("\n");
+        if (!magicNumber.equals("P1") && !magicNumber.equals("P4")) {
+            header.append(maxColorValue).append("\n");
+        }
+        return header.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Upper bound of the encoded length of one row; the exact length for binary formats.
+     */
+    int maxRowBytes() {
+        int samplesPerPixel = format == PNMFormat.PPM ? 3 : 1;
+        if (binaryFormat) {
+            return format == PNMFormat.PBM ? (width + 7) / 8 : width * samplesPerPixel * bytesPerSample;
+        }
+        // Every sample is followed by a space or the line break
+        int sampleLength = format == PNMFormat.PBM ? 1 : digitCount(maxColorValue);
+        return Math.max(1, width * samplesPerPixel * (sampleLength + 1));
+    }
+
+    /**
+     * Encodes the {@code width} pixels starting at {@code offset} into {@code out} at {@code position}.
+     *
+     * @return The position after the encoded row.
+     */
+    int encode(int[] pixels, int offset, byte[] out, int position) {
+        return binaryFormat ? encodeBinary(pixels, offset, out, position) : encodeText(pixels, offset, out, position);
+    }
+
+    private int encodeBinary(int[] pixels, int offset, byte[] out, int position) {
+        switch (format) {
+            case PPM -> {
+                for (int x = 0; x < width; x++) {
+                    int argb = pixels[offset + x];
+                    position = putSample(out, position, samples[IntRaster.red(argb)]);
+                    position = putSample(out, position, samples[IntRaster.green(argb)]);
+                    position = putSample(out, position, samples[IntRaster.blue(argb)]);
+                }
+            }
+            case PGM -> {
+                for (int x = 0; x < width; x++) {
+                    position = putSample(out, position, samples[IntRaster.intensity(pixels[offset + x])]);
+                }
+            }
+            case PBM -> {
+                for (int x = 0; x < width; x += 8) {
+                    int bits = 0;
+                    for (int bit = 0; bit < 8; bit++) {
+                        bits <<= 1;
+                        if (x + bit < width && isSet(pixels[offset + x + bit])) {
+                            bits |= 1;
+                        }
+                    }
+                    out[position++] = (byte) bits;
+                }
+            }
+        }
+        return position;
+    }
+
+    private int putSample(byte[] out, int position, int sample) {
+        if (bytesPerSample == 2) {
+            out[position++] = (byte) (sample >> 8);
+        }
+        out[position++] = (byte) sample;
+        return position;
+    }
+
+    private int encodeText(int[] pixels, int offset, byte[] out, int position) {
+        int start = position;
+        for (int x = 0; x < width; x++) {
+            int argb = pixels[offset + x];
+            switch (format) {
+                case PPM -> {
+                    position = putDigits(out, position, digits[IntRaster.red(argb)]);
+                    position = putDigits(out, position, digits[IntRaster.green(argb)]);
+                    position = putDigits(out, position, digits[IntRaster.blue(argb)]);
+                }
+                case PGM -> position = putDigits(out, position, digits[IntRaster.intensity(argb)]);
+                case PBM -> {
+                    out[position++] = (byte) (isSet(argb) ? '1' : '0');
+                    out[position++] = ' ';
+                }
+            }
+        }
+        // The separator after the last sample becomes the line break
+        if (position > start) {
+            position--;
+        }
+        out[position++] = '\n';
+        return position;
+    }
+
+    private static int putDigits(byte[] out, int position, byte[] sampleDigits) {
+        System.arraycopy(sampleDigits, 0, out, position, sampleDigits.length);
+        position += sampleDigits.length;
+        out[position++] = ' ';
+        return position;
+    }
+
+    /**
+     * Writes the decimal digits of a non-negative value followed by a space.
+     */
+    static int putNumber(byte[] out, int position, int value) {
+        int end = position + digitCount(value);
+        for (int i = end - 1; i >= position; i--) {
+            out[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        out[end] = ' ';
+        return end + 1;
+    }
+
+    static int digitCount(int value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+
+    private static boolean isSet(int argb) {
+        return IntRaster.normalized(IntRaster.intensity(argb)) < 0.5;
+    }
+}
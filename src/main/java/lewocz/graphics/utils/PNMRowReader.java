@@ -0,0 +1,115 @@
+package lewocz.graphics.utils;
+
+import lewocz.graphics.exception.InvalidFormatException;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a PNM file of any of the six variants one row at a time, so only a single row of pixels is held in
+ * memory. Rows are decoded to packed ARGB with the same 8-bit levels {@link PNMImageIO#loadPNM} produces.
+ */
+public class PNMRowReader implements Closeable {
+
+    private static final int BLACK = 0xFF000000;
+    private static final int WHITE = 0xFFFFFFFF;
+
+    private final FileChannel channel;
+    private final PNMHeader header;
+    private final int[] levels;
+    private final InputStream binaryInput;
+    private final ByteBuffer rowBuffer;
+    private final PNMTextScanner scanner;
+    private int nextRow;
+
+    public PNMRowReader(String fileName) throws IOException {
+        this.channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ);
+        try {
+            this.header = PNMHeader.read(channel, fileName);
+            this.levels = MappedPNMReader.levelTable(header.maxColorValue(), header.bytesPerSample());
+            channel.position(header.dataOffset());
+            if (header.isBinary()) {
+                this.binaryInput = new BufferedInputStream(Channels.newInputStream(channel));
+                this.rowBuffer = ByteBuffer.allocate((int) header.rowBytes());
+                this.scanner = null;
+            } else {
+                this.binaryInput = null;
+                this.rowBuffer = null;
+                this.scanner = new PNMTextScanner(ByteBuffer.allocate(1 << 16).flip(), channel, header.dataLine());
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public PNMHeader getHeader() {
+        return header;
+    }
+
+    public int getWidth() {
+        return header.width();
+    }
+
+    public int getHeight() {
+        return header.height();
+    }
+
+    /**
+     * Decodes the next row into {@code row}, which must hold at least {@link #getWidth()} pixels.
+     *
+     * @return {@code false} if every row has been read already.
+     */
+    public boolean readRow(int[] row) throws IOException {
+        if (nextRow >= header.height()) {
+            return false;
+        }
+        if (header.isBinary()) {
+            readBinaryRow(row);
+        } else {
+            readTextRow(row);
+        }
+        nextRow++;
+        return true;
+    }
+
+    private void readBinaryRow(int[] row) throws IOException {
+        byte[] bytes = rowBuffer.array();
+        if (binaryInput.readNBytes(bytes, 0, bytes.length) < bytes.length) {
+            throw new IOException("Unexpected end of file when reading pixel data at row " + nextRow + ".");
+        }
+        MappedPNMReader.decode(header, levels, rowBuffer, row, 0, nextRow, nextRow + 1);
+    }
+
+    private void readTextRow(int[] row) throws IOException {
+        int maxColorValue = header.maxColorValue();
+        for (int x = 0; x < header.width(); x++) {
+            switch (header.magicNumber()) {
+                case "P3" -> {
+                    int red = levels[scanner.nextInt(maxColorValue, "red")];
+                    int green = levels[scanner.nextInt(maxColorValue, "green")];
+                    int blue = levels[scanner.nextInt(maxColorValue, "blue")];
+                    row[x] = IntRaster.argb(255, red, green, blue);
+                }
+                case "P2" -> {
+                    int gray = levels[scanner.nextInt(maxColorValue, "gray")];
+                    row[x] = IntRaster.argb(255, gray, gray, gray);
+                }
+                case "P1" -> row[x] = scanner.nextInt(1, "pixel") == 1 ? BLACK : WHITE;
+                default -> throw new InvalidFormatException("Unsupported magic number: " + header.magicNumber());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,42 @@
+package lewocz.graphics.utils;
+
+import lewocz.graphics.model.PNMFormat;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a PNM file of any of the six variants one row at a time, converting pixels exactly like
+ * {@link PNMImageIO#savePNM}.
+ */
+public class PNMRowWriter implements Closeable {
+
+    private final OutputStream output;
+    private final PNMRowEncoder encoder;
+    private final byte[] encodedRow;
+
+    public PNMRowWriter(String fileName, int width, int height, PNMFormat format, boolean binaryFormat,
+                        int maxColorValue) throws IOException {
+        this.encoder = new PNMRowEncoder(format, binaryFormat, width, maxColorValue);
+        this.encodedRow = new byte[encoder.maxRowBytes()];
+        this.output = new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16);
+        try {
+            output.write(encoder.header(height));
+        } catch (IOException e) {
+            output.close();
+            throw e;
+        }
+    }
+
+    public void writeRow(int[] row) throws IOException {
+        output.write(encodedRow, 0, encoder.encode(row, 0, encodedRow, 0));
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+}
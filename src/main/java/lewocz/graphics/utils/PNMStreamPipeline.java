@@ -0,0 +1,213 @@
+package lewocz.graphics.utils;
+
+import lewocz.graphics.model.PNMFormat;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Applies a chain of operations to a PNM file row by row and writes the result to another PNM file, without
+ * ever holding the whole image in memory, so images larger than the heap can be processed.
+ * <p>
+ * Point operations transform each row as it streams past. Neighbourhood operations keep a sliding window of
+ * rows: once the rows up to {@code radius} below a block of output rows have arrived, the window is run
+ * through the regular whole-raster operation and the block is passed on. Every operation used here only
+ * looks {@code radius} rows up and down and clips its window at the image edges, so the band edges that
+ * are not image edges never influence the rows that are kept and the output equals that of the
+ * whole-image operation. Memory use is {@code O(width * (2 * radius + block rows))} per stage.
+ */
+public class PNMStreamPipeline {
+
+    static final int MIN_BLOCK_ROWS = 32;
+
+    private final List<Stage> stages = new ArrayList<>();
+
+    public PNMStreamPipeline pointOperation(ImageProcessor.ArgbOperation operation) {
+        stages.add((width, downstream) -> new PointStage(operation, downstream));
+        return this;
+    }
+
+    public PNMStreamPipeline pointOperation(PointLut lut) {
+        return pointOperation(lut::apply);
+    }
+
+    /**
+     * Adds an operation on whole rasters whose output pixels only depend on input pixels at most
+     * {@code radius} rows away and which treats the top and bottom of its input as image edges.
+     */
+    public PNMStreamPipeline neighbourhood(int radius, UnaryOperator<IntRaster> operation) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("Neighbourhood radius cannot be negative.");
+        }
+        stages.add((width, downstream) -> new WindowStage(width, radius, operation, downstream));
+        return this;
+    }
+
+    public PNMStreamPipeline convolutionFilter(double[][] kernel) {
+        return neighbourhood(kernel.length / 2, band -> ImageProcessor.applyConvolutionFilter(band, kernel));
+    }
+
+    public PNMStreamPipeline medianFilter(int radius) {
+        return neighbourhood(radius, band -> ImageProcessor.applyMedianFilter(band, radius));
+    }
+
+    public PNMStreamPipeline niblackThresholding(int windowSize, double k) {
+        return neighbourhood(windowSize / 2, band -> ImageProcessor.niblackThresholding(band, windowSize, k));
+    }
+
+    public PNMStreamPipeline sauvolaThresholding(int windowSize, double k, double r) {
+        return neighbourhood(windowSize / 2, band -> ImageProcessor.sauvolaThresholding(band, windowSize, k, r));
+    }
+
+    /**
+     * Streams {@code inputFile} (any PNM variant) through the stages into {@code outputFile}.
+     */
+    public void process(String inputFile, String outputFile, PNMFormat format, boolean binaryFormat,
+                        int maxColorValue) throws IOException {
+        if (inputFile == null || inputFile.isEmpty() || outputFile == null || outputFile.isEmpty()) {
+            throw new IllegalArgumentException("File name cannot be null or empty.");
+        }
+
+        try (PNMRowReader reader = new PNMRowReader(inputFile);
+             PNMRowWriter writer = new PNMRowWriter(outputFile, reader.getWidth(), reader.getHeight(), format,
+                     binaryFormat, maxColorValue)) {
+            int width = reader.getWidth();
+            RowSink sink = new RowSink() {
+                @Override
+                public void accept(int[] row) throws IOException {
+                    writer.writeRow(row);
+                }
+
+                @Override
+                public void finish() {
+                }
+            };
+            for (int i = stages.size() - 1; i >= 0; i--) {
+                sink = stages.get(i).create(width, sink);
+            }
+
+            int[] row = new int[width];
+            while (reader.readRow(row)) {
+                sink.accept(row);
+            }
+            sink.finish();
+        } catch (IOException e) {
+            throw new IOException("Error processing PNM file '" + inputFile + "': " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Receives the rows of an image in order. A row array may be reused by the caller once
+     * {@link #accept(int[])} returns.
+     */
+    private interface RowSink {
+        void accept(int[] row) throws IOException;
+
+        /**
+         * Called after the last row.
+         */
+        void finish() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Stage {
+        RowSink create(int width, RowSink downstream);
+    }
+
+    private static final class PointStage implements RowSink {
+        private final ImageProcessor.ArgbOperation operation;
+        private final RowSink downstream;
+
+        PointStage(ImageProcessor.ArgbOperation operation, RowSink downstream) {
+            this.operation = operation;
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void accept(int[] row) throws IOException {
+            for (int x = 0; x < row.length; x++) {
+                row[x] = operation.apply(row[x]);
+            }
+            downstream.accept(row);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            downstream.finish();
+        }
+    }
+
+    private static final class WindowStage implements RowSink {
+        private final int width;
+        private final int radius;
+        private final int blockRows;
+        private final UnaryOperator<IntRaster> operation;
+        private final RowSink downstream;
+        private final ArrayDeque<int[]> window = new ArrayDeque<>();
+        /** Image row of the first row in the window. */
+        private int firstRow;
+        /** Image row of the next output row. */
+        private int nextRow;
+
+        WindowStage(int width, int radius, UnaryOperator<IntRaster> operation, RowSink downstream) {
+            this.width = width;
+            this.radius = radius;
+            this.blockRows = Math.max(2 * radius + 1, MIN_BLOCK_ROWS);
+            this.operation = operation;
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void accept(int[] row) throws IOException {
+            window.addLast(row.clone());
+            if (lastRow() >= nextRow + blockRows - 1 + radius) {
+                emit(blockRows);
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            while (nextRow <= lastRow()) {
+                emit(Math.min(blockRows, lastRow() - nextRow + 1));
+            }
+            downstream.finish();
+        }
+
+        private int lastRow() {
+            return firstRow + window.size() - 1;
+        }
+
+        /**
+         * Runs the operation on the window, which starts {@code radius} rows above the block (or at the top
+         * of the image), and passes on {@code count} output rows.
+         */
+        private void emit(int count) throws IOException {
+            int bandRows = Math.min(lastRow(), nextRow + count - 1 + radius) - firstRow + 1;
+            IntRaster band = new IntRaster(width, bandRows);
+            int[] pixels = band.getPixels();
+            int y = 0;
+            for (int[] row : window) {
+                if (y == bandRows) {
+                    break;
+                }
+                System.arraycopy(row, 0, pixels, y++ * width, width);
+            }
+
+            int[] result = operation.apply(band).getPixels();
+            for (int i = 0; i < count; i++) {
+                int offset = (nextRow - firstRow + i) * width;
+                downstream.accept(Arrays.copyOfRange(result, offset, offset + width));
+            }
+            nextRow += count;
+
+            while (firstRow < nextRow - radius) {
+                window.removeFirst();
+                firstRow++;
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package lewocz.graphics.utils;
+
+import lewocz.graphics.exception.InvalidFormatException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Byte-level scanner for the sample values of text PNM files (P1, P2 and P3).
+ * <p>
+ * Bytes up to and including the space are whitespace, {@code #} starts a comment that runs to the end of the
+ * line, and every other run of bytes is a token. Tokens are parsed straight from the buffer into an
+ * {@code int}; a {@code String} is only built for the error message of an invalid token. The scanner either
+ * works on a fixed buffer, such as a mapped region of the file, or refills its buffer from a channel.
+ */
+final class PNMTextScanner {
+
+    private final ByteBuffer buffer;
+    private final ReadableByteChannel source;
+    private int line;
+    private byte[] token = new byte[16];
+
+    /**
+     * @param buffer The bytes to scan, from its position to its limit.
+     * @param source Channel the buffer is refilled from once it is exhausted, or {@code null}.
+     * @param line   Line number of the first byte, used in error messages.
+     */
+    PNMTextScanner(ByteBuffer buffer, ReadableByteChannel source, int line) {
+        this.buffer = buffer;
+        this.source = source;
+        this.line = line;
+    }
+
+    int getLine() {
+        return line;
+    }
+
+    /**
+     * Skips the next token.
+     *
+     * @return {@code false} if the input ended before another token.
+     */
+    boolean skipToken() throws IOException {
+        if (!skipWhitespaceAndComments()) {
+            return false;
+        }
+        while (hasRemaining()) {
+            int b = peek();
+            if (b <= ' ' || b == '#') {
+                break;
+            }
+            buffer.get();
+        }
+        return true;
+    }
+
+    /**
+     * Parses the next token as a value in {@code [0, maxValue]}.
+     *
+     * @param componentName Name of the value in error messages, e.g. {@code "red"}.
+     */
+    int nextInt(int maxValue, String componentName) throws IOException {
+        if (!skipWhitespaceAndComments()) {
+            throw new IOException("Unexpected end of file while reading " + componentName + " value.");
+        }
+
+        boolean negative = false;
+        boolean valid = true;
+        int length = 0;
+        long value = 0;
+        while (hasRemaining()) {
+            int b = peek();
+            if (b <= ' ' || b == '#') {
+                break;
+            }
+            buffer.get();
+
+            // The raw bytes are only kept for the error message of an invalid token
+            if (length == token.length) {
+                token = Arrays.copyOf(token, length * 2);
+            }
+            token[length++] = (byte) b;
+
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                valid &= value <= Integer.MAX_VALUE;
+            } else if (b != '-' || length != 1) {
+                valid = false;
+            } else {
+                negative = true;
+            }
+        }
+
+        if (!valid || length == (negative ? 1 : 0)) {
+            throw new InvalidFormatException("Invalid " + componentName + " value at line " + line + ": " +
+                    new String(token, 0, length, StandardCharsets.US_ASCII));
+        }
+        int result = (int) (negative ? -value : value);
+        if (result < 0 || result > maxValue) {
+            throw new InvalidFormatException(componentName + " value out of bounds at line " + line + ": " + result +
+                    ". Expected range: 0 to " + maxValue + ".");
+        }
+        return result;
+    }
+
+    /**
+     * @return {@code false} if the input ended before the next token.
+     */
+    private boolean skipWhitespaceAndComments() throws IOException {
+        while (hasRemaining()) {
+            int b = peek();
+            if (b == '#') {
+                while (hasRemaining() && buffer.get() != '\n') {
+                    // Skip to the end of the line
+                }
+                line++;
+            } else if (b <= ' ') {
+                buffer.get();
+                if (b == '\n') {
+                    line++;
+                }
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int peek() {
+        return buffer.get(buffer.position()) & 0xFF;
+    }
+
+    private boolean hasRemaining() throws IOException {
+        if (buffer.hasRemaining()) {
+            return true;
+        }
+        if (source == null) {
+            return false;
+        }
+        buffer.clear();
+        int read;
+        do {
+            read = source.read(buffer);
+        } while (read == 0);
+        buffer.flip();
+        return read > 0;
+    }
+}
@@ -0,0 +1,124 @@
+package lewocz.graphics.utils;
+
+import lewocz.graphics.model.PNMFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes an {@link IntRaster} as a PNM file of any of the six variants.
+ * <p>
+ * The rows are encoded in bands of about {@link #BAND_BYTES}, in parallel when the executor is, and
+ * each group of encoded bands goes to the file in one gathering write. Only one group of bands is held
+ * in memory at a time.
+ */
+public class PNMWriter {
+
+    static final int BAND_BYTES = 1 << 20;
+    static final int BANDS_PER_WRITE = 16;
+
+    public static void write(String fileName, IntRaster raster, PNMFormat format, boolean binaryFormat,
+                             int maxColorValue, TileExecutor executor) throws IOException {
+        write(fileName, raster, format, binaryFormat, maxColorValue, executor, BAND_BYTES);
+    }
+
+    static void write(String fileName, IntRaster raster, PNMFormat format, boolean binaryFormat,
+                      int maxColorValue, TileExecutor executor, int bandBytes) throws IOException {
+        int width = raster.getWidth();
+        int[] pixels = raster.getPixels();
+        PNMRowEncoder encoder = new PNMRowEncoder(format, binaryFormat, width, maxColorValue);
+        writeBands(fileName, encoder.header(raster.getHeight()), raster.getHeight(), encoder.maxRowBytes(),
+                (y, out, position) -> encoder.encode(pixels, y * width, out, position), executor, bandBytes);
+    }
+
+    /**
+     * Writes the samples of a 16-bit raster at its own maximum value, as a PGM for one channel and a PPM
+     * for three, so the file holds exactly the samples of the raster.
+     */
+    public static void write(String fileName, ShortRaster raster, boolean binaryFormat, TileExecutor executor)
+            throws IOException {
+        write(fileName, raster, binaryFormat, executor, BAND_BYTES);
+    }
+
+    static void write(String fileName, ShortRaster raster, boolean binaryFormat, TileExecutor executor,
+                      int bandBytes) throws IOException {
+        char[] samples = raster.getSamples();
+        int maxValue = raster.getMaxValue();
+        int rowSamples = raster.getWidth() * raster.getChannels();
+        String magicNumber = raster.getChannels() == 1 ? (binaryFormat ? "P5" : "P2") : (binaryFormat ? "P6" : "P3");
+        byte[] header = PNMRowEncoder.header(magicNumber, raster.getWidth(), raster.getHeight(), maxValue);
+
+        int bytesPerSample = maxValue < 256 ? 1 : 2;
+        int rowBytes = binaryFormat
+                ? rowSamples * bytesPerSample
+                : Math.max(1, rowSamples * (PNMRowEncoder.digitCount(maxValue) + 1));
+
+        writeBands(fileName, header, raster.getHeight(), rowBytes, (y, out, position) -> {
+            int offset = y * rowSamples;
+            if (binaryFormat) {
+                for (int i = 0; i < rowSamples; i++) {
+                    int sample = samples[offset + i];
+                    if (bytesPerSample == 2) {
+                        out[position++] = (byte) (sample >> 8);
+                    }
+                    out[position++] = (byte) sample;
+                }
+                return position;
+            }
+            int start = position;
+            for (int i = 0; i < rowSamples; i++) {
+                position = PNMRowEncoder.putNumber(out, position, samples[offset + i]);
+            }
+            // The separator after the last sample becomes the line break
+            if (position > start) {
+                position--;
+            }
+            out[position++] = '\n';
+            return position;
+        }, executor, bandBytes);
+    }
+
+    @FunctionalInterface
+    private interface RowEncoder {
+        /**
+         * Encodes row {@code y} into {@code out} at {@code position} and returns the position after it.
+         */
+        int encode(int y, byte[] out, int position);
+    }
+
+    private static void writeBands(String fileName, byte[] header, int height, int rowBytes, RowEncoder encoder,
+                                   TileExecutor executor, int bandBytes) throws IOException {
+        int rowsPerBand = Math.max(1, Math.min(height, bandBytes / rowBytes));
+        int bands = (height + rowsPerBand - 1) / rowsPerBand;
+
+        try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, new ByteBuffer[]{ByteBuffer.wrap(header)});
+
+            for (int first = 0; first < bands; first += BANDS_PER_WRITE) {
+                int firstBand = first;
+                ByteBuffer[] buffers = new ByteBuffer[Math.min(BANDS_PER_WRITE, bands - first)];
+                executor.forEachIndex(buffers.length, i -> {
+                    int y0 = (firstBand + i) * rowsPerBand;
+                    int y1 = Math.min(y0 + rowsPerBand, height);
+                    byte[] out = new byte[(y1 - y0) * rowBytes];
+                    int position = 0;
+                    for (int y = y0; y < y1; y++) {
+                        position = encoder.encode(y, out, position);
+                    }
+                    buffers[i] = ByteBuffer.wrap(out, 0, position);
+                });
+                writeFully(channel, buffers);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer[] buffers) throws IOException {
+        while (buffers[buffers.length - 1].hasRemaining()) {
+            channel.write(buffers);
+        }
+    }
+}
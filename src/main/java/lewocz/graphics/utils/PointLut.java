@@ -0,0 +1,179 @@
+package lewocz.graphics.utils;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Point operation compiled into 256-entry lookup tables.
+ * <p>
+ * A table maps 8-bit channel levels to 8-bit channel levels, optionally followed by a channel mix
+ * (average or max) that turns the pixel gray and a second set of tables applied to the gray level.
+ * Any chain of such operations can be fused with {@link #then(PointLut)} into a single table that
+ * gives exactly the same result as running the operations one after another, because every step
+ * already maps 8-bit levels to 8-bit levels. Alpha is always kept unchanged.
+ */
+public final class PointLut {
+
+    private enum Mix { NONE, AVERAGE, MAX }
+
+    /**
+     * Gray level of {@code (r + g + b) / 3} indexed by {@code r + g + b}. The rounded result only
+     * depends on the sum, so 766 entries cover every combination.
+     */
+    private static final int[] AVERAGE = new int[766];
+
+    static {
+        for (int sum = 0; sum < AVERAGE.length; sum++) {
+            int r = Math.min(sum, 255);
+            int g = Math.min(sum - r, 255);
+            int b = sum - r - g;
+            double average = (IntRaster.normalized(r) + IntRaster.normalized(g) + IntRaster.normalized(b)) / 3.0;
+            AVERAGE[sum] = IntRaster.toLevel(average);
+        }
+    }
+
+    private final int[] red;
+    private final int[] green;
+    private final int[] blue;
+    private final Mix mix;
+    private final int[] grayRed;
+    private final int[] grayGreen;
+    private final int[] grayBlue;
+
+    private PointLut(int[] red, int[] green, int[] blue, Mix mix, int[] grayRed, int[] grayGreen, int[] grayBlue) {
+        this.red = red;
+        this.green = green;
+        this.blue = blue;
+        this.mix = mix;
+        this.grayRed = grayRed;
+        this.grayGreen = grayGreen;
+        this.grayBlue = grayBlue;
+    }
+
+    private static PointLut channels(int[] red, int[] green, int[] blue) {
+        return new PointLut(red, green, blue, Mix.NONE, null, null, null);
+    }
+
+    private static PointLut mixing(Mix mix) {
+        int[] identity = identityTable();
+        return new PointLut(identity, identity, identity, mix, identity, identity, identity);
+    }
+
+    // Factories
+
+    public static PointLut identity() {
+        int[] identity = identityTable();
+        return channels(identity, identity, identity);
+    }
+
+    /**
+     * Builds tables from functions working on normalized channel values in [0.0, 1.0]. Results are clamped.
+     */
+    public static PointLut perChannel(DoubleUnaryOperator red, DoubleUnaryOperator green, DoubleUnaryOperator blue) {
+        return channels(table(red), table(green), table(blue));
+    }
+
+    public static PointLut add(double addRed, double addGreen, double addBlue) {
+        return perChannel(v -> v + addRed / 255.0, v -> v + addGreen / 255.0, v -> v + addBlue / 255.0);
+    }
+
+    public static PointLut subtract(double subRed, double subGreen, double subBlue) {
+        return perChannel(v -> v - subRed / 255.0, v -> v - subGreen / 255.0, v -> v - subBlue / 255.0);
+    }
+
+    public static PointLut multiply(double mulRed, double mulGreen, double mulBlue) {
+        return perChannel(v -> v * mulRed, v -> v * mulGreen, v -> v * mulBlue);
+    }
+
+    public static PointLut divide(double divRed, double divGreen, double divBlue) {
+        return perChannel(v -> v / divRed, v -> v / divGreen, v -> v / divBlue);
+    }
+
+    public static PointLut brightness(double brightnessChange) {
+        DoubleUnaryOperator shift = v -> v + brightnessChange;
+        return perChannel(shift, shift, shift);
+    }
+
+    public static PointLut grayscaleAverage() {
+        return mixing(Mix.AVERAGE);
+    }
+
+    public static PointLut grayscaleMax() {
+        return mixing(Mix.MAX);
+    }
+
+    /**
+     * Returns a table equivalent to applying this operation and then {@code next}.
+     */
+    public PointLut then(PointLut next) {
+        if (mix == Mix.NONE) {
+            return new PointLut(
+                    compose(red, next.red), compose(green, next.green), compose(blue, next.blue),
+                    next.mix, next.grayRed, next.grayGreen, next.grayBlue
+            );
+        }
+
+        // The output of this table only depends on the gray level, so the fused table keeps
+        // this table's mix and maps every gray level through the whole of next.
+        int[] fusedRed = new int[256];
+        int[] fusedGreen = new int[256];
+        int[] fusedBlue = new int[256];
+        for (int level = 0; level < 256; level++) {
+            int r = next.red[grayRed[level]];
+            int g = next.green[grayGreen[level]];
+            int b = next.blue[grayBlue[level]];
+            if (next.mix == Mix.NONE) {
+                fusedRed[level] = r;
+                fusedGreen[level] = g;
+                fusedBlue[level] = b;
+            } else {
+                int gray = next.mix(r, g, b);
+                fusedRed[level] = next.grayRed[gray];
+                fusedGreen[level] = next.grayGreen[gray];
+                fusedBlue[level] = next.grayBlue[gray];
+            }
+        }
+        return new PointLut(red, green, blue, mix, fusedRed, fusedGreen, fusedBlue);
+    }
+
+    public int apply(int argb) {
+        int r = red[IntRaster.red(argb)];
+        int g = green[IntRaster.green(argb)];
+        int b = blue[IntRaster.blue(argb)];
+        if (mix != Mix.NONE) {
+            int gray = mix(r, g, b);
+            r = grayRed[gray];
+            g = grayGreen[gray];
+            b = grayBlue[gray];
+        }
+        return IntRaster.argb(IntRaster.alpha(argb), r, g, b);
+    }
+
+    private int mix(int r, int g, int b) {
+        return mix == Mix.MAX ? Math.max(r, Math.max(g, b)) : AVERAGE[r + g + b];
+    }
+
+    private static int[] identityTable() {
+        int[] table = new int[256];
+        for (int i = 0; i < 256; i++) {
+            table[i] = i;
+        }
+        return table;
+    }
+
+    private static int[] table(DoubleUnaryOperator function) {
+        int[] table = new int[256];
+        for (int i = 0; i < 256; i++) {
+            double value = function.applyAsDouble(IntRaster.normalized(i));
+            table[i] = IntRaster.toLevel(Math.max(0.0, Math.min(1.0, value)));
+        }
+        return table;
+    }
+
+    private static int[] compose(int[] first, int[] second) {
+        int[] table = new int[256];
+        for (int i = 0; i < 256; i++) {
+            table[i] = second[first[i]];
+        }
+        return table;
+    }
+}
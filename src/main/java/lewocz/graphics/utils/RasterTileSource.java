@@ -0,0 +1,42 @@
+package lewocz.graphics.utils;
+
+/**
+ * Tile source over an image that is already decoded into memory.
+ */
+public class RasterTileSource implements TileSource {
+
+    private final IntRaster raster;
+
+    public RasterTileSource(IntRaster raster) {
+        this.raster = raster;
+    }
+
+    @Override
+    public int getWidth() {
+        return raster.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return raster.getHeight();
+    }
+
+    @Override
+    public boolean isInMemory() {
+        return true;
+    }
+
+    @Override
+    public IntRaster readRegion(int x, int y, int width, int height) {
+        IntRaster region = new IntRaster(width, height);
+        for (int row = 0; row < height; row++) {
+            System.arraycopy(raster.getPixels(), (y + row) * raster.getWidth() + x, region.getPixels(), row * width, width);
+        }
+        return region;
+    }
+
+    @Override
+    public IntRaster readAll() {
+        return raster;
+    }
+}
@@ -0,0 +1,258 @@
+package lewocz.graphics.utils;
+
+/**
+ * Convolution with kernels that factor into a column vector times a row vector. Such kernels are
+ * applied as a horizontal and a vertical 1D pass, costing O(kw + kh) per pixel instead of O(kw * kh).
+ * <p>
+ * Edge handling matches {@link ImageProcessor#applyConvolutionFilter(FloatRaster, double[][])}: kernel
+ * cells outside the image are skipped and the result is divided by the weight of the cells that were
+ * used. For a separable kernel that weight is the product of the used row and column weights.
+ */
+public class SeparableConvolution {
+
+    private static final double RANK_ONE_TOLERANCE = 1e-9;
+
+    /**
+     * Factors the kernel into {@code kernel[y][x] == vertical[y] * horizontal[x]}.
+     *
+     * @return {@code {vertical, horizontal}}, or {@code null} if the kernel is not rank one.
+     */
+    public static double[][] decompose(double[][] kernel) {
+        int kernelHeight = kernel.length;
+        int kernelWidth = kernel[0].length;
+
+        // Pivot on the largest element; for a rank one matrix its row and column span the whole kernel
+        int pivotX = 0;
+        int pivotY = 0;
+        double maxAbs = 0.0;
+        for (int y = 0; y < kernelHeight; y++) {
+            for (int x = 0; x < kernelWidth; x++) {
+                if (Math.abs(kernel[y][x]) > maxAbs) {
+                    maxAbs = Math.abs(kernel[y][x]);
+                    pivotX = x;
+                    pivotY = y;
+                }
+            }
+        }
+        if (maxAbs == 0.0) {
+            return null;
+        }
+
+        double[] vertical = new double[kernelHeight];
+        double[] horizontal = kernel[pivotY].clone();
+        for (int y = 0; y < kernelHeight; y++) {
+            vertical[y] = kernel[y][pivotX] / kernel[pivotY][pivotX];
+        }
+
+        for (int y = 0; y < kernelHeight; y++) {
+            for (int x = 0; x < kernelWidth; x++) {
+                if (Math.abs(vertical[y] * horizontal[x] - kernel[y][x]) > RANK_ONE_TOLERANCE * maxAbs) {
+                    return null;
+                }
+            }
+        }
+
+        return new double[][] { vertical, horizontal };
+    }
+
+    /**
+     * Returns the normalized 1D Gaussian whose outer product with itself is the 2D Gaussian kernel.
+     */
+    public static double[] gaussianKernel(int size, double sigma) {
+        double[] kernel = new double[size];
+        double sum = 0.0;
+        int halfSize = size / 2;
+
+        for (int i = -halfSize; i <= halfSize; i++) {
+            double value = Math.exp(-(i * i) / (2 * sigma * sigma));
+            kernel[i + halfSize] = value;
+            sum += value;
+        }
+
+        for (int i = 0; i < size; i++) {
+            kernel[i] /= sum;
+        }
+
+        return kernel;
+    }
+
+    /**
+     * Convolves the color planes with {@code vertical[y] * horizontal[x]}. The alpha plane is copied unchanged.
+     */
+    public static FloatRaster convolve(FloatRaster input, double[] vertical, double[] horizontal,
+                                       TileExecutor executor) {
+        int width = input.getWidth();
+        int height = input.getHeight();
+        FloatRaster output = new FloatRaster(width, height);
+
+        double[] usedHorizontal = usedWeights(horizontal, width);
+        double[] usedVertical = usedWeights(vertical, height);
+        double[] rowPass = new double[width * height];
+
+        // A row and a column pass for each color plane
+        OperationMonitor.expectPasses(6);
+        convolvePlane(input.getRed(), output.getRed(), rowPass, width, height,
+                vertical, horizontal, usedVertical, usedHorizontal, executor);
+        convolvePlane(input.getGreen(), output.getGreen(), rowPass, width, height,
+                vertical, horizontal, usedVertical, usedHorizontal, executor);
+        convolvePlane(input.getBlue(), output.getBlue(), rowPass, width, height,
+                vertical, horizontal, usedVertical, usedHorizontal, executor);
+
+        System.arraycopy(input.getAlpha(), 0, output.getAlpha(), 0, width * height);
+
+        return output;
+    }
+
+    private static void convolvePlane(float[] src, float[] dst, double[] rowPass, int width, int height,
+                                      double[] vertical, double[] horizontal,
+                                      double[] usedVertical, double[] usedHorizontal, TileExecutor executor) {
+        int halfWidth = horizontal.length / 2;
+        int halfHeight = vertical.length / 2;
+
+        // Horizontal pass, unnormalized
+        executor.forEachRowBand(width, height, (x0, y0, x1, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                int row = y * width;
+                for (int x = 0; x < width; x++) {
+                    int from = Math.max(-halfWidth, -x);
+                    int to = Math.min(halfWidth, width - 1 - x);
+                    double sum = 0.0;
+                    for (int k = from; k <= to; k++) {
+                        sum += src[row + x + k] * horizontal[k + halfWidth];
+                    }
+                    rowPass[row + x] = sum;
+                }
+            }
+        });
+
+        // Vertical pass and normalization by the weight of the cells inside the image
+        executor.forEachTile(width, height, (x0, y0, x1, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                int from = Math.max(-halfHeight, -y);
+                int to = Math.min(halfHeight, height - 1 - y);
+                for (int x = x0; x < x1; x++) {
+                    double sum = 0.0;
+                    for (int k = from; k <= to; k++) {
+                        sum += rowPass[(y + k) * width + x] * vertical[k + halfHeight];
+                    }
+
+                    double sumKernel = usedVertical[y] * usedHorizontal[x];
+                    if (sumKernel != 0) {
+                        sum /= sumKernel;
+                    }
+
+                    dst[y * width + x] = (float) Math.max(0.0, Math.min(1.0, sum));
+                }
+            }
+        });
+    }
+
+    /**
+     * For every position along an axis of the given length, the sum of the kernel weights that fall inside the image.
+     */
+    private static double[] usedWeights(double[] kernel, int length) {
+        int half = kernel.length / 2;
+        double[] used = new double[length];
+        for (int i = 0; i < length; i++) {
+            int from = Math.max(-half, -i);
+            int to = Math.min(half, length - 1 - i);
+            double sum = 0.0;
+            for (int k = from; k <= to; k++) {
+                sum += kernel[k + half];
+            }
+            used[i] = sum;
+        }
+        return used;
+    }
+
+    /**
+     * Mean over a {@code (2 * radiusX + 1) x (2 * radiusY + 1)} window clipped to the image, computed
+     * with running sums so the cost per pixel does not depend on the radius. Alpha is copied unchanged.
+     */
+    public static IntRaster boxFilter(IntRaster input, int radiusX, int radiusY, TileExecutor executor) {
+        if (radiusX < 0 || radiusY < 0) {
+            throw new IllegalArgumentException("Box filter radius cannot be negative.");
+        }
+
+        int width = input.getWidth();
+        int height = input.getHeight();
+        int[] src = input.getPixels();
+        IntRaster output = new IntRaster(width, height);
+        int[] dst = output.getPixels();
+
+        executor.forEachRowBand(width, height, (x0, y0, x1, y1) -> {
+            // Per column sums of the rows currently inside the vertical window
+            int[] columnRed = new int[width];
+            int[] columnGreen = new int[width];
+            int[] columnBlue = new int[width];
+
+            int windowTop = Math.max(0, y0 - radiusY);
+            int windowBottom = Math.min(height - 1, y0 + radiusY);
+            for (int y = windowTop; y <= windowBottom; y++) {
+                addRow(src, y * width, width, columnRed, columnGreen, columnBlue, 1);
+            }
+
+            for (int y = y0; y < y1; y++) {
+                int top = Math.max(0, y - radiusY);
+                int bottom = Math.min(height - 1, y + radiusY);
+                if (top > windowTop) {
+                    addRow(src, windowTop * width, width, columnRed, columnGreen, columnBlue, -1);
+                    windowTop = top;
+                }
+                if (bottom > windowBottom) {
+                    windowBottom = bottom;
+                    addRow(src, windowBottom * width, width, columnRed, columnGreen, columnBlue, 1);
+                }
+                int rows = windowBottom - windowTop + 1;
+
+                long sumRed = 0;
+                long sumGreen = 0;
+                long sumBlue = 0;
+                for (int x = 0; x <= Math.min(radiusX, width - 1); x++) {
+                    sumRed += columnRed[x];
+                    sumGreen += columnGreen[x];
+                    sumBlue += columnBlue[x];
+                }
+
+                int row = y * width;
+                for (int x = 0; x < width; x++) {
+                    int left = x - radiusX - 1;
+                    int right = x + radiusX;
+                    if (x > 0) {
+                        if (left >= 0) {
+                            sumRed -= columnRed[left];
+                            sumGreen -= columnGreen[left];
+                            sumBlue -= columnBlue[left];
+                        }
+                        if (right < width) {
+                            sumRed += columnRed[right];
+                            sumGreen += columnGreen[right];
+                            sumBlue += columnBlue[right];
+                        }
+                    }
+                    int columns = Math.min(width - 1, right) - Math.max(0, x - radiusX) + 1;
+                    double count = (double) rows * columns * 255.0;
+
+                    dst[row + x] = IntRaster.argb(
+                            IntRaster.alpha(src[row + x]),
+                            IntRaster.toLevel(sumRed / count),
+                            IntRaster.toLevel(sumGreen / count),
+                            IntRaster.toLevel(sumBlue / count)
+                    );
+                }
+            }
+        });
+
+        return output;
+    }
+
+    private static void addRow(int[] src, int offset, int width,
+                               int[] columnRed, int[] columnGreen, int[] columnBlue, int sign) {
+        for (int x = 0; x < width; x++) {
+            int argb = src[offset + x];
+            columnRed[x] += sign * IntRaster.red(argb);
+            columnGreen[x] += sign * IntRaster.green(argb);
+            columnBlue[x] += sign * IntRaster.blue(argb);
+        }
+    }
+}
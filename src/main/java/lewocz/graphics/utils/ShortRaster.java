@@ -0,0 +1,102 @@
+package lewocz.graphics.utils;
+
+/**
+ * Raster of unsigned 16-bit samples backed by a single {@code char[]}, for images with a maximum sample
+ * value above 255 that would lose precision as 8-bit ARGB. A raster has one (gray) or three (red, green,
+ * blue) interleaved samples per pixel in row-major order, each in {@code [0, maxValue]}.
+ */
+public class ShortRaster {
+
+    private final int width;
+    private final int height;
+    private final int channels;
+    private final int maxValue;
+    private final char[] samples;
+
+    public ShortRaster(int width, int height, int channels, int maxValue) {
+        this(width, height, channels, maxValue, new char[width * height * channels]);
+    }
+
+    public ShortRaster(int width, int height, int channels, int maxValue, char[] samples) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Raster dimensions cannot be negative.");
+        }
+        if (channels != 1 && channels != 3) {
+            throw new IllegalArgumentException("A raster has 1 or 3 channels, not " + channels + ".");
+        }
+        if (maxValue <= 0 || maxValue > 65535) {
+            throw new IllegalArgumentException("maxValue must be between 1 and 65535.");
+        }
+        if (samples.length != width * height * channels) {
+            throw new IllegalArgumentException("Sample buffer length " + samples.length +
+                    " does not match raster size " + width + "x" + height + "x" + channels + ".");
+        }
+        this.width = width;
+        this.height = height;
+        this.channels = channels;
+        this.maxValue = maxValue;
+        this.samples = samples;
+    }
+
+    /**
+     * Converts to 8-bit ARGB for display, rounding the same way the 8-bit PNM loader does.
+     */
+    public IntRaster toIntRaster() {
+        int[] levels = MappedPNMReader.levelTable(maxValue, 2);
+        IntRaster raster = new IntRaster(width, height);
+        int[] pixels = raster.getPixels();
+        for (int i = 0; i < pixels.length; i++) {
+            if (channels == 1) {
+                int gray = levels[samples[i]];
+                pixels[i] = IntRaster.argb(255, gray, gray, gray);
+            } else {
+                pixels[i] = IntRaster.argb(255, levels[samples[3 * i]], levels[samples[3 * i + 1]],
+                        levels[samples[3 * i + 2]]);
+            }
+        }
+        return raster;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * Returns the backing buffer. Changes to the array are visible in the raster.
+     */
+    public char[] getSamples() {
+        return samples;
+    }
+
+    public int getSample(int x, int y, int channel) {
+        return samples[(y * width + x) * channels + channel];
+    }
+
+    public void setSample(int x, int y, int channel, int value) {
+        samples[(y * width + x) * channels + channel] = (char) value;
+    }
+
+    /**
+     * Returns the intensity of the pixel at {@code index}, the gray sample or the largest color sample,
+     * in the same units as the samples.
+     */
+    public int intensity(int index) {
+        if (channels == 1) {
+            return samples[index];
+        }
+        int offset = 3 * index;
+        return Math.max(samples[offset], Math.max(samples[offset + 1], samples[offset + 2]));
+    }
+}
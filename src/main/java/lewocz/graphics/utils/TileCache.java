@@ -0,0 +1,84 @@
+package lewocz.graphics.utils;
+
+import javafx.scene.image.WritableImage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of decoded image tiles, bounded by the memory their pixels take. Tiles are keyed
+ * by the image they belong to, their pyramid level and their column and row, so one cache can be shared by
+ * any number of images; once the total exceeds the budget the least recently drawn tiles are dropped.
+ */
+public class TileCache {
+
+    private record TileKey(Object owner, int level, int column, int row) {
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<TileKey, WritableImage> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    /**
+     * @param maxBytes Memory budget for the pixels of all cached tiles, at 4 bytes per pixel.
+     */
+    public TileCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Tile cache budget must be positive.");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized WritableImage get(Object owner, int level, int column, int row) {
+        return tiles.get(new TileKey(owner, level, column, row));
+    }
+
+    /**
+     * Adds a tile and evicts the least recently used tiles until the cache is within its budget again. The
+     * tile just added is always kept, even if it alone exceeds the budget.
+     */
+    public synchronized void put(Object owner, int level, int column, int row, WritableImage tile) {
+        WritableImage previous = tiles.put(new TileKey(owner, level, column, row), tile);
+        if (previous != null) {
+            bytes -= sizeOf(previous);
+        }
+        bytes += sizeOf(tile);
+
+        Iterator<Map.Entry<TileKey, WritableImage>> eldest = tiles.entrySet().iterator();
+        while (bytes > maxBytes && tiles.size() > 1) {
+            bytes -= sizeOf(eldest.next().getValue());
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Drops every tile of the given image, at all levels.
+     */
+    public synchronized void invalidate(Object owner) {
+        Iterator<Map.Entry<TileKey, WritableImage>> entries = tiles.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<TileKey, WritableImage> entry = entries.next();
+            if (entry.getKey().owner() == owner) {
+                bytes -= sizeOf(entry.getValue());
+                entries.remove();
+            }
+        }
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return tiles.size();
+    }
+
+    private static long sizeOf(WritableImage tile) {
+        return 4L * (long) tile.getWidth() * (long) tile.getHeight();
+    }
+}
@@ -0,0 +1,156 @@
+package lewocz.graphics.utils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Splits an image into rectangular tiles or full-width row bands and processes them on a
+ * {@link ForkJoinPool}.
+ * <p>
+ * Operations run through this executor read from a source buffer that is never written during the
+ * pass and write each output pixel exactly once, from the tile that owns it. Neighbourhood operators
+ * read their halo (the pixels within the kernel radius outside the tile) straight from the shared
+ * source, so tiles never overlap in the output and the result is bit-identical to the serial path
+ * regardless of tile size or thread count.
+ * <p>
+ * Passes started from a thread that runs an {@link OperationMonitor} count each tile, band or index as a
+ * unit of its progress and check for cancellation before every unit.
+ */
+public class TileExecutor {
+
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    private static final TileExecutor SERIAL = new TileExecutor(null, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    private final ForkJoinPool pool;
+    private final int tileWidth;
+    private final int tileHeight;
+
+    /**
+     * @param pool       The pool to run tiles on, or {@code null} to run everything on the calling thread.
+     * @param tileWidth  Width of a tile in pixels.
+     * @param tileHeight Height of a tile (and of a row band) in pixels.
+     */
+    public TileExecutor(ForkJoinPool pool, int tileWidth, int tileHeight) {
+        if (tileWidth <= 0 || tileHeight <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive.");
+        }
+        this.pool = pool;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+    }
+
+    public static TileExecutor serial() {
+        return SERIAL;
+    }
+
+    public static TileExecutor parallel() {
+        return parallel(DEFAULT_TILE_SIZE);
+    }
+
+    public static TileExecutor parallel(int tileSize) {
+        return new TileExecutor(ForkJoinPool.commonPool(), tileSize, tileSize);
+    }
+
+    @FunctionalInterface
+    public interface TileTask {
+        /**
+         * Processes the pixels in {@code [x0, x1) x [y0, y1)}.
+         */
+        void process(int x0, int y0, int x1, int y1);
+    }
+
+    /**
+     * Runs the task once for every tile covering a {@code width x height} image and waits for all of them.
+     */
+    public void forEachTile(int width, int height, TileTask task) {
+        run(width, height, Math.min(tileWidth, Math.max(width, 1)), task);
+    }
+
+    /**
+     * Runs the task once for every full-width band of rows and waits for all of them. Preferred for
+     * operations that walk whole rows, such as point operations on a flat buffer.
+     */
+    public void forEachRowBand(int width, int height, TileTask task) {
+        run(width, height, Math.max(width, 1), task);
+    }
+
+    /**
+     * Runs the task once for every index in {@code [0, count)} and waits for all of them. Used for work
+     * units that do not map onto a plain tile grid.
+     */
+    public void forEachIndex(int count, IntConsumer task) {
+        if (count <= 0) {
+            return;
+        }
+        // Passes started by a monitored operation report progress and stop between units once cancelled
+        OperationMonitor monitor = OperationMonitor.current();
+        if (monitor != null) {
+            task = monitor.track(count, task);
+        }
+        if (pool == null || count == 1) {
+            for (int i = 0; i < count; i++) {
+                task.accept(i);
+            }
+            return;
+        }
+        pool.invoke(new IndexAction(0, count, task));
+    }
+
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    private void run(int width, int height, int tileW, TileTask task) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        int tileH = Math.min(tileHeight, height);
+        int tilesX = (width + tileW - 1) / tileW;
+        int tilesY = (height + tileH - 1) / tileH;
+        int tileCount = tilesX * tilesY;
+
+        forEachIndex(tileCount, index -> processTile(index, tilesX, tileW, tileH, width, height, task));
+    }
+
+    private static void processTile(int index, int tilesX, int tileW, int tileH, int width, int height,
+                                    TileTask task) {
+        int x0 = (index % tilesX) * tileW;
+        int y0 = (index / tilesX) * tileH;
+        task.process(x0, y0, Math.min(x0 + tileW, width), Math.min(y0 + tileH, height));
+    }
+
+    private static class IndexAction extends RecursiveAction {
+        private static final long serialVersionUID = -4148317295710936584L;
+
+        private final int from;
+        private final int to;
+        private final transient IntConsumer task;
+
+        IndexAction(int from, int to, IntConsumer task) {
+            this.from = from;
+            this.to = to;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                task.accept(from);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new IndexAction(from, mid, task), new IndexAction(mid, to, task));
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package lewocz.graphics.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Pixels of the tiles in which one image differs from another, compressed tile by tile. Applying the patch
+ * to the other image gives the first one back, so a patch taken from the image before an operation undoes
+ * it. Tiles are {@link TiledImage#TILE_SIZE} pixels square; when the sizes of the images differ, every tile
+ * is in the patch. The compressed data is kept in memory or, once spilled by {@link ImageHistory}, at an
+ * offset of its spill file.
+ */
+final class TilePatch {
+
+    private static final int TILE_SIZE = TiledImage.TILE_SIZE;
+
+    /** Size of the image the patch restores. */
+    private final int width;
+    private final int height;
+    /** Changed tiles in row-major order, and the compressed length of each. */
+    private final int[] tiles;
+    private final int[] lengths;
+    private byte[] data;
+    private long offset = -1;
+
+    private TilePatch(int width, int height, int[] tiles, int[] lengths, byte[] data) {
+        this.width = width;
+        this.height = height;
+        this.tiles = tiles;
+        this.lengths = lengths;
+        this.data = data;
+    }
+
+    /**
+     * Captures the tiles of {@code image} that differ from {@code base}, comparing and compressing them in
+     * parallel.
+     */
+    static TilePatch diff(IntRaster base, IntRaster image, TileExecutor executor) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int count = columns * ((height + TILE_SIZE - 1) / TILE_SIZE);
+        boolean sameSize = base.getWidth() == width && base.getHeight() == height;
+
+        byte[][] compressed = new byte[count][];
+        executor.forEachIndex(count, tile -> {
+            int x0 = tile % columns * TILE_SIZE;
+            int y0 = tile / columns * TILE_SIZE;
+            int x1 = Math.min(x0 + TILE_SIZE, width);
+            int y1 = Math.min(y0 + TILE_SIZE, height);
+            if (!sameSize || !sameRegion(base, image, x0, y0, x1, y1)) {
+                compressed[tile] = compress(image, x0, y0, x1, y1);
+            }
+        });
+
+        int changed = 0;
+        int total = 0;
+        for (byte[] tileData : compressed) {
+            if (tileData != null) {
+                changed++;
+                total += tileData.length;
+            }
+        }
+        int[] tiles = new int[changed];
+        int[] lengths = new int[changed];
+        byte[] data = new byte[total];
+        int index = 0;
+        int position = 0;
+        for (int tile = 0; tile < count; tile++) {
+            if (compressed[tile] != null) {
+                tiles[index] = tile;
+                lengths[index++] = compressed[tile].length;
+                System.arraycopy(compressed[tile], 0, data, position, compressed[tile].length);
+                position += compressed[tile].length;
+            }
+        }
+        return new TilePatch(width, height, tiles, lengths, data);
+    }
+
+    private static boolean sameRegion(IntRaster base, IntRaster image, int x0, int y0, int x1, int y1) {
+        int width = image.getWidth();
+        for (int y = y0; y < y1; y++) {
+            int from = y * width + x0;
+            int to = y * width + x1;
+            if (!Arrays.equals(base.getPixels(), from, to, image.getPixels(), from, to)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] compress(IntRaster image, int x0, int y0, int x1, int y1) {
+        ByteBuffer raw = ByteBuffer.allocate((x1 - x0) * (y1 - y0) * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        IntBuffer pixels = raw.asIntBuffer();
+        for (int y = y0; y < y1; y++) {
+            pixels.put(image.getPixels(), y * image.getWidth() + x0, x1 - x0);
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw.array());
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.capacity() / 4 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Returns a copy of {@code base} with the tiles of the patch written over it, or a new image made of
+     * the patch alone when the sizes differ. {@code base} is not modified.
+     */
+    IntRaster applyTo(IntRaster base, byte[] data, TileExecutor executor) throws IOException {
+        boolean sameSize = base.getWidth() == width && base.getHeight() == height;
+        IntRaster result = sameSize ? base.copy() : new IntRaster(width, height);
+        int columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int[] starts = new int[tiles.length];
+        for (int i = 1; i < tiles.length; i++) {
+            starts[i] = starts[i - 1] + lengths[i - 1];
+        }
+
+        IOException[] errors = new IOException[1];
+        executor.forEachIndex(tiles.length, i -> {
+            int x0 = tiles[i] % columns * TILE_SIZE;
+            int y0 = tiles[i] / columns * TILE_SIZE;
+            int x1 = Math.min(x0 + TILE_SIZE, width);
+            int y1 = Math.min(y0 + TILE_SIZE, height);
+            try {
+                decompress(data, starts[i], lengths[i], result, x0, y0, x1, y1);
+            } catch (IOException e) {
+                errors[0] = e;
+            }
+        });
+        if (errors[0] != null) {
+            throw errors[0];
+        }
+        return result;
+    }
+
+    private static void decompress(byte[] data, int start, int length, IntRaster target,
+                                   int x0, int y0, int x1, int y1) throws IOException {
+        byte[] raw = new byte[(x1 - x0) * (y1 - y0) * Integer.BYTES];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, start, length);
+            int read = 0;
+            while (read < raw.length && !inflater.finished()) {
+                int n = inflater.inflate(raw, read, raw.length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != raw.length) {
+                throw new IOException("Corrupt history tile: expected " + raw.length + " bytes, got " + read + ".");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt history tile", e);
+        } finally {
+            inflater.end();
+        }
+
+        IntBuffer pixels = ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        for (int y = y0; y < y1; y++) {
+            pixels.get(target.getPixels(), y * target.getWidth() + x0, x1 - x0);
+        }
+    }
+
+    int getTileCount() {
+        return tiles.length;
+    }
+
+    /**
+     * Compressed size of the pixels.
+     */
+    int getLength() {
+        int length = 0;
+        for (int tileLength : lengths) {
+            length += tileLength;
+        }
+        return length;
+    }
+
+    /**
+     * The compressed pixels, or {@code null} once spilled.
+     */
+    byte[] getData() {
+        return data;
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    boolean isSpilled() {
+        return data == null;
+    }
+
+    void spilled(long offset) {
+        this.offset = offset;
+        this.data = null;
+    }
+}
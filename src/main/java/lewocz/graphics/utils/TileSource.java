@@ -0,0 +1,38 @@
+package lewocz.graphics.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Pixels of an image that are decoded on request, one rectangular region at a time.
+ */
+public interface TileSource extends Closeable {
+
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * Decodes the given region, which must lie inside the image, into a new raster.
+     */
+    IntRaster readRegion(int x, int y, int width, int height) throws IOException;
+
+    /**
+     * Whether the pixels are already decoded in memory, so that reading a region is only an array copy that
+     * need not be moved off the JavaFX thread.
+     */
+    default boolean isInMemory() {
+        return false;
+    }
+
+    /**
+     * Decodes the whole image. The returned raster must not be modified.
+     */
+    default IntRaster readAll() throws IOException {
+        return readRegion(0, 0, getWidth(), getHeight());
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,256 @@
+package lewocz.graphics.utils;
+
+import javafx.scene.image.WritableImage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Image split into square tiles of {@link #TILE_SIZE} pixels that are decoded from a {@link TileSource} when
+ * first requested and kept in a shared {@link TileCache}. Drawing only asks for the tiles in view, so an
+ * image can be opened and shown without decoding it in full.
+ * <p>
+ * The image also has a pyramid of lower resolution levels (see {@link ImagePyramid}), down to the level
+ * that fits in a single tile. A tile of level {@code k} is built on request from the four tiles of level
+ * {@code k - 1} it covers, which are built the same way in parallel, so only the tiles that are drawn or
+ * previewed are ever computed. A new {@code TiledImage} is created for every version of an image, and its
+ * tiles are cached under it, so an edit never shows tiles of the previous version.
+ * <p>
+ * Drawing must not wait for a tile, which for a coarse level of a large image means reading every source
+ * tile under it, so the JavaFX thread only takes tiles that are already cached or cheap to make
+ * ({@link #getReadyTile}) and asks for the missing ones with {@link #requestTile}, which builds them on a
+ * background thread.
+ */
+public class TiledImage implements Closeable {
+
+    public static final int TILE_SIZE = 256;
+
+    private static final ExecutorService LOADER = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "tile-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final TileSource source;
+    private final TileCache cache;
+    private final int levelCount;
+    /** Tiles queued on the loader, so a tile drawn again before it is ready is not queued twice. */
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    /** Tiles that could not be read, which are not queued again. */
+    private final Set<Long> failed = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean failureReported = new AtomicBoolean();
+    private volatile boolean closed;
+
+    public TiledImage(TileSource source, TileCache cache) {
+        this.source = source;
+        this.cache = cache;
+
+        int levels = 1;
+        while (Math.max(ImagePyramid.levelSize(source.getWidth(), levels - 1),
+                ImagePyramid.levelSize(source.getHeight(), levels - 1)) > TILE_SIZE) {
+            levels++;
+        }
+        this.levelCount = levels;
+    }
+
+    public int getWidth() {
+        return source.getWidth();
+    }
+
+    public int getHeight() {
+        return source.getHeight();
+    }
+
+    public TileCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Number of pyramid levels, the last of which fits in a single tile.
+     */
+    public int getLevelCount() {
+        return levelCount;
+    }
+
+    public int getLevelWidth(int level) {
+        return ImagePyramid.levelSize(getWidth(), level);
+    }
+
+    public int getLevelHeight(int level) {
+        return ImagePyramid.levelSize(getHeight(), level);
+    }
+
+    public int getColumns(int level) {
+        return (getLevelWidth(level) + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    public int getRows(int level) {
+        return (getLevelHeight(level) + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    /**
+     * Returns the coarsest level with at least one pixel per device pixel at the given drawing scale.
+     */
+    public int getLevelForScale(double scale) {
+        return ImagePyramid.levelForScale(scale, levelCount);
+    }
+
+    /**
+     * Returns the tile at the given level, column and row, decoding or downsampling it if it is not cached.
+     * Tiles in the last column and row are cut to the size of the level.
+     */
+    public WritableImage getTile(int level, int column, int row) {
+        WritableImage tile = cache.get(this, level, column, row);
+        if (tile == null) {
+            tile = (level == 0 ? decodeTile(column, row) : downsampleTile(level, column, row)).toImage();
+            // Checked under the lock of the cache, so a closed image never puts tiles back into it
+            synchronized (cache) {
+                if (!closed) {
+                    cache.put(this, level, column, row, tile);
+                }
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * Returns the tile if it is cached, without computing it.
+     */
+    public WritableImage getCachedTile(int level, int column, int row) {
+        return cache.get(this, level, column, row);
+    }
+
+    /**
+     * Returns the tile if it is cached or can be made without waiting, which is a tile of level 0 of an image
+     * held in memory, or {@code null} otherwise. Every edit creates a new image with nothing cached yet, so
+     * this is what keeps an edited image from showing placeholders at full size.
+     */
+    public WritableImage getReadyTile(int level, int column, int row) {
+        WritableImage tile = cache.get(this, level, column, row);
+        if (tile == null && level == 0 && source.isInMemory() && !closed) {
+            tile = getTile(level, column, row);
+        }
+        return tile;
+    }
+
+    /**
+     * Computes the tile on a background thread, unless it is already queued or has failed before, and runs
+     * {@code onLoaded} on that thread once it is cached. If the tile cannot be read, for instance because the
+     * file was truncated after it was opened, it is not requested again, and {@code onFailed} is called with
+     * the error, only for the first tile of the image that fails.
+     */
+    public void requestTile(int level, int column, int row, Runnable onLoaded, Consumer<RuntimeException> onFailed) {
+        long key = ((long) level << 56) | ((long) column << 28) | row;
+        if (closed || failed.contains(key) || !pending.add(key)) {
+            return;
+        }
+        LOADER.execute(() -> {
+            try {
+                if (!closed) {
+                    getTile(level, column, row);
+                    onLoaded.run();
+                }
+            } catch (RuntimeException e) {
+                // A closed source fails to read, which is expected
+                if (!closed) {
+                    failed.add(key);
+                    if (failureReported.compareAndSet(false, true)) {
+                        onFailed.accept(e);
+                    }
+                }
+            } finally {
+                pending.remove(key);
+            }
+        });
+    }
+
+    private IntRaster decodeTile(int column, int row) {
+        int x = column * TILE_SIZE;
+        int y = row * TILE_SIZE;
+        try {
+            return source.readRegion(x, y, Math.min(TILE_SIZE, getWidth() - x), Math.min(TILE_SIZE, getHeight() - y));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode tile (" + column + ", " + row + ")", e);
+        }
+    }
+
+    /**
+     * Assembles the (up to) four tiles of the finer level under the tile and halves them.
+     */
+    private IntRaster downsampleTile(int level, int column, int row) {
+        int finer = level - 1;
+        int x = 2 * column * TILE_SIZE;
+        int y = 2 * row * TILE_SIZE;
+        IntRaster region = new IntRaster(Math.min(2 * TILE_SIZE, getLevelWidth(finer) - x),
+                Math.min(2 * TILE_SIZE, getLevelHeight(finer) - y));
+        int columns = getColumns(finer);
+        int rows = getRows(finer);
+
+        ImageProcessor.getExecutor().forEachIndex(4, quadrant -> {
+            int childColumn = 2 * column + (quadrant & 1);
+            int childRow = 2 * row + (quadrant >> 1);
+            if (childColumn < columns && childRow < rows) {
+                copyTile(getTile(finer, childColumn, childRow), region, (quadrant & 1) * TILE_SIZE,
+                        (quadrant >> 1) * TILE_SIZE);
+            }
+        });
+
+        return ImagePyramid.halve(region, TileExecutor.serial());
+    }
+
+    private static void copyTile(WritableImage tile, IntRaster target, int x, int y) {
+        IntRaster pixels = IntRaster.fromImage(tile);
+        for (int row = 0; row < pixels.getHeight(); row++) {
+            System.arraycopy(pixels.getPixels(), row * pixels.getWidth(), target.getPixels(),
+                    (y + row) * target.getWidth() + x, pixels.getWidth());
+        }
+    }
+
+    /**
+     * Decodes the whole image. The returned raster must not be modified.
+     */
+    public IntRaster toRaster() throws IOException {
+        return source.readAll();
+    }
+
+    /**
+     * Assembles a whole pyramid level from its tiles, computing the missing ones in parallel. Level 0 is
+     * the same as {@link #toRaster()}.
+     */
+    public IntRaster toRaster(int level) throws IOException {
+        if (level == 0) {
+            return toRaster();
+        }
+        IntRaster raster = new IntRaster(getLevelWidth(level), getLevelHeight(level));
+        int columns = getColumns(level);
+        try {
+            ImageProcessor.getExecutor().forEachIndex(columns * getRows(level), index -> {
+                int column = index % columns;
+                int row = index / columns;
+                copyTile(getTile(level, column, row), raster, column * TILE_SIZE, row * TILE_SIZE);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return raster;
+    }
+
+    /**
+     * Drops the cached tiles and releases the source.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (cache) {
+            closed = true;
+            cache.invalidate(this);
+        }
+        source.close();
+    }
+}
@@ -6,6 +6,7 @@ import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.*;
 import javafx.scene.image.WritableImage;
 import javafx.scene.layout.Pane;
+import javafx.scene.layout.VBox;
 import javafx.stage.FileChooser;
 import lewocz.graphics.command.*;
 import lewocz.graphics.event.EventQueue;
@@ -14,6 +15,7 @@ import lewocz.graphics.viewmodel.IMainViewModel;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.io.UncheckedIOException;
 import java.util.Optional;
 
 import static lewocz.graphics.view.utils.AlertUtils.showAlert;
@@ -25,7 +27,13 @@ public class MainView {
     @FXML
     private Canvas canvas;
     @FXML
+    private VBox progressPane;
+    @FXML
     private ProgressIndicator loadingIndicator;
+    @FXML
+    private Label progressLabel;
+    @FXML
+    private Button cancelOperationButton;
 
     @FXML
     private MenuItem saveMenuItem;
@@ -35,12 +43,28 @@ public class MainView {
     private MenuItem saveShapesMenuItem;
     @FXML
     private MenuItem loadShapesMenuItem;
+    @FXML
+    private MenuItem undoShapeMenuItem;
+    @FXML
+    private MenuItem redoShapeMenuItem;
+    @FXML
+    private MenuItem deleteShapeMenuItem;
+    @FXML
+    private MenuItem undoImageMenuItem;
+    @FXML
+    private MenuItem redoImageMenuItem;
 
     private final IMainViewModel mainViewModel;
     private final EventQueue eventQueue;
 
     private GraphicsContext gc;
 
+    // Canvas zoom, changed with the mouse wheel; shapes and mouse events use unzoomed coordinates
+    private static final double MIN_ZOOM = 1.0 / 64;
+    private static final double MAX_ZOOM = 8.0;
+    private static final double ZOOM_STEP = 1.25;
+    private double zoom = 1.0;
+
     public MainView(IMainViewModel mainViewModel, EventQueue eventQueue) {
         this.mainViewModel = mainViewModel;
         this.eventQueue = eventQueue;
@@ -56,7 +80,10 @@ public class MainView {
     }
 
     private void bindProperties() {
-        loadingIndicator.visibleProperty().bind(mainViewModel.isProcessingProperty());
+        progressPane.visibleProperty().bind(mainViewModel.isProcessingProperty());
+        loadingIndicator.progressProperty().bind(mainViewModel.progressProperty());
+        progressLabel.textProperty().bind(mainViewModel.progressMessageProperty());
+        cancelOperationButton.setOnAction(e -> mainViewModel.cancelOperation());
         canvas.widthProperty().bind(canvasPane.widthProperty());
         canvas.heightProperty().bind(canvasPane.heightProperty());
 
@@ -64,15 +91,24 @@ public class MainView {
         loadMenuItem.setOnAction(e -> onLoadMenuItemClicked());
         saveShapesMenuItem.setOnAction(e -> onSaveShapesMenuItemClicked());
         loadShapesMenuItem.setOnAction(e -> onLoadShapesMenuItemClicked());
+        undoShapeMenuItem.disableProperty().bind(mainViewModel.canUndoShapeProperty().not());
+        redoShapeMenuItem.disableProperty().bind(mainViewModel.canRedoShapeProperty().not());
+        undoShapeMenuItem.setOnAction(e -> eventQueue.enqueue(new UndoShapeEditCommand(mainViewModel)));
+        redoShapeMenuItem.setOnAction(e -> eventQueue.enqueue(new RedoShapeEditCommand(mainViewModel)));
+        deleteShapeMenuItem.setOnAction(e -> eventQueue.enqueue(new DeleteShapeCommand(mainViewModel)));
+        undoImageMenuItem.disableProperty().bind(mainViewModel.canUndoImageProperty().not());
+        redoImageMenuItem.disableProperty().bind(mainViewModel.canRedoImageProperty().not());
+        undoImageMenuItem.setOnAction(e -> eventQueue.enqueue(new UndoImageOperationCommand(mainViewModel)));
+        redoImageMenuItem.setOnAction(e -> eventQueue.enqueue(new RedoImageOperationCommand(mainViewModel)));
     }
 
     private void setupCanvasListeners() {
         canvas.setOnMousePressed(mouseEvent -> {
-            Command command = new MousePressedCommand(mainViewModel, mouseEvent.getX(), mouseEvent.getY());
+            Command command = new MousePressedCommand(mainViewModel, mouseEvent.getX() / zoom, mouseEvent.getY() / zoom);
             eventQueue.enqueue(command);
         });
         canvas.setOnMouseDragged(mouseEvent -> {
-            Command command = new MouseDraggedCommand(mainViewModel, mouseEvent.getX(), mouseEvent.getY());
+            Command command = new MouseDraggedCommand(mainViewModel, mouseEvent.getX() / zoom, mouseEvent.getY() / zoom);
             eventQueue.enqueue(command);
         });
         canvas.setOnMouseReleased(mouseEvent -> {
@@ -80,6 +116,14 @@ public class MainView {
             eventQueue.enqueue(command);
         });
 
+        canvas.setOnScroll(scrollEvent -> {
+            if (scrollEvent.getDeltaY() != 0) {
+                double factor = scrollEvent.getDeltaY() > 0 ? ZOOM_STEP : 1 / ZOOM_STEP;
+                zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+                redrawCanvas();
+            }
+        });
+
         canvas.widthProperty().addListener(evt -> redrawCanvas());
         canvas.heightProperty().addListener(evt -> redrawCanvas());
     }
@@ -110,8 +154,13 @@ public class MainView {
 
             Optional<ButtonType> result = alert.showAndWait();
             if (result.isPresent() && result.get() != ButtonType.CANCEL) {
-                WritableImage snapshot = new WritableImage((int) canvas.getWidth(), (int) canvas.getHeight());
-                canvas.snapshot(null, snapshot);
+                WritableImage snapshot;
+                try {
+                    snapshot = snapshotForSave();
+                } catch (UncheckedIOException e) {
+                    showAlert("Save Error", "Failed to read the image: " + e.getCause().getMessage());
+                    return;
+                }
 
                 String filePath = file.getAbsolutePath();
                 PNMFormat format = null;
@@ -223,8 +272,36 @@ public class MainView {
         }
     }
 
+    /**
+     * Takes a picture of the canvas at zoom 1, with images drawn from their full size pixels rather than
+     * from pyramid levels, placeholders or a live preview, so that what is saved does not depend on the zoom
+     * or on tiles that are still loading.
+     */
+    private WritableImage snapshotForSave() {
+        WritableImage snapshot = new WritableImage((int) canvas.getWidth(), (int) canvas.getHeight());
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        try {
+            for (ShapeModel shape : mainViewModel.getShapes()) {
+                if (shape instanceof ImageModel image) {
+                    image.drawFullResolution(gc);
+                } else {
+                    shape.draw(gc);
+                }
+            }
+            if (mainViewModel.getTempShape() != null) {
+                mainViewModel.getTempShape().draw(gc);
+            }
+            canvas.snapshot(null, snapshot);
+        } finally {
+            redrawCanvas();
+        }
+        return snapshot;
+    }
+
     private void redrawCanvas() {
         gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        gc.save();
+        gc.scale(zoom, zoom);
         for (ShapeModel shape : mainViewModel.getShapes()) {
             shape.draw(gc);
         }
@@ -232,5 +309,6 @@ public class MainView {
         if (mainViewModel.getTempShape() != null) {
             mainViewModel.getTempShape().draw(gc);
         }
+        gc.restore();
     }
 }
@@ -112,7 +112,7 @@ public class BezierScaleRotateComponent {
         ShapeModel shape = mainViewModel.getCurrentShape();
         if (shape instanceof BezierCurveModel) {
             BezierCurveModel bezierCurve = (BezierCurveModel) shape;
-            bezierCurve.getControlPoints().set(index, newPoint);
+            bezierCurve.setControlPoint(index, newPoint);
             controlPointsData.set(index, newPoint);
             mainViewModel.requestRedraw();
         }
@@ -147,6 +147,12 @@ public class BezierScaleRotateComponent {
             double pivotY = Double.parseDouble(scalingPivotYField.getText());
             double factor = Double.parseDouble(scaleFactorField.getText());
 
+            // Scaling by zero could not be undone
+            if (factor == 0 || !Double.isFinite(factor)) {
+                showAlert("Invalid Input", "Please enter a finite scale factor other than zero.");
+                return;
+            }
+
             if (mainViewModel.getCurrentShape() == null) {
                 showAlert("No Shape Selected", "Please select a shape to scale.");
                 return;
@@ -1,21 +1,30 @@
 package lewocz.graphics.view.components.imageoperations;
 
+import javafx.animation.PauseTransition;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.paint.Color;
+import javafx.util.Duration;
 import lewocz.graphics.command.*;
 import lewocz.graphics.event.EventQueue;
+import lewocz.graphics.utils.ImageProcessor;
 import lewocz.graphics.view.components.IntegerTextField;
 import lewocz.graphics.viewmodel.IMainViewModel;
+import lewocz.graphics.viewmodel.PreviewOperation;
 import org.springframework.stereotype.Component;
 
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static lewocz.graphics.view.utils.AlertUtils.showAlert;
 
 @Component
 public class ImageOperationsComponent {
 
+    // Live Preview
+    @FXML
+    private CheckBox livePreviewCheckBox;
+
     // Addition Controls
     @FXML
     private IntegerTextField addRedField;
@@ -72,6 +81,8 @@ public class ImageOperationsComponent {
     @FXML
     private Button applySmoothingFilterButton;
     @FXML
+    private IntegerTextField medianRadiusField;
+    @FXML
     private Button applyMedianFilterButton;
     @FXML
     private Button applySobelFilterButton;
@@ -159,6 +170,10 @@ public class ImageOperationsComponent {
     private final IMainViewModel mainViewModel;
     private final EventQueue eventQueue;
 
+    // Waits for typing to pause before rendering a preview
+    private static final Duration PREVIEW_DELAY = Duration.millis(150);
+    private final PauseTransition previewDebounce = new PauseTransition(PREVIEW_DELAY);
+
     public ImageOperationsComponent(IMainViewModel mainViewModel, EventQueue eventQueue) {
         this.mainViewModel = mainViewModel;
         this.eventQueue = eventQueue;
@@ -167,6 +182,160 @@ public class ImageOperationsComponent {
     @FXML
     public void initialize() {
         bindActions();
+        bindPreviews();
+    }
+
+    /**
+     * Re-renders the preview of an operation whenever one of its fields changes while live preview is on.
+     * Only the full-resolution Apply commands change the image.
+     */
+    private void bindPreviews() {
+        livePreviewCheckBox.selectedProperty().addListener((observable, wasSelected, selected) -> {
+            if (!selected) {
+                previewDebounce.stop();
+                mainViewModel.clearPreview();
+            }
+        });
+
+        previewOn(this::additionPreview, addRedField, addGreenField, addBlueField);
+        previewOn(this::subtractionPreview, subRedField, subGreenField, subBlueField);
+        previewOn(this::multiplicationPreview, mulRedField, mulGreenField, mulBlueField);
+        previewOn(this::divisionPreview, divRedField, divGreenField, divBlueField);
+        previewOn(this::brightnessPreview, brightnessField);
+        previewOn(this::medianFilterPreview, medianRadiusField);
+        previewOn(this::gaussianBlurPreview, gaussianKernelSizeField, gaussianSigmaField);
+        previewOn(this::manualThresholdingPreview, manualThresholdField);
+        previewOn(this::percentBlackSelectionPreview, percentBlackField);
+        previewOn(this::niblackThresholdingPreview, niblackWindowSizeField, niblackKField);
+        previewOn(this::sauvolaThresholdingPreview, sauvolaWindowSizeField, sauvolaKField, sauvolaRField);
+    }
+
+    private void previewOn(Supplier<PreviewOperation> preview, TextInputControl... fields) {
+        for (TextInputControl field : fields) {
+            field.textProperty().addListener((observable, oldText, newText) -> schedulePreview(preview));
+        }
+    }
+
+    private void schedulePreview(Supplier<PreviewOperation> preview) {
+        if (!livePreviewCheckBox.isSelected()) {
+            return;
+        }
+        previewDebounce.setOnFinished(e -> {
+            PreviewOperation operation;
+            try {
+                operation = preview.get();
+            } catch (NumberFormatException ex) {
+                // Incomplete input while typing, no alert
+                operation = null;
+            }
+            if (operation != null) {
+                mainViewModel.previewOperation(operation);
+            } else {
+                mainViewModel.clearPreview();
+            }
+        });
+        previewDebounce.playFromStart();
+    }
+
+    // Preview operations; each returns null for parameters the Apply button would reject
+
+    private PreviewOperation additionPreview() {
+        double addRed = Double.parseDouble(addRedField.getText());
+        double addGreen = Double.parseDouble(addGreenField.getText());
+        double addBlue = Double.parseDouble(addBlueField.getText());
+        return (image, scale) -> ImageProcessor.addRGB(image, addRed, addGreen, addBlue);
+    }
+
+    private PreviewOperation subtractionPreview() {
+        double subRed = Double.parseDouble(subRedField.getText());
+        double subGreen = Double.parseDouble(subGreenField.getText());
+        double subBlue = Double.parseDouble(subBlueField.getText());
+        return (image, scale) -> ImageProcessor.subtractRGB(image, subRed, subGreen, subBlue);
+    }
+
+    private PreviewOperation multiplicationPreview() {
+        double mulRed = Double.parseDouble(mulRedField.getText());
+        double mulGreen = Double.parseDouble(mulGreenField.getText());
+        double mulBlue = Double.parseDouble(mulBlueField.getText());
+        return (image, scale) -> ImageProcessor.multiplyRGB(image, mulRed, mulGreen, mulBlue);
+    }
+
+    private PreviewOperation divisionPreview() {
+        double divRed = Double.parseDouble(divRedField.getText());
+        double divGreen = Double.parseDouble(divGreenField.getText());
+        double divBlue = Double.parseDouble(divBlueField.getText());
+        if (divRed == 0 || divGreen == 0 || divBlue == 0) {
+            return null;
+        }
+        return (image, scale) -> ImageProcessor.divideRGB(image, divRed, divGreen, divBlue);
+    }
+
+    private PreviewOperation brightnessPreview() {
+        double brightnessChange = Double.parseDouble(brightnessField.getText().replace(',', '.'));
+        return (image, scale) -> ImageProcessor.adjustBrightness(image, brightnessChange);
+    }
+
+    private PreviewOperation medianFilterPreview() {
+        int radius = Integer.parseInt(medianRadiusField.getText());
+        if (radius <= 0) {
+            return null;
+        }
+        return (image, scale) -> {
+            int scaledRadius = (int) Math.round(radius * scale);
+            return scaledRadius > 0 ? ImageProcessor.applyMedianFilter(image, scaledRadius) : image;
+        };
+    }
+
+    private PreviewOperation gaussianBlurPreview() {
+        int kernelSize = Integer.parseInt(gaussianKernelSizeField.getText());
+        double sigma = Double.parseDouble(gaussianSigmaField.getText());
+        if (kernelSize % 2 == 0 || kernelSize <= 0 || sigma <= 0) {
+            return null;
+        }
+        return (image, scale) -> ImageProcessor.applyGaussianBlur(image, scaledWindow(kernelSize, scale), sigma * scale);
+    }
+
+    private PreviewOperation manualThresholdingPreview() {
+        int threshold = Integer.parseInt(manualThresholdField.getText());
+        if (threshold < 0 || threshold > 255) {
+            return null;
+        }
+        return (image, scale) -> ImageProcessor.manualThresholding(image, threshold);
+    }
+
+    private PreviewOperation percentBlackSelectionPreview() {
+        double percentBlack = Double.parseDouble(percentBlackField.getText().replace(',', '.'));
+        if (percentBlack < 0 || percentBlack > 100) {
+            return null;
+        }
+        return (image, scale) -> ImageProcessor.percentBlackSelection(image, percentBlack);
+    }
+
+    private PreviewOperation niblackThresholdingPreview() {
+        int windowSize = Integer.parseInt(niblackWindowSizeField.getText());
+        double k = Double.parseDouble(niblackKField.getText().replace(',', '.'));
+        if (windowSize % 2 == 0 || windowSize <= 0) {
+            return null;
+        }
+        return (image, scale) -> ImageProcessor.niblackThresholding(image, scaledWindow(windowSize, scale), k);
+    }
+
+    private PreviewOperation sauvolaThresholdingPreview() {
+        int windowSize = Integer.parseInt(sauvolaWindowSizeField.getText());
+        double k = Double.parseDouble(sauvolaKField.getText().replace(',', '.'));
+        double r = Double.parseDouble(sauvolaRField.getText().replace(',', '.'));
+        if (windowSize % 2 == 0 || windowSize <= 0) {
+            return null;
+        }
+        return (image, scale) -> ImageProcessor.sauvolaThresholding(image, scaledWindow(windowSize, scale), k, r);
+    }
+
+    /**
+     * Scales an odd window size to the preview, keeping it odd and at least 1.
+     */
+    private static int scaledWindow(int size, double scale) {
+        int radius = (int) Math.round((size / 2) * scale);
+        return 2 * radius + 1;
     }
 
     private void bindActions() {
@@ -281,8 +450,19 @@ public class ImageOperationsComponent {
     }
 
     private void onApplyMedianFilter() {
-        Command command = new ApplyMedianFilterCommand(mainViewModel);
-        eventQueue.enqueue(command);
+        try {
+            int radius = Integer.parseInt(medianRadiusField.getText());
+
+            if (radius <= 0) {
+                showAlert("Invalid Radius", "Radius must be a positive integer.");
+                return;
+            }
+
+            Command command = new ApplyMedianFilterCommand(mainViewModel, radius);
+            eventQueue.enqueue(command);
+        } catch (NumberFormatException e) {
+            showAlert("Invalid Input", "Please enter a valid integer for the median radius.");
+        }
     }
 
     private void onApplySobelFilter() {
@@ -4,14 +4,20 @@ import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyStringProperty;
 import javafx.collections.ObservableList;
 import javafx.scene.Group;
 import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
 import lewocz.graphics.model.PNMFormat;
+import lewocz.graphics.model.SerializablePoint;
 import lewocz.graphics.model.ShapeModel;
 import lewocz.graphics.model.Tool;
+import lewocz.graphics.utils.OperationMonitor;
 
+import java.util.List;
 
 public interface IMainViewModel {
     // Observable List of Shapes
@@ -44,6 +50,7 @@ public interface IMainViewModel {
     // Mouse Event Handlers
     void onMousePressed(double x, double y);
     void onMouseDragged(double x, double y);
+    void onMouseDragged(List<SerializablePoint> path);
     void onMouseReleased();
 
     Group createRGBColoredCube(float size);
@@ -64,7 +71,7 @@ public interface IMainViewModel {
     void applyGrayscaleAverage();
     void applyGrayscaleMax();
     void applySmoothingFilter();
-    void applyMedianFilter();
+    void applyMedianFilter(int radius);
     void applySobelFilter();
     void applyHighPassFilter();
     void applyGaussianBlur(int kernelSize, double sigma);
@@ -85,9 +92,32 @@ public interface IMainViewModel {
     void calculateColorPercentage(Color targetColor, double tolerance);
     void detectLargestColorArea(Color targetColor, double tolerance);
 
+    // Undo and redo of image operations
+    void undoImageOperation();
+    void redoImageOperation();
+    ReadOnlyBooleanProperty canUndoImageProperty();
+    ReadOnlyBooleanProperty canRedoImageProperty();
+
+    // Undo and redo of shape edits
+    void deleteCurrentShape();
+    void undoShapeEdit();
+    void redoShapeEdit();
+    ReadOnlyBooleanProperty canUndoShapeProperty();
+    ReadOnlyBooleanProperty canRedoShapeProperty();
+
+    // Live preview on a downsampled copy of the current image; a newer request replaces a pending one
+    void previewOperation(PreviewOperation operation);
+    void clearPreview();
+
     BooleanProperty isProcessingProperty();
     void setIsProcessing(boolean isProcessing);
 
+    // Long-running image operations: progress, estimated time left and cancellation
+    void runOperation(OperationMonitor monitor, Runnable operation);
+    void cancelOperation();
+    ReadOnlyDoubleProperty progressProperty();
+    ReadOnlyStringProperty progressMessageProperty();
+
     void setBezierDegree(int degree);
     ShapeModel getCurrentShape();
     ObjectProperty<ShapeModel> currentShapeProperty();
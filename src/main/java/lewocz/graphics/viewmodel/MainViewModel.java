@@ -1,5 +1,8 @@
 package lewocz.graphics.viewmodel;
 
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
@@ -7,30 +10,39 @@ import javafx.collections.ObservableList;
 import javafx.geometry.Point2D;
 import javafx.scene.Group;
 import javafx.scene.control.Alert;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.image.Image;
 import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.PhongMaterial;
 import javafx.scene.shape.Box;
+import javafx.util.Duration;
 import lewocz.graphics.model.*;
-import lewocz.graphics.utils.ImageProcessor;
-import lewocz.graphics.utils.PNMImageIO;
-import lewocz.graphics.utils.ColorUtils;
+import lewocz.graphics.utils.*;
 import lombok.Getter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.*;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
 
 @Component
-public class MainViewModel implements IMainViewModel {
+public class MainViewModel implements IMainViewModel, DisposableBean {
     private static final Logger logger = LoggerFactory.getLogger(MainViewModel.class);
 
     @Getter
     private final ObservableList<ShapeModel> shapes = FXCollections.observableArrayList();
+    /** Finds the topmost shape under a point; follows {@link #shapes} on its own. */
+    private final ShapeIndex shapeIndex = new ShapeIndex(shapes);
 
     private ObjectProperty<ShapeModel> tempShape = new SimpleObjectProperty<>();
 
@@ -60,11 +72,19 @@ public class MainViewModel implements IMainViewModel {
     private boolean isUpdating = false;
 
     private final ObjectProperty<Runnable> redrawCanvasCallback = new SimpleObjectProperty<>();
+    private final AtomicBoolean redrawPending = new AtomicBoolean();
 
     private double startX, startY;
     private boolean isDragging;
     private final BooleanProperty isProcessing = new SimpleBooleanProperty(false);
 
+    // Progress of the running image operation, polled from its monitor on the JavaFX thread
+    private static final Duration PROGRESS_INTERVAL = Duration.millis(100);
+    private final ReadOnlyDoubleWrapper progress = new ReadOnlyDoubleWrapper(ProgressIndicator.INDETERMINATE_PROGRESS);
+    private final ReadOnlyStringWrapper progressMessage = new ReadOnlyStringWrapper("");
+    private volatile OperationMonitor currentOperation;
+    private Timeline progressTimeline;
+
     // For Scaling
     private Point2D scalingPivotPoint;
     private boolean isScaling = false;
@@ -75,7 +95,30 @@ public class MainViewModel implements IMainViewModel {
     private boolean isRotating = false;
     private double initialAngle;
 
-    public MainViewModel() {
+    private final TileCache tileCache;
+
+    // Undo and redo of image operations, as compressed tile patches
+    private final ImageHistory imageHistory;
+    private final ReadOnlyBooleanWrapper canUndoImage = new ReadOnlyBooleanWrapper(false);
+    private final ReadOnlyBooleanWrapper canRedoImage = new ReadOnlyBooleanWrapper(false);
+
+    // Undo and redo of shape edits, as parametric deltas
+    private final ShapeHistory shapeHistory;
+    private final ReadOnlyBooleanWrapper canUndoShape = new ReadOnlyBooleanWrapper(false);
+    private final ReadOnlyBooleanWrapper canRedoShape = new ReadOnlyBooleanWrapper(false);
+
+    // Live preview: renders on its own thread, and a new request cancels the render of the previous one
+    private static final int PREVIEW_SIZE = 1024;
+    private final PreviewRenderer previewRenderer = new PreviewRenderer();
+
+    public MainViewModel(@Value("${graphics.tile-cache.max-bytes:268435456}") long tileCacheMaxBytes,
+                         @Value("${graphics.history.max-memory-bytes:67108864}") long historyMaxMemoryBytes,
+                         @Value("${graphics.history.max-disk-bytes:1073741824}") long historyMaxDiskBytes,
+                         @Value("${graphics.history.spill-dir:${java.io.tmpdir}}") String historySpillDirectory,
+                         @Value("${graphics.shape-history.max-edits:1000}") int shapeHistoryMaxEdits) {
+        this.tileCache = new TileCache(tileCacheMaxBytes);
+        this.imageHistory = new ImageHistory(historyMaxMemoryBytes, historyMaxDiskBytes, Path.of(historySpillDirectory));
+        this.shapeHistory = new ShapeHistory(shapeHistoryMaxEdits);
         // Initialize listeners for color properties
         initializeColorListeners();
     }
@@ -111,6 +154,11 @@ public class MainViewModel implements IMainViewModel {
     private ImageModel currentImageModel;
 
     public void setCurrentImageModel(ImageModel imageModel) {
+        if (imageModel != currentImageModel) {
+            // The history belongs to the image it was recorded on
+            clearImageHistory();
+            updateHistoryState();
+        }
         this.currentImageModel = imageModel;
     }
 
@@ -125,6 +173,7 @@ public class MainViewModel implements IMainViewModel {
 
     @Override
     public void onMousePressed(double x, double y) {
+        shapeHistory.beginGesture();
         startX = x;
         startY = y;
         isDragging = true;
@@ -198,7 +247,7 @@ public class MainViewModel implements IMainViewModel {
                 if (currentShape.get() != null) {
                     double deltaX = endX - startX;
                     double deltaY = endY - startY;
-                    currentShape.get().moveBy(deltaX, deltaY);
+                    shapeHistory.apply(ShapeEdit.drag(currentShape.get(), deltaX, deltaY), shapes);
                     startX = endX;
                     startY = endY;
                 }
@@ -221,7 +270,7 @@ public class MainViewModel implements IMainViewModel {
                     // Update the last control point to the current mouse position
                     int lastIndex = bezierCurve.getControlPoints().size() - 1;
                     if (lastIndex >= 0) {
-                        bezierCurve.getControlPoints().set(lastIndex, new SerializablePoint(x, y));
+                        bezierCurve.setControlPoint(lastIndex, new SerializablePoint(x, y));
                     }
                 }
                 break;
@@ -229,7 +278,8 @@ public class MainViewModel implements IMainViewModel {
                 if (isRotating && currentShape.get() != null) {
                     double currentAngle = calculateAngle(rotationPivotPoint, new Point2D(x, y));
                     double angleDifference = currentAngle - initialAngle;
-                    currentShape.get().rotate(angleDifference, rotationPivotPoint.getX(), rotationPivotPoint.getY());
+                    shapeHistory.apply(new ShapeEdit.Rotate(currentShape.get(), angleDifference,
+                            rotationPivotPoint.getX(), rotationPivotPoint.getY()), shapes);
                     initialAngle = currentAngle;
                 }
                 break;
@@ -238,8 +288,12 @@ public class MainViewModel implements IMainViewModel {
                 if (isScaling && currentShape.get() != null) {
                     double currentDistance = scalingPivotPoint.distance(x, y);
                     double scaleFactor = currentDistance / initialDistance;
-                    currentShape.get().scale(scaleFactor, scalingPivotPoint.getX(), scalingPivotPoint.getY());
-                    initialDistance = currentDistance;
+                    // Collapsing the shape onto the pivot could not be undone
+                    if (scaleFactor != 0 && Double.isFinite(scaleFactor)) {
+                        shapeHistory.apply(new ShapeEdit.Scale(currentShape.get(), scaleFactor,
+                                scalingPivotPoint.getX(), scalingPivotPoint.getY()), shapes);
+                        initialDistance = currentDistance;
+                    }
                 }
                 break;
             default:
@@ -249,8 +303,30 @@ public class MainViewModel implements IMainViewModel {
         requestRedraw();
     }
 
+    /**
+     * Handles a batch of drag positions in one go: a freehand stroke gets every point, and every other
+     * tool only needs the last one, since moves, rotations and scaling between the points add up.
+     */
+    @Override
+    public void onMouseDragged(List<SerializablePoint> path) {
+        if (!isDragging || path.isEmpty()) return;
+
+        if (getSelectedTool() == Tool.FREEHAND) {
+            if (tempShape.get() instanceof FreehandModel freehand) {
+                freehand.addPoints(path);
+            }
+            requestRedraw();
+            return;
+        }
+
+        SerializablePoint last = path.get(path.size() - 1);
+        onMouseDragged(last.getX(), last.getY());
+    }
+
     @Override
     public void onMouseReleased() {
+        shapeHistory.endGesture();
+        updateShapeHistoryState();
         if (!isDragging) return;
         isDragging = false;
 
@@ -313,16 +389,72 @@ public class MainViewModel implements IMainViewModel {
 
     @Override
     public void rotateShape(double angle, double pivotX, double pivotY) {
-        getCurrentShape().rotate(angle, pivotX, pivotY);
+        shapeHistory.apply(new ShapeEdit.Rotate(getCurrentShape(), angle, pivotX, pivotY), shapes);
+        updateShapeHistoryState();
         requestRedraw();
     }
 
     @Override
     public void scaleShape(double factor, double pivotX, double pivotY) {
-        getCurrentShape().scale(factor, pivotX, pivotY);
+        shapeHistory.apply(new ShapeEdit.Scale(getCurrentShape(), factor, pivotX, pivotY), shapes);
+        updateShapeHistoryState();
+        requestRedraw();
+    }
+
+    @Override
+    public void deleteCurrentShape() {
+        ShapeModel shape = currentShape.get();
+        if (shape == null) {
+            return;
+        }
+        shapeHistory.apply(new ShapeEdit.Remove(shape, shapes.indexOf(shape)), shapes);
+        currentShape.set(null);
+        updateShapeHistoryState();
+        requestRedraw();
+    }
+
+    @Override
+    public void undoShapeEdit() {
+        if (shapeHistory.undo(shapes)) {
+            onShapeHistoryStep();
+        }
+    }
+
+    @Override
+    public void redoShapeEdit() {
+        if (shapeHistory.redo(shapes)) {
+            onShapeHistoryStep();
+        }
+    }
+
+    private void onShapeHistoryStep() {
+        // A shape taken off the canvas cannot stay selected
+        if (currentShape.get() != null && !shapes.contains(currentShape.get())) {
+            currentShape.set(null);
+        }
+        updateShapeHistoryState();
         requestRedraw();
     }
 
+    private void updateShapeHistoryState() {
+        boolean canUndo = shapeHistory.canUndo();
+        boolean canRedo = shapeHistory.canRedo();
+        Platform.runLater(() -> {
+            canUndoShape.set(canUndo);
+            canRedoShape.set(canRedo);
+        });
+    }
+
+    @Override
+    public ReadOnlyBooleanProperty canUndoShapeProperty() {
+        return canUndoShape.getReadOnlyProperty();
+    }
+
+    @Override
+    public ReadOnlyBooleanProperty canRedoShapeProperty() {
+        return canRedoShape.getReadOnlyProperty();
+    }
+
     private double calculateAngle(Point2D pivot, Point2D point) {
         return Math.toDegrees(Math.atan2(point.getY() - pivot.getY(), point.getX() - pivot.getX()));
     }
@@ -366,6 +498,8 @@ public class MainViewModel implements IMainViewModel {
             List<ShapeModel> loadedShapes = (List<ShapeModel>) in.readObject();
             shapes.clear();
             shapes.addAll(loadedShapes);
+            shapeHistory.clear();
+            updateShapeHistoryState();
             requestRedraw();
         } catch (IOException | ClassNotFoundException e) {
             e.printStackTrace();
@@ -382,17 +516,12 @@ public class MainViewModel implements IMainViewModel {
     }
 
     private void addShape(ShapeModel shape) {
-        shapes.add(shape);
+        shapeHistory.apply(new ShapeEdit.Add(shape, shapes.size()), shapes);
+        updateShapeHistoryState();
     }
 
     private void selectShapeAt(double x, double y) {
-            for (ShapeModel shape : getShapes()) {
-                if (shape.containsPoint(x, y)) {
-                    currentShape.set(shape);
-                    return;
-                }
-            }
-            currentShape.set(null);
+        currentShape.set(shapeIndex.shapeAt(x, y));
     }
 
     private void moveCurrentShape(double deltaX, double deltaY) {
@@ -608,240 +737,240 @@ public class MainViewModel implements IMainViewModel {
         return cube;
     }
 
+    /**
+     * Applies an operation to the current image and records it in the image history. The operation must
+     * give the same result every time it runs on the same image, since redo may run it again.
+     */
+    private void applyImageOperation(UnaryOperator<IntRaster> operation) {
+        ImageModel imageModel = currentImageModel;
+        if (imageModel == null) {
+            return;
+        }
+        IntRaster before;
+        try {
+            before = imageModel.getTiledImage().toRaster();
+        } catch (IOException e) {
+            logger.error("Failed to apply image operation", e);
+            return;
+        }
+        long started = System.nanoTime();
+        IntRaster after = operation.apply(before);
+        // Shown before it is recorded, so the history never holds a step for an image that was not shown
+        imageModel.setImage(after);
+        requestRedraw();
+        try {
+            imageHistory.record(before, after, operation, System.nanoTime() - started);
+        } catch (IOException e) {
+            // The steps before this one no longer lead to the image on screen, so none of them can be undone
+            logger.warn("Failed to record image operation, it cannot be undone", e);
+            clearImageHistory();
+        }
+        updateHistoryState();
+    }
+
+    private void clearImageHistory() {
+        try {
+            imageHistory.clear();
+        } catch (IOException e) {
+            logger.warn("Failed to clear image history", e);
+        }
+    }
+
+    /**
+     * Copies masks and kernels, so a recorded operation replays with the values it first ran with.
+     */
+    private static double[][] copyOf(double[][] values) {
+        return Arrays.stream(values).map(double[]::clone).toArray(double[][]::new);
+    }
+
+    private static boolean[][] copyOf(boolean[][] values) {
+        return Arrays.stream(values).map(boolean[]::clone).toArray(boolean[][]::new);
+    }
+
     @Override
-    public void applyAddition(double addRed, double addGreen, double addBlue) {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.addRGB(currentImageModel.getImage(), addRed, addGreen, addBlue);
-            currentImageModel.setImage(result);
-            requestRedraw();
+    public void undoImageOperation() {
+        stepImageHistory(true);
+    }
+
+    @Override
+    public void redoImageOperation() {
+        stepImageHistory(false);
+    }
+
+    private void stepImageHistory(boolean undo) {
+        ImageModel imageModel = currentImageModel;
+        if (imageModel == null) {
+            return;
+        }
+        try {
+            IntRaster current = imageModel.getTiledImage().toRaster();
+            IntRaster result = undo ? imageHistory.undo(current) : imageHistory.redo(current);
+            if (result != null) {
+                imageModel.setImage(result);
+                requestRedraw();
+            }
+        } catch (IOException e) {
+            logger.error("Failed to {} image operation", undo ? "undo" : "redo", e);
         }
+        updateHistoryState();
+    }
+
+    private void updateHistoryState() {
+        boolean canUndo = imageHistory.canUndo();
+        boolean canRedo = imageHistory.canRedo();
+        Platform.runLater(() -> {
+            canUndoImage.set(canUndo);
+            canRedoImage.set(canRedo);
+        });
+    }
+
+    @Override
+    public ReadOnlyBooleanProperty canUndoImageProperty() {
+        return canUndoImage.getReadOnlyProperty();
+    }
+
+    @Override
+    public ReadOnlyBooleanProperty canRedoImageProperty() {
+        return canRedoImage.getReadOnlyProperty();
+    }
+
+    @Override
+    public void applyAddition(double addRed, double addGreen, double addBlue) {
+        applyImageOperation(image -> ImageProcessor.addRGB(image, addRed, addGreen, addBlue));
     }
 
     @Override
     public void applySubtraction(double subRed, double subGreen, double subBlue) {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.subtractRGB(currentImageModel.getImage(), subRed, subGreen, subBlue);
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        applyImageOperation(image -> ImageProcessor.subtractRGB(image, subRed, subGreen, subBlue));
     }
 
     @Override
     public void applyMultiplication(double mulRed, double mulGreen, double mulBlue) {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.multiplyRGB(currentImageModel.getImage(), mulRed, mulGreen, mulBlue);
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        applyImageOperation(image -> ImageProcessor.multiplyRGB(image, mulRed, mulGreen, mulBlue));
     }
 
     @Override
     public void applyDivision(double divRed, double divGreen, double divBlue) {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.divideRGB(currentImageModel.getImage(), divRed, divGreen, divBlue);
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        applyImageOperation(image -> ImageProcessor.divideRGB(image, divRed, divGreen, divBlue));
     }
 
     @Override
     public void adjustBrightness(double brightnessChange) {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.adjustBrightness(currentImageModel.getImage(), brightnessChange);
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        applyImageOperation(image -> ImageProcessor.adjustBrightness(image, brightnessChange));
     }
 
     @Override
     public void applyGrayscaleAverage() {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.grayscaleAverage(currentImageModel.getImage());
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        applyImageOperation(ImageProcessor::grayscaleAverage);
     }
 
     @Override
     public void applyGrayscaleMax() {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.grayscaleMax(currentImageModel.getImage());
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        applyImageOperation(ImageProcessor::grayscaleMax);
     }
 
     // Filter Methods
 
     @Override
     public void applySmoothingFilter() {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.applySmoothingFilter(currentImageModel.getImage());
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        applyImageOperation(ImageProcessor::applySmoothingFilter);
     }
 
     @Override
-    public void applyMedianFilter() {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.applyMedianFilter(currentImageModel.getImage());
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+    public void applyMedianFilter(int radius) {
+        applyImageOperation(image -> ImageProcessor.applyMedianFilter(image, radius));
     }
 
     @Override
     public void applySobelFilter() {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.applySobelFilter(currentImageModel.getImage());
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        applyImageOperation(ImageProcessor::applySobelFilter);
     }
 
     @Override
     public void applyHighPassFilter() {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.applyHighPassFilter(currentImageModel.getImage());
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        applyImageOperation(ImageProcessor::applyHighPassFilter);
     }
 
     @Override
     public void applyGaussianBlur(int kernelSize, double sigma) {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.applyGaussianBlur(currentImageModel.getImage(), kernelSize, sigma);
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        applyImageOperation(image -> ImageProcessor.applyGaussianBlur(image, kernelSize, sigma));
     }
 
     @Override
     public void applyCustomConvolution(double[][] kernel) {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.applyConvolutionFilter(currentImageModel.getImage(), kernel);
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        double[][] kernelCopy = copyOf(kernel);
+        applyImageOperation(image -> ImageProcessor.applyConvolutionFilter(image, kernelCopy));
     }
 
     @Override
     public void applyHistogramStretching() {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.histogramStretching(currentImageModel.getImage());
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        applyImageOperation(ImageProcessor::histogramStretching);
     }
 
     @Override
     public void applyHistogramEqualization() {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.histogramEqualization(currentImageModel.getImage());
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        applyImageOperation(ImageProcessor::histogramEqualization);
     }
 
     @Override
     public void applyManualThresholding(int threshold) {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.manualThresholding(currentImageModel.getImage(), threshold);
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        applyImageOperation(image -> ImageProcessor.manualThresholding(image, threshold));
     }
 
     @Override
     public void applyPercentBlackSelection(double percentBlack) {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.percentBlackSelection(currentImageModel.getImage(), percentBlack);
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        applyImageOperation(image -> ImageProcessor.percentBlackSelection(image, percentBlack));
     }
 
     @Override
     public void applyMeanIterativeSelection() {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.meanIterativeSelection(currentImageModel.getImage());
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        applyImageOperation(ImageProcessor::meanIterativeSelection);
     }
 
     @Override
     public void applyOtsuThresholding() {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.otsuThresholding(currentImageModel.getImage());
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        applyImageOperation(ImageProcessor::otsuThresholding);
     }
 
     @Override
     public void applyNiblackThresholding(int windowSize, double k) {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.niblackThresholding(currentImageModel.getImage(), windowSize, k);
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        applyImageOperation(image -> ImageProcessor.niblackThresholding(image, windowSize, k));
     }
 
     @Override
     public void applySauvolaThresholding(int windowSize, double k, double r) {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.sauvolaThresholding(currentImageModel.getImage(), windowSize, k, r);
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        applyImageOperation(image -> ImageProcessor.sauvolaThresholding(image, windowSize, k, r));
     }
 
     @Override
     public void applyDilation(boolean[][] structuringElement) {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.dilation(currentImageModel.getImage(), structuringElement);
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        boolean[][] structuringElementCopy = copyOf(structuringElement);
+        applyImageOperation(image -> ImageProcessor.dilation(image, structuringElementCopy));
     }
 
     @Override
     public void applyErosion(boolean[][] structuringElement) {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.erosion(currentImageModel.getImage(), structuringElement);
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        boolean[][] structuringElementCopy = copyOf(structuringElement);
+        applyImageOperation(image -> ImageProcessor.erosion(image, structuringElementCopy));
     }
 
     @Override
     public void applyOpening(boolean[][] structuringElement) {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.opening(currentImageModel.getImage(), structuringElement);
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        boolean[][] structuringElementCopy = copyOf(structuringElement);
+        applyImageOperation(image -> ImageProcessor.opening(image, structuringElementCopy));
     }
 
     @Override
     public void applyClosing(boolean[][] structuringElement) {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.closing(currentImageModel.getImage(), structuringElement);
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        boolean[][] structuringElementCopy = copyOf(structuringElement);
+        applyImageOperation(image -> ImageProcessor.closing(image, structuringElementCopy));
     }
 
     @Override
     public void applyHitOrMiss(boolean[][] hitMask, boolean[][] missMask) {
-        if (currentImageModel != null) {
-            WritableImage result = ImageProcessor.hitOrMiss(currentImageModel.getImage(), hitMask, missMask);
-            currentImageModel.setImage(result);
-            requestRedraw();
-        }
+        boolean[][] hitMaskCopy = copyOf(hitMask);
+        boolean[][] missMaskCopy = copyOf(missMask);
+        applyImageOperation(image -> ImageProcessor.hitOrMiss(image, hitMaskCopy, missMaskCopy));
     }
 
     @Override
@@ -862,10 +991,45 @@ public class MainViewModel implements IMainViewModel {
 
     @Override
     public void detectLargestColorArea(Color targetColor, double tolerance) {
-        if (currentImageModel != null) {
-            WritableImage image = currentImageModel.getImage();
-            WritableImage resultImage = ImageProcessor.detectLargestColorArea(image, targetColor, tolerance);
-            currentImageModel.setImage(resultImage);
+        applyImageOperation(image -> ImageProcessor.detectLargestColorArea(image, targetColor, tolerance));
+    }
+
+    @Override
+    public synchronized void previewOperation(PreviewOperation operation) {
+        ImageModel imageModel = currentImageModel;
+        if (imageModel == null) {
+            return;
+        }
+        TiledImage image = imageModel.getTiledImage();
+        previewRenderer.render(() -> {
+            OperationMonitor monitor = OperationMonitor.current();
+            try {
+                // The pyramid level closest to the preview size, built from cached tiles where possible
+                double scale = Math.min(1.0, PREVIEW_SIZE / (double) Math.max(image.getWidth(), image.getHeight()));
+                IntRaster source = image.toRaster(image.getLevelForScale(scale));
+                monitor.checkCancelled();
+                WritableImage preview = operation.apply(source, source.getWidth() / (double) image.getWidth()).toImage();
+                Platform.runLater(() -> {
+                    // Drop results of stale requests and of images that have changed in the meantime
+                    if (!monitor.isCancelled() && imageModel.getTiledImage() == image) {
+                        imageModel.setPreview(preview);
+                        requestRedraw();
+                    }
+                });
+            } catch (CancellationException e) {
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Failed to render preview", e);
+            }
+        });
+    }
+
+    @Override
+    public synchronized void clearPreview() {
+        previewRenderer.cancel();
+        ImageModel imageModel = currentImageModel;
+        if (imageModel != null && imageModel.getPreview() != null) {
+            imageModel.setPreview(null);
             requestRedraw();
         }
     }
@@ -875,14 +1039,8 @@ public class MainViewModel implements IMainViewModel {
     @Override
     public void loadImage(String fileName, PNMFormat format) {
         try {
-            WritableImage image = PNMImageIO.loadPNM(fileName, format);
-            ImageModel imageModel = new ImageModel(image, 0, 0);
-            setCurrentImageModel(imageModel);
-            Platform.runLater(() -> {
-                shapes.clear();
-                shapes.add(imageModel);
-                requestRedraw();
-            });
+            // Binary files are only opened here; tiles are decoded when they are first drawn
+            showImage(PNMImageIO.openPNM(fileName, format));
         } catch (IOException e) {
             logger.error("Failed to load image", e);
         }
@@ -893,21 +1051,7 @@ public class MainViewModel implements IMainViewModel {
         try {
             // Load the image using JavaFX's built-in methods
             Image image = new Image(new FileInputStream(fileName));
-
-            // Convert Image to WritableImage
-            WritableImage writableImage = new WritableImage(
-                    image.getPixelReader(),
-                    (int) image.getWidth(),
-                    (int) image.getHeight()
-            );
-
-            ImageModel imageModel = new ImageModel(writableImage, 0, 0);
-            setCurrentImageModel(imageModel);
-            Platform.runLater(() -> {
-                shapes.clear();
-                shapes.add(imageModel);
-                requestRedraw();
-            });
+            showImage(new RasterTileSource(IntRaster.fromImage(image)));
         } catch (IOException e) {
             logger.error("Failed to load image", e);
             Platform.runLater(() -> {
@@ -920,6 +1064,47 @@ public class MainViewModel implements IMainViewModel {
         }
     }
 
+    /**
+     * Tells the user that part of the image cannot be read, for instance because its file was truncated or
+     * overwritten after it was opened. The unreadable tiles stay placeholders.
+     */
+    private void showTileReadError(RuntimeException e) {
+        String message = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+        Platform.runLater(() -> {
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle("Read Error");
+            alert.setHeaderText("Failed to read part of the image.");
+            alert.setContentText(message);
+            alert.showAndWait();
+        });
+    }
+
+    /**
+     * Replaces the shapes with a single image drawn from the given source, releasing the previous image.
+     */
+    private void showImage(TileSource source) {
+        ImageModel previous = currentImageModel;
+        ImageModel imageModel = new ImageModel(new TiledImage(source, tileCache), 0, 0);
+        imageModel.setOnTileLoaded(this::requestRedraw);
+        imageModel.setOnTileFailed(this::showTileReadError);
+        setCurrentImageModel(imageModel);
+        // The edits recorded so far refer to the shapes that are about to be replaced
+        shapeHistory.clear();
+        updateShapeHistoryState();
+        Platform.runLater(() -> {
+            shapes.clear();
+            shapes.add(imageModel);
+            requestRedraw();
+            if (previous != null) {
+                try {
+                    previous.getTiledImage().close();
+                } catch (IOException e) {
+                    logger.warn("Failed to release previous image", e);
+                }
+            }
+        });
+    }
+
     @Override
     public void saveImage(String fileName, PNMFormat format, boolean binaryFormat, WritableImage image) {
         try {
@@ -939,15 +1124,104 @@ public class MainViewModel implements IMainViewModel {
         this.isProcessing.set(isProcessing);
     }
 
+    @Override
+    public void runOperation(OperationMonitor monitor, Runnable operation) {
+        currentOperation = monitor;
+        Platform.runLater(() -> {
+            setIsProcessing(true);
+            startProgressUpdates(monitor);
+        });
+        try {
+            // A cancelled operation throws before it replaces the image, and its buffers become garbage
+            monitor.run(operation);
+        } catch (CancellationException e) {
+            logger.info("Image operation cancelled");
+        } finally {
+            currentOperation = null;
+            Platform.runLater(() -> {
+                stopProgressUpdates();
+                setIsProcessing(false);
+            });
+        }
+    }
+
+    @Override
+    public void cancelOperation() {
+        OperationMonitor monitor = currentOperation;
+        if (monitor != null) {
+            monitor.cancel();
+            progressMessage.set("Cancelling...");
+        }
+    }
+
+    @Override
+    public ReadOnlyDoubleProperty progressProperty() {
+        return progress.getReadOnlyProperty();
+    }
+
+    @Override
+    public ReadOnlyStringProperty progressMessageProperty() {
+        return progressMessage.getReadOnlyProperty();
+    }
+
+    private void startProgressUpdates(OperationMonitor monitor) {
+        stopProgressUpdates();
+        progress.set(ProgressIndicator.INDETERMINATE_PROGRESS);
+        progressMessage.set("");
+        progressTimeline = new Timeline(new KeyFrame(PROGRESS_INTERVAL, e -> updateProgress(monitor)));
+        progressTimeline.setCycleCount(Animation.INDEFINITE);
+        progressTimeline.play();
+    }
+
+    private void updateProgress(OperationMonitor monitor) {
+        if (monitor.isCancelled()) {
+            return;
+        }
+        double fraction = monitor.getProgress();
+        if (fraction <= 0) {
+            return;
+        }
+        progress.set(fraction);
+        long remainingSeconds = (monitor.getRemainingMillis() + 999) / 1000;
+        progressMessage.set(String.format("%.0f%% - about %d s left", fraction * 100, remainingSeconds));
+    }
+
+    private void stopProgressUpdates() {
+        if (progressTimeline != null) {
+            progressTimeline.stop();
+            progressTimeline = null;
+        }
+        progress.set(ProgressIndicator.INDETERMINATE_PROGRESS);
+        progressMessage.set("");
+    }
+
+    /**
+     * Stops the preview worker and deletes the spill file of the image history.
+     */
+    @Override
+    public void destroy() throws IOException {
+        previewRenderer.shutdown();
+        imageHistory.close();
+    }
+
     @Override
     public void setRedrawCanvasCallback(Runnable callback) {
         redrawCanvasCallback.set(callback);
     }
 
+    /**
+     * Schedules a redraw unless one is already waiting, so any number of requests before the next pulse
+     * of the JavaFX thread cause a single redraw with the latest state.
+     */
     @Override
     public void requestRedraw() {
-        if (redrawCanvasCallback.get() != null) {
-            Platform.runLater(redrawCanvasCallback.get());
+        Runnable callback = redrawCanvasCallback.get();
+        if (callback != null && redrawPending.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                // Cleared first, so changes made while drawing schedule another redraw
+                redrawPending.set(false);
+                callback.run();
+            });
         }
     }
 }
@@ -0,0 +1,16 @@
+package lewocz.graphics.viewmodel;
+
+import lewocz.graphics.utils.IntRaster;
+
+/**
+ * Image operation evaluated on a downsampled copy of the image for a live preview.
+ */
+@FunctionalInterface
+public interface PreviewOperation {
+    /**
+     * @param image The downsampled image, which must not be modified.
+     * @param scale Size of the downsampled image relative to the full image, in {@code (0, 1]}; sizes in
+     *              pixels, such as kernel and window sizes, should be scaled by it.
+     */
+    IntRaster apply(IntRaster image, double scale);
+}
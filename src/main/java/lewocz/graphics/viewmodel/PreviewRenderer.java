@@ -0,0 +1,54 @@
+package lewocz.graphics.viewmodel;
+
+import lewocz.graphics.utils.OperationMonitor;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Renders live previews on one worker thread, one request at a time.
+ * <p>
+ * Every render runs under its own {@link OperationMonitor}, which a newer request or {@link #cancel()}
+ * cancels. The {@code TileExecutor} passes of a cancelled render stop before their next unit, so a stale
+ * render gives the worker back within a tile instead of holding up the request that replaced it. A render
+ * that publishes its result checks {@link OperationMonitor#isCancelled()} on the monitor that is
+ * {@link OperationMonitor#current() current} while it runs, to drop results that are already stale.
+ */
+class PreviewRenderer {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "image-preview");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private OperationMonitor current;
+
+    /**
+     * Cancels the render in progress, if any, and queues this one.
+     */
+    public synchronized void render(Runnable render) {
+        cancel();
+        OperationMonitor monitor = new OperationMonitor();
+        current = monitor;
+        executor.execute(() -> {
+            try {
+                monitor.run(render);
+            } catch (CancellationException e) {
+                // Superseded by a newer request
+            }
+        });
+    }
+
+    public synchronized void cancel() {
+        if (current != null) {
+            current.cancel();
+            current = null;
+        }
+    }
+
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,161 @@
+package lewocz.graphics.event;
+
+import lewocz.graphics.command.Command;
+import lewocz.graphics.command.CommandLane;
+import lewocz.graphics.command.ImageCommand;
+import lewocz.graphics.command.MouseDraggedCommand;
+import lewocz.graphics.command.MouseReleasedCommand;
+import lewocz.graphics.model.SerializablePoint;
+import lewocz.graphics.viewmodel.IMainViewModel;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+
+@SpringBootTest
+public class EventQueueTest {
+
+    @Test
+    public void testOrderedLanesRunOneCommandAtATime() throws InterruptedException {
+        EventQueue queue = new EventQueue(4);
+        List<Integer> modelOrder = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> imageOrder = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        for (int i = 0; i < 200; i++) {
+            int index = i;
+            queue.enqueue(() -> modelOrder.add(index));
+            queue.enqueue((ImageCommand) () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                imageOrder.add(index);
+                running.decrementAndGet();
+            });
+        }
+
+        assertTrue(queue.awaitIdle(10, TimeUnit.SECONDS));
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, modelOrder);
+        assertEquals(expected, imageOrder);
+        assertEquals(1, maxRunning.get());
+
+        EventQueue.LaneMetrics metrics = queue.getMetrics(CommandLane.IMAGE);
+        assertEquals(200, metrics.completed());
+        assertEquals(0, metrics.queued());
+        queue.shutdown();
+    }
+
+    @Test
+    public void testImageCommandsDoNotHoldUpModelLane() throws InterruptedException {
+        EventQueue queue = new EventQueue(2);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch modelRan = new CountDownLatch(1);
+
+        queue.enqueue((ImageCommand) () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        queue.enqueue(modelRan::countDown);
+
+        assertTrue(modelRan.await(5, TimeUnit.SECONDS));
+        // The lane counts the command as completed just after it returns
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queue.getMetrics(CommandLane.MODEL).completed() == 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(1, queue.getMetrics(CommandLane.MODEL).completed());
+        release.countDown();
+        queue.shutdown();
+    }
+
+    @Test
+    public void testShutdownDrainsQueuedCommandsAndRejectsNewOnes() {
+        EventQueue queue = new EventQueue(2);
+        AtomicInteger executed = new AtomicInteger();
+        Command slow = () -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executed.incrementAndGet();
+        };
+        for (int i = 0; i < 5; i++) {
+            queue.enqueue(slow);
+        }
+        // A failing command is logged and does not stop the lane
+        queue.enqueue(() -> {
+            throw new IllegalStateException("expected");
+        });
+        queue.enqueue(executed::incrementAndGet);
+
+        queue.shutdown();
+        assertEquals(6, executed.get());
+        assertTrue(queue.isShutdown());
+
+        queue.enqueue(executed::incrementAndGet);
+        queue.shutdown();
+        assertEquals(6, executed.get());
+        assertEquals(7, queue.getMetrics(CommandLane.MODEL).completed());
+    }
+
+    @Test
+    public void testDragsWaitingOnTheLaneAreCoalesced() throws InterruptedException {
+        EventQueue queue = new EventQueue(2);
+        IMainViewModel viewModel = mock(IMainViewModel.class);
+        CountDownLatch release = new CountDownLatch(1);
+        queue.enqueue(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // Drags queued behind the busy lane merge until another command comes in between
+        for (int i = 0; i < 3; i++) {
+            queue.enqueue(new MouseDraggedCommand(viewModel, i, i));
+        }
+        queue.enqueue(new MouseReleasedCommand(viewModel));
+        queue.enqueue(new MouseDraggedCommand(viewModel, 3, 3));
+        release.countDown();
+        assertTrue(queue.awaitIdle(5, TimeUnit.SECONDS));
+
+        InOrder order = inOrder(viewModel);
+        ArgumentCaptor<List<SerializablePoint>> first = pathCaptor();
+        order.verify(viewModel).onMouseDragged(first.capture());
+        order.verify(viewModel).onMouseReleased();
+        ArgumentCaptor<List<SerializablePoint>> second = pathCaptor();
+        order.verify(viewModel).onMouseDragged(second.capture());
+        assertEquals(List.of(0.0, 1.0, 2.0), first.getValue().stream().map(SerializablePoint::getX).toList());
+        assertEquals(List.of(3.0), second.getValue().stream().map(SerializablePoint::getY).toList());
+
+        EventQueue.LaneMetrics metrics = queue.getMetrics(CommandLane.MODEL);
+        assertEquals(2, metrics.coalesced());
+        assertEquals(4, metrics.completed());
+        queue.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<SerializablePoint>> pathCaptor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+}
@@ -0,0 +1,127 @@
+package lewocz.graphics.model;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class ShapeHistoryTest {
+
+    @Test
+    public void testDragOfLargeStrokeIsOneCompactEdit() {
+        List<ShapeModel> shapes = new ArrayList<>();
+        ShapeHistory history = new ShapeHistory(100);
+
+        FreehandModel stroke = new FreehandModel();
+        for (int x = 0; x < 100_000; x++) {
+            stroke.addPoint(x, 0);
+        }
+        history.apply(new ShapeEdit.Add(stroke, 0), shapes);
+
+        // Every drag event of one gesture merges into a single move
+        history.beginGesture();
+        for (int i = 0; i < 1000; i++) {
+            history.apply(new ShapeEdit.Move(stroke, 0, 1), shapes);
+        }
+        history.endGesture();
+        assertEquals(2, history.size());
+        assertTrue(stroke.containsPoint(500, 1000));
+
+        // A new gesture starts a new edit
+        history.beginGesture();
+        history.apply(new ShapeEdit.Move(stroke, 0, 1), shapes);
+        history.endGesture();
+        assertEquals(3, history.size());
+
+        assertTrue(history.undo(shapes));
+        assertTrue(history.undo(shapes));
+        assertTrue(stroke.containsPoint(500, 0));
+        assertTrue(history.undo(shapes));
+        assertTrue(shapes.isEmpty());
+        assertFalse(history.undo(shapes));
+
+        assertTrue(history.redo(shapes));
+        assertTrue(history.redo(shapes));
+        assertEquals(List.of(stroke), shapes);
+        assertTrue(stroke.containsPoint(500, 1000));
+
+        // Recording after an undo drops what could be redone
+        history.apply(new ShapeEdit.Remove(stroke, 0), shapes);
+        assertFalse(history.canRedo());
+        assertTrue(shapes.isEmpty());
+    }
+
+    @Test
+    public void testRotationsAndScalesMergeAboutTheSamePivot() {
+        List<ShapeModel> shapes = new ArrayList<>();
+        ShapeHistory history = new ShapeHistory(2);
+        LineModel line = new LineModel(10, 0, 20, 0);
+        history.apply(new ShapeEdit.Add(line, 0), shapes);
+
+        history.beginGesture();
+        history.apply(new ShapeEdit.Rotate(line, 45, 0, 0), shapes);
+        history.apply(new ShapeEdit.Rotate(line, 45, 0, 0), shapes);
+        history.apply(new ShapeEdit.Scale(line, 2, 0, 0), shapes);
+        history.apply(new ShapeEdit.Scale(line, 1.5, 0, 0), shapes);
+        history.endGesture();
+        assertTrue(line.containsPoint(0, 45));
+
+        // Only the newest edits are kept
+        assertEquals(2, history.size());
+        assertTrue(history.undo(shapes));
+        assertTrue(history.undo(shapes));
+        assertFalse(history.canUndo());
+        assertTrue(line.containsPoint(15, 0));
+        assertEquals(List.of(line), shapes);
+
+        ShapeEdit merged = new ShapeEdit.Move(line, 1, 2).merge(new ShapeEdit.Move(line, 3, 4));
+        assertInstanceOf(ShapeEdit.Move.class, merged);
+        assertEquals(new ShapeEdit.Move(line, 4, 6), merged);
+        assertEquals(null, new ShapeEdit.Rotate(line, 1, 0, 0).merge(new ShapeEdit.Rotate(line, 1, 5, 5)));
+    }
+
+    @Test
+    public void testDraggedControlPointUndoesWithoutSelection() {
+        List<ShapeModel> shapes = new ArrayList<>();
+        ShapeHistory history = new ShapeHistory(100);
+        BezierCurveModel curve = new BezierCurveModel();
+        curve.addControlPoint(0, 0);
+        curve.addControlPoint(50, 100);
+        curve.addControlPoint(100, 0);
+        history.apply(new ShapeEdit.Add(curve, 0), shapes);
+        List<SerializablePoint> before = List.copyOf(curve.getControlPoints());
+
+        // Grabbing the curve selects the middle point, and the drag moves only that point
+        assertTrue(curve.containsPoint(50, 100));
+        history.beginGesture();
+        for (int i = 0; i < 10; i++) {
+            history.apply(ShapeEdit.drag(curve, 3, -2), shapes);
+        }
+        history.endGesture();
+        curve.setSelectedControlPoint(null);
+        List<SerializablePoint> after = List.copyOf(curve.getControlPoints());
+        assertEquals(2, history.size());
+        assertPointsEqual(List.of(new SerializablePoint(0, 0), new SerializablePoint(80, 80),
+                new SerializablePoint(100, 0)), after);
+
+        assertTrue(history.undo(shapes));
+        assertPointsEqual(before, curve.getControlPoints());
+        assertTrue(history.redo(shapes));
+        assertPointsEqual(after, curve.getControlPoints());
+    }
+
+    private static void assertPointsEqual(List<SerializablePoint> expected, List<SerializablePoint> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getX(), actual.get(i).getX(), 1e-9, "x of point " + i);
+            assertEquals(expected.get(i).getY(), actual.get(i).getY(), 1e-9, "y of point " + i);
+        }
+    }
+}
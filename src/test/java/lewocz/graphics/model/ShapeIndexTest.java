@@ -0,0 +1,101 @@
+package lewocz.graphics.model;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class ShapeIndexTest {
+
+    private static final double CELL_STEP = ShapeIndex.CELL_SIZE * 0.75;
+
+    @Test
+    public void testTopmostShapeFollowsMovesAndRemovals() {
+        ObservableList<ShapeModel> shapes = FXCollections.observableArrayList();
+        ShapeIndex index = new ShapeIndex(shapes);
+
+        EllipseModel bottom = new EllipseModel(100, 100, 50, 50);
+        EllipseModel top = new EllipseModel(120, 100, 50, 50);
+        LineModel far = new LineModel(5000, 5000, 5100, 5000);
+        shapes.addAll(bottom, top, far);
+        assertEquals(3, index.size());
+
+        // Shapes added later are drawn over earlier ones
+        assertSame(top, index.shapeAt(110, 100));
+        assertSame(bottom, index.shapeAt(60, 100));
+        assertSame(far, index.shapeAt(5050, 5002));
+        assertNull(index.shapeAt(1000, 1000));
+
+        // Inserting below keeps the drawing order
+        EllipseModel under = new EllipseModel(110, 100, 200, 200);
+        shapes.add(0, under);
+        assertSame(top, index.shapeAt(110, 100));
+        assertSame(under, index.shapeAt(290, 100));
+
+        // A moved shape is found at its new place only
+        top.moveBy(1000, 0);
+        assertSame(bottom, index.shapeAt(110, 100));
+        assertSame(top, index.shapeAt(1110, 100));
+
+        top.scale(3, 1120, 100);
+        assertSame(top, index.shapeAt(1250, 100));
+
+        shapes.remove(bottom);
+        assertSame(under, index.shapeAt(60, 100));
+        top.moveBy(-1000, 0);
+        assertSame(top, index.shapeAt(110, 100));
+
+        shapes.clear();
+        assertEquals(0, index.size());
+        assertNull(index.shapeAt(110, 100));
+    }
+
+    @Test
+    public void testDraggedShapeLeavesNoEmptyCells() {
+        ObservableList<ShapeModel> shapes = FXCollections.observableArrayList();
+        ShapeIndex index = new ShapeIndex(shapes);
+
+        EllipseModel still = new EllipseModel(40, 40, 20, 20);
+        EllipseModel dragged = new EllipseModel(300, 300, 20, 20);
+        shapes.addAll(still, dragged);
+
+        // Drag across a few hundred cells, querying after every step as the canvas does
+        for (int step = 0; step < 500; step++) {
+            dragged.moveBy(CELL_STEP, CELL_STEP / 2);
+            assertSame(dragged, index.shapeAt(300 + (step + 1) * CELL_STEP, 300 + (step + 1) * CELL_STEP / 2));
+        }
+        assertSame(still, index.shapeAt(40, 40));
+        // One cell for the still shape and at most four for the dragged one where it straddles cells
+        assertTrue(index.cellCount() <= 5, "empty cells are kept: " + index.cellCount());
+
+        shapes.clear();
+        assertEquals(0, index.cellCount());
+    }
+
+    @Test
+    public void testPolygonHitUsesNonZeroWinding() {
+        ObservableList<ShapeModel> shapes = FXCollections.observableArrayList();
+        ShapeIndex index = new ShapeIndex(shapes);
+
+        // Self-intersecting star: its center is enclosed twice and is still inside
+        PolygonModel star = new PolygonModel(List.of(
+                new SerializablePoint(300, 100), new SerializablePoint(418, 462), new SerializablePoint(110, 238),
+                new SerializablePoint(490, 238), new SerializablePoint(182, 462)),
+                Color.BLACK, Color.RED, 1);
+        shapes.add(star);
+
+        assertSame(star, index.shapeAt(300, 300));
+        assertSame(star, index.shapeAt(300, 150));
+        assertNull(index.shapeAt(120, 120));
+        assertNull(index.shapeAt(300, 470));
+    }
+}
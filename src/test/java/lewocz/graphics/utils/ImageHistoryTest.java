@@ -0,0 +1,71 @@
+package lewocz.graphics.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class ImageHistoryTest {
+
+    @Test
+    public void testImageHistoryUndoesAndRedoesThroughSpilledPatches(@TempDir Path spillDirectory) throws Exception {
+        Random random = new Random(23);
+        IntRaster original = new IntRaster(600, 300);
+        for (int i = 0; i < original.getPixels().length; i++) {
+            original.getPixels()[i] = IntRaster.argb(255, random.nextInt(256), random.nextInt(256), random.nextInt(256));
+        }
+        UnaryOperator<IntRaster> brighten = image -> ImageProcessor.adjustBrightness(image, 20);
+        UnaryOperator<IntRaster> dot = image -> {
+            IntRaster copy = image.copy();
+            copy.setArgb(300, 150, 0xFF000000);
+            return copy;
+        };
+        UnaryOperator<IntRaster> shrink = image -> ImagePyramid.halve(image, TileExecutor.serial());
+
+        // A budget this small spills every patch but the newest to disk
+        try (ImageHistory history = new ImageHistory(1024, 64 << 20, spillDirectory)) {
+            List<IntRaster> versions = new ArrayList<>(List.of(original));
+            for (UnaryOperator<IntRaster> operation : List.of(brighten, dot, shrink)) {
+                IntRaster before = versions.get(versions.size() - 1);
+                IntRaster after = operation.apply(before);
+                // Operations that cannot be replayed keep their result as a patch
+                history.record(before, after, operation == dot ? null : operation, 0);
+                versions.add(after);
+            }
+            assertEquals(3, history.size());
+            assertTrue(history.getDiskBytes() > 0);
+
+            IntRaster current = versions.get(3);
+            for (int version = 2; version >= 0; version--) {
+                current = history.undo(current);
+                assertEquals(versions.get(version).getWidth(), current.getWidth());
+                assertArrayEquals(versions.get(version).getPixels(), current.getPixels(), "undo to " + version);
+            }
+            assertNull(history.undo(current));
+            for (int version = 1; version <= 3; version++) {
+                current = history.redo(current);
+                assertArrayEquals(versions.get(version).getPixels(), current.getPixels(), "redo to " + version);
+            }
+            assertNull(history.redo(current));
+
+            // A new operation after an undo drops the steps that could be redone
+            current = history.undo(current);
+            history.record(current, brighten.apply(current), brighten, 0);
+            assertEquals(3, history.size());
+            assertTrue(history.canUndo());
+            assertFalse(history.canRedo());
+        }
+    }
+}
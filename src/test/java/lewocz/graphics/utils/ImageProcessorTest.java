@@ -9,8 +9,12 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.util.Arrays;
+import java.util.Random;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -187,4 +191,431 @@ public class ImageProcessorTest {
 
         return outputImage;
     }
+
+    @Test
+    public void testIntRasterRoundTrip() {
+        WritableImage inputImage = createTestImage();
+
+        IntRaster raster = IntRaster.fromImage(inputImage);
+
+        assertEquals(10, raster.getWidth());
+        assertEquals(10, raster.getHeight());
+        assertImagesEqual(inputImage, raster.toImage());
+        assertImagesEqual(inputImage, FloatRaster.fromIntRaster(raster).toImage());
+    }
+
+    @Test
+    public void testRasterOverloadMatchesImageOverload() {
+        WritableImage inputImage = createTestImage();
+        IntRaster raster = IntRaster.fromImage(inputImage);
+
+        assertImagesEqual(ImageProcessor.adjustBrightness(inputImage, 0.1),
+                ImageProcessor.adjustBrightness(raster, 0.1).toImage());
+        assertImagesEqual(ImageProcessor.applySmoothingFilter(inputImage),
+                ImageProcessor.applySmoothingFilter(raster).toImage());
+        assertImagesEqual(ImageProcessor.otsuThresholding(inputImage),
+                ImageProcessor.otsuThresholding(raster).toImage());
+    }
+
+    @Test
+    public void testParallelExecutionMatchesSerial() {
+        IntRaster raster = IntRaster.fromImage(createTestImage());
+        boolean[][] structuringElement = {
+                { false, true, false },
+                { true, true, true },
+                { false, true, false }
+        };
+
+        TileExecutor previous = ImageProcessor.getExecutor();
+        try {
+            ImageProcessor.setExecutor(TileExecutor.serial());
+            IntRaster[] serial = {
+                    ImageProcessor.applyGaussianBlur(raster, 5, 1.5),
+                    ImageProcessor.applyMedianFilter(raster),
+                    ImageProcessor.niblackThresholding(raster, 5, -0.2),
+                    ImageProcessor.dilation(raster, structuringElement),
+                    ImageProcessor.erosion(raster, structuringElement)
+            };
+
+            ImageProcessor.setExecutor(TileExecutor.parallel(3));
+            IntRaster[] parallel = {
+                    ImageProcessor.applyGaussianBlur(raster, 5, 1.5),
+                    ImageProcessor.applyMedianFilter(raster),
+                    ImageProcessor.niblackThresholding(raster, 5, -0.2),
+                    ImageProcessor.dilation(raster, structuringElement),
+                    ImageProcessor.erosion(raster, structuringElement)
+            };
+
+            for (int i = 0; i < serial.length; i++) {
+                assertArrayEquals(serial[i].getPixels(), parallel[i].getPixels(), "Operation " + i + " differs");
+            }
+        } finally {
+            ImageProcessor.setExecutor(previous);
+        }
+    }
+
+    @Test
+    public void testFusedPointOperationsMatchSequential() {
+        IntRaster raster = IntRaster.fromImage(createTestImage());
+
+        IntRaster sequential = ImageProcessor.adjustBrightness(raster, 0.1);
+        sequential = ImageProcessor.multiplyRGB(sequential, 1.5, 0.8, 1.2);
+        sequential = ImageProcessor.grayscaleMax(sequential);
+        sequential = ImageProcessor.subtractRGB(sequential, 20, 40, 10);
+        sequential = ImageProcessor.grayscaleAverage(sequential);
+
+        PointLut fused = PointLut.brightness(0.1)
+                .then(PointLut.multiply(1.5, 0.8, 1.2))
+                .then(PointLut.grayscaleMax())
+                .then(PointLut.subtract(20, 40, 10))
+                .then(PointLut.grayscaleAverage());
+
+        assertArrayEquals(sequential.getPixels(), ImageProcessor.applyPointOperation(raster, fused).getPixels());
+    }
+
+    @Test
+    public void testGaussianBlurMatchesFullKernel() {
+        WritableImage inputImage = createTestImage();
+        int size = 5;
+        double sigma = 1.2;
+
+        double[][] kernel = new double[size][size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                double dx = x - size / 2;
+                double dy = y - size / 2;
+                kernel[y][x] = Math.exp(-(dx * dx + dy * dy) / (2 * sigma * sigma));
+            }
+        }
+
+        WritableImage expectedImage = createExpectedConvolutionImage(inputImage, kernel);
+        WritableImage outputImage = ImageProcessor.applyGaussianBlur(inputImage, size, sigma);
+
+        assertImagesEqual(expectedImage, outputImage);
+    }
+
+    @Test
+    public void testBoxFilterMatchesMeanKernel() {
+        WritableImage inputImage = createTestImage();
+        int radius = 3;
+        int size = 2 * radius + 1;
+
+        double[][] kernel = new double[size][size];
+        for (double[] row : kernel) {
+            Arrays.fill(row, 1.0 / (size * size));
+        }
+
+        WritableImage expectedImage = createExpectedConvolutionImage(inputImage, kernel);
+        WritableImage outputImage = ImageProcessor.applyBoxFilter(inputImage, radius);
+
+        assertImagesEqual(expectedImage, outputImage);
+    }
+
+    private WritableImage createExpectedConvolutionImage(WritableImage inputImage, double[][] kernel) {
+        int width = (int) inputImage.getWidth();
+        int height = (int) inputImage.getHeight();
+        WritableImage outputImage = new WritableImage(width, height);
+        PixelReader reader = inputImage.getPixelReader();
+        PixelWriter writer = outputImage.getPixelWriter();
+        int kHalf = kernel.length / 2;
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double sum = 0.0;
+                double sumKernel = 0.0;
+
+                for (int ky = -kHalf; ky <= kHalf; ky++) {
+                    for (int kx = -kHalf; kx <= kHalf; kx++) {
+                        int pixelX = x + kx;
+                        int pixelY = y + ky;
+
+                        if (pixelX < 0 || pixelX >= width || pixelY < 0 || pixelY >= height) {
+                            continue;
+                        }
+
+                        double kernelValue = kernel[ky + kHalf][kx + kHalf];
+                        sum += reader.getColor(pixelX, pixelY).getRed() * kernelValue;
+                        sumKernel += kernelValue;
+                    }
+                }
+
+                double value = clamp(sum / sumKernel);
+                writer.setColor(x, y, new Color(value, value, value, 1.0));
+            }
+        }
+
+        return outputImage;
+    }
+
+    @Test
+    public void testFftConvolutionMatchesFullKernel() {
+        WritableImage inputImage = createTestImage();
+
+        // Not separable, so it cannot take the 1D path
+        double[][] kernel = new double[5][5];
+        for (int y = 0; y < 5; y++) {
+            for (int x = 0; x < 5; x++) {
+                kernel[y][x] = (x == 2 || y == 2) ? 2.0 : (x + 1) * 0.1 + y * 0.3;
+            }
+        }
+
+        WritableImage expectedImage = createExpectedConvolutionImage(inputImage, kernel);
+
+        // 8x8 transforms leave 4x4 tiles, so the 10x10 image is split into overlapping tiles
+        FftConvolution.Plan plan = new FftConvolution.Plan(8, 8, 4, 4, 0.0);
+        FloatRaster output = FftConvolution.convolve(FloatRaster.fromImage(inputImage), kernel, plan,
+                TileExecutor.parallel(2));
+
+        assertImagesEqual(expectedImage, output.toImage());
+    }
+
+    @Test
+    public void testMedianFilterWithRadiusReplicatesBorder() {
+        int width = 9;
+        int height = 7;
+        int radius = 2;
+        IntRaster input = new IntRaster(width, height);
+        Random random = new Random(42);
+        for (int i = 0; i < input.getPixels().length; i++) {
+            input.getPixels()[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+
+        IntRaster output = ImageProcessor.applyMedianFilter(input, radius);
+
+        int size = 2 * radius + 1;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int[] reds = new int[size * size];
+                int n = 0;
+                for (int dy = -radius; dy <= radius; dy++) {
+                    for (int dx = -radius; dx <= radius; dx++) {
+                        int pixelX = Math.max(0, Math.min(width - 1, x + dx));
+                        int pixelY = Math.max(0, Math.min(height - 1, y + dy));
+                        reds[n++] = IntRaster.red(input.getArgb(pixelX, pixelY));
+                    }
+                }
+                Arrays.sort(reds);
+                assertEquals(reds[reds.length / 2], IntRaster.red(output.getArgb(x, y)),
+                        "Pixel at (" + x + ", " + y + ") differs");
+            }
+        }
+    }
+
+    @Test
+    public void testIntegralImageWindowStatistics() {
+        int width = 13;
+        int height = 8;
+        int[] values = new int[width * height];
+        Random random = new Random(7);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(256);
+        }
+
+        IntegralImage integral = IntegralImage.of(values, width, height, TileExecutor.parallel(4));
+
+        // Windows partly outside the image are clipped
+        int[][] windows = { { 0, 0, width, height }, { -3, -2, 4, 5 }, { 5, 3, 20, 6 }, { 7, 7, 8, 8 } };
+        for (int[] window : windows) {
+            long sum = 0;
+            long sumOfSquares = 0;
+            int count = 0;
+            for (int y = Math.max(window[1], 0); y < Math.min(window[3], height); y++) {
+                for (int x = Math.max(window[0], 0); x < Math.min(window[2], width); x++) {
+                    sum += values[y * width + x];
+                    sumOfSquares += (long) values[y * width + x] * values[y * width + x];
+                    count++;
+                }
+            }
+
+            assertEquals(count, integral.count(window[0], window[1], window[2], window[3]));
+            assertEquals(sum, integral.sum(window[0], window[1], window[2], window[3]));
+            assertEquals(sumOfSquares, integral.sumOfSquares(window[0], window[1], window[2], window[3]));
+            double mean = (double) sum / count;
+            assertEquals((double) sumOfSquares / count - mean * mean,
+                    integral.variance(window[0], window[1], window[2], window[3]), 1e-9);
+        }
+    }
+
+    @Test
+    public void testMorphologyMatchesPerCellDefinition() {
+        int width = 11;
+        int height = 9;
+        IntRaster input = new IntRaster(width, height);
+        Random random = new Random(3);
+        for (int i = 0; i < input.getPixels().length; i++) {
+            input.getPixels()[i] = random.nextInt();
+        }
+
+        boolean[][] rectangle = new boolean[3][5];
+        for (boolean[] row : rectangle) {
+            Arrays.fill(row, true);
+        }
+        boolean[][] cross = {
+                { false, true, false, false },
+                { true, true, true, true },
+                { false, true, false, false }
+        };
+
+        for (boolean[][] structuringElement : new boolean[][][] { rectangle, cross }) {
+            IntRaster dilated = ImageProcessor.dilation(input, structuringElement);
+            IntRaster eroded = ImageProcessor.erosion(input, structuringElement);
+            int xOrigin = structuringElement[0].length / 2;
+            int yOrigin = structuringElement.length / 2;
+
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int max = 0;
+                    int min = 255;
+                    for (int j = 0; j < structuringElement.length; j++) {
+                        for (int i = 0; i < structuringElement[0].length; i++) {
+                            if (!structuringElement[j][i]) {
+                                continue;
+                            }
+                            int dilateX = x - (i - xOrigin);
+                            int dilateY = y - (j - yOrigin);
+                            if (dilateX >= 0 && dilateX < width && dilateY >= 0 && dilateY < height) {
+                                max = Math.max(max, IntRaster.red(input.getArgb(dilateX, dilateY)));
+                            }
+                            int erodeX = x + (i - xOrigin);
+                            int erodeY = y + (j - yOrigin);
+                            boolean inside = erodeX >= 0 && erodeX < width && erodeY >= 0 && erodeY < height;
+                            min = inside ? Math.min(min, IntRaster.red(input.getArgb(erodeX, erodeY))) : 0;
+                        }
+                    }
+                    assertEquals(max, IntRaster.red(dilated.getArgb(x, y)), "Dilation at (" + x + ", " + y + ")");
+                    assertEquals(min, IntRaster.red(eroded.getArgb(x, y)), "Erosion at (" + x + ", " + y + ")");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBinaryMorphologyAcrossWordBoundaries() {
+        int width = 150;
+        int height = 6;
+        IntRaster input = new IntRaster(width, height);
+        Random random = new Random(5);
+        for (int i = 0; i < input.getPixels().length; i++) {
+            input.getPixels()[i] = random.nextInt(3) == 0 ? 0xFFFFFFFF : 0xFF000000;
+        }
+        boolean[][] structuringElement = {
+                { true, false, true },
+                { true, true, true },
+                { false, true, false }
+        };
+        boolean[][] hitMask = {
+                { false, false, false },
+                { false, true, false },
+                { false, false, false }
+        };
+        boolean[][] missMask = {
+                { false, false, false },
+                { true, false, true },
+                { false, false, false }
+        };
+
+        IntRaster opened = ImageProcessor.opening(input, structuringElement);
+        IntRaster matches = ImageProcessor.hitOrMiss(input, hitMask, missMask);
+
+        // Erosion leaves transparent pixels at the border, which the binary path keeps as a separate plane
+        IntRaster eroded = ImageProcessor.erosion(input, structuringElement);
+        assertEquals(0, eroded.getArgb(0, 0));
+        assertArrayEquals(ImageProcessor.dilation(eroded, structuringElement).getPixels(), opened.getPixels());
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean expected = x > 0 && x < width - 1
+                        && input.getArgb(x, y) == 0xFF000000
+                        && input.getArgb(x - 1, y) == 0xFFFFFFFF
+                        && input.getArgb(x + 1, y) == 0xFFFFFFFF;
+                assertEquals(expected ? 0xFF000000 : 0xFFFFFFFF, matches.getArgb(x, y),
+                        "Hit-or-miss at (" + x + ", " + y + ")");
+
+                int min = 0xFF;
+                for (int j = 0; j < 3; j++) {
+                    for (int i = 0; i < 3; i++) {
+                        if (!structuringElement[j][i]) {
+                            continue;
+                        }
+                        int pixelX = x + i - 1;
+                        int pixelY = y + j - 1;
+                        boolean inside = pixelX >= 0 && pixelX < width && pixelY >= 0 && pixelY < height;
+                        min = inside ? Math.min(min, IntRaster.red(input.getArgb(pixelX, pixelY))) : -1;
+                        if (min < 0) {
+                            break;
+                        }
+                    }
+                    if (min < 0) {
+                        break;
+                    }
+                }
+                int expectedErosion = min < 0 ? 0 : min == 0xFF ? 0xFFFFFFFF : 0xFF000000;
+                assertEquals(expectedErosion, eroded.getArgb(x, y), "Erosion at (" + x + ", " + y + ")");
+            }
+        }
+    }
+
+    @Test
+    public void testConnectedComponentsStatistics() {
+        String[] rows = {
+                "##...#",
+                ".#..#.",
+                "...#..",
+                "#.....",
+                "##..##"
+        };
+        BinaryImage mask = new BinaryImage(6, rows.length);
+        for (int y = 0; y < rows.length; y++) {
+            for (int x = 0; x < 6; x++) {
+                mask.set(x, y, rows[y].charAt(x) == '#');
+            }
+        }
+
+        // Two-row bands, so components crossing band boundaries have to be merged
+        TileExecutor executor = new TileExecutor(ForkJoinPool.commonPool(), 6, 2);
+
+        ConnectedComponents four = ConnectedComponents.label(mask, ConnectedComponents.Connectivity.FOUR, executor);
+        assertEquals(6, four.getCount());
+        ConnectedComponents.Component first = four.getComponent(1);
+        assertEquals(3, first.area());
+        assertEquals(0, first.minX());
+        assertEquals(1, first.maxX());
+        assertEquals(1, first.maxY());
+        assertEquals(2.0 / 3.0, first.centroidX(), 1e-9);
+        assertEquals(first, four.getLargest());
+        assertEquals(four.getLabel(0, 3), four.getLabel(1, 4));
+
+        ConnectedComponents eight = ConnectedComponents.label(mask, ConnectedComponents.Connectivity.EIGHT, executor);
+        assertEquals(4, eight.getCount());
+        ConnectedComponents.Component diagonal = eight.getComponent(eight.getLabel(5, 0));
+        assertEquals(3, diagonal.area());
+        assertEquals(3, diagonal.minX());
+        assertEquals(0, diagonal.minY());
+        assertEquals(2, diagonal.maxY());
+        assertEquals(0, eight.getLabel(2, 2));
+    }
+
+    @Test
+    public void testImageStatisticsMatchManualCount() {
+        Random random = new Random(11);
+        IntRaster raster = new IntRaster(37, 23);
+        int[] pixels = raster.getPixels();
+        int[] expected = new int[256];
+        int[] expectedRed = new int[256];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = IntRaster.argb(255, random.nextInt(256), random.nextInt(256), random.nextInt(256));
+            expected[IntRaster.intensity(pixels[i])]++;
+            expectedRed[IntRaster.red(pixels[i])]++;
+        }
+
+        // Small tiles, so several partial histograms are merged
+        ImageStatistics statistics = ImageStatistics.compute(raster, new TileExecutor(ForkJoinPool.commonPool(), 8, 4));
+        assertEquals(pixels.length, statistics.getPixelCount());
+        assertArrayEquals(expected, statistics.getIntensityHistogram());
+        assertArrayEquals(expectedRed, statistics.getRedHistogram());
+
+        // Thresholders on the same raster share one computation
+        assertTrue(HistogramService.get(raster) == HistogramService.get(raster));
+        assertArrayEquals(expected, HistogramService.get(raster).getIntensityHistogram());
+    }
 }
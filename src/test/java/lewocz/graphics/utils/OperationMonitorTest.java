@@ -0,0 +1,106 @@
+package lewocz.graphics.utils;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class OperationMonitorTest {
+
+    @Test
+    public void testOperationMonitorCancelsAndReportsProgress() {
+        // The first of two declared passes is half of the progress, not all of it
+        OperationMonitor monitor = new OperationMonitor();
+        double[] progress = new double[2];
+        monitor.run(() -> {
+            OperationMonitor.expectPasses(2);
+            TileExecutor.serial().forEachIndex(10, i -> { });
+            progress[0] = monitor.getProgress();
+            TileExecutor.serial().forEachIndex(10, i -> { });
+            progress[1] = monitor.getProgress();
+        });
+        assertTrue(progress[0] < 1.0, "progress after the first pass: " + progress[0]);
+        assertEquals(0.5, progress[0], 1e-9);
+        assertEquals(1.0, progress[1], 1e-9);
+        assertTrue(monitor.getRemainingMillis() >= 0);
+        assertNull(OperationMonitor.current());
+
+        // A cancelled pass stops before its next unit and throws out of the operation
+        OperationMonitor cancelled = new OperationMonitor();
+        AtomicInteger units = new AtomicInteger();
+        assertThrows(CancellationException.class, () -> cancelled.run(() ->
+                TileExecutor.serial().forEachIndex(1000, i -> {
+                    if (units.incrementAndGet() == 10) {
+                        cancelled.cancel();
+                    }
+                })));
+        assertEquals(10, units.get());
+        assertTrue(cancelled.getProgress() < 1.0);
+
+        // Without a current monitor passes are not tracked
+        TileExecutor.serial().forEachIndex(5, i -> units.incrementAndGet());
+        assertEquals(15, units.get());
+    }
+
+    @Test
+    public void testMultiPassOperationsOnlyFinishWithTheirLastPass() {
+        Random random = new Random(21);
+        IntRaster raster = new IntRaster(100, 80);
+        for (int i = 0; i < raster.getPixels().length; i++) {
+            raster.getPixels()[i] = IntRaster.argb(255, random.nextInt(256), random.nextInt(256), random.nextInt(256));
+        }
+        boolean[][] square = {
+                {true, true, true},
+                {true, true, true},
+                {true, true, true}
+        };
+        Map<String, UnaryOperator<IntRaster>> operations = Map.of(
+                "sauvola", image -> ImageProcessor.sauvolaThresholding(image, 15, 0.5, 128),
+                "niblack", image -> ImageProcessor.niblackThresholding(image, 15, -0.2),
+                "gaussian", image -> ImageProcessor.applyGaussianBlur(image, 5, 1.0),
+                "opening", image -> ImageProcessor.opening(image, square),
+                "equalization", image -> ImageProcessor.histogramEqualization(image.copy()));
+
+        // Records the progress as every pass starts
+        List<Double> atPassStart = new ArrayList<>();
+        TileExecutor recording = new TileExecutor(null, 32, 32) {
+            @Override
+            public void forEachIndex(int count, IntConsumer task) {
+                atPassStart.add(OperationMonitor.current().getProgress());
+                super.forEachIndex(count, task);
+            }
+        };
+
+        TileExecutor previous = ImageProcessor.getExecutor();
+        ImageProcessor.setExecutor(recording);
+        try {
+            operations.forEach((name, operation) -> {
+                atPassStart.clear();
+                OperationMonitor monitor = new OperationMonitor();
+                monitor.run(() -> operation.apply(raster));
+
+                assertTrue(atPassStart.size() > 1, name);
+                assertEquals(0.0, atPassStart.get(0), name);
+                for (int pass = 1; pass < atPassStart.size(); pass++) {
+                    assertEquals(pass / (double) atPassStart.size(), atPassStart.get(pass), 1e-9, name + " pass " + pass);
+                }
+                assertEquals(1.0, monitor.getProgress(), 1e-9, name);
+            });
+        } finally {
+            ImageProcessor.setExecutor(previous);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package lewocz.graphics.utils;
+
+import javafx.scene.paint.Color;
+import lewocz.graphics.exception.InvalidFormatException;
+import lewocz.graphics.model.PNMFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class PNMImageIOTest {
+
+    @TempDir
+    Path tempDir;
+
+    private IntRaster readMapped(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            PNMHeader header = PNMHeader.read(channel, file.toString());
+            return MappedPNMReader.read(channel, header, TileExecutor.parallel(2));
+        }
+    }
+
+    private Path write(String name, String header, byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(header.getBytes(StandardCharsets.US_ASCII));
+        bytes.write(data);
+        Path file = tempDir.resolve(name);
+        Files.write(file, bytes.toByteArray());
+        return file;
+    }
+
+    /**
+     * Level the {@code Color} based loader produced for a sample.
+     */
+    private int expectedLevel(int sample, int maxColorValue) {
+        return (int) Math.round(Color.gray(sample / (double) maxColorValue).getRed() * 255);
+    }
+
+    @Test
+    public void testMappedColorRasterMatchesColorConversion() throws IOException {
+        // The first sample is a space, which must not be taken for header whitespace
+        byte[] data = {32, 0, (byte) 255, 10, 100, (byte) 200, 1, 2, 3, 4, 5, 6};
+        IntRaster raster = readMapped(write("color.ppm", "P6\n# comment\n2 2\n255\n", data));
+
+        assertEquals(2, raster.getWidth());
+        assertEquals(IntRaster.argb(255, 32, 0, 255), raster.getArgb(0, 0));
+        assertEquals(IntRaster.argb(255, 10, 100, 200), raster.getArgb(1, 0));
+        assertEquals(IntRaster.argb(255, 4, 5, 6), raster.getArgb(1, 1));
+    }
+
+    @Test
+    public void testMappedSixteenBitGrayRaster() throws IOException {
+        int maxColorValue = 1000;
+        int[] samples = {0, 1, 500, 999, 1000, 257};
+        byte[] data = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++) {
+            data[2 * i] = (byte) (samples[i] >> 8);
+            data[2 * i + 1] = (byte) samples[i];
+        }
+        IntRaster raster = readMapped(write("gray.pgm", "P5 3 2 " + maxColorValue + "\n", data));
+
+        for (int i = 0; i < samples.length; i++) {
+            int level = expectedLevel(samples[i], maxColorValue);
+            assertEquals(IntRaster.argb(255, level, level, level), raster.getPixels()[i]);
+        }
+
+        // Samples above the maximum are rejected instead of producing an invalid color
+        data[1] = (byte) 0xE9;
+        data[0] = (byte) 0x03;
+        Path invalid = write("invalid.pgm", "P5 3 2 " + maxColorValue + "\n", data);
+        assertThrows(InvalidFormatException.class, () -> readMapped(invalid));
+    }
+
+    @Test
+    public void testMappedBitmapAndTruncatedData() throws IOException {
+        // 10 pixels per row need two bytes; set bits are black
+        byte[] data = {(byte) 0b10100000, (byte) 0b01000000, (byte) 0xFF, (byte) 0xC0};
+        IntRaster raster = readMapped(write("bitmap.pbm", "P4\n10 2\n", data));
+
+        assertEquals(0xFF000000, raster.getArgb(0, 0));
+        assertEquals(0xFFFFFFFF, raster.getArgb(1, 0));
+        assertEquals(0xFF000000, raster.getArgb(2, 0));
+        assertEquals(0xFF000000, raster.getArgb(9, 0));
+        assertEquals(0xFFFFFFFF, raster.getArgb(8, 0));
+        assertEquals(0xFF000000, raster.getArgb(9, 1));
+
+        Path truncated = write("truncated.pbm", "P4\n10 3\n", data);
+        IOException e = assertThrows(IOException.class, () -> readMapped(truncated));
+        assertEquals("Unexpected end of file when reading pixel data at row 2.", e.getMessage());
+    }
+
+    private IntRaster readRows(Path file) throws IOException {
+        try (PNMRowReader reader = new PNMRowReader(file.toString())) {
+            IntRaster raster = new IntRaster(reader.getWidth(), reader.getHeight());
+            int[] row = new int[reader.getWidth()];
+            for (int y = 0; reader.readRow(row); y++) {
+                System.arraycopy(row, 0, raster.getPixels(), y * row.length, row.length);
+            }
+            return raster;
+        }
+    }
+
+    @Test
+    public void testStreamingPipelineMatchesWholeImage() throws IOException {
+        Random random = new Random(5);
+        int width = 23;
+        int height = 75;
+        Path input = tempDir.resolve("input.ppm");
+        try (PNMRowWriter writer = new PNMRowWriter(input.toString(), width, height, PNMFormat.PPM, true, 255)) {
+            int[] row = new int[width];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    row[x] = IntRaster.argb(255, random.nextInt(256), random.nextInt(256), random.nextInt(256));
+                }
+                writer.writeRow(row);
+            }
+        }
+        IntRaster original = readRows(input);
+
+        double[][] kernel = new double[5][5];
+        for (double[] kernelRow : kernel) {
+            for (int i = 0; i < kernelRow.length; i++) {
+                kernelRow[i] = random.nextDouble();
+            }
+        }
+        Path filtered = tempDir.resolve("filtered.ppm");
+        new PNMStreamPipeline()
+                .pointOperation(PointLut.brightness(0.05))
+                .convolutionFilter(kernel)
+                .medianFilter(1)
+                .process(input.toString(), filtered.toString(), PNMFormat.PPM, true, 255);
+
+        IntRaster expected = ImageProcessor.applyMedianFilter(ImageProcessor.applyConvolutionFilter(
+                ImageProcessor.applyPointOperation(original, PointLut.brightness(0.05)), kernel), 1);
+        assertArrayEquals(expected.getPixels(), readRows(filtered).getPixels());
+
+        // Text output, with a window taller than a block
+        Path thresholded = tempDir.resolve("thresholded.pbm");
+        new PNMStreamPipeline()
+                .niblackThresholding(41, -0.2)
+                .process(input.toString(), thresholded.toString(), PNMFormat.PBM, false, 1);
+        assertArrayEquals(ImageProcessor.niblackThresholding(original, 41, -0.2).getPixels(),
+                readRows(thresholded).getPixels());
+    }
+
+    private IntRaster readText(Path file, int chunkBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            PNMHeader header = PNMHeader.read(channel, file.toString());
+            return AsciiPNMReader.read(channel, header, TileExecutor.parallel(2), chunkBytes);
+        }
+    }
+
+    @Test
+    public void testChunkedTextRasterMatchesRowReader() throws IOException {
+        Random random = new Random(3);
+        StringBuilder text = new StringBuilder("P3\n# header comment\n7 5\n1000\n");
+        for (int i = 0; i < 7 * 5 * 3; i++) {
+            text.append(random.nextInt(1001)).append(i % 4 == 3 ? "\n" : "  ");
+            if (i % 10 == 9) {
+                text.append("# comment 12 34\n");
+            }
+        }
+        Path file = write("color.ppm", text.toString(), new byte[0]);
+
+        // Tiny chunks, so pixels and their samples are split between chunks
+        IntRaster chunked = readText(file, 16);
+        assertArrayEquals(readRows(file).getPixels(), chunked.getPixels());
+        assertArrayEquals(chunked.getPixels(), readText(file, AsciiPNMReader.CHUNK_BYTES).getPixels());
+    }
+
+    @Test
+    public void testTextRasterDiagnostics() throws IOException {
+        Path outOfBounds = write("bounds.pgm", "P2\n2 2\n255\n0 1\n# comment\n2 300\n", new byte[0]);
+        IOException e = assertThrows(InvalidFormatException.class, () -> readText(outOfBounds, 4));
+        assertEquals("gray value out of bounds at line 6: 300. Expected range: 0 to 255.", e.getMessage());
+
+        Path invalid = write("invalid.pbm", "P1\n3 1\n0 1x 1\n", new byte[0]);
+        e = assertThrows(InvalidFormatException.class, () -> readText(invalid, 4));
+        assertEquals("Invalid pixel value at line 3: 1x", e.getMessage());
+
+        Path truncated = write("truncated.ppm", "P3\n1 2\n255\n1 2 3\n4\n", new byte[0]);
+        e = assertThrows(IOException.class, () -> readText(truncated, 4));
+        assertEquals("Unexpected end of file while reading green value.", e.getMessage());
+
+        // More samples than an array can hold is refused before anything is allocated
+        Path huge = write("huge.ppm", "P3\n30000 30000\n255\n0 0 0\n", new byte[0]);
+        e = assertThrows(InvalidFormatException.class, () -> readText(huge, 4));
+        assertTrue(e.getMessage().startsWith("Image too large for text decoding"), e.getMessage());
+    }
+
+    @Test
+    public void testBandedWriterMatchesRowWriter() throws IOException {
+        Random random = new Random(9);
+        IntRaster raster = new IntRaster(13, 9);
+        for (int i = 0; i < raster.getPixels().length; i++) {
+            raster.getPixels()[i] = IntRaster.argb(255, random.nextInt(256), random.nextInt(256), random.nextInt(256));
+        }
+
+        for (PNMFormat format : PNMFormat.values()) {
+            for (boolean binary : new boolean[]{true, false}) {
+                for (int maxColorValue : new int[]{255, 1000}) {
+                    Path banded = tempDir.resolve("banded");
+                    // Tiny bands, so the file is assembled from many gathered buffers
+                    PNMWriter.write(banded.toString(), raster, format, binary, maxColorValue, TileExecutor.parallel(2), 16);
+
+                    Path rows = tempDir.resolve("rows");
+                    try (PNMRowWriter writer = new PNMRowWriter(rows.toString(), 13, 9, format, binary, maxColorValue)) {
+                        int[] row = new int[13];
+                        for (int y = 0; y < 9; y++) {
+                            System.arraycopy(raster.getPixels(), y * 13, row, 0, 13);
+                            writer.writeRow(row);
+                        }
+                    }
+                    assertArrayEquals(Files.readAllBytes(rows), Files.readAllBytes(banded),
+                            format + (binary ? " binary " : " text ") + maxColorValue);
+                }
+            }
+        }
+
+        // Samples are truncated like Color.getRed() * maxColorValue
+        Path text = tempDir.resolve("text.ppm");
+        PNMWriter.write(text.toString(), raster, PNMFormat.PPM, false, 1000, TileExecutor.serial());
+        String[] lines = Files.readString(text).split("\n");
+        int argb = raster.getArgb(1, 0);
+        Color color = Color.rgb(IntRaster.red(argb), IntRaster.green(argb), IntRaster.blue(argb));
+        String[] values = lines[3].split(" ");
+        assertEquals(String.valueOf((int) (color.getRed() * 1000)), values[3]);
+        assertEquals(String.valueOf((int) (color.getBlue() * 1000)), values[5]);
+
+        // 8-bit binary output reads back unchanged
+        Path binary = tempDir.resolve("binary.ppm");
+        PNMWriter.write(binary.toString(), raster, PNMFormat.PPM, true, 255, TileExecutor.parallel(2));
+        assertArrayEquals(raster.getPixels(), readMapped(binary).getPixels());
+    }
+
+    @Test
+    public void testShortRasterRoundTripAndOperations() throws IOException {
+        Random random = new Random(16);
+        ShortRaster gray = new ShortRaster(37, 11, 1, 4095);
+        ShortRaster color = new ShortRaster(7, 5, 3, 65535);
+        for (ShortRaster raster : new ShortRaster[]{gray, color}) {
+            char[] samples = raster.getSamples();
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = (char) random.nextInt(raster.getMaxValue() + 1);
+            }
+        }
+
+        // Binary and text files keep every sample at the original maximum value
+        for (ShortRaster raster : new ShortRaster[]{gray, color}) {
+            for (boolean binary : new boolean[]{true, false}) {
+                Path file = tempDir.resolve(binary ? "samples.bin" : "samples.txt");
+                PNMWriter.write(file.toString(), raster, binary, TileExecutor.parallel(2), 64);
+                ShortRaster loaded = PNMImageIO.loadShortRaster(file.toString());
+                assertEquals(raster.getChannels(), loaded.getChannels());
+                assertEquals(raster.getMaxValue(), loaded.getMaxValue());
+                assertArrayEquals(raster.getSamples(), loaded.getSamples());
+            }
+        }
+
+        ImageStatistics statistics = ImageStatistics.compute(gray, TileExecutor.parallel(2));
+        assertEquals(4096, statistics.getLevels());
+        assertEquals(gray.getWidth() * gray.getHeight(), statistics.getPixelCount());
+
+        ShortRaster stretched = ImageProcessor.histogramStretching(gray);
+        assertEquals(0, ImageStatistics.compute(stretched, TileExecutor.serial()).getMinIntensity());
+        assertEquals(4095, ImageStatistics.compute(stretched, TileExecutor.serial()).getMaxIntensity());
+
+        int threshold = ImageProcessor.otsuThreshold(statistics);
+        BinaryImage binary = ImageProcessor.otsuThresholding(gray);
+        for (int y = 0; y < gray.getHeight(); y++) {
+            for (int x = 0; x < gray.getWidth(); x++) {
+                assertEquals(gray.getSample(x, y, 0) >= threshold, binary.get(x, y));
+            }
+        }
+
+        double[][] identity = {{0, 0, 0}, {0, 1, 0}, {0, 0, 0}};
+        assertArrayEquals(color.getSamples(), ImageProcessor.applyConvolutionFilter(color, identity).getSamples());
+    }
+
+    @Test
+    public void testTileSourceRegionsMatchFullDecode() throws IOException {
+        Random random = new Random(17);
+        IntRaster raster = new IntRaster(300, 70);
+        for (int i = 0; i < raster.getPixels().length; i++) {
+            raster.getPixels()[i] = IntRaster.argb(255, random.nextInt(256), random.nextInt(256), random.nextInt(256));
+        }
+
+        for (PNMFormat format : PNMFormat.values()) {
+            for (boolean binary : new boolean[]{true, false}) {
+                Path file = tempDir.resolve("tiles." + format.name().toLowerCase());
+                PNMWriter.write(file.toString(), raster, format, binary, binary ? 1000 : 255, TileExecutor.serial());
+                IntRaster full = binary ? readMapped(file) : readText(file, 64);
+
+                try (TileSource source = PNMImageIO.openPNM(file.toString(), format)) {
+                    assertEquals(300, source.getWidth());
+                    assertEquals(70, source.getHeight());
+                    // Regions that start and end inside a byte of bitmap rows
+                    int[][] regions = {{0, 0, 300, 70}, {13, 5, 101, 9}, {299, 69, 1, 1}, {7, 0, 9, 70}};
+                    for (int[] region : regions) {
+                        IntRaster tile = source.readRegion(region[0], region[1], region[2], region[3]);
+                        for (int y = 0; y < region[3]; y++) {
+                            for (int x = 0; x < region[2]; x++) {
+                                assertEquals(full.getArgb(region[0] + x, region[1] + y), tile.getArgb(x, y),
+                                        format + (binary ? " binary" : " text"));
+                            }
+                        }
+                    }
+                    assertArrayEquals(full.getPixels(), source.readAll().getPixels());
+                }
+            }
+        }
+
+        // A truncated binary file is rejected when it is opened, not when a tile is drawn
+        Path truncated = write("truncated.pgm", "P5\n4 4\n255\n", new byte[10]);
+        assertThrows(IOException.class, () -> PNMImageIO.openPNM(truncated.toString(), PNMFormat.PGM));
+    }
+}
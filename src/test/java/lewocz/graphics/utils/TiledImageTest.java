@@ -0,0 +1,143 @@
+package lewocz.graphics.utils;
+
+import javafx.scene.image.WritableImage;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class TiledImageTest {
+
+    @Test
+    public void testTiledPyramidMatchesWholeImageDownsampling() throws Exception {
+        Random random = new Random(18);
+        IntRaster raster = new IntRaster(1100, 301);
+        for (int i = 0; i < raster.getPixels().length; i++) {
+            raster.getPixels()[i] = IntRaster.argb(255, random.nextInt(256), random.nextInt(256), random.nextInt(256));
+        }
+
+        TileCache cache = new TileCache(1 << 20);
+        TiledImage image = new TiledImage(new RasterTileSource(raster), cache);
+        // 1100 -> 550 -> 275 -> 138: the last level fits in one tile
+        assertEquals(4, image.getLevelCount());
+        assertEquals(0, image.getLevelForScale(1.0));
+        assertEquals(1, image.getLevelForScale(0.5));
+        assertEquals(1, image.getLevelForScale(0.3));
+        assertEquals(3, image.getLevelForScale(0.01));
+
+        // Tiles are halved from the tiles of the finer level, which gives the same pixels as halving the image
+        IntRaster expected = raster;
+        for (int level = 1; level < image.getLevelCount(); level++) {
+            expected = ImagePyramid.halve(expected, TileExecutor.serial());
+            IntRaster actual = image.toRaster(level);
+            assertEquals(expected.getWidth(), actual.getWidth());
+            assertEquals(expected.getHeight(), actual.getHeight());
+            assertArrayEquals(expected.getPixels(), actual.getPixels(), "level " + level);
+        }
+
+        // The cache stays within its budget, and a closed image leaves nothing behind
+        assertTrue(cache.getBytes() <= cache.getMaxBytes());
+        image.close();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void testRequestedTilesAreBuiltInTheBackground() throws Exception {
+        IntRaster raster = new IntRaster(2000, 900);
+        for (int i = 0; i < raster.getPixels().length; i++) {
+            raster.getPixels()[i] = IntRaster.argb(255, i % 256, (i / 7) % 256, 128);
+        }
+        TiledImage image = new TiledImage(new RasterTileSource(raster), new TileCache(64 << 20));
+        int coarsest = image.getLevelCount() - 1;
+
+        // Drawing only takes cached tiles and asks for the missing ones
+        assertNull(image.getCachedTile(coarsest, 0, 0));
+        CountDownLatch loaded = new CountDownLatch(1);
+        image.requestTile(coarsest, 0, 0, loaded::countDown, e -> { });
+        assertTrue(loaded.await(10, TimeUnit.SECONDS));
+
+        WritableImage tile = image.getCachedTile(coarsest, 0, 0);
+        assertNotNull(tile);
+        IntRaster expected = raster;
+        for (int level = 0; level < coarsest; level++) {
+            expected = ImagePyramid.halve(expected, TileExecutor.serial());
+        }
+        assertArrayEquals(expected.getPixels(), IntRaster.fromImage(tile).getPixels());
+
+        // Full size tiles of a new version of an image in memory are cut right away, coarser ones are not
+        TiledImage edited = new TiledImage(new RasterTileSource(raster), image.getCache());
+        assertNull(edited.getCachedTile(0, 7, 3));
+        assertNotNull(edited.getReadyTile(0, 7, 3));
+        assertNull(edited.getReadyTile(1, 3, 1));
+        edited.close();
+
+        // A closed image neither loads nor caches tiles
+        image.close();
+        image.requestTile(0, 0, 0, () -> {
+            throw new AssertionError("closed image loaded a tile");
+        }, e -> { });
+        assertNull(image.getCachedTile(0, 0, 0));
+    }
+
+    @Test
+    public void testUnreadableTilesAreReportedOnceAndNotRetried() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        TileSource truncated = new TileSource() {
+            @Override
+            public int getWidth() {
+                return 600;
+            }
+
+            @Override
+            public int getHeight() {
+                return 300;
+            }
+
+            @Override
+            public IntRaster readRegion(int x, int y, int width, int height) throws IOException {
+                reads.incrementAndGet();
+                throw new IOException("Unexpected end of file");
+            }
+        };
+        TiledImage image = new TiledImage(truncated, new TileCache(1 << 20));
+
+        List<RuntimeException> failures = new CopyOnWriteArrayList<>();
+        Consumer<RuntimeException> onFailed = failures::add;
+        for (int column = 0; column < 2; column++) {
+            image.requestTile(0, column, 0, () -> {
+                throw new AssertionError("unreadable tile loaded");
+            }, onFailed);
+        }
+        // Only the first failure of the image is reported, so wait for both reads instead
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (reads.get() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        assertEquals(2, reads.get());
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(0).getCause() instanceof IOException);
+
+        // A failed tile is not queued again on the next redraw
+        image.requestTile(0, 0, 0, () -> { }, onFailed);
+        Thread.sleep(100);
+        assertEquals(2, reads.get());
+        assertNull(image.getCachedTile(0, 0, 0));
+        image.close();
+    }
+}
@@ -0,0 +1,47 @@
+package lewocz.graphics.viewmodel;
+
+import lewocz.graphics.utils.TileExecutor;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class PreviewRendererTest {
+
+    @Test
+    public void testSupersededPreviewStopsEarly() throws InterruptedException {
+        PreviewRenderer renderer = new PreviewRenderer();
+        int units = 100_000;
+        AtomicInteger staleUnits = new AtomicInteger();
+        AtomicBoolean staleFinished = new AtomicBoolean();
+        CountDownLatch staleStarted = new CountDownLatch(1);
+        CountDownLatch latestDone = new CountDownLatch(1);
+        try {
+            // A render that would take seconds to run to the end
+            renderer.render(() -> {
+                TileExecutor.serial().forEachIndex(units, i -> {
+                    staleUnits.incrementAndGet();
+                    staleStarted.countDown();
+                    LockSupport.parkNanos(50_000);
+                });
+                staleFinished.set(true);
+            });
+            assertTrue(staleStarted.await(5, TimeUnit.SECONDS));
+
+            renderer.render(latestDone::countDown);
+            assertTrue(latestDone.await(5, TimeUnit.SECONDS));
+            assertFalse(staleFinished.get());
+            assertTrue(staleUnits.get() < units, "stale render ran " + staleUnits.get() + " units");
+        } finally {
+            renderer.shutdown();
+        }
+    }
+}